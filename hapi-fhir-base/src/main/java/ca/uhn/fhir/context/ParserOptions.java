@@ -46,6 +46,7 @@ public class ParserOptions {
 	private boolean myAutoContainReferenceTargetsWithNoId = true;
 	private Set<String> myEncodeElementsForSummaryMode = null;
 	private Set<String> myDontEncodeElementsForSummaryMode = null;
+	private boolean myStreamingJsonParsingEnabled = false;
 
 	/**
 	 * If set to {@literal true} (which is the default), contained resources may be specified by
@@ -81,6 +82,40 @@ public class ParserOptions {
 		myAutoContainReferenceTargetsWithNoId = theAllowAutoContainedReferences;
 	}
 
+	/**
+	 * Returns {@literal true} if the JSON parser builds resources directly from the stream of
+	 * JSON tokens instead of first reading the whole document into a JSON tree. See
+	 * {@link #setStreamingJsonParsingEnabled(boolean)} for details. Default is {@literal false}.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isStreamingJsonParsingEnabled() {
+		return myStreamingJsonParsingEnabled;
+	}
+
+	/**
+	 * If set to {@literal true} (default is {@literal false}), the JSON parser reads the
+	 * document as a stream of tokens and builds the resource model directly from them,
+	 * instead of first loading the complete document into an intermediate JSON tree.
+	 * This substantially reduces the memory required to parse large documents such as
+	 * transaction Bundles, since only small fragments (extensions, primitive
+	 * element extensions, and objects where <code>resourceType</code> is not the first
+	 * property) are ever held in tree form.
+	 * <p>
+	 * The resulting resources are the same as those produced by the default mode. The
+	 * only differences are in edge cases involving invalid content, for example a
+	 * property that is repeated within the same JSON object is processed once per
+	 * occurrence rather than only for the last occurrence.
+	 * </p>
+	 *
+	 * @return Returns a reference to <code>this</code> so that method calls can be chained together
+	 * @since 7.6.0
+	 */
+	public ParserOptions setStreamingJsonParsingEnabled(boolean theStreamingJsonParsingEnabled) {
+		myStreamingJsonParsingEnabled = theStreamingJsonParsingEnabled;
+		return this;
+	}
+
 	/**
 	 * If set to <code>true<code> (which is the default), resource references containing a version
 	 * will have the version removed when the resource is encoded. This is generally good behaviour because
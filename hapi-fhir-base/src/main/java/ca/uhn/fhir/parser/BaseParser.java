@@ -47,6 +47,8 @@ import ca.uhn.fhir.util.CollectionUtil;
 import ca.uhn.fhir.util.FhirTerser;
 import ca.uhn.fhir.util.MetaUtil;
 import ca.uhn.fhir.util.UrlUtil;
+import ca.uhn.fhir.util.bundle.BundleEntryParts;
+import ca.uhn.fhir.util.bundle.ModifiableBundleEntry;
 import com.google.common.base.Charsets;
 import jakarta.annotation.Nullable;
 import org.apache.commons.io.output.StringBuilderWriter;
@@ -68,10 +70,13 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -82,6 +87,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -244,9 +250,41 @@ public abstract class BaseParser implements IParser {
 		throw new InternalErrorException(Msg.code(2363) + "This parser does not support encoding non-resource values");
 	}
 
+	/**
+	 * Encodes a resource as UTF-8 to the given stream. Parsers which can write bytes directly override
+	 * this, the default implementation encodes to the stream through a {@link Writer}.
+	 */
+	protected void doEncodeResourceToOutputStream(
+			IBaseResource theResource, OutputStream theOutputStream, EncodeContext theEncodeContext)
+			throws IOException, DataFormatException {
+		Writer writer = new OutputStreamWriter(theOutputStream, StandardCharsets.UTF_8);
+		doEncodeResourceToWriter(theResource, writer, theEncodeContext);
+		writer.flush();
+	}
+
 	protected abstract <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader)
 			throws DataFormatException;
 
+	/**
+	 * Parses a resource, invoking the given handler as each entry of a top-level Bundle is parsed
+	 * (see {@link ParserState#setBundleEntryHandler(Consumer)}). Parsers which support handing entries
+	 * off incrementally override this; by default the whole Bundle is parsed and then handed to the
+	 * handler in one go.
+	 */
+	protected <T extends IBaseResource> T doParseResource(
+			Class<T> theResourceType, Reader theReader, Consumer<IBaseBundle> theBundleEntryHandler)
+			throws DataFormatException {
+		T retVal = doParseResource(theResourceType, theReader);
+		IBaseBundle bundle = (IBaseBundle) retVal;
+		theBundleEntryHandler.accept(bundle);
+		myContext
+				.getResourceDefinition(bundle)
+				.getChildByName("entry")
+				.getMutator()
+				.setValue(bundle, null);
+		return retVal;
+	}
+
 	@Override
 	public String encodeResourceToString(IBaseResource theResource) throws DataFormatException {
 		Writer stringWriter = new StringBuilderWriter();
@@ -266,6 +304,21 @@ public abstract class BaseParser implements IParser {
 		encodeResourceToWriter(theResource, theWriter, encodeContext);
 	}
 
+	@Override
+	public final void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream)
+			throws IOException, DataFormatException {
+		Validate.notNull(theResource, "theResource can not be null");
+		Validate.notNull(theOutputStream, "theOutputStream can not be null");
+
+		EncodeContext encodeContext = new EncodeContext(this, myContext.getParserOptions());
+		String resourceName = validateResourceVersionAndGetName(theResource);
+		encodeContext.pushPath(resourceName, true);
+
+		doEncodeResourceToOutputStream(theResource, theOutputStream, encodeContext);
+
+		encodeContext.popPath();
+	}
+
 	@Override
 	public String encodeToString(IBase theElement) throws DataFormatException {
 		Writer stringWriter = new StringBuilderWriter();
@@ -296,19 +349,22 @@ public abstract class BaseParser implements IParser {
 		Validate.notNull(theWriter, "theWriter can not be null");
 		Validate.notNull(theEncodeContext, "theEncodeContext can not be null");
 
+		String resourceName = validateResourceVersionAndGetName(theResource);
+		theEncodeContext.pushPath(resourceName, true);
+
+		doEncodeResourceToWriter(theResource, theWriter, theEncodeContext);
+
+		theEncodeContext.popPath();
+	}
+
+	private String validateResourceVersionAndGetName(IBaseResource theResource) {
 		if (theResource.getStructureFhirVersionEnum() != myContext.getVersion().getVersion()) {
 			throw new IllegalArgumentException(Msg.code(1829) + "This parser is for FHIR version "
 					+ myContext.getVersion().getVersion() + " - Can not encode a structure for version "
 					+ theResource.getStructureFhirVersionEnum());
 		}
 
-		String resourceName =
-				myContext.getElementDefinition(theResource.getClass()).getName();
-		theEncodeContext.pushPath(resourceName, true);
-
-		doEncodeResourceToWriter(theResource, theWriter, theEncodeContext);
-
-		theEncodeContext.popPath();
+		return myContext.getElementDefinition(theResource.getClass()).getName();
 	}
 
 	protected void encodeToWriter(IBase theElement, Writer theWriter, EncodeContext theEncodeContext)
@@ -650,49 +706,83 @@ public abstract class BaseParser implements IParser {
 		if ("Bundle".equals(def.getName())) {
 
 			if (isOverrideResourceIdWithBundleEntryFullUrl()) {
-				BundleUtil.processEntries(myContext, (IBaseBundle) retVal, t -> {
-					String fullUrl = t.getFullUrl();
-					if (fullUrl != null) {
-						IBaseResource resource = t.getResource();
-						if (resource != null) {
-							IIdType resourceId = resource.getIdElement();
-							if (isBlank(resourceId.getValue())) {
-								resourceId.setValue(fullUrl);
-							} else {
-								if (fullUrl.startsWith("urn:")
-										&& fullUrl.length()
-												> resourceId.getIdPart().length()
-										&& fullUrl.charAt(fullUrl.length()
-														- resourceId.getIdPart().length()
-														- 1)
-												== ':'
-										&& fullUrl.endsWith(resourceId.getIdPart())) {
-									resourceId.setValue(fullUrl);
-								} else {
-									IIdType fullUrlId = myContext.getVersion().newIdType();
-									fullUrlId.setValue(fullUrl);
-									if (myContext.getVersion().getVersion().isOlderThan(FhirVersionEnum.DSTU3)) {
-										IIdType newId = fullUrlId;
-										if (!newId.hasVersionIdPart() && resourceId.hasVersionIdPart()) {
-											newId = newId.withVersion(resourceId.getVersionIdPart());
-										}
-										resourceId.setValue(newId.getValue());
-									} else if (StringUtils.equals(fullUrlId.getIdPart(), resourceId.getIdPart())) {
-										if (fullUrlId.hasBaseUrl()) {
-											IIdType newResourceId = resourceId.withServerBase(
-													fullUrlId.getBaseUrl(), resourceId.getResourceType());
-											resourceId.setValue(newResourceId.getValue());
-										}
-									}
-								}
+				BundleUtil.processEntries(myContext, (IBaseBundle) retVal, this::overrideResourceIdWithFullUrl);
+			}
+		}
+
+		return retVal;
+	}
+
+	@Override
+	public IBaseBundle parseBundleEntries(Reader theReader, Consumer<BundleEntryParts> theEntryConsumer)
+			throws DataFormatException {
+		Class<? extends IBaseResource> bundleType =
+				myContext.getResourceDefinition("Bundle").getImplementingClass();
+		boolean overrideResourceIdWithFullUrl = isOverrideResourceIdWithBundleEntryFullUrl();
+
+		IBaseResource retVal = doParseResource(bundleType, theReader, theBundle -> {
+			BundleUtil.processEntries(myContext, theBundle, entry -> {
+				/*
+				 * Cross references between entries aren't stitched together when entries are
+				 * handed off one at a time, but IDs from Bundle.entry.request.url are still set
+				 */
+				IBaseResource resource = entry.getResource();
+				String requestUrl = entry.getRequestUrl();
+				if (resource != null
+						&& resource.getIdElement().isEmpty()
+						&& requestUrl != null
+						&& requestUrl.startsWith("urn:")) {
+					resource.setId(requestUrl);
+				}
+				if (overrideResourceIdWithFullUrl) {
+					overrideResourceIdWithFullUrl(entry);
+				}
+			});
+			for (BundleEntryParts next : BundleUtil.toListOfEntries(myContext, theBundle)) {
+				theEntryConsumer.accept(next);
+			}
+		});
+
+		return (IBaseBundle) retVal;
+	}
+
+	private void overrideResourceIdWithFullUrl(ModifiableBundleEntry theEntry) {
+		String fullUrl = theEntry.getFullUrl();
+		if (fullUrl != null) {
+			IBaseResource resource = theEntry.getResource();
+			if (resource != null) {
+				IIdType resourceId = resource.getIdElement();
+				if (isBlank(resourceId.getValue())) {
+					resourceId.setValue(fullUrl);
+				} else {
+					if (fullUrl.startsWith("urn:")
+							&& fullUrl.length() > resourceId.getIdPart().length()
+							&& fullUrl.charAt(fullUrl.length()
+											- resourceId.getIdPart().length()
+											- 1)
+									== ':'
+							&& fullUrl.endsWith(resourceId.getIdPart())) {
+						resourceId.setValue(fullUrl);
+					} else {
+						IIdType fullUrlId = myContext.getVersion().newIdType();
+						fullUrlId.setValue(fullUrl);
+						if (myContext.getVersion().getVersion().isOlderThan(FhirVersionEnum.DSTU3)) {
+							IIdType newId = fullUrlId;
+							if (!newId.hasVersionIdPart() && resourceId.hasVersionIdPart()) {
+								newId = newId.withVersion(resourceId.getVersionIdPart());
+							}
+							resourceId.setValue(newId.getValue());
+						} else if (StringUtils.equals(fullUrlId.getIdPart(), resourceId.getIdPart())) {
+							if (fullUrlId.hasBaseUrl()) {
+								IIdType newResourceId =
+										resourceId.withServerBase(fullUrlId.getBaseUrl(), resourceId.getResourceType());
+								resourceId.setValue(newResourceId.getValue());
 							}
 						}
 					}
-				});
+				}
 			}
 		}
-
-		return retVal;
 	}
 
 	@SuppressWarnings("cast")
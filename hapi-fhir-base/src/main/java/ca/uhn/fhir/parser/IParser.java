@@ -25,20 +25,24 @@ import ca.uhn.fhir.context.ParserOptions;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.CollectionUtil;
+import ca.uhn.fhir.util.bundle.BundleEntryParts;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * A parser, which can be used to convert between HAPI FHIR model/structure objects, and their respective String wire
@@ -68,6 +72,20 @@ public interface IParser {
 	 */
 	void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException, DataFormatException;
 
+	/**
+	 * Encodes a resource using the parser's given encoding format, writing UTF-8 encoded bytes directly
+	 * to the given stream. This avoids building an intermediate {@link String} when the encoded resource
+	 * is going to be stored or transmitted as bytes anyway. Note that the stream will not be closed by
+	 * the parser upon completion.
+	 *
+	 * @param theResource     The resource to encode. Must not be null.
+	 * @param theOutputStream The stream to write to.
+	 * @throws DataFormatException If any invalid elements within the contents to be encoded prevent successful encoding.
+	 * @since 7.6.0
+	 */
+	void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream)
+			throws IOException, DataFormatException;
+
 	/**
 	 * Encodes any FHIR element to a string.
 	 * If a {@link IBaseResource resource object} is passed in, the resource will be encoded using standard FHIR
@@ -231,6 +249,26 @@ public interface IParser {
 	 */
 	IParser setSummaryMode(boolean theSummaryMode);
 
+	/**
+	 * Parses a Bundle, passing each entry to the given consumer as soon as it has been parsed instead of
+	 * building the complete Bundle first. Only one entry is held in memory at a time, so this can be used
+	 * to process very large Bundles in constant memory.
+	 * <p>
+	 * Resource IDs are assigned from <code>Bundle.entry.fullUrl</code> in the same way as they are by
+	 * {@link #parseResource(Class, Reader)}, but references between entries are not resolved (i.e.
+	 * {@link org.hl7.fhir.instance.model.api.IBaseReference#getResource()} is not populated for references
+	 * to other entries).
+	 * </p>
+	 *
+	 * @param theReader        The reader to parse input from. Note that the Reader will not be closed by the parser upon completion.
+	 * @param theEntryConsumer Invoked once for each entry, in document order
+	 * @return The Bundle, with no entries
+	 * @throws DataFormatException If the Bundle can not be parsed because the data is not recognized or invalid for any reason
+	 * @since 7.6.0
+	 */
+	IBaseBundle parseBundleEntries(Reader theReader, Consumer<BundleEntryParts> theEntryConsumer)
+			throws DataFormatException;
+
 	/**
 	 * Parses a resource
 	 *
@@ -54,11 +54,13 @@ import ca.uhn.fhir.parser.json.JsonLikeStructure;
 import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
+import com.fasterxml.jackson.core.JsonToken;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.text.WordUtils;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBooleanDatatype;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseDecimalDatatype;
 import org.hl7.fhir.instance.model.api.IBaseExtension;
 import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
@@ -71,14 +73,19 @@ import org.hl7.fhir.instance.model.api.INarrative;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum.ID_DATATYPE;
 import static ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum.PRIMITIVE_DATATYPE;
@@ -224,6 +231,15 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		eventWriter.close();
 	}
 
+	@Override
+	protected void doEncodeResourceToOutputStream(
+			IBaseResource theResource, OutputStream theOutputStream, EncodeContext theEncodeContext)
+			throws IOException {
+		BaseJsonLikeWriter eventWriter = new JacksonStructure().getJsonLikeWriter(theOutputStream);
+		doEncodeResourceToJsonLikeWriter(theResource, eventWriter, theEncodeContext);
+		eventWriter.close();
+	}
+
 	@Override
 	protected void doEncodeToWriter(IBase theElement, Writer theWriter, EncodeContext theEncodeContext)
 			throws IOException, DataFormatException {
@@ -236,6 +252,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (getContext().getParserOptions().isStreamingJsonParsingEnabled()) {
+			return doParseResourceStreaming(theResourceType, theReader, null);
+		}
+
 		JsonLikeStructure jsonStructure = new JacksonStructure();
 		jsonStructure.load(theReader);
 
@@ -245,8 +265,22 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 	}
 
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, JsonLikeStructure theJsonStructure) {
-		BaseJsonLikeObject object = theJsonStructure.getRootObject();
+		return doParseResource(theResourceType, theJsonStructure.getRootObject(), null);
+	}
+
+	/**
+	 * Bundle entries are always streamed here, regardless of
+	 * {@link ca.uhn.fhir.context.ParserOptions#isStreamingJsonParsingEnabled()}, since the point of
+	 * handing them off is to avoid holding the whole document in memory
+	 */
+	@Override
+	protected <T extends IBaseResource> T doParseResource(
+			Class<T> theResourceType, Reader theReader, Consumer<IBaseBundle> theBundleEntryHandler) {
+		return doParseResourceStreaming(theResourceType, theReader, theBundleEntryHandler);
+	}
 
+	private <T extends IBaseResource> T doParseResource(
+			Class<T> theResourceType, BaseJsonLikeObject object, Consumer<IBaseBundle> theBundleEntryHandler) {
 		BaseJsonLikeValue resourceTypeObj = object.get("resourceType");
 		if (resourceTypeObj == null || !resourceTypeObj.isString() || isBlank(resourceTypeObj.getAsString())) {
 			throw new DataFormatException(
@@ -257,6 +291,9 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 		ParserState<? extends IBaseResource> state =
 				ParserState.getPreResourceInstance(this, theResourceType, getContext(), true, getErrorHandler());
+		if (theBundleEntryHandler != null) {
+			state.setBundleEntryHandler(theBundleEntryHandler);
+		}
 		state.enteringNewElement(null, resourceType);
 
 		parseChildren(object, state);
@@ -270,6 +307,221 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		return retVal;
 	}
 
+	/**
+	 * Parses a resource directly from the Jackson token stream, without first loading the
+	 * whole document into the tree model. See
+	 * {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsingEnabled(boolean)}.
+	 */
+	private <T extends IBaseResource> T doParseResourceStreaming(
+			Class<T> theResourceType, Reader theReader, Consumer<IBaseBundle> theBundleEntryHandler) {
+		try (com.fasterxml.jackson.core.JsonParser parser = JacksonStructure.createStreamingParser(theReader)) {
+			parser.nextToken();
+
+			T retVal;
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.FIELD_NAME && "resourceType".equals(parser.currentName())) {
+				if (parser.nextToken() != JsonToken.VALUE_STRING || isBlank(parser.getText())) {
+					throw new DataFormatException(
+							Msg.code(2569) + "Invalid JSON content detected, missing required element: 'resourceType'");
+				}
+
+				ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(
+						this, theResourceType, getContext(), true, getErrorHandler());
+				if (theBundleEntryHandler != null) {
+					state.setBundleEntryHandler(theBundleEntryHandler);
+				}
+				state.enteringNewElement(null, parser.getText());
+
+				streamChildren(parser, state);
+
+				state.endingElement();
+				state.endingElement();
+
+				@SuppressWarnings("unchecked")
+				T object = (T) state.getObject();
+				retVal = object;
+			} else if (token == JsonToken.FIELD_NAME) {
+				// resourceType isn't the first property, so we can't know what we're parsing yet
+				retVal = doParseResource(
+						theResourceType, JacksonStructure.readRemainingObject(parser), theBundleEntryHandler);
+			} else {
+				throw new DataFormatException(
+						Msg.code(2570) + "Invalid JSON content detected, missing required element: 'resourceType'");
+			}
+
+			if (parser.nextToken() != null) {
+				throw new DataFormatException(Msg.code(2547)
+						+ "Failed to parse JSON encoded FHIR content: Unexpected content after the end of the resource at "
+						+ parser.currentLocation().offsetDescription());
+			}
+
+			return retVal;
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Streams the properties of the object the parser is currently positioned in. On return the
+	 * parser is positioned on the closing token of the object.
+	 * <p>
+	 * Child objects are streamed as they are encountered. Primitive values are held back until
+	 * the end of the object, since their <code>_name</code> alternate may appear after them.
+	 * </p>
+	 */
+	private void streamChildren(com.fasterxml.jackson.core.JsonParser theParser, ParserState<?> theState)
+			throws IOException {
+		StreamedObject object = new StreamedObject();
+
+		while (theParser.nextToken() == JsonToken.FIELD_NAME) {
+			String nextName = theParser.currentName();
+			JsonToken nextToken = theParser.nextToken();
+			if ("resourceType".equals(nextName)) {
+				if (theState.isToplevelResourceElement()) {
+					theParser.skipChildren();
+					continue;
+				}
+			} else if ("extension".equals(nextName)) {
+				BaseJsonLikeArray array = grabJsonArray(JacksonStructure.readValue(theParser), "extension");
+				parseExtension(theState, array, false);
+				continue;
+			} else if ("modifierExtension".equals(nextName)) {
+				BaseJsonLikeArray array = grabJsonArray(JacksonStructure.readValue(theParser), "modifierExtension");
+				parseExtension(theState, array, true);
+				continue;
+			} else if (nextName.equals("fhir_comments")) {
+				parseFhirComments(JacksonStructure.readValue(theParser), theState);
+				continue;
+			} else if (nextName.charAt(0) == '_') {
+				object.myAlternates.put(nextName, JacksonStructure.readValue(theParser));
+				continue;
+			}
+
+			object.myNames.add(nextName);
+
+			if (nextToken == JsonToken.START_ARRAY) {
+				if (nextName.equals("id")) {
+					getErrorHandler()
+							.incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.ARRAY, null);
+				}
+				int index = 0;
+				for (JsonToken next = theParser.nextToken();
+						next != JsonToken.END_ARRAY;
+						next = theParser.nextToken()) {
+					if (next == JsonToken.START_OBJECT) {
+						streamObject(theParser, theState, nextName, object.getAlternate(nextName, index), true);
+					} else {
+						object.myDeferred.add(
+								new DeferredValue(nextName, JacksonStructure.readValue(theParser), index));
+					}
+					index++;
+				}
+			} else if (nextToken == JsonToken.START_OBJECT) {
+				if (nextName.equals("id")) {
+					getErrorHandler()
+							.incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.OBJECT, null);
+				}
+				streamObject(theParser, theState, nextName, object.getAlternate(nextName, -1), false);
+			} else {
+				object.myDeferred.add(new DeferredValue(nextName, JacksonStructure.readValue(theParser), -1));
+			}
+		}
+
+		Set<String> mismatchedAlternates = null;
+		for (DeferredValue next : object.myDeferred) {
+			String alternateName = '_' + next.myName;
+			BaseJsonLikeValue alternateVal = object.myAlternates.get(alternateName);
+			if (next.myIndex >= 0 && alternateVal != null && !alternateVal.isArray()) {
+				if (mismatchedAlternates == null) {
+					mismatchedAlternates = new HashSet<>();
+				}
+				if (mismatchedAlternates.add(alternateName)) {
+					getErrorHandler()
+							.incorrectJsonType(
+									null, alternateName, ValueType.ARRAY, null, alternateVal.getJsonType(), null);
+				}
+			}
+			alternateVal = object.getAlternate(next.myName, next.myIndex);
+			parseChildren(theState, next.myName, next.myValue, alternateVal, alternateName, next.myIndex >= 0);
+		}
+
+		/*
+		 * Alternates with no corresponding "normal" value, see the equivalent
+		 * step in parseChildren(BaseJsonLikeObject, ParserState)
+		 */
+		for (Map.Entry<String, BaseJsonLikeValue> next : object.myAlternates.entrySet()) {
+			String alternateName = next.getKey();
+			if (alternateName.length() > 1) {
+				String nextName = alternateName.substring(1);
+				if (object.myNames.contains(nextName)) {
+					continue;
+				}
+				BaseJsonLikeValue nextValue = next.getValue();
+				if (nextValue.isObject()) {
+					theState.enteringNewElement(null, nextName);
+					parseAlternates(nextValue, theState, alternateName, alternateName);
+					theState.endingElement();
+				} else {
+					getErrorHandler()
+							.incorrectJsonType(
+									null, alternateName, ValueType.OBJECT, null, nextValue.getJsonType(), null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Streams a child object. The parser must be positioned on the opening token of the object,
+	 * and on return it is positioned on the closing token.
+	 */
+	private void streamObject(
+			com.fasterxml.jackson.core.JsonParser theParser,
+			ParserState<?> theState,
+			String theName,
+			BaseJsonLikeValue theAlternateVal,
+			boolean theInArray)
+			throws IOException {
+		if (!theInArray && theState.elementIsRepeating(theName)) {
+			getErrorHandler().incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+		}
+
+		String alternateName = '_' + theName;
+		theState.enteringNewElement(null, theName);
+		parseAlternates(theAlternateVal, theState, alternateName, alternateName);
+
+		boolean preResource = false;
+		if (theState.isPreResource()) {
+			JsonToken token = theParser.nextToken();
+			if (token == JsonToken.FIELD_NAME && "resourceType".equals(theParser.currentName())) {
+				if (theParser.nextToken() != JsonToken.VALUE_STRING) {
+					throw new DataFormatException(Msg.code(2571)
+							+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
+				}
+				theState.enteringNewElement(null, theParser.getText());
+				preResource = true;
+				streamChildren(theParser, theState);
+			} else {
+				BaseJsonLikeObject nextObject =
+						token == JsonToken.FIELD_NAME ? JacksonStructure.readRemainingObject(theParser) : null;
+				BaseJsonLikeValue resType = nextObject != null ? nextObject.get("resourceType") : null;
+				if (resType == null || !resType.isString()) {
+					throw new DataFormatException(Msg.code(2572)
+							+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
+				}
+				theState.enteringNewElement(null, resType.getAsString());
+				preResource = true;
+				parseChildren(nextObject, theState);
+			}
+		} else {
+			streamChildren(theParser, theState);
+		}
+
+		if (preResource) {
+			theState.endingElement();
+		}
+		theState.endingElement();
+	}
+
 	private void encodeChildElementToStreamWriter(
 			RuntimeResourceDefinition theResDef,
 			IBaseResource theResource,
@@ -1231,7 +1483,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 	}
 
 	private BaseJsonLikeArray grabJsonArray(BaseJsonLikeObject theObject, String nextName, String thePosition) {
-		BaseJsonLikeValue object = theObject.get(nextName);
+		return grabJsonArray(theObject.get(nextName), thePosition);
+	}
+
+	private BaseJsonLikeArray grabJsonArray(BaseJsonLikeValue object, String thePosition) {
 		if (object == null || object.isNull()) {
 			return null;
 		}
@@ -1760,6 +2015,45 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		theWriter.write(theName, theValue);
 	}
 
+	/**
+	 * State held for a single JSON object while it is being streamed
+	 */
+	private static class StreamedObject {
+
+		private final Map<String, BaseJsonLikeValue> myAlternates = new LinkedHashMap<>();
+		private final Set<String> myNames = new HashSet<>();
+		private final List<DeferredValue> myDeferred = new ArrayList<>();
+
+		/**
+		 * Returns the alternate (<code>_name</code>) value for the given element if one has been
+		 * seen so far, or the alternate for the given index if the element is repeating
+		 */
+		private BaseJsonLikeValue getAlternate(String theName, int theIndex) {
+			BaseJsonLikeValue retVal = myAlternates.get('_' + theName);
+			if (retVal == null || theIndex < 0) {
+				return retVal;
+			}
+			if (!retVal.isArray()) {
+				return null;
+			}
+			BaseJsonLikeArray array = retVal.getAsArray();
+			return array.size() > theIndex ? array.get(theIndex) : null;
+		}
+	}
+
+	private static class DeferredValue {
+
+		private final String myName;
+		private final BaseJsonLikeValue myValue;
+		private final int myIndex;
+
+		private DeferredValue(String theName, BaseJsonLikeValue theValue, int theIndex) {
+			myName = theName;
+			myValue = theValue;
+			myIndex = theIndex;
+		}
+	}
+
 	private class HeldExtension implements Comparable<HeldExtension> {
 
 		private CompositeChildElement myChildElem;
@@ -79,6 +79,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 
@@ -99,6 +100,8 @@ class ParserState<T> {
 	private BaseState myState;
 	private List<IBaseResource> myGlobalResources = new ArrayList<>();
 	private List<IBaseReference> myGlobalReferences = new ArrayList<>();
+	private BaseState myRootState;
+	private Consumer<IBaseBundle> myBundleEntryHandler;
 
 	private ParserState(
 			IParser theParser, FhirContext theContext, boolean theJsonMode, IParserErrorHandler theErrorHandler) {
@@ -146,6 +149,28 @@ class ParserState<T> {
 		return myObject;
 	}
 
+	/**
+	 * If set, the handler is invoked each time an entry of the top-level Bundle has been
+	 * completely parsed. The Bundle passed to the handler holds only that entry, and the
+	 * entry is removed again once the handler returns so that only one entry is held in
+	 * memory at a time. References between entries are not resolved in this mode.
+	 */
+	void setBundleEntryHandler(Consumer<IBaseBundle> theBundleEntryHandler) {
+		myBundleEntryHandler = theBundleEntryHandler;
+	}
+
+	private void handOffBundleEntry(IBaseBundle theBundle) {
+		myBundleEntryHandler.accept(theBundle);
+
+		myContext
+				.getResourceDefinition(theBundle)
+				.getChildByName("entry")
+				.getMutator()
+				.setValue(theBundle, null);
+		myGlobalResources.clear();
+		myGlobalReferences.clear();
+	}
+
 	boolean isPreResource() {
 		return myState.isPreResource();
 	}
@@ -596,6 +621,13 @@ class ParserState<T> {
 		@Override
 		public void endingElement() {
 			pop();
+
+			if (myBundleEntryHandler != null && "entry".equals(myElementName) && myState != null) {
+				IBase parent = myState.getCurrentElement();
+				if (parent instanceof IBaseBundle && parent == myRootState.getCurrentElement()) {
+					handOffBundleEntry((IBaseBundle) parent);
+				}
+			}
 		}
 
 		@Override
@@ -1789,6 +1821,7 @@ class ParserState<T> {
 				retVal.push(retVal.new PreResourceStateHl7Org(theResourceType));
 			}
 		}
+		retVal.myRootState = retVal.myState;
 		return retVal;
 	}
 
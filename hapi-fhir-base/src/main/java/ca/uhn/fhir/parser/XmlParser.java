@@ -49,6 +49,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseDatatype;
 import org.hl7.fhir.instance.model.api.IBaseExtension;
 import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
@@ -59,12 +60,14 @@ import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLEventReader;
@@ -142,6 +145,21 @@ public class XmlParser extends BaseParser {
 		}
 	}
 
+	@Override
+	protected void doEncodeResourceToOutputStream(
+			IBaseResource theResource, OutputStream theOutputStream, EncodeContext theEncodeContext)
+			throws DataFormatException {
+		try {
+			XMLStreamWriter eventWriter = XmlUtil.createXmlStreamWriter(theOutputStream);
+			eventWriter = decorateStreamWriter(eventWriter);
+
+			encodeResourceToXmlStreamWriter(theResource, eventWriter, false, theEncodeContext);
+			eventWriter.flush();
+		} catch (XMLStreamException e) {
+			throw new ConfigurationException(Msg.code(2573) + "Failed to initialize STaX event factory", e);
+		}
+	}
+
 	@Override
 	protected void doEncodeToWriter(IBase theElement, Writer theWriter, EncodeContext theEncodeContext)
 			throws IOException, DataFormatException {
@@ -171,6 +189,16 @@ public class XmlParser extends BaseParser {
 		return parseResource(theResourceType, streamReader);
 	}
 
+	@Override
+	protected <T extends IBaseResource> T doParseResource(
+			Class<T> theResourceType, Reader theReader, Consumer<IBaseBundle> theBundleEntryHandler) {
+		XMLEventReader streamReader = createStreamReader(theReader);
+		ParserState<T> parserState =
+				ParserState.getPreResourceInstance(this, theResourceType, getContext(), false, getErrorHandler());
+		parserState.setBundleEntryHandler(theBundleEntryHandler);
+		return doXmlLoop(streamReader, parserState);
+	}
+
 	private <T> T doXmlLoop(XMLEventReader streamReader, ParserState<T> parserState) {
 		ourLog.trace("Entering XML parsing loop with state: {}", parserState);
 
@@ -27,9 +27,12 @@ import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.core.util.Separators;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 
 public class JacksonWriter extends BaseJsonLikeWriter {
 
@@ -40,6 +43,24 @@ public class JacksonWriter extends BaseJsonLikeWriter {
 		setWriter(theWriter);
 	}
 
+	/**
+	 * Creates a writer which writes UTF-8 to the given stream. The stream is flushed but not
+	 * closed when this writer is closed.
+	 * <p>
+	 * Jackson's byte-oriented generator is deliberately not used here, since it escapes
+	 * characters outside the BMP (e.g. emoji) instead of writing them as UTF-8, which would
+	 * make the output differ from the same resource encoded as a String.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public JacksonWriter(JsonFactory theJsonFactory, OutputStream theOutputStream) throws IOException {
+		Writer writer = new OutputStreamWriter(theOutputStream, StandardCharsets.UTF_8);
+		myJsonGenerator = theJsonFactory.createGenerator(writer);
+		myJsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		setWriter(writer);
+	}
+
 	public JacksonWriter() {}
 
 	@Override
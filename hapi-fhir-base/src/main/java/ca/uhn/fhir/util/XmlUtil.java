@@ -44,6 +44,7 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -1663,6 +1664,19 @@ public class XmlUtil {
 		return outputFactory.createXMLStreamWriter(theWriter);
 	}
 
+	/**
+	 * Creates a stream writer which writes UTF-8 encoded bytes directly to the given stream
+	 *
+	 * @since 7.6.0
+	 */
+	public static XMLStreamWriter createXmlStreamWriter(OutputStream theOutputStream)
+			throws FactoryConfigurationError, XMLStreamException {
+		throwUnitTestExceptionIfConfiguredToDoSo();
+
+		XMLOutputFactory outputFactory = getOrCreateOutputFactory();
+		return outputFactory.createXMLStreamWriter(theOutputStream, StandardCharsets.UTF_8.name());
+	}
+
 	public static XMLEventWriter createXmlWriter(Writer theWriter)
 			throws FactoryConfigurationError, XMLStreamException {
 		XMLOutputFactory outputFactory = getOrCreateOutputFactory();
@@ -0,0 +1,171 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+
+import java.util.Random;
+
+/**
+ * Deterministic generator for the R4 resources used by the benchmarks in this
+ * module. Resources are shaped after a typical patient-centric ingest feed
+ * (demographics, encounters, conditions and a larger number of vital-sign
+ * observations) so that encoding, parsing and indexing exercise the same
+ * datatypes that show up in production payloads.
+ */
+public final class BenchmarkData {
+
+	public static final String LOINC = "http://loinc.org";
+	public static final String SNOMED = "http://snomed.info/sct";
+	public static final String MRN_SYSTEM = "http://example.org/mrn";
+
+	private static final String[][] VITALS = {
+		{"8867-4", "Heart rate", "/min"},
+		{"8310-5", "Body temperature", "Cel"},
+		{"9279-1", "Respiratory rate", "/min"},
+		{"29463-7", "Body weight", "kg"},
+		{"8302-2", "Body height", "cm"},
+		{"59408-5", "Oxygen saturation", "%"},
+	};
+
+	private BenchmarkData() {
+		// nothing
+	}
+
+	/**
+	 * Creates a transaction bundle containing <code>thePatientCount</code> patients, each
+	 * with one encounter, one condition and <code>theObservationsPerPatient</code>
+	 * observations referring to both.
+	 */
+	public static Bundle createTransactionBundle(int thePatientCount, int theObservationsPerPatient) {
+		Random random = new Random(0);
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+
+		for (int p = 0; p < thePatientCount; p++) {
+			Patient patient = createPatient(p);
+			String patientUrl = "urn:uuid:patient-" + p;
+			addEntry(bundle, patient, patientUrl);
+
+			Encounter encounter = new Encounter();
+			encounter.setStatus(Encounter.EncounterStatus.FINISHED);
+			encounter
+					.getClass_()
+					.setSystem("http://terminology.hl7.org/CodeSystem/v3-ActCode")
+					.setCode("AMB");
+			encounter.setSubject(new Reference(patientUrl));
+			encounter.getPeriod().setStartElement(new DateTimeType("2021-03-0" + (1 + p % 9) + "T10:00:00Z"));
+			String encounterUrl = "urn:uuid:encounter-" + p;
+			addEntry(bundle, encounter, encounterUrl);
+
+			Condition condition = new Condition();
+			condition
+					.getClinicalStatus()
+					.addCoding()
+					.setSystem("http://terminology.hl7.org/CodeSystem/condition-clinical")
+					.setCode("active");
+			condition
+					.getCode()
+					.addCoding()
+					.setSystem(SNOMED)
+					.setCode("38341003")
+					.setDisplay("Hypertension");
+			condition.setSubject(new Reference(patientUrl));
+			condition.setEncounter(new Reference(encounterUrl));
+			addEntry(bundle, condition, "urn:uuid:condition-" + p);
+
+			for (int o = 0; o < theObservationsPerPatient; o++) {
+				Observation observation = createObservation(random, o);
+				observation.setSubject(new Reference(patientUrl));
+				observation.setEncounter(new Reference(encounterUrl));
+				addEntry(bundle, observation, "urn:uuid:observation-" + p + "-" + o);
+			}
+		}
+
+		return bundle;
+	}
+
+	public static Patient createPatient(int theIndex) {
+		Patient patient = new Patient();
+		patient.getMeta().addProfile("http://hl7.org/fhir/us/core/StructureDefinition/us-core-patient");
+		patient.addIdentifier()
+				.setUse(Identifier.IdentifierUse.OFFICIAL)
+				.setSystem(MRN_SYSTEM)
+				.setValue("MRN" + theIndex);
+		patient.addIdentifier().setSystem("http://hl7.org/fhir/sid/us-ssn").setValue("999-00-" + (1000 + theIndex));
+		patient.addName()
+				.setFamily("Family" + theIndex)
+				.addGiven("Given" + theIndex)
+				.addGiven("Middle");
+		patient.addTelecom().setValue("555-555-" + (1000 + theIndex));
+		patient.setGender(
+				theIndex % 2 == 0 ? Enumerations.AdministrativeGender.FEMALE : Enumerations.AdministrativeGender.MALE);
+		patient.getBirthDateElement().setValueAsString("19" + (40 + theIndex % 60) + "-0" + (1 + theIndex % 9) + "-15");
+		patient.addAddress()
+				.addLine(theIndex + " Main Street")
+				.setCity("Toronto")
+				.setState("ON")
+				.setPostalCode("M5V 2T6")
+				.setCountry("CA");
+		return patient;
+	}
+
+	public static Observation createObservation(Random theRandom, int theIndex) {
+		String[] vital = VITALS[theIndex % VITALS.length];
+
+		Observation observation = new Observation();
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		observation
+				.addCategory()
+				.addCoding()
+				.setSystem("http://terminology.hl7.org/CodeSystem/observation-category")
+				.setCode("vital-signs");
+		observation.getCode().addCoding().setSystem(LOINC).setCode(vital[0]).setDisplay(vital[1]);
+		observation.getCode().setText(vital[1]);
+		observation.setEffective(
+				new DateTimeType("2021-03-0" + (1 + theIndex % 9) + "T10:" + (10 + theIndex % 50) + ":00Z"));
+		observation.setValue(new Quantity()
+				.setValue(20 + theRandom.nextInt(100))
+				.setSystem("http://unitsofmeasure.org")
+				.setCode(vital[2])
+				.setUnit(vital[2]));
+		return observation;
+	}
+
+	private static void addEntry(Bundle theBundle, Resource theResource, String theFullUrl) {
+		theBundle
+				.addEntry()
+				.setFullUrl(theFullUrl)
+				.setResource(theResource)
+				.getRequest()
+				.setMethod(Bundle.HTTPVerb.POST)
+				.setUrl(theResource.fhirType());
+	}
+}
@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and parse of an R4 transaction bundle through {@link ca.uhn.fhir.parser.JsonParser}
+ * and {@link ca.uhn.fhir.parser.XmlParser}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+	/**
+	 * <code>JSON_STREAMING</code> is JSON with
+	 * {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsingEnabled(boolean) streaming parsing}
+	 * enabled. Encoding is the same as for <code>JSON</code>.
+	 */
+	@Param({"JSON", "JSON_STREAMING", "XML"})
+	public String myEncoding;
+
+	/**
+	 * Number of patients in the bundle. Each patient contributes 13 entries.
+	 */
+	@Param({"10", "100"})
+	public int myPatientCount;
+
+	private IParser myParser;
+	private Bundle myBundle;
+	private String myEncoded;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		FhirContext ctx;
+		if ("JSON_STREAMING".equals(myEncoding)) {
+			ctx = FhirContext.forR4();
+			ctx.getParserOptions().setStreamingJsonParsingEnabled(true);
+		} else {
+			ctx = FhirContext.forR4Cached();
+		}
+		myParser = "XML".equals(myEncoding) ? ctx.newXmlParser() : ctx.newJsonParser();
+		myBundle = BenchmarkData.createTransactionBundle(myPatientCount, 10);
+		myEncoded = myParser.encodeResourceToString(myBundle);
+	}
+
+	@Benchmark
+	public String encodeBundle() {
+		return myParser.encodeResourceToString(myBundle);
+	}
+
+	@Benchmark
+	public Bundle parseBundle() {
+		return myParser.parseResource(Bundle.class, myEncoded);
+	}
+}
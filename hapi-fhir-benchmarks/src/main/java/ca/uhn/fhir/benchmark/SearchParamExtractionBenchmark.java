@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.BaseSearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorR4;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search parameter extraction through {@link BaseSearchParamExtractor} for the
+ * built-in R4 search parameters, which is the CPU-bound part of every create and
+ * update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchParamExtractionBenchmark {
+
+	private BaseSearchParamExtractor myExtractor;
+	private Patient myPatient;
+	private Observation myObservation;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		FhirContext ctx = FhirContext.forR4Cached();
+		myExtractor = new SearchParamExtractorR4(
+				new StorageSettings(), new PartitionSettings(), ctx, new FhirContextSearchParamRegistry(ctx));
+
+		myPatient = BenchmarkData.createPatient(1);
+		myPatient.setId("Patient/1");
+
+		myObservation = BenchmarkData.createObservation(new Random(0), 1);
+		myObservation.setId("Observation/1");
+		myObservation.setSubject(new Reference("Patient/1"));
+		myObservation.setEncounter(new Reference("Encounter/1"));
+	}
+
+	@Benchmark
+	public void extractPatient(Blackhole theBlackhole) {
+		extractAll(myPatient, theBlackhole);
+	}
+
+	@Benchmark
+	public void extractObservation(Blackhole theBlackhole) {
+		extractAll(myObservation, theBlackhole);
+	}
+
+	private void extractAll(IBaseResource theResource, Blackhole theBlackhole) {
+		theBlackhole.consume(myExtractor.extractSearchParamTokens(theResource));
+		theBlackhole.consume(myExtractor.extractSearchParamStrings(theResource));
+		theBlackhole.consume(myExtractor.extractSearchParamDates(theResource));
+		theBlackhole.consume(myExtractor.extractSearchParamQuantity(theResource));
+		theBlackhole.consume(myExtractor.extractSearchParamNumber(theResource));
+		theBlackhole.consume(myExtractor.extractSearchParamUri(theResource));
+		theBlackhole.consume(myExtractor.extractResourceLinks(theResource, false));
+	}
+}
@@ -0,0 +1,230 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.dialect.HapiFhirH2Dialect;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.search.builder.predicate.BaseJoiningPredicateBuilder;
+import ca.uhn.fhir.jpa.search.builder.predicate.DatePredicateBuilder;
+import ca.uhn.fhir.jpa.search.builder.predicate.ResourceTablePredicateBuilder;
+import ca.uhn.fhir.jpa.search.builder.predicate.StringPredicateBuilder;
+import ca.uhn.fhir.jpa.search.builder.predicate.TokenPredicateBuilder;
+import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
+import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import com.healthmarketscience.sqlbuilder.BinaryCondition;
+import com.healthmarketscience.sqlbuilder.ComboCondition;
+import com.healthmarketscience.sqlbuilder.Condition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL generation through {@link SearchQueryBuilder} for the predicate shapes that
+ * {@link ca.uhn.fhir.jpa.search.builder.QueryStack} emits for a typical
+ * <code>Observation?code=[system]|[code]&amp;subject:Patient.identifier=[value]&amp;date=gt2020&amp;_sort=-date</code>
+ * search, rendered with the H2 dialect. Predicate builders are created directly
+ * rather than through Spring so that the benchmark does not need a database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchSqlGenerationBenchmark {
+
+	/**
+	 * Number of partitions in the request partition. 0 means partitioning is disabled.
+	 */
+	@Param({"0", "1", "200"})
+	public int myPartitionCount;
+
+	private FhirContext myFhirContext;
+	private JpaStorageSettings myStorageSettings;
+	private PartitionSettings myPartitionSettings;
+	private RequestPartitionId myRequestPartitionId;
+	private HibernatePropertiesProvider myDialectProvider;
+	private SqlObjectFactory mySqlObjectFactory;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		myFhirContext = FhirContext.forR4Cached();
+		myStorageSettings = new JpaStorageSettings();
+		myPartitionSettings = new PartitionSettings();
+		if (myPartitionCount == 0) {
+			myRequestPartitionId = RequestPartitionId.allPartitions();
+		} else {
+			myPartitionSettings.setPartitioningEnabled(true);
+			List<Integer> partitionIds = new ArrayList<>();
+			for (int i = 1; i <= myPartitionCount; i++) {
+				partitionIds.add(i);
+			}
+			myRequestPartitionId = RequestPartitionId.fromPartitionIds(partitionIds);
+		}
+
+		myDialectProvider = new HibernatePropertiesProvider();
+		myDialectProvider.setDialectForUnitTest(new HapiFhirH2Dialect());
+		mySqlObjectFactory = new BenchmarkSqlObjectFactory(myStorageSettings);
+	}
+
+	@Benchmark
+	public GeneratedSql singleTokenSearch() {
+		SearchQueryBuilder builder = newSearchQueryBuilder("Observation");
+		addTokenPredicate(builder, "code", BenchmarkData.LOINC, "8867-4");
+		return builder.generate(0, 50);
+	}
+
+	@Benchmark
+	public GeneratedSql tokenStringDateSortedSearch() {
+		SearchQueryBuilder builder = newSearchQueryBuilder("Observation");
+		addTokenPredicate(builder, "code", BenchmarkData.LOINC, "8867-4");
+		addTokenPredicate(builder, "category", null, "vital-signs");
+		addStringPredicate(builder, "code", "HEART RATE");
+
+		BaseJoiningPredicateBuilder first = builder.getOrCreateFirstPredicateBuilder();
+		DatePredicateBuilder date = builder.addDatePredicateBuilder(first.getResourceIdColumn());
+		Condition datePredicate = date.createPredicateDateWithoutIdentityPredicate(
+				new DateParam(ParamPrefixEnum.GREATERTHAN, "2020-01-01"), null);
+		builder.addPredicate(date.combineWithRequestPartitionIdPredicate(
+				myRequestPartitionId, date.combineWithHashIdentityPredicate("Observation", "date", datePredicate)));
+		builder.addSortDate(date.getColumnValueLow(), false);
+
+		return builder.generate(0, 50);
+	}
+
+	@Benchmark
+	public GeneratedSql tokenOrListSearch() {
+		SearchQueryBuilder builder = newSearchQueryBuilder("Patient");
+		BaseJoiningPredicateBuilder first = builder.getOrCreateFirstPredicateBuilder();
+		TokenPredicateBuilder token = builder.addTokenPredicateBuilder(first.getResourceIdColumn());
+		List<Condition> orPredicates = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			orPredicates.add(createTokenHashPredicate(
+					builder, token, "Patient", "identifier", BenchmarkData.MRN_SYSTEM, "MRN" + i));
+		}
+		builder.addPredicate(token.combineWithRequestPartitionIdPredicate(
+				myRequestPartitionId, ComboCondition.or(orPredicates.toArray(new Condition[0]))));
+		return builder.generate(0, 50);
+	}
+
+	private SearchQueryBuilder newSearchQueryBuilder(String theResourceType) {
+		return new SearchQueryBuilder(
+				myFhirContext,
+				myStorageSettings,
+				myPartitionSettings,
+				myRequestPartitionId,
+				theResourceType,
+				mySqlObjectFactory,
+				myDialectProvider,
+				false);
+	}
+
+	private void addTokenPredicate(
+			SearchQueryBuilder theBuilder, String theParamName, String theSystem, String theValue) {
+		BaseJoiningPredicateBuilder first = theBuilder.getOrCreateFirstPredicateBuilder();
+		TokenPredicateBuilder token = theBuilder.addTokenPredicateBuilder(first.getResourceIdColumn());
+		Condition predicate = createTokenHashPredicate(
+				theBuilder, token, theBuilder.getResourceType(), theParamName, theSystem, theValue);
+		theBuilder.addPredicate(token.combineWithRequestPartitionIdPredicate(myRequestPartitionId, predicate));
+	}
+
+	private Condition createTokenHashPredicate(
+			SearchQueryBuilder theBuilder,
+			TokenPredicateBuilder theToken,
+			String theResourceType,
+			String theParamName,
+			String theSystem,
+			String theValue) {
+		if (theSystem == null) {
+			long hash = ResourceIndexedSearchParamToken.calculateHashValue(
+					myPartitionSettings, myRequestPartitionId, theResourceType, theParamName, theValue);
+			return BinaryCondition.equalTo(
+					theToken.getTable().findColumn("HASH_VALUE"), theBuilder.generatePlaceholder(hash));
+		}
+		long hash = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(
+				myPartitionSettings, myRequestPartitionId, theResourceType, theParamName, theSystem, theValue);
+		return BinaryCondition.equalTo(
+				theToken.getTable().findColumn("HASH_SYS_AND_VALUE"), theBuilder.generatePlaceholder(hash));
+	}
+
+	private void addStringPredicate(SearchQueryBuilder theBuilder, String theParamName, String theNormalizedValue) {
+		BaseJoiningPredicateBuilder first = theBuilder.getOrCreateFirstPredicateBuilder();
+		StringPredicateBuilder string = theBuilder.addStringPredicateBuilder(first.getResourceIdColumn());
+		Condition predicate = string.createPredicateNormalLike(
+				theBuilder.getResourceType(), theParamName, theNormalizedValue, theNormalizedValue + "%");
+		theBuilder.addPredicate(string.combineWithRequestPartitionIdPredicate(myRequestPartitionId, predicate));
+	}
+
+	/**
+	 * Creates predicate builders directly instead of looking them up as prototype
+	 * beans, so that no application context is required.
+	 */
+	private static class BenchmarkSqlObjectFactory extends SqlObjectFactory {
+
+		private final JpaStorageSettings myStorageSettings;
+
+		BenchmarkSqlObjectFactory(JpaStorageSettings theStorageSettings) {
+			myStorageSettings = theStorageSettings;
+		}
+
+		@Override
+		public ResourceTablePredicateBuilder resourceTable(SearchQueryBuilder theSearchSqlBuilder) {
+			return new ResourceTablePredicateBuilder(theSearchSqlBuilder);
+		}
+
+		@Override
+		public DatePredicateBuilder dateIndexTable(SearchQueryBuilder theSearchSqlBuilder) {
+			DatePredicateBuilder retVal = new DatePredicateBuilder(theSearchSqlBuilder);
+			retVal.setStorageSettingsForUnitTest(myStorageSettings);
+			return retVal;
+		}
+
+		@Override
+		public StringPredicateBuilder stringIndexTable(SearchQueryBuilder theSearchSqlBuilder) {
+			return new StringPredicateBuilder(theSearchSqlBuilder);
+		}
+
+		@Override
+		public TokenPredicateBuilder tokenIndexTable(SearchQueryBuilder theSearchSqlBuilder) {
+			return new TokenPredicateBuilder(theSearchSqlBuilder);
+		}
+	}
+}
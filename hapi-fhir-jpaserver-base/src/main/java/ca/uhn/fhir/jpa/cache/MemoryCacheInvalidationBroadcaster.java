@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.jpa.util.IMemoryCacheInvalidationListener;
+import ca.uhn.fhir.jpa.util.MemoryCacheInvalidation;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+
+import java.util.UUID;
+
+/**
+ * Relays {@link MemoryCacheService} invalidations between the nodes of a cluster using a queue
+ * channel, so that caches such as match URL and ID resolutions can be kept for longer without
+ * serving entries which another node has invalidated.
+ * <p>
+ * Every node both publishes to and consumes from the same channel, and ignores the messages it
+ * published itself. The channel implementation must therefore deliver each message to every
+ * node. The default in-memory channel only delivers to the local node.
+ *
+ * @see JpaStorageSettings#setMemoryCacheInvalidationBroadcastEnabled(boolean)
+ * @since 7.6.0
+ */
+public class MemoryCacheInvalidationBroadcaster implements IMemoryCacheInvalidationListener, MessageHandler {
+
+	public static final String CHANNEL_NAME = "memory-cache-invalidation";
+	private static final Logger ourLog = LoggerFactory.getLogger(MemoryCacheInvalidationBroadcaster.class);
+
+	private final IChannelFactory myChannelFactory;
+	private final MemoryCacheService myMemoryCacheService;
+	private final JpaStorageSettings myStorageSettings;
+	private final String myNodeId = UUID.randomUUID().toString();
+	private IChannelProducer myProducer;
+	private IChannelReceiver myReceiver;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theChannelFactory The channel factory, or <code>null</code> if none is available in this context
+	 */
+	public MemoryCacheInvalidationBroadcaster(
+			@Nullable IChannelFactory theChannelFactory,
+			MemoryCacheService theMemoryCacheService,
+			JpaStorageSettings theStorageSettings) {
+		myChannelFactory = theChannelFactory;
+		myMemoryCacheService = theMemoryCacheService;
+		myStorageSettings = theStorageSettings;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!myStorageSettings.isMemoryCacheInvalidationBroadcastEnabled() || myProducer != null) {
+			return;
+		}
+		if (myChannelFactory == null) {
+			ourLog.warn("Memory cache invalidation broadcast is enabled, but no channel factory is available");
+			return;
+		}
+
+		myProducer = myChannelFactory.getOrCreateProducer(
+				CHANNEL_NAME, MemoryCacheInvalidationJsonMessage.class, new ChannelProducerSettings());
+		myReceiver = myChannelFactory.getOrCreateReceiver(
+				CHANNEL_NAME, MemoryCacheInvalidationJsonMessage.class, new ChannelConsumerSettings());
+		myReceiver.subscribe(this);
+		myMemoryCacheService.registerInvalidationListener(this);
+		ourLog.info("Broadcasting memory cache invalidations on channel {} as node {}", CHANNEL_NAME, myNodeId);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myMemoryCacheService.unregisterInvalidationListener(this);
+		if (myReceiver != null) {
+			myReceiver.unsubscribe(this);
+			myReceiver = null;
+		}
+		myProducer = null;
+	}
+
+	@Override
+	public void handleInvalidation(MemoryCacheInvalidation theInvalidation) {
+		IChannelProducer producer = myProducer;
+		if (producer == null) {
+			return;
+		}
+
+		MemoryCacheInvalidation invalidation =
+				new MemoryCacheInvalidation().setOriginNodeId(myNodeId).addAll(theInvalidation);
+		ourLog.debug("Broadcasting memory cache invalidation: {}", invalidation);
+		producer.send(new MemoryCacheInvalidationJsonMessage(invalidation));
+	}
+
+	@Override
+	public void handleMessage(Message<?> theMessage) {
+		if (!(theMessage.getPayload() instanceof MemoryCacheInvalidation)) {
+			ourLog.warn("Unexpected message payload type: {}", theMessage.getPayload());
+			return;
+		}
+
+		MemoryCacheInvalidation invalidation = (MemoryCacheInvalidation) theMessage.getPayload();
+		if (myNodeId.equals(invalidation.getOriginNodeId())) {
+			return;
+		}
+
+		ourLog.debug("Applying memory cache invalidation from node {}", invalidation.getOriginNodeId());
+		myMemoryCacheService.applyInvalidation(invalidation);
+	}
+
+	@VisibleForTesting
+	public String getNodeId() {
+		return myNodeId;
+	}
+}
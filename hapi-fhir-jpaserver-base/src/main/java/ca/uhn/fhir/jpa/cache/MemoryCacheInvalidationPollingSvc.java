@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.model.sched.HapiJob;
+import ca.uhn.fhir.jpa.model.sched.IHasScheduledJobs;
+import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
+import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
+import ca.uhn.fhir.jpa.util.MemoryCacheInvalidation;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.time.DateUtils;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.Date;
+
+/**
+ * Fallback for {@link MemoryCacheInvalidationBroadcaster} which periodically polls the resource
+ * table for resources updated or deleted by any node, and invalidates the cache entries derived
+ * from them on this node. The polled window overlaps the previous one by
+ * {@link #POLL_OVERLAP_MILLIS} so that changes made by transactions which commit some time
+ * after the resource timestamp was assigned are still seen.
+ *
+ * @see JpaStorageSettings#setMemoryCacheInvalidationPollingEnabled(boolean)
+ * @since 7.6.0
+ */
+public class MemoryCacheInvalidationPollingSvc implements IHasScheduledJobs {
+
+	static final long POLL_INTERVAL_MILLIS = 10 * DateUtils.MILLIS_PER_SECOND;
+	static final long POLL_OVERLAP_MILLIS = 2 * DateUtils.MILLIS_PER_MINUTE;
+	static final int DEFAULT_PAGE_SIZE = 1000;
+	private static final Logger ourLog = LoggerFactory.getLogger(MemoryCacheInvalidationPollingSvc.class);
+
+	private final IResourceTableDao myResourceTableDao;
+	private final IHapiTransactionService myTransactionService;
+	private final MemoryCacheService myMemoryCacheService;
+	private final JpaStorageSettings myStorageSettings;
+	private Date myLastPollTime;
+	private int myPageSize = DEFAULT_PAGE_SIZE;
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationPollingSvc(
+			IResourceTableDao theResourceTableDao,
+			IHapiTransactionService theTransactionService,
+			MemoryCacheService theMemoryCacheService,
+			JpaStorageSettings theStorageSettings) {
+		myResourceTableDao = theResourceTableDao;
+		myTransactionService = theTransactionService;
+		myMemoryCacheService = theMemoryCacheService;
+		myStorageSettings = theStorageSettings;
+	}
+
+	public synchronized void poll() {
+		if (!myStorageSettings.isMemoryCacheInvalidationPollingEnabled()) {
+			myLastPollTime = null;
+			return;
+		}
+
+		Date high = new Date();
+		Date low = new Date((myLastPollTime != null ? myLastPollTime : high).getTime() - POLL_OVERLAP_MILLIS);
+
+		/*
+		 * Page through the changes using the (updated, pid) of the last row of each page as a
+		 * high-water mark, so that a burst of changes doesn't force every derived cache entry
+		 * to be thrown away, and no page has to skip over the rows of the previous ones.
+		 */
+		Date afterUpdated = low;
+		Long afterPid = Long.MIN_VALUE;
+		int count = 0;
+		while (true) {
+			Date pageAfterUpdated = afterUpdated;
+			Long pageAfterPid = afterPid;
+			Slice<Object[]> changed = myTransactionService
+					.withSystemRequest()
+					.readOnly()
+					.execute(() -> myResourceTableDao.findIdsDeletedAtAndUpdatedOfResourcesWithinUpdatedRangeAfter(
+							PageRequest.of(0, myPageSize), low, high, pageAfterUpdated, pageAfterPid));
+
+			MemoryCacheInvalidation invalidation = new MemoryCacheInvalidation();
+			for (Object[] next : changed) {
+				Long pid = (Long) next[0];
+				invalidation.addKey(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, pid);
+				if (next[1] != null) {
+					invalidation.addMatchUrlTarget(pid);
+				}
+				afterPid = pid;
+				afterUpdated = (Date) next[2];
+			}
+			myMemoryCacheService.applyInvalidation(invalidation);
+			count += changed.getNumberOfElements();
+
+			if (!changed.hasNext()) {
+				break;
+			}
+		}
+
+		ourLog.debug("Polled {} resources changed since {}", count, low);
+		myLastPollTime = high;
+	}
+
+	@Override
+	public void scheduleJobs(ISchedulerService theSchedulerService) {
+		ScheduledJobDefinition jobDetail = new ScheduledJobDefinition();
+		jobDetail.setId(getClass().getName());
+		jobDetail.setJobClass(Job.class);
+		theSchedulerService.scheduleLocalJob(POLL_INTERVAL_MILLIS, jobDetail);
+	}
+
+	@VisibleForTesting
+	void setPageSizeForUnitTest(int thePageSize) {
+		myPageSize = thePageSize;
+	}
+
+	@VisibleForTesting
+	void setLastPollTimeForUnitTest(Date theLastPollTime) {
+		myLastPollTime = theLastPollTime;
+	}
+
+	public static class Job implements HapiJob {
+		@Autowired
+		private MemoryCacheInvalidationPollingSvc myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			myTarget.poll();
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IDomainResource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Cache of parsed resource bodies, keyed by resource PID and version. The body of a given
+ * resource version never changes (except for history rewrites and expunges, which invalidate
+ * the affected entries), so an entry can be served for as long as it stays in the cache.
+ * <p>
+ * Cached instances are never handed out directly. Callers receive a deep copy, onto which
+ * they are free to populate resource metadata (tags, version, partition etc.) as usual.
+ * Only structures which provide a <code>copy()</code> method (DSTU3 and later) are cached.
+ * <p>
+ * The cache is disabled unless {@link JpaStorageSettings#setResourceBodyCacheMaxEntries(int)}
+ * is set to a value greater than <code>0</code>.
+ *
+ * @since 7.6.0
+ */
+public class ResourceBodyCache {
+
+	private static final long EXPIRE_AFTER_WRITE_MILLIS = MINUTES.toMillis(10);
+
+	private final FhirContext myFhirContext;
+	private final JpaStorageSettings myStorageSettings;
+	private final Map<Class<?>, Method> myCopyMethods = new ConcurrentHashMap<>();
+	private final AtomicLong myHitCount = new AtomicLong();
+	private final AtomicLong myMissCount = new AtomicLong();
+	private volatile Cache<ResourceBodyCacheKey, IBaseResource> myCache;
+	private volatile int myCacheMaxEntries;
+
+	/**
+	 * Constructor
+	 */
+	public ResourceBodyCache(FhirContext theFhirContext, JpaStorageSettings theStorageSettings) {
+		myFhirContext = theFhirContext;
+		myStorageSettings = theStorageSettings;
+	}
+
+	public boolean isEnabled() {
+		return getCache() != null;
+	}
+
+	/**
+	 * Returns a copy of the cached body for the given resource version, or <code>null</code> if
+	 * it is not cached (or is cached as a different type than the one requested).
+	 */
+	@Nullable
+	public <R extends IBaseResource> R get(Long theResourcePid, long theVersion, Class<R> theResourceType) {
+		Cache<ResourceBodyCacheKey, IBaseResource> cache = getCache();
+		if (cache == null) {
+			return null;
+		}
+
+		IBaseResource cached = cache.getIfPresent(new ResourceBodyCacheKey(theResourcePid, theVersion));
+		if (cached == null || !cached.getClass().equals(theResourceType)) {
+			myMissCount.incrementAndGet();
+			return null;
+		}
+
+		myHitCount.incrementAndGet();
+		return theResourceType.cast(copy(cached));
+	}
+
+	/**
+	 * Stores a copy of a freshly parsed body. If a database transaction is active, the entry
+	 * is only added once (and if) that transaction commits, so that a version which is rolled
+	 * back can never be served from the cache.
+	 */
+	public void putAfterCommit(Long theResourcePid, long theVersion, IBaseResource theResource) {
+		Cache<ResourceBodyCacheKey, IBaseResource> cache = getCache();
+		if (cache == null || !(theResource instanceof IAnyResource)) {
+			return;
+		}
+
+		ResourceBodyCacheKey key = new ResourceBodyCacheKey(theResourcePid, theVersion);
+		IBaseResource value = copy(theResource);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					cache.put(key, value);
+				}
+			});
+		} else {
+			cache.put(key, value);
+		}
+	}
+
+	/**
+	 * Removes the given resource version from the cache. If a database transaction is active,
+	 * the entry is removed again when it commits, in case it was re-populated in the meantime
+	 * by a reader which saw the previous body.
+	 */
+	public void invalidate(Long theResourcePid, long theVersion) {
+		Cache<ResourceBodyCacheKey, IBaseResource> cache = getCache();
+		if (cache == null) {
+			return;
+		}
+
+		ResourceBodyCacheKey key = new ResourceBodyCacheKey(theResourcePid, theVersion);
+		cache.invalidate(key);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					cache.invalidate(key);
+				}
+			});
+		}
+	}
+
+	public void invalidateAll() {
+		Cache<ResourceBodyCacheKey, IBaseResource> cache = myCache;
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	public long getHitCount() {
+		return myHitCount.get();
+	}
+
+	public long getMissCount() {
+		return myMissCount.get();
+	}
+
+	public long getEstimatedSize() {
+		Cache<ResourceBodyCacheKey, IBaseResource> cache = myCache;
+		return cache != null ? cache.estimatedSize() : 0;
+	}
+
+	/**
+	 * The cache is (re)built whenever the configured size changes, so that it can be
+	 * enabled and resized at runtime.
+	 */
+	@Nullable
+	private Cache<ResourceBodyCacheKey, IBaseResource> getCache() {
+		int maxEntries = myStorageSettings.getResourceBodyCacheMaxEntries();
+		if (maxEntries != myCacheMaxEntries) {
+			synchronized (this) {
+				if (maxEntries != myCacheMaxEntries) {
+					myCache = maxEntries > 0 ? CacheFactory.build(EXPIRE_AFTER_WRITE_MILLIS, maxEntries) : null;
+					myCacheMaxEntries = maxEntries;
+				}
+			}
+		}
+		return myCache;
+	}
+
+	private IBaseResource copy(IBaseResource theSource) {
+		Method copyMethod = myCopyMethods.computeIfAbsent(theSource.getClass(), t -> {
+			try {
+				return t.getMethod("copy");
+			} catch (NoSuchMethodException e) {
+				throw new InternalErrorException(Msg.code(2553) + "Can not copy resource of type " + t.getName(), e);
+			}
+		});
+
+		IBaseResource retVal;
+		try {
+			retVal = (IBaseResource) copyMethod.invoke(theSource);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new InternalErrorException(
+					Msg.code(2554) + "Failed to copy resource of type "
+							+ theSource.getClass().getName(),
+					e);
+		}
+
+		relinkContainedResources(theSource, retVal);
+		return retVal;
+	}
+
+	/**
+	 * The parser links references to contained resources (e.g. <code>#org1</code>) to the
+	 * contained resource instance, and <code>copy()</code> keeps that link pointing at the
+	 * source instance. Point those references at the copied contained resources instead so
+	 * that the copy shares nothing with the cached instance.
+	 */
+	private void relinkContainedResources(IBaseResource theSource, IBaseResource theCopy) {
+		if (!(theSource instanceof IDomainResource)) {
+			return;
+		}
+		List<? extends IAnyResource> sourceContained = ((IDomainResource) theSource).getContained();
+		if (sourceContained.isEmpty()) {
+			return;
+		}
+
+		List<? extends IAnyResource> copyContained = ((IDomainResource) theCopy).getContained();
+		Map<IBaseResource, IBaseResource> sourceToCopy = new IdentityHashMap<>();
+		for (int i = 0; i < sourceContained.size() && i < copyContained.size(); i++) {
+			sourceToCopy.put(sourceContained.get(i), copyContained.get(i));
+		}
+
+		for (IBaseReference next :
+				myFhirContext.newTerser().getAllPopulatedChildElementsOfType(theCopy, IBaseReference.class)) {
+			IBaseResource target = sourceToCopy.get(next.getResource());
+			if (target != null) {
+				next.setResource(target);
+			}
+		}
+	}
+
+	private static class ResourceBodyCacheKey {
+
+		private final Long myResourcePid;
+		private final long myVersion;
+		private final int myHashCode;
+
+		private ResourceBodyCacheKey(Long theResourcePid, long theVersion) {
+			myResourcePid = theResourcePid;
+			myVersion = theVersion;
+			myHashCode = new HashCodeBuilder()
+					.append(myResourcePid)
+					.append(myVersion)
+					.toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			boolean retVal = false;
+			if (theO instanceof ResourceBodyCacheKey) {
+				ResourceBodyCacheKey that = (ResourceBodyCacheKey) theO;
+				retVal = new EqualsBuilder()
+						.append(myResourcePid, that.myResourcePid)
+						.append(myVersion, that.myVersion)
+						.isEquals();
+			}
+			return retVal;
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+}
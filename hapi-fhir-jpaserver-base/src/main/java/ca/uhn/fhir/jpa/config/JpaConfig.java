@@ -42,6 +42,9 @@ import ca.uhn.fhir.jpa.bulk.export.svc.BulkExportHelperService;
 import ca.uhn.fhir.jpa.bulk.imprt.api.IBulkDataImportSvc;
 import ca.uhn.fhir.jpa.bulk.imprt.svc.BulkDataImportSvcImpl;
 import ca.uhn.fhir.jpa.cache.IResourceVersionSvc;
+import ca.uhn.fhir.jpa.cache.MemoryCacheInvalidationBroadcaster;
+import ca.uhn.fhir.jpa.cache.MemoryCacheInvalidationPollingSvc;
+import ca.uhn.fhir.jpa.cache.ResourceBodyCache;
 import ca.uhn.fhir.jpa.cache.ResourceVersionSvcDaoImpl;
 import ca.uhn.fhir.jpa.dao.DaoSearchParamProvider;
 import ca.uhn.fhir.jpa.dao.HistoryBuilder;
@@ -56,6 +59,7 @@ import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
 import ca.uhn.fhir.jpa.dao.TransactionProcessor;
 import ca.uhn.fhir.jpa.dao.data.IResourceModifiedDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceSearchUrlDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeEverythingService;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeOperation;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeService;
@@ -65,9 +69,12 @@ import ca.uhn.fhir.jpa.dao.expunge.JpaResourceExpungeService;
 import ca.uhn.fhir.jpa.dao.expunge.ResourceTableFKProvider;
 import ca.uhn.fhir.jpa.dao.index.DaoResourceLinkResolver;
 import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
+import ca.uhn.fhir.jpa.dao.index.DeferredIndexingSvc;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.dao.index.SearchParamWithInlineReferencesExtractor;
+import ca.uhn.fhir.jpa.dao.tx.GroupCommitSvc;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.dao.validation.SearchParameterDaoValidator;
 import ca.uhn.fhir.jpa.delete.DeleteConflictFinderService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictService;
@@ -137,6 +144,7 @@ import ca.uhn.fhir.jpa.search.cache.DatabaseSearchCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.DatabaseSearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
+import ca.uhn.fhir.jpa.search.cache.InMemorySearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.elastic.IndexNamePrefixLayoutStrategy;
 import ca.uhn.fhir.jpa.search.reindex.IInstanceReindexService;
 import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
@@ -152,6 +160,7 @@ import ca.uhn.fhir.jpa.searchparam.registry.ISearchParamProvider;
 import ca.uhn.fhir.jpa.sp.ISearchParamPresenceSvc;
 import ca.uhn.fhir.jpa.sp.SearchParamPresenceSvcImpl;
 import ca.uhn.fhir.jpa.subscription.ResourceModifiedMessagePersistenceSvcImpl;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
 import ca.uhn.fhir.jpa.term.TermCodeSystemStorageSvcImpl;
 import ca.uhn.fhir.jpa.term.TermConceptMappingSvcImpl;
 import ca.uhn.fhir.jpa.term.TermReadSvcImpl;
@@ -184,6 +193,7 @@ import ca.uhn.hapi.converters.canonical.VersionCanonicalizer;
 import jakarta.annotation.Nullable;
 import org.hl7.fhir.common.hapi.validation.support.UnknownCodeSystemWarningValidationSupport;
 import org.hl7.fhir.utilities.graphql.IGraphQLStorageServices;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -312,6 +322,11 @@ public class JpaConfig {
 		return new JpaStorageResourceParser();
 	}
 
+	@Bean
+	public ResourceBodyCache resourceBodyCache(FhirContext theFhirContext, JpaStorageSettings theStorageSettings) {
+		return new ResourceBodyCache(theFhirContext, theStorageSettings);
+	}
+
 	@Bean
 	public TransactionProcessor transactionProcessor() {
 		return new TransactionProcessor();
@@ -339,6 +354,25 @@ public class JpaConfig {
 		return new MemoryCacheService(theStorageSettings);
 	}
 
+	@Bean
+	public MemoryCacheInvalidationBroadcaster memoryCacheInvalidationBroadcaster(
+			ObjectProvider<IChannelFactory> theChannelFactory,
+			MemoryCacheService theMemoryCacheService,
+			JpaStorageSettings theStorageSettings) {
+		return new MemoryCacheInvalidationBroadcaster(
+				theChannelFactory.getIfAvailable(), theMemoryCacheService, theStorageSettings);
+	}
+
+	@Bean
+	public MemoryCacheInvalidationPollingSvc memoryCacheInvalidationPollingSvc(
+			IResourceTableDao theResourceTableDao,
+			IHapiTransactionService theTransactionService,
+			MemoryCacheService theMemoryCacheService,
+			JpaStorageSettings theStorageSettings) {
+		return new MemoryCacheInvalidationPollingSvc(
+				theResourceTableDao, theTransactionService, theMemoryCacheService, theStorageSettings);
+	}
+
 	@Bean
 	@Primary
 	public IResourceLinkResolver daoResourceLinkResolver() {
@@ -367,6 +401,11 @@ public class JpaConfig {
 
 	@Bean
 	public ISearchResultCacheSvc searchResultCacheSvc() {
+		if (myStorageSettings.getInMemorySearchResultCacheMaxPids() > 0) {
+			return new InMemorySearchResultCacheSvcImpl(
+					myStorageSettings.getInMemorySearchResultCacheMaxPids(),
+					myStorageSettings.isInMemorySearchResultCacheSpillToDatabase());
+		}
 		return new DatabaseSearchResultCacheSvcImpl();
 	}
 
@@ -435,6 +474,17 @@ public class JpaConfig {
 		return new JpaHapiTransactionService();
 	}
 
+	@Bean
+	public DeferredIndexingSvc deferredIndexingSvc() {
+		return new DeferredIndexingSvc();
+	}
+
+	@Bean
+	public GroupCommitSvc groupCommitSvc(
+			IHapiTransactionService theTransactionService, JpaStorageSettings theStorageSettings) {
+		return new GroupCommitSvc(theTransactionService, theStorageSettings);
+	}
+
 	@Bean
 	public IInterceptorService jpaInterceptorService() {
 		return new InterceptorService("JPA");
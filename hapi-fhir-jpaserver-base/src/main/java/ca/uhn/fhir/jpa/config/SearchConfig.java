@@ -30,7 +30,9 @@ import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.api.svc.ISearchCoordinatorSvc;
 import ca.uhn.fhir.jpa.dao.ISearchBuilder;
 import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceSearchViewDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
@@ -40,15 +42,19 @@ import ca.uhn.fhir.jpa.search.ISynchronousSearchSvc;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProviderFactory;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
 import ca.uhn.fhir.jpa.search.SearchStrategyFactory;
+import ca.uhn.fhir.jpa.search.builder.OffsetSearchKeysetSvc;
 import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
+import ca.uhn.fhir.jpa.search.builder.SearchPredicateOrderPlanner;
 import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchContinuationTask;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchTask;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchTaskParameters;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.rest.server.IPagingProvider;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.util.ThreadPoolUtil;
 import jakarta.annotation.PostConstruct;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.beans.factory.BeanFactory;
@@ -56,12 +62,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
 public class SearchConfig {
 	public static final String SEARCH_TASK = "searchTask";
 	public static final String CONTINUE_TASK = "continueTask";
+	public static final String PARALLEL_PARTITION_SEARCH_EXECUTOR = "parallelPartitionSearchExecutor";
+	public static final String PARALLEL_INCLUDE_LOADING_EXECUTOR = "parallelIncludeLoadingExecutor";
 
 	@Autowired
 	private JpaStorageSettings myStorageSettings;
@@ -160,7 +169,7 @@ public class SearchConfig {
 	@Scope("prototype")
 	public ISearchBuilder newSearchBuilder(
 			IDao theDao, String theResourceName, Class<? extends IBaseResource> theResourceType) {
-		return new SearchBuilder(
+		SearchBuilder retVal = new SearchBuilder(
 				theDao,
 				theResourceName,
 				myStorageSettings,
@@ -176,6 +185,54 @@ public class SearchConfig {
 				myContext,
 				myIdHelperService,
 				theResourceType);
+		retVal.setParallelPartitionSearchExecutor(parallelPartitionSearchExecutor());
+		retVal.setParallelIncludeLoadingExecutor(parallelIncludeLoadingExecutor());
+		return retVal;
+	}
+
+	/**
+	 * Executor used to run per-partition search queries concurrently
+	 *
+	 * @see JpaStorageSettings#setParallelPartitionSearchThreadCount(int)
+	 */
+	@Bean(name = PARALLEL_PARTITION_SEARCH_EXECUTOR)
+	public ThreadPoolTaskExecutor parallelPartitionSearchExecutor() {
+		int threadCount = Math.max(1, myStorageSettings.getParallelPartitionSearchThreadCount());
+		return ThreadPoolUtil.newThreadPool(threadCount, threadCount, "parallel-partition-search-", 1000);
+	}
+
+	/**
+	 * Executor used to run include queries concurrently
+	 *
+	 * @see JpaStorageSettings#setParallelIncludeLoadingThreadCount(int)
+	 */
+	@Bean(name = PARALLEL_INCLUDE_LOADING_EXECUTOR)
+	public ThreadPoolTaskExecutor parallelIncludeLoadingExecutor() {
+		int threadCount = Math.max(1, myStorageSettings.getParallelIncludeLoadingThreadCount());
+		return ThreadPoolUtil.newThreadPool(threadCount, threadCount, "parallel-include-loading-", 1000);
+	}
+
+	/**
+	 * @see JpaStorageSettings#setCostBasedPredicateOrderingEnabled(boolean)
+	 */
+	@Bean
+	public SearchPredicateOrderPlanner searchPredicateOrderPlanner(
+			IResourceIndexedSearchParamTokenDao theResourceIndexedSearchParamTokenDao,
+			MemoryCacheService theMemoryCacheService) {
+		return new SearchPredicateOrderPlanner(
+				mySearchParamRegistry,
+				myPartitionSettings,
+				theResourceIndexedSearchParamTokenDao,
+				theMemoryCacheService);
+	}
+
+	/**
+	 * @see JpaStorageSettings#setOffsetSearchKeysetPagingEnabled(boolean)
+	 */
+	@Bean
+	public OffsetSearchKeysetSvc offsetSearchKeysetSvc(
+			IResourceTableDao theResourceTableDao, MemoryCacheService theMemoryCacheService) {
+		return new OffsetSearchKeysetSvc(myStorageSettings, myContext, theMemoryCacheService, theResourceTableDao);
 	}
 
 	@Bean(name = SEARCH_TASK)
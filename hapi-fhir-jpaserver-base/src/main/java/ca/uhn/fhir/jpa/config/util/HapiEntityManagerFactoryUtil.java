@@ -23,11 +23,15 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.config.HapiFhirHibernateJpaDialect;
 import ca.uhn.fhir.jpa.config.HapiFhirLocalContainerEntityManagerFactoryBean;
+import ca.uhn.fhir.jpa.model.dialect.HapiIdBlockAllocator;
 import ca.uhn.fhir.jpa.util.ISequenceValueMassager;
 import ca.uhn.fhir.util.ReflectionUtil;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.spi.PersistenceUnitInfo;
 import org.hibernate.boot.registry.BootstrapServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.jpa.HibernatePersistenceProvider;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
@@ -65,6 +69,21 @@ public final class HapiEntityManagerFactoryUtil {
 		theFactory.setPersistenceProvider(new MyHibernatePersistenceProvider(theStorageSettings));
 	}
 
+	/**
+	 * Returns the allocator used to hand out entity IDs by the given entity manager factory,
+	 * which provides metrics about the IDs allocated so far
+	 *
+	 * @return Returns <code>null</code> if the entity manager factory was not created by this class
+	 * @since 7.6.0
+	 */
+	@Nullable
+	public static HapiIdBlockAllocator getIdBlockAllocator(EntityManagerFactory theEntityManagerFactory) {
+		return theEntityManagerFactory
+				.unwrap(SessionFactoryImplementor.class)
+				.getServiceRegistry()
+				.getService(HapiIdBlockAllocator.class);
+	}
+
 	private static class MyHibernatePersistenceProvider extends HibernatePersistenceProvider {
 
 		private final JpaStorageSettings myStorageSettings;
@@ -84,7 +103,8 @@ public final class HapiEntityManagerFactoryUtil {
 
 		/**
 		 * This class extends the default hibernate EntityManagerFactoryBuilder in order to
-		 * register a custom service (the {@link ISequenceValueMassager}, which is used in
+		 * register custom services (the {@link ISequenceValueMassager} and the
+		 * {@link HapiIdBlockAllocator}), which are used in
 		 * {@link ca.uhn.fhir.jpa.model.dialect.HapiSequenceStyleGenerator}.
 		 * <p>
 		 * In Hibernate 5 we didn't need to do this, since we could just register
@@ -102,6 +122,10 @@ public final class HapiEntityManagerFactoryUtil {
 				ISequenceValueMassager sequenceValueMassager =
 						ReflectionUtil.newInstance(myStorageSettings.getSequenceValueMassagerClass());
 				retVal.addService(ISequenceValueMassager.class, sequenceValueMassager);
+				retVal.addService(
+						HapiIdBlockAllocator.class,
+						new HapiIdBlockAllocator(
+								myStorageSettings.getSequenceBlockSize(), myStorageSettings.getSequenceBlockSizes()));
 				return retVal;
 			}
 		}
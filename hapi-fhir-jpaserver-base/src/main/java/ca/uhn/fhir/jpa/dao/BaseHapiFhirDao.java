@@ -37,12 +37,14 @@ import ca.uhn.fhir.jpa.api.dao.IJpaDao;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.api.svc.ISearchCoordinatorSvc;
+import ca.uhn.fhir.jpa.cache.ResourceBodyCache;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceLinkDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeService;
 import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
+import ca.uhn.fhir.jpa.dao.index.DeferredIndexingSvc;
 import ca.uhn.fhir.jpa.dao.index.SearchParamWithInlineReferencesExtractor;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictService;
@@ -151,6 +153,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -251,9 +254,15 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	@Autowired
 	private MemoryCacheService myMemoryCacheService;
 
+	@Autowired
+	private ResourceBodyCache myResourceBodyCache;
+
 	@Autowired(required = false)
 	private IFulltextSearchSvc myFulltextSearchSvc;
 
+	@Autowired(required = false)
+	protected DeferredIndexingSvc myDeferredIndexingSvc;
+
 	@Autowired
 	private PlatformTransactionManager myTransactionManager;
 
@@ -1076,6 +1085,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 		ResourceIndexedSearchParams newParams = null;
 
+		boolean deferIndexing = thePerformIndexing
+				&& theDeletedTimestampOrNull == null
+				&& myDeferredIndexingSvc != null
+				&& myDeferredIndexingSvc.isDeferIndexing(entity, theResource);
+
 		EncodedResource changed;
 		if (theDeletedTimestampOrNull != null) {
 			// DELETE
@@ -1096,8 +1110,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 							HapiTransactionService.XACT_USERDATA_KEY_EXISTING_SEARCH_PARAMS,
 							() -> new IdentityHashMap<>());
 			existingParams = existingSearchParams.get(entity);
-			if (existingParams == null) {
-				existingParams = ResourceIndexedSearchParams.withLists(entity);
+			if (existingParams == null && !deferIndexing) {
+				existingParams = ResourceIndexedSearchParams.withLazyLists(entity);
 				/*
 				 * If we have lots of resource links, this proactively fetches the targets so
 				 * that we don't look them up one-by-one when comparing the new set to the
@@ -1116,20 +1130,38 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			}
 			entity.setDeleted(null);
 
-			// TODO: is this IF statement always true? Try removing it
-			if (thePerformIndexing || theEntity.getVersion() == 1) {
+			if (deferIndexing) {
 
-				newParams = ResourceIndexedSearchParams.withSets();
+				failIfPartitionMismatch(theRequest, entity);
 
-				RequestPartitionId requestPartitionId;
-				if (!myPartitionSettings.isPartitioningEnabled()) {
-					requestPartitionId = RequestPartitionId.allPartitions();
-				} else if (entity.getPartitionId() != null) {
-					requestPartitionId = entity.getPartitionId().toPartitionId();
-				} else {
-					requestPartitionId = RequestPartitionId.defaultPartition();
+				// References are still resolved and validated now, so that invalid ones are rejected
+				mySearchParamWithInlineReferencesExtractor.validateResourceLinks(
+						getIndexingRequestPartitionId(entity),
+						theTransactionDetails,
+						entity,
+						theResource,
+						theRequest,
+						thePerformIndexing);
+
+				// Store the resource now, and let DeferredIndexingSvc write its indexes later
+				changed = populateResourceIntoEntity(theTransactionDetails, theRequest, theResource, entity, true);
+
+				if (theForceUpdate) {
+					changed.setChanged(true);
+				}
+
+				if (changed.isChanged()) {
+					entity.setUpdated(theTransactionDetails.getTransactionDate());
+					entity.setIndexStatus(null);
 				}
 
+			} else if (thePerformIndexing || theEntity.getVersion() == 1) {
+				// TODO: is this IF statement always true? Try removing it
+
+				newParams = ResourceIndexedSearchParams.withSets();
+
+				RequestPartitionId requestPartitionId = getIndexingRequestPartitionId(entity);
+
 				failIfPartitionMismatch(theRequest, entity);
 
 				// Extract search params for resource
@@ -1207,14 +1239,27 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 			postDelete(entity);
 
+			myMemoryCacheService.invalidateMatchUrlsForTargetAfterCommit(entity.getId());
+			myMemoryCacheService.invalidateAfterCommit(
+					MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, entity.getId());
+
 		} else {
 			entity = myEntityManager.merge(entity);
 
 			postUpdate(entity, (T) theResource, theRequest);
+
+			if (theUpdateVersion) {
+				myMemoryCacheService.invalidateAfterCommit(
+						MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, entity.getId());
+			}
 		}
 
 		if (theCreateNewHistoryEntry) {
-			createHistoryEntry(theRequest, theResource, entity, changed);
+			createHistoryEntry(theRequest, theResource, entity, changed, theTransactionDetails);
+		}
+
+		if (deferIndexing) {
+			myDeferredIndexingSvc.enqueue(entity);
 		}
 
 		/*
@@ -1253,7 +1298,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		/*
 		 * Indexing
 		 */
-		if (thePerformIndexing) {
+		if (thePerformIndexing && !deferIndexing) {
 			if (newParams == null) {
 				myExpungeService.deleteAllSearchParams(JpaPid.fromId(entity.getId()));
 				entity.clearAllParamsPopulated();
@@ -1262,7 +1307,10 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 				// Synchronize search param indexes
 				AddRemoveCount searchParamAddRemoveCount =
 						myDaoSearchParamSynchronizer.synchronizeSearchParamsToDatabase(
-								newParams, entity, existingParams);
+								newParams,
+								entity,
+								existingParams,
+								CURRENTLY_REINDEXING.get(theResource) != Boolean.TRUE);
 
 				newParams.populateResourceTableParamCollections(entity);
 
@@ -1399,11 +1447,10 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			ResourceEncodingEnum encoding = myStorageSettings.getResourceEncoding();
 			List<String> excludeElements = new ArrayList<>(8);
 			getExcludedElements(historyEntity.getResourceType(), excludeElements, theResource.getMeta());
-			String encodedResourceString =
-					myResourceHistoryCalculator.encodeResource(theResource, encoding, excludeElements);
-			byte[] resourceBinary = ResourceHistoryCalculator.getResourceBinary(encoding, encodedResourceString);
+			ResourceHistoryState historyState =
+					myResourceHistoryCalculator.calculateResourceHistoryState(theResource, encoding, excludeElements);
 			final boolean changed = myResourceHistoryCalculator.isResourceHistoryChanged(
-					historyEntity, resourceBinary, encodedResourceString);
+					historyEntity, historyState.getResourceBinary(), historyState.getResourceText());
 
 			historyEntity.setUpdated(theTransactionDetails.getTransactionDate());
 
@@ -1416,16 +1463,16 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			}
 
 			myResourceHistoryCalculator.populateEncodedResource(
-					encodedResource, encodedResourceString, resourceBinary, encoding);
+					encodedResource, historyState.getResourceText(), historyState.getResourceBinary(), encoding);
 		}
 		/*
 		 * Save the resource itself to the resourceHistoryTable
 		 */
 		historyEntity = myEntityManager.merge(historyEntity);
-		historyEntity.setEncoding(encodedResource.getEncoding());
-		historyEntity.setResource(encodedResource.getResourceBinary());
+		historyEntity.setEncodingAndResourceBytes(encodedResource.getEncoding(), encodedResource.getResourceBinary());
 		historyEntity.setResourceTextVc(encodedResource.getResourceText());
 		myResourceHistoryTableDao.save(historyEntity);
+		myResourceBodyCache.invalidate(historyEntity.getResourceId(), historyEntity.getVersion());
 
 		myJpaStorageResourceParser.updateResourceMetadata(historyEntity, theResource);
 
@@ -1442,6 +1489,19 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		encodedResource.setEncoding(theEncoding);
 	}
 
+	/**
+	 * Returns the partition which references of the given entity are resolved in while it is indexed
+	 */
+	private RequestPartitionId getIndexingRequestPartitionId(ResourceTable theEntity) {
+		if (!myPartitionSettings.isPartitioningEnabled()) {
+			return RequestPartitionId.allPartitions();
+		} else if (theEntity.getPartitionId() != null) {
+			return theEntity.getPartitionId().toPartitionId();
+		} else {
+			return RequestPartitionId.defaultPartition();
+		}
+	}
+
 	/**
 	 * TODO eventually consider refactoring this to be part of an interceptor.
 	 * <p>
@@ -1466,22 +1526,31 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	}
 
 	private void createHistoryEntry(
-			RequestDetails theRequest, IBaseResource theResource, ResourceTable theEntity, EncodedResource theChanged) {
+			RequestDetails theRequest,
+			IBaseResource theResource,
+			ResourceTable theEntity,
+			EncodedResource theChanged,
+			TransactionDetails theTransactionDetails) {
 		boolean versionedTags =
 				getStorageSettings().getTagStorageMode() == JpaStorageSettings.TagStorageModeEnum.VERSIONED;
 
 		ResourceHistoryTable historyEntry = null;
 		long resourceVersion = theEntity.getVersion();
 		boolean reusingHistoryEntity = false;
-		if (!myStorageSettings.isResourceDbHistoryEnabled() && resourceVersion > 1L) {
+		JpaStorageSettings.ResourceHistoryPolicyEnum historyPolicy =
+				myStorageSettings.getResourceHistoryPolicy(theEntity.getResourceType());
+		if (historyPolicy != JpaStorageSettings.ResourceHistoryPolicyEnum.FULL && resourceVersion > 1L) {
 			/*
 			 * If we're not storing history, then just pull the current history
 			 * table row and update it. Note that there is always a chance that
 			 * this could return null if the current resourceVersion has been expunged
 			 * in which case we'll still create a new one
 			 */
-			historyEntry = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(
-					theEntity.getResourceId(), resourceVersion - 1);
+			historyEntry = theEntity.getCurrentVersionEntity();
+			if (historyEntry == null || historyEntry.getVersion() != resourceVersion - 1) {
+				historyEntry = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(
+						theEntity.getResourceId(), resourceVersion - 1);
+			}
 			if (historyEntry != null) {
 				reusingHistoryEntity = true;
 				theEntity.populateHistoryEntityVersionAndDates(historyEntry);
@@ -1502,14 +1571,34 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			historyEntry = theEntity.toHistory(versionedTags);
 		}
 
-		historyEntry.setEncoding(theChanged.getEncoding());
-		historyEntry.setResource(theChanged.getResourceBinary());
+		historyEntry.setEncodingAndResourceBytes(theChanged.getEncoding(), theChanged.getResourceBinary());
 		historyEntry.setResourceTextVc(theChanged.getResourceText());
 
+		/*
+		 * In a FHIR transaction, new history rows are only persisted right before the
+		 * session is flushed, so that they are written in as few JDBC batches as possible
+		 * instead of being flushed along with whatever query happens to need a flush first
+		 */
+		Set<Object> pendingHistoryEntities = null;
+		if (historyEntry.getId() == null
+				&& theTransactionDetails != null
+				&& theTransactionDetails.isFhirTransaction()) {
+			pendingHistoryEntities = getPendingHistoryEntities(theTransactionDetails);
+		}
+
 		ourLog.debug("Saving history entry ID[{}] for RES_ID[{}]", historyEntry.getId(), historyEntry.getResourceId());
-		myResourceHistoryTableDao.save(historyEntry);
+		if (pendingHistoryEntities != null) {
+			pendingHistoryEntities.add(historyEntry);
+		} else {
+			myResourceHistoryTableDao.save(historyEntry);
+		}
 		theEntity.setCurrentVersionEntity(historyEntry);
 
+		// The previous version is no longer current, so it's unlikely to be requested again
+		if (resourceVersion > 1L) {
+			myResourceBodyCache.invalidate(theEntity.getResourceId(), resourceVersion - 1);
+		}
+
 		// Save resource source
 		String source = null;
 
@@ -1572,7 +1661,53 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 						theResource);
 			}
 
-			myEntityManager.persist(provenance);
+			if (pendingHistoryEntities != null) {
+				pendingHistoryEntities.add(provenance);
+			} else {
+				myEntityManager.persist(provenance);
+			}
+		}
+	}
+
+	/**
+	 * Entries in a FHIR transaction are stored twice, once before and once after their references
+	 * have been resolved, so the entities are kept in a set. None of them override equals().
+	 */
+	private Set<Object> getPendingHistoryEntities(TransactionDetails theTransactionDetails) {
+		Set<Object> retVal =
+				theTransactionDetails.getUserData(HapiTransactionService.XACT_USERDATA_KEY_PENDING_HISTORY_ENTITIES);
+		if (retVal == null) {
+			retVal = new LinkedHashSet<>();
+			theTransactionDetails.putUserData(HapiTransactionService.XACT_USERDATA_KEY_PENDING_HISTORY_ENTITIES, retVal);
+			theTransactionDetails.addRollbackUndoAction(() -> theTransactionDetails.clearUserData(
+					HapiTransactionService.XACT_USERDATA_KEY_PENDING_HISTORY_ENTITIES));
+
+			// The transaction processor persists them before flushing, this is just a safety net
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void beforeCommit(boolean readOnly) {
+						persistPendingHistoryEntities(myEntityManager, theTransactionDetails);
+					}
+				});
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Persists the history rows of a FHIR transaction which have been written since the
+	 * last time this method was called
+	 */
+	public static void persistPendingHistoryEntities(
+			EntityManager theEntityManager, TransactionDetails theTransactionDetails) {
+		Set<Object> pendingHistoryEntities =
+				theTransactionDetails.getUserData(HapiTransactionService.XACT_USERDATA_KEY_PENDING_HISTORY_ENTITIES);
+		if (pendingHistoryEntities != null) {
+			for (Object next : pendingHistoryEntities) {
+				theEntityManager.persist(next);
+			}
+			pendingHistoryEntities.clear();
 		}
 	}
 
@@ -1925,6 +2060,31 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		return retVal.toString();
 	}
 
+	/**
+	 * Like {@link #decodeResource(byte[], ResourceEncodingEnum)}, but returns the UTF-8 encoded
+	 * bytes of the resource text instead of building a String.
+	 *
+	 * @return The decoded bytes, or <code>null</code> for encodings which don't store a resource body
+	 * @since 7.6.0
+	 */
+	@Nullable
+	public static byte[] decodeResourceToBytes(byte[] theResourceBytes, ResourceEncodingEnum theResourceEncoding) {
+		switch (theResourceEncoding) {
+			case JSON:
+				return theResourceBytes;
+			case JSONC:
+				return GZipUtil.decompressToBytes(theResourceBytes);
+			case ZSTD:
+				return ZstdUtil.decompressToBytes(theResourceBytes);
+			case LZ4:
+				return Lz4Util.decompressToBytes(theResourceBytes);
+			case DEL:
+			case ESR:
+			default:
+				return null;
+		}
+	}
+
 	public static String decodeResource(byte[] theResourceBytes, ResourceEncodingEnum theResourceEncoding) {
 		String resourceText = null;
 		switch (theResourceEncoding) {
@@ -1934,6 +2094,12 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				resourceText = GZipUtil.decompress(theResourceBytes);
 				break;
+			case ZSTD:
+				resourceText = ZstdUtil.decompress(theResourceBytes);
+				break;
+			case LZ4:
+				resourceText = Lz4Util.decompress(theResourceBytes);
+				break;
 			case DEL:
 			case ESR:
 				break;
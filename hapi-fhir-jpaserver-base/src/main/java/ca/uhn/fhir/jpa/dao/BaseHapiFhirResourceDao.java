@@ -44,6 +44,7 @@ import ca.uhn.fhir.jpa.api.model.ExpungeOptions;
 import ca.uhn.fhir.jpa.api.model.ExpungeOutcome;
 import ca.uhn.fhir.jpa.api.model.LazyDaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
+import ca.uhn.fhir.jpa.dao.tx.GroupCommitSvc;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictUtil;
 import ca.uhn.fhir.jpa.model.cross.IBasePersistedResource;
@@ -180,6 +181,9 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 	@Autowired
 	protected HapiTransactionService myTransactionService;
 
+	@Autowired(required = false)
+	private GroupCommitSvc myGroupCommitSvc;
+
 	@Autowired
 	private MatchResourceUrlService<JpaPid> myMatchResourceUrlService;
 
@@ -324,7 +328,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 			@Nonnull TransactionDetails theTransactionDetails) {
 		RequestPartitionId requestPartitionId = myRequestPartitionHelperService.determineCreatePartitionForRequest(
 				theRequestDetails, theResource, getResourceName());
-		return myTransactionService
+		Supplier<DaoMethodOutcome> create = () -> myTransactionService
 				.withRequest(theRequestDetails)
 				.withTransactionDetails(theTransactionDetails)
 				.withRequestPartitionId(requestPartitionId)
@@ -335,6 +339,23 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 						theTransactionDetails,
 						theRequestDetails,
 						requestPartitionId));
+
+		if (isGroupCommitCandidate(theIfNoneExist)) {
+			return myGroupCommitSvc.execute(requestPartitionId, theTransactionDetails, create);
+		}
+		return create.get();
+	}
+
+	/**
+	 * Creates are only grouped with other creates if they aren't conditional (since a conditional
+	 * create could depend on a resource created earlier in the same batch) and aren't already
+	 * part of a larger transaction.
+	 */
+	private boolean isGroupCommitCandidate(String theIfNoneExist) {
+		return myGroupCommitSvc != null
+				&& getStorageSettings().isGroupCommitEnabled()
+				&& isBlank(theIfNoneExist)
+				&& !TransactionSynchronizationManager.isActualTransactionActive();
 	}
 
 	@VisibleForTesting
@@ -1688,6 +1709,11 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 	private void reindexOptimizeStorage(
 			ResourceTable entity, ReindexParameters.OptimizeStorageModeEnum theOptimizeStorageMode) {
 		ResourceHistoryTable historyEntity = entity.getCurrentVersionEntity();
+		if (historyEntity == null) {
+			// Only pre-fetched when the reindex chunk contains more than one resource
+			historyEntity = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(
+					entity.getId(), entity.getVersion());
+		}
 		if (historyEntity != null) {
 			reindexOptimizeStorageHistoryEntity(entity, historyEntity);
 			if (theOptimizeStorageMode == ReindexParameters.OptimizeStorageModeEnum.ALL_VERSIONS) {
@@ -1706,14 +1732,23 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 	private void reindexOptimizeStorageHistoryEntity(ResourceTable entity, ResourceHistoryTable historyEntity) {
 		boolean changed = false;
+		ResourceEncodingEnum targetEncoding = myStorageSettings.getResourceEncoding();
 		if (historyEntity.getEncoding() == ResourceEncodingEnum.JSONC
-				|| historyEntity.getEncoding() == ResourceEncodingEnum.JSON) {
-			byte[] resourceBytes = historyEntity.getResource();
+				|| historyEntity.getEncoding() == ResourceEncodingEnum.JSON
+				|| historyEntity.getEncoding() == ResourceEncodingEnum.ZSTD
+				|| historyEntity.getEncoding() == ResourceEncodingEnum.LZ4) {
+			byte[] resourceBytes = historyEntity.getResourceBytes();
+			String resourceText = null;
 			if (resourceBytes != null) {
-				String resourceText = decodeResource(resourceBytes, historyEntity.getEncoding());
-				if (myResourceHistoryCalculator.conditionallyAlterHistoryEntity(entity, historyEntity, resourceText)) {
-					changed = true;
-				}
+				resourceText = decodeResource(resourceBytes, historyEntity.getEncoding());
+			} else if (ResourceHistoryCalculator.isBinaryOnlyEncoding(targetEncoding)) {
+				// Inline text rows only need rewriting if the target is a binary-only codec
+				resourceText = historyEntity.getResourceTextVc();
+			}
+			if (resourceText != null
+					&& myResourceHistoryCalculator.conditionallyAlterHistoryEntity(
+							entity, historyEntity, resourceText, targetEncoding)) {
+				changed = true;
 			}
 		}
 		if (isBlank(historyEntity.getSourceUri()) && isBlank(historyEntity.getRequestId())) {
@@ -1960,6 +1995,11 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 			cacheControlDirective.parse(theRequest.getHeaders(Constants.HEADER_CACHE_CONTROL));
 		}
 
+		if (myDeferredIndexingSvc != null && myDeferredIndexingSvc.awaitIndexed(theRequest, getResourceName())) {
+			// Cached results could predate the indexes we have just waited for
+			cacheControlDirective.setNoCache(true);
+		}
+
 		RequestPartitionId requestPartitionId =
 				myRequestPartitionHelperService.determineReadPartitionForRequestForSearchType(
 						theRequest, getResourceName(), theParams);
@@ -2449,6 +2489,12 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 			RestOperationTypeEnum theOperationType,
 			TransactionDetails theTransactionDetails) {
 
+		if (getStorageSettings().getResourceHistoryPolicy(getResourceName())
+				== JpaStorageSettings.ResourceHistoryPolicyEnum.APPEND_ONLY) {
+			throw new MethodNotAllowedException(Msg.code(2560) + "Resources of type " + getResourceName()
+					+ " are append-only and can not be updated");
+		}
+
 		/*
 		 * We stored a resource searchUrl at creation time to prevent resource duplication.
 		 * We'll clear any currently existing urls from the db, otherwise we could hit
@@ -26,6 +26,7 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.dao.IDao;
+import ca.uhn.fhir.jpa.cache.ResourceBodyCache;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
 import ca.uhn.fhir.jpa.entity.PartitionEntity;
 import ca.uhn.fhir.jpa.entity.ResourceSearchView;
@@ -52,7 +53,6 @@ import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.model.valueset.BundleEntryTransactionMethodEnum;
 import ca.uhn.fhir.parser.DataFormatException;
-import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.parser.LenientErrorHandler;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.util.IMetaTagSorter;
@@ -76,6 +76,7 @@ import java.util.Date;
 import java.util.List;
 
 import static ca.uhn.fhir.jpa.dao.BaseHapiFhirDao.decodeResource;
+import static ca.uhn.fhir.jpa.dao.BaseHapiFhirDao.decodeResourceToBytes;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -98,6 +99,9 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	@Autowired
 	private IPartitionLookupSvc myPartitionLookupSvc;
 
+	@Autowired
+	private ResourceBodyCache myResourceBodyCache;
+
 	@Autowired
 	private ExternallyStoredResourceServiceRegistry myExternallyStoredResourceServiceRegistry;
 
@@ -129,7 +133,7 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 
 		if (theEntity instanceof ResourceHistoryTable) {
 			ResourceHistoryTable history = (ResourceHistoryTable) theEntity;
-			resourceBytes = history.getResource();
+			resourceBytes = history.getResourceBytes();
 			resourceText = history.getResourceTextVc();
 			resourceEncoding = history.getEncoding();
 			switch (myStorageSettings.getTagStorageMode()) {
@@ -173,7 +177,7 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 				}
 			}
 
-			resourceBytes = history.getResource();
+			resourceBytes = history.getResourceBytes();
 			resourceEncoding = history.getEncoding();
 			resourceText = history.getResourceTextVc();
 			switch (myStorageSettings.getTagStorageMode()) {
@@ -195,7 +199,7 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		} else if (theEntity instanceof ResourceSearchView) {
 			// This is the search View
 			ResourceSearchView view = (ResourceSearchView) theEntity;
-			resourceBytes = view.getResource();
+			resourceBytes = view.getResourceBytes();
 			resourceText = view.getResourceTextVc();
 			resourceEncoding = view.getEncoding();
 			version = view.getVersion();
@@ -217,14 +221,33 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			return null;
 		}
 
-		// 2. get The text
-		String decodedResourceText = decodedResourceText(resourceBytes, resourceText, resourceEncoding);
-
-		// 3. Use the appropriate custom type if one is specified in the context
+		// 2. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = determineTypeToParse(theResourceType, tagList);
 
-		// 4. parse the text to FHIR
-		R retVal = parseResource(theEntity, resourceEncoding, decodedResourceText, resourceType);
+		// 3. copy the body from the cache if we have already parsed this version
+		boolean cacheable = isResourceBodyCacheable(theEntity, resourceEncoding);
+		R retVal = null;
+		if (cacheable) {
+			retVal = myResourceBodyCache.get(theEntity.getResourceId(), version, resourceType);
+		}
+
+		// 4. otherwise get the text and parse it to FHIR
+		if (retVal == null) {
+			// Binary bodies are parsed from their bytes, without building a String first
+			byte[] decodedResourceBytes = null;
+			if (resourceText == null && resourceEncoding != ResourceEncodingEnum.ESR) {
+				decodedResourceBytes = decodeResourceToBytes(resourceBytes, resourceEncoding);
+			}
+			String decodedResourceText = null;
+			if (decodedResourceBytes == null) {
+				decodedResourceText = decodedResourceText(resourceBytes, resourceText, resourceEncoding);
+			}
+			retVal = parseResource(
+					theEntity, resourceEncoding, decodedResourceText, decodedResourceBytes, resourceType);
+			if (cacheable) {
+				myResourceBodyCache.putAfterCommit(theEntity.getResourceId(), version, retVal);
+			}
+		}
 
 		// 5. fill MetaData
 		retVal = populateResourceMetadata(theEntity, theForHistoryOperation, tagList, version, retVal);
@@ -241,6 +264,14 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		return retVal;
 	}
 
+	private boolean isResourceBodyCacheable(IBaseResourceEntity theEntity, ResourceEncodingEnum theResourceEncoding) {
+		return theResourceEncoding != ResourceEncodingEnum.DEL
+				&& theResourceEncoding != ResourceEncodingEnum.ESR
+				&& theEntity.getDeleted() == null
+				&& theEntity.getFhirVersion() == myFhirContext.getVersion().getVersion()
+				&& myResourceBodyCache.isEnabled();
+	}
+
 	private <R extends IBaseResource> void populateResourcePartitionInformation(
 			IBaseResourceEntity theEntity, R retVal) {
 		if (myPartitionSettings.isPartitioningEnabled()) {
@@ -259,7 +290,8 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	private <R extends IBaseResource> R parseResource(
 			IBaseResourceEntity theEntity,
 			ResourceEncodingEnum theResourceEncoding,
-			String theDecodedResourceText,
+			@Nullable String theDecodedResourceText,
+			@Nullable byte[] theDecodedResourceBytes,
 			Class<R> theResourceType) {
 		R retVal;
 		if (theResourceEncoding == ResourceEncodingEnum.ESR) {
@@ -276,11 +308,15 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 
 		} else if (theResourceEncoding != ResourceEncodingEnum.DEL) {
 
-			IParser parser = new TolerantJsonParser(
+			TolerantJsonParser parser = new TolerantJsonParser(
 					getContext(theEntity.getFhirVersion()), LENIENT_ERROR_HANDLER, theEntity.getId());
 
 			try {
-				retVal = parser.parseResource(theResourceType, theDecodedResourceText);
+				if (theDecodedResourceBytes != null) {
+					retVal = parser.parseResource(theResourceType, theDecodedResourceBytes);
+				} else {
+					retVal = parser.parseResource(theResourceType, theDecodedResourceText);
+				}
 			} catch (Exception e) {
 				StringBuilder b = new StringBuilder();
 				b.append("Failed to parse database resource[");
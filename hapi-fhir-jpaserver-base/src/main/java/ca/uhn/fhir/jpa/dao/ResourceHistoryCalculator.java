@@ -20,10 +20,12 @@
 package ca.uhn.fhir.jpa.dao;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
@@ -32,9 +34,12 @@ import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Responsible for various resource history-centric and {@link FhirContext} aware operations called by
@@ -55,18 +60,18 @@ public class ResourceHistoryCalculator {
 
 	ResourceHistoryState calculateResourceHistoryState(
 			IBaseResource theResource, ResourceEncodingEnum theEncoding, List<String> theExcludeElements) {
-		final String encodedResource = encodeResource(theResource, theEncoding, theExcludeElements);
 		final byte[] resourceBinary;
 		final String resourceText;
 		final ResourceEncodingEnum encoding;
 		final HashCode hashCode;
 
-		if (myIsOracleDialect) {
+		if (isStoredAsBinary(theEncoding)) {
 			resourceText = null;
-			resourceBinary = getResourceBinary(theEncoding, encodedResource);
+			resourceBinary = encodeResourceToBinary(theResource, theEncoding, theExcludeElements);
 			encoding = theEncoding;
 			hashCode = SHA_256.hashBytes(resourceBinary);
 		} else {
+			String encodedResource = encodeResource(theResource, theEncoding, theExcludeElements);
 			resourceText = encodedResource;
 			resourceBinary = null;
 			encoding = ResourceEncodingEnum.JSON;
@@ -76,6 +81,36 @@ public class ResourceHistoryCalculator {
 		return new ResourceHistoryState(resourceText, resourceBinary, encoding, hashCode);
 	}
 
+	/**
+	 * Like {@link #conditionallyAlterHistoryEntity(ResourceTable, ResourceHistoryTable, String)}, but if
+	 * the target encoding is one of the binary-only codecs ({@link ResourceEncodingEnum#ZSTD},
+	 * {@link ResourceEncodingEnum#LZ4}), the history entity is re-encoded into that codec instead.
+	 *
+	 * @return <code>true</code> if the history entity was modified
+	 */
+	boolean conditionallyAlterHistoryEntity(
+			ResourceTable theEntity,
+			ResourceHistoryTable theHistoryEntity,
+			String theResourceText,
+			ResourceEncodingEnum theTargetEncoding) {
+		if (isBinaryOnlyEncoding(theTargetEncoding)) {
+			if (theHistoryEntity.getEncoding() == theTargetEncoding && theHistoryEntity.getResourceBinary() != null) {
+				return false;
+			}
+			ourLog.debug(
+					"Storing text of resource {} version {} as {} binary",
+					theEntity.getResourceId(),
+					theHistoryEntity.getVersion(),
+					theTargetEncoding);
+			theHistoryEntity.setEncodingAndResourceBytes(
+					theTargetEncoding, getResourceBinary(theTargetEncoding, theResourceText));
+			theHistoryEntity.setResourceTextVc(null);
+			return true;
+		}
+
+		return conditionallyAlterHistoryEntity(theEntity, theHistoryEntity, theResourceText);
+	}
+
 	boolean conditionallyAlterHistoryEntity(
 			ResourceTable theEntity, ResourceHistoryTable theHistoryEntity, String theResourceText) {
 		if (!myIsOracleDialect) {
@@ -84,8 +119,7 @@ public class ResourceHistoryCalculator {
 					theEntity.getResourceId(),
 					theHistoryEntity.getVersion());
 			theHistoryEntity.setResourceTextVc(theResourceText);
-			theHistoryEntity.setResource(null);
-			theHistoryEntity.setEncoding(ResourceEncodingEnum.JSON);
+			theHistoryEntity.setEncodingAndResourceBytes(ResourceEncodingEnum.JSON, null);
 			return true;
 		}
 
@@ -96,8 +130,8 @@ public class ResourceHistoryCalculator {
 			ResourceHistoryTable theCurrentHistoryVersion,
 			@Nullable byte[] theResourceBinary,
 			@Nullable String resourceText) {
-		if (myIsOracleDialect) {
-			return !Arrays.equals(theCurrentHistoryVersion.getResource(), theResourceBinary);
+		if (myIsOracleDialect || isBinaryOnlyEncoding(theCurrentHistoryVersion.getEncoding())) {
+			return !Arrays.equals(theCurrentHistoryVersion.getResourceBytes(), theResourceBinary);
 		}
 
 		return !StringUtils.equals(theCurrentHistoryVersion.getResourceTextVc(), resourceText);
@@ -110,6 +144,48 @@ public class ResourceHistoryCalculator {
 		return parser.encodeResourceToString(theResource);
 	}
 
+	/**
+	 * Encodes the resource directly into the byte array stored for the given encoding, without
+	 * building an intermediate String. The result is the same as
+	 * {@link #getResourceBinary(ResourceEncodingEnum, String)} applied to the output of
+	 * {@link #encodeResource(IBaseResource, ResourceEncodingEnum, List)}.
+	 */
+	@Nonnull
+	byte[] encodeResourceToBinary(
+			IBaseResource theResource, ResourceEncodingEnum theEncoding, List<String> theExcludeElements) {
+		if (theEncoding != ResourceEncodingEnum.JSON
+				&& theEncoding != ResourceEncodingEnum.JSONC
+				&& !isBinaryOnlyEncoding(theEncoding)) {
+			return new byte[0];
+		}
+
+		final IParser parser = theEncoding.newParser(myFhirContext);
+		parser.setDontEncodeElements(theExcludeElements);
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try {
+			if (theEncoding == ResourceEncodingEnum.JSONC) {
+				try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+					parser.encodeResourceToOutputStream(theResource, gzipOutputStream);
+				}
+			} else {
+				parser.encodeResourceToOutputStream(theResource, outputStream);
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException(Msg.code(2548) + "Failed to encode resource: " + e.getMessage(), e);
+		}
+
+		// These codecs compress whole blocks rather than streams
+		switch (theEncoding) {
+			case ZSTD:
+				return ZstdUtil.compress(outputStream.toByteArray());
+			case LZ4:
+				return Lz4Util.compress(outputStream.toByteArray());
+			default:
+				return outputStream.toByteArray();
+		}
+	}
+
 	/**
 	 * helper for returning the encoded byte array of the input resource string based on the theEncoding.
 	 *
@@ -124,6 +200,10 @@ public class ResourceHistoryCalculator {
 				return theEncodedResource.getBytes(StandardCharsets.UTF_8);
 			case JSONC:
 				return GZipUtil.compress(theEncodedResource);
+			case ZSTD:
+				return ZstdUtil.compress(theEncodedResource);
+			case LZ4:
+				return Lz4Util.compress(theEncodedResource);
 			default:
 				return new byte[0];
 		}
@@ -134,13 +214,27 @@ public class ResourceHistoryCalculator {
 			String theEncodedResourceString,
 			@Nullable byte[] theResourceBinary,
 			ResourceEncodingEnum theEncoding) {
-		if (myIsOracleDialect) {
+		if (isStoredAsBinary(theEncoding)) {
 			populateEncodedResourceInner(theEncodedResource, null, theResourceBinary, theEncoding);
 		} else {
 			populateEncodedResourceInner(theEncodedResource, theEncodedResourceString, null, ResourceEncodingEnum.JSON);
 		}
 	}
 
+	/**
+	 * Resource bodies are stored as binary on Oracle, and for encodings which only exist in
+	 * binary form. Otherwise they are stored as inline JSON text. Binary-only encodings go to
+	 * the plain <code>RES_TEXT_BIN</code> column, everything else binary goes to the legacy
+	 * <code>RES_TEXT</code> LOB column (see {@link ResourceHistoryTable#setEncodingAndResourceBytes}).
+	 */
+	boolean isStoredAsBinary(ResourceEncodingEnum theEncoding) {
+		return myIsOracleDialect || isBinaryOnlyEncoding(theEncoding);
+	}
+
+	static boolean isBinaryOnlyEncoding(ResourceEncodingEnum theEncoding) {
+		return theEncoding != null && theEncoding.isStoredInBinaryColumn();
+	}
+
 	private void populateEncodedResourceInner(
 			EncodedResource encodedResource,
 			String encodedResourceString,
@@ -33,7 +33,9 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 import static org.apache.commons.lang3.StringUtils.defaultString;
@@ -78,9 +80,7 @@ public class TolerantJsonParser extends JsonParser {
 			 * ParserState.Primitive state too.
 			 */
 
-			String msg = defaultString(e.getMessage(), "");
-			if (msg.contains("Unexpected character ('.' (code 46))")
-					|| msg.contains("Invalid numeric value: Leading zeroes not allowed")) {
+			if (isCorrectable(e)) {
 				Gson gson = new Gson();
 
 				JsonObject object = gson.fromJson(theMessageString, JsonObject.class);
@@ -120,6 +120,29 @@ public class TolerantJsonParser extends JsonParser {
 		}
 	}
 
+	/**
+	 * Parses UTF-8 encoded JSON without first building a String from it. A String is only built
+	 * if the JSON needs to be corrected as described in {@link #parseResource(Class, String)}.
+	 *
+	 * @since 7.6.0
+	 */
+	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, byte[] theUtf8Bytes) {
+		try {
+			return super.parseResource(theResourceType, new ByteArrayInputStream(theUtf8Bytes));
+		} catch (DataFormatException e) {
+			if (isCorrectable(e)) {
+				return parseResource(theResourceType, new String(theUtf8Bytes, StandardCharsets.UTF_8));
+			}
+			throw e;
+		}
+	}
+
+	private static boolean isCorrectable(DataFormatException theException) {
+		String msg = defaultString(theException.getMessage(), "");
+		return msg.contains("Unexpected character ('.' (code 46))")
+				|| msg.contains("Invalid numeric value: Leading zeroes not allowed");
+	}
+
 	public static TolerantJsonParser createWithLenientErrorHandling(
 			FhirContext theContext, @Nullable Long theResourcePid) {
 		LenientErrorHandler errorHandler = new LenientErrorHandler(false).disableAllErrors();
@@ -28,7 +28,9 @@ import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.config.HapiFhirHibernateJpaDialect;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamUri;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
@@ -38,6 +40,7 @@ import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.UriParam;
 import ca.uhn.fhir.util.ResourceReferenceInfo;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
@@ -277,7 +280,6 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		new QueryChunker<MatchUrlToResolve>()
 				.chunk(
 						searchParameterMapsToResolve,
-						100,
 						map -> preFetchSearchParameterMaps(
 								theTransactionDetails, theRequestPartitionId, map, idsToPreFetch));
 	}
@@ -297,6 +299,7 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			List<Long> theOutputPidsToLoadFully) {
 		Set<Long> systemAndValueHashes = new HashSet<>();
 		Set<Long> valueHashes = new HashSet<>();
+		Set<Long> uriHashes = new HashSet<>();
 		for (MatchUrlToResolve next : theInputParameters) {
 			Collection<List<List<IQueryParameterType>>> values = next.myMatchUrlSearchMap.values();
 			if (values.size() == 1) {
@@ -306,28 +309,42 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 				if (param instanceof TokenParam) {
 					buildHashPredicateFromTokenParam(
 							(TokenParam) param, theRequestPartitionId, next, systemAndValueHashes, valueHashes);
+				} else if (param instanceof UriParam) {
+					buildHashPredicateFromUriParam((UriParam) param, theRequestPartitionId, next, uriHashes);
 				}
 			}
 		}
 
-		preFetchSearchParameterMapsToken(
+		preFetchSearchParameterMapsByHash(
+				ResourceIndexedSearchParamToken.class,
 				"myHashSystemAndValue",
 				systemAndValueHashes,
 				theTransactionDetails,
 				theRequestPartitionId,
 				theInputParameters,
 				theOutputPidsToLoadFully);
-		preFetchSearchParameterMapsToken(
+		preFetchSearchParameterMapsByHash(
+				ResourceIndexedSearchParamToken.class,
 				"myHashValue",
 				valueHashes,
 				theTransactionDetails,
 				theRequestPartitionId,
 				theInputParameters,
 				theOutputPidsToLoadFully);
+		preFetchSearchParameterMapsByHash(
+				ResourceIndexedSearchParamUri.class,
+				"myHashUri",
+				uriHashes,
+				theTransactionDetails,
+				theRequestPartitionId,
+				theInputParameters,
+				theOutputPidsToLoadFully);
 
-		// For each SP Map which did not return a result, tag it as not found.
-		if (!valueHashes.isEmpty() || !systemAndValueHashes.isEmpty()) {
+		// For each SP Map which was searched for but did not return a result, tag it as not found.
+		// Maps we couldn't build a hash for weren't searched, so they are left to be resolved normally.
+		if (!valueHashes.isEmpty() || !systemAndValueHashes.isEmpty() || !uriHashes.isEmpty()) {
 			theInputParameters.stream()
+					.filter(MatchUrlToResolve::hasHash)
 					// No matches
 					.filter(match -> !match.myResolved)
 					.forEach(match -> {
@@ -339,13 +356,14 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 	}
 
 	/**
-	 * Here we do a select against the {@link ResourceIndexedSearchParamToken} table for any rows that have the
-	 * specific sys+val or val hashes we know we need to pre-fetch.
+	 * Here we do a select against the given index table (e.g. {@link ResourceIndexedSearchParamToken}) for any
+	 * rows that have the specific hashes (e.g. sys+val or val) we know we need to pre-fetch.
 	 * <p>
 	 * Note that we do a tuple query for only 2 columns in order to ensure that we can get by with only
 	 * the data in the index (ie no need to load the actual table rows).
 	 */
-	private void preFetchSearchParameterMapsToken(
+	private void preFetchSearchParameterMapsByHash(
+			Class<? extends BaseResourceIndexedSearchParam> theIndexEntityType,
 			String theIndexColumnName,
 			Set<Long> theHashesForIndexColumn,
 			TransactionDetails theTransactionDetails,
@@ -357,7 +375,7 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 					buildHashToSearchMap(theInputParameters, theIndexColumnName);
 			CriteriaBuilder cb = myEntityManager.getCriteriaBuilder();
 			CriteriaQuery<Tuple> cq = cb.createTupleQuery();
-			Root<ResourceIndexedSearchParamToken> from = cq.from(ResourceIndexedSearchParamToken.class);
+			Root<? extends BaseResourceIndexedSearchParam> from = cq.from(theIndexEntityType);
 			cq.multiselect(from.get("myResourcePid"), from.get(theIndexColumnName));
 
 			Predicate masterPredicate;
@@ -494,6 +512,25 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		}
 	}
 
+	/**
+	 * Given a URI parameter with no qualifier, build the query predicate based on its hash.
+	 */
+	private void buildHashPredicateFromUriParam(
+			UriParam theUriParam,
+			RequestPartitionId theRequestPartitionId,
+			MatchUrlToResolve theMatchUrl,
+			Set<Long> theUriPredicates) {
+		if (isNotBlank(theUriParam.getValue()) && theUriParam.getQualifier() == null) {
+			theMatchUrl.myHashUri = ResourceIndexedSearchParamUri.calculateHashUri(
+					myPartitionSettings,
+					theRequestPartitionId,
+					theMatchUrl.myResourceDefinition.getName(),
+					theMatchUrl.myMatchUrlSearchMap.keySet().iterator().next(),
+					theUriParam.getValue());
+			theUriPredicates.add(theMatchUrl.myHashUri);
+		}
+	}
+
 	private ListMultimap<Long, MatchUrlToResolve> buildHashToSearchMap(
 			List<MatchUrlToResolve> searchParameterMapsToResolve, String theIndex) {
 		ListMultimap<Long, MatchUrlToResolve> hashToSearch = ArrayListMultimap.create();
@@ -505,13 +542,19 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			if (nextSearchParameterMap.myHashValue != null && theIndex.equals("myHashValue")) {
 				hashToSearch.put(nextSearchParameterMap.myHashValue, nextSearchParameterMap);
 			}
+			if (nextSearchParameterMap.myHashUri != null && theIndex.equals("myHashUri")) {
+				hashToSearch.put(nextSearchParameterMap.myHashUri, nextSearchParameterMap);
+			}
 		}
 		return hashToSearch;
 	}
 
 	@Override
-	protected void flushSession(Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome) {
+	protected void flushSession(
+			Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome, TransactionDetails theTransactionDetails) {
 		try {
+			BaseHapiFhirDao.persistPendingHistoryEntities(myEntityManager, theTransactionDetails);
+
 			int insertionCount;
 			int updateCount;
 			SessionImpl session = myEntityManager.unwrap(SessionImpl.class);
@@ -562,6 +605,7 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		public boolean myResolved;
 		private Long myHashValue;
 		private Long myHashSystemAndValue;
+		private Long myHashUri;
 
 		public MatchUrlToResolve(
 				String theRequestUrl,
@@ -577,5 +621,9 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		public void setResolved(boolean theResolved) {
 			myResolved = theResolved;
 		}
+
+		public boolean hasHash() {
+			return myHashValue != null || myHashSystemAndValue != null || myHashUri != null;
+		}
 	}
 }
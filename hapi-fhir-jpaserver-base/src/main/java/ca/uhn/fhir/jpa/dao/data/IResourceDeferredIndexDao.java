@@ -0,0 +1,63 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.model.entity.ResourceDeferredIndexEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceDeferredIndexEntityPK;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+
+public interface IResourceDeferredIndexDao
+		extends JpaRepository<ResourceDeferredIndexEntity, ResourceDeferredIndexEntityPK>, IHapiFhirJpaRepository {
+
+	@Query(
+			"SELECT DISTINCT r.myPk.myResourcePid FROM ResourceDeferredIndexEntity r WHERE r.myQueuedTime <= :high AND (r.myNextAttemptTime IS NULL OR r.myNextAttemptTime <= :high)")
+	Slice<Long> findResourcePidsQueuedBefore(Pageable thePage, @Param("high") Date theHigh);
+
+	@Query(
+			"SELECT COUNT(r) FROM ResourceDeferredIndexEntity r WHERE r.myResourceType = :restype AND r.myQueuedTime <= :high")
+	long countByResourceTypeQueuedBefore(@Param("restype") String theResourceType, @Param("high") Date theHigh);
+
+	@Modifying
+	@Query(
+			"DELETE FROM ResourceDeferredIndexEntity r WHERE r.myPk.myResourcePid = :pid AND r.myPk.myResourceVersion <= :version")
+	int deleteByResourcePidUpToVersion(@Param("pid") Long theResourcePid, @Param("version") Long theResourceVersion);
+
+	@Modifying
+	@Query("DELETE FROM ResourceDeferredIndexEntity r WHERE r.myPk.myResourcePid = :pid")
+	int deleteByResourcePid(@Param("pid") Long theResourcePid);
+
+	@Query("SELECT MAX(r.myFailedAttempts) FROM ResourceDeferredIndexEntity r WHERE r.myPk.myResourcePid = :pid")
+	Integer findMaxFailedAttempts(@Param("pid") Long theResourcePid);
+
+	@Modifying
+	@Query(
+			"UPDATE ResourceDeferredIndexEntity r SET r.myFailedAttempts = :attempts, r.myNextAttemptTime = :next WHERE r.myPk.myResourcePid = :pid")
+	int updateFailedAttempts(
+			@Param("pid") Long theResourcePid,
+			@Param("attempts") int theFailedAttempts,
+			@Param("next") Date theNextAttemptTime);
+}
@@ -20,11 +20,14 @@
 package ca.uhn.fhir.jpa.dao.data;
 
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
 public interface IResourceIndexedSearchParamTokenDao
 		extends JpaRepository<ResourceIndexedSearchParamToken, Long>, IHapiFhirJpaRepository {
 
@@ -34,4 +37,18 @@ public interface IResourceIndexedSearchParamTokenDao
 	@Modifying
 	@Query("delete from ResourceIndexedSearchParamToken t WHERE t.myResourcePid = :resid")
 	void deleteByResourceId(@Param("resid") Long theResourcePid);
+
+	/**
+	 * Returns up to one page of index row IDs with the given system+value hash. This is used to
+	 * estimate the selectivity of a token without counting every matching row.
+	 */
+	@Query("select t.myId from ResourceIndexedSearchParamToken t WHERE t.myHashSystemAndValue = :hash")
+	List<Long> findIdsByHashSystemAndValue(@Param("hash") Long theHash, Pageable thePageable);
+
+	/**
+	 * Returns up to one page of index row IDs with the given value hash. This is used to
+	 * estimate the selectivity of a token without counting every matching row.
+	 */
+	@Query("select t.myId from ResourceIndexedSearchParamToken t WHERE t.myHashValue = :hash")
+	List<Long> findIdsByHashValue(@Param("hash") Long theHash, Pageable thePageable);
 }
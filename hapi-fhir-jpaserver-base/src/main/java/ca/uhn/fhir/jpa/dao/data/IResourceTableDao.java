@@ -44,6 +44,9 @@ public interface IResourceTableDao
 	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myDeleted IS NOT NULL")
 	Slice<Long> findIdsOfDeletedResources(Pageable thePageable);
 
+	@Query("SELECT t.myUpdated FROM ResourceTable t WHERE t.myId = :resid")
+	Date findUpdatedById(@Param("resid") Long theResourceId);
+
 	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myResourceType = :restype AND t.myDeleted IS NOT NULL")
 	Slice<Long> findIdsOfDeletedResourcesOfType(Pageable thePageable, @Param("restype") String theResourceName);
 
@@ -66,6 +69,23 @@ public interface IResourceTableDao
 	Slice<Long> findIdsOfResourcesWithinUpdatedRangeOrderedFromOldest(
 			Pageable thePage, @Param("low") Date theLow, @Param("high") Date theHigh);
 
+	/**
+	 * Returns the PID, deleted timestamp and updated timestamp of resources updated within the
+	 * given range, ordered by updated timestamp and PID, starting after the given updated
+	 * timestamp and PID. This allows a large range to be paged through without using an offset.
+	 */
+	@Query(
+			"SELECT t.myId, t.myDeleted, t.myUpdated FROM ResourceTable t "
+					+ "WHERE t.myUpdated >= :low AND t.myUpdated <= :high "
+					+ "AND (t.myUpdated > :afterUpdated OR (t.myUpdated = :afterUpdated AND t.myId > :afterId)) "
+					+ "ORDER BY t.myUpdated ASC, t.myId ASC")
+	Slice<Object[]> findIdsDeletedAtAndUpdatedOfResourcesWithinUpdatedRangeAfter(
+			Pageable thePage,
+			@Param("low") Date theLow,
+			@Param("high") Date theHigh,
+			@Param("afterUpdated") Date theAfterUpdated,
+			@Param("afterId") Long theAfterId);
+
 	@Query(
 			"SELECT t.myId, t.myResourceType, t.myUpdated FROM ResourceTable t WHERE t.myUpdated >= :low AND t.myUpdated <= :high ORDER BY t.myUpdated ASC")
 	Stream<Object[]> streamIdsTypesAndUpdateTimesOfResourcesWithinUpdatedRangeOrderedFromOldest(
@@ -36,6 +36,18 @@ public interface ISearchResultDao extends JpaRepository<SearchResult, Long>, IHa
 	@Query(value = "SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search ORDER BY r.myOrder ASC")
 	Slice<Long> findWithSearchPid(@Param("search") Long theSearchPid, Pageable thePage);
 
+	/**
+	 * Returns the results with an order in the range <code>[theFromOrder, theToOrder)</code>. Unlike
+	 * {@link #findWithSearchPid(Long, Pageable)} this seeks directly into the
+	 * <code>IDX_SEARCHRES_ORDER</code> index rather than skipping over all of the earlier results,
+	 * so the cost of fetching a page does not grow with its depth.
+	 */
+	@Query(
+			value =
+					"SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search AND r.myOrder >= :fromOrder AND r.myOrder < :toOrder ORDER BY r.myOrder ASC")
+	List<Long> findWithSearchPidAndOrderRange(
+			@Param("search") Long theSearchPid, @Param("fromOrder") int theFromOrder, @Param("toOrder") int theToOrder);
+
 	@Query(value = "SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search")
 	List<Long> findWithSearchPidOrderIndependent(@Param("search") Long theSearchPid);
 
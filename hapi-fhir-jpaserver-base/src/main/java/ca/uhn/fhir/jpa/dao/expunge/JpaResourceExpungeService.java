@@ -26,6 +26,7 @@ import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
+import ca.uhn.fhir.jpa.cache.ResourceBodyCache;
 import ca.uhn.fhir.jpa.dao.IJpaStorageResourceParser;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryProvenanceDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
@@ -143,6 +144,9 @@ public class JpaResourceExpungeService implements IResourceExpungeService<JpaPid
 	@Autowired
 	private MemoryCacheService myMemoryCacheService;
 
+	@Autowired
+	private ResourceBodyCache myResourceBodyCache;
+
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
 
@@ -246,6 +250,7 @@ public class JpaResourceExpungeService implements IResourceExpungeService<JpaPid
 
 		myResourceHistoryTagDao.deleteByPid(version.getId());
 		myResourceHistoryTableDao.deleteByPid(version.getId());
+		myResourceBodyCache.invalidate(version.getResourceId(), version.getVersion());
 
 		theRemainingCount.decrementAndGet();
 	}
@@ -366,6 +371,10 @@ public class JpaResourceExpungeService implements IResourceExpungeService<JpaPid
 		if (resource == null || resource.isHasLinks()) {
 			myResourceLinkDao.deleteByResourceId(theResourceLongId);
 		}
+		if (resource != null) {
+			// The rows no longer match the fingerprint, so the next update must compare them
+			resource.setIndexFingerprint(null);
+		}
 	}
 
 	private void expungeHistoricalVersionsOfId(
@@ -29,6 +29,8 @@ import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboStringUnique;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexFingerprint;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexFingerprint.IndexTypeEnum;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.util.AddRemoveCount;
 import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
@@ -37,12 +39,15 @@ import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.PersistenceContextType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -50,6 +55,7 @@ import java.util.Set;
 
 @Service
 public class DaoSearchParamSynchronizer {
+	private static final Logger ourLog = LoggerFactory.getLogger(DaoSearchParamSynchronizer.class);
 
 	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
 	protected EntityManager myEntityManager;
@@ -67,33 +73,133 @@ public class DaoSearchParamSynchronizer {
 			ResourceIndexedSearchParams theParams,
 			ResourceTable theEntity,
 			ResourceIndexedSearchParams existingParams) {
+		return synchronizeSearchParamsToDatabase(theParams, theEntity, existingParams, false);
+	}
+
+	/**
+	 * Writes the differences between the existing and new index rows of a resource to the database.
+	 *
+	 * @param theSkipUnchangedIndexTypes If <code>true</code> and {@link JpaStorageSettings#isIndexFingerprintEnabled() index fingerprints}
+	 *                                   are enabled, index types whose fingerprint matches the one stored on the entity are not
+	 *                                   compared, so the existing rows of those types are never loaded. This should be
+	 *                                   <code>false</code> when reindexing, so that the index rows are always verified.
+	 * @since 7.6.0
+	 */
+	public AddRemoveCount synchronizeSearchParamsToDatabase(
+			ResourceIndexedSearchParams theParams,
+			ResourceTable theEntity,
+			ResourceIndexedSearchParams existingParams,
+			boolean theSkipUnchangedIndexTypes) {
 		AddRemoveCount retVal = new AddRemoveCount();
 
-		synchronize(theEntity, retVal, theParams.myStringParams, existingParams.myStringParams, null);
-		synchronize(theEntity, retVal, theParams.myTokenParams, existingParams.myTokenParams, null);
-		synchronize(theEntity, retVal, theParams.myNumberParams, existingParams.myNumberParams, null);
-		synchronize(theEntity, retVal, theParams.myQuantityParams, existingParams.myQuantityParams, null);
+		prepareNewParams(theEntity, theParams.myStringParams);
+		prepareNewParams(theEntity, theParams.myTokenParams);
+		prepareNewParams(theEntity, theParams.myNumberParams);
+		prepareNewParams(theEntity, theParams.myQuantityParams);
+		prepareNewParams(theEntity, theParams.myQuantityNormalizedParams);
+		prepareNewParams(theEntity, theParams.myDateParams);
+		prepareNewParams(theEntity, theParams.myUriParams);
+		prepareNewParams(theEntity, theParams.myCoordsParams);
+		prepareNewParams(theEntity, theParams.myLinks);
+		prepareNewParams(theEntity, theParams.myComboTokenNonUnique);
+		prepareNewParams(theEntity, theParams.myComboStringUniques);
+
+		ResourceIndexFingerprint fingerprint = null;
+		ResourceIndexFingerprint previousFingerprint = ResourceIndexFingerprint.parse(null);
+		if (myStorageSettings.isIndexFingerprintEnabled()) {
+			fingerprint = ResourceIndexFingerprint.calculate(theParams, myStorageSettings.isIndexStorageOptimized());
+			if (theSkipUnchangedIndexTypes) {
+				previousFingerprint = ResourceIndexFingerprint.parse(theEntity.getIndexFingerprint());
+			}
+		}
+		Set<IndexTypeEnum> unchangedTypes = EnumSet.noneOf(IndexTypeEnum.class);
+		for (IndexTypeEnum next : IndexTypeEnum.values()) {
+			if (fingerprint != null && previousFingerprint.isUnchanged(next, fingerprint)) {
+				unchangedTypes.add(next);
+			}
+		}
+		if (!unchangedTypes.isEmpty()) {
+			ourLog.trace("Skipping unchanged index types for resource {}: {}", theEntity.getId(), unchangedTypes);
+		}
+
+		synchronize(
+				theEntity,
+				retVal,
+				theParams.myStringParams,
+				existingParams.myStringParams,
+				null,
+				unchangedTypes.contains(IndexTypeEnum.STRING));
+		synchronize(
+				theEntity,
+				retVal,
+				theParams.myTokenParams,
+				existingParams.myTokenParams,
+				null,
+				unchangedTypes.contains(IndexTypeEnum.TOKEN));
+		synchronize(
+				theEntity,
+				retVal,
+				theParams.myNumberParams,
+				existingParams.myNumberParams,
+				null,
+				unchangedTypes.contains(IndexTypeEnum.NUMBER));
+		synchronize(
+				theEntity,
+				retVal,
+				theParams.myQuantityParams,
+				existingParams.myQuantityParams,
+				null,
+				unchangedTypes.contains(IndexTypeEnum.QUANTITY));
 		synchronize(
 				theEntity,
 				retVal,
 				theParams.myQuantityNormalizedParams,
 				existingParams.myQuantityNormalizedParams,
-				null);
-		synchronize(theEntity, retVal, theParams.myDateParams, existingParams.myDateParams, null);
-		synchronize(theEntity, retVal, theParams.myUriParams, existingParams.myUriParams, null);
-		synchronize(theEntity, retVal, theParams.myCoordsParams, existingParams.myCoordsParams, null);
-		synchronize(theEntity, retVal, theParams.myLinks, existingParams.myLinks, null);
-		synchronize(theEntity, retVal, theParams.myComboTokenNonUnique, existingParams.myComboTokenNonUnique, null);
+				null,
+				unchangedTypes.contains(IndexTypeEnum.QUANTITY_NORMALIZED));
+		synchronize(
+				theEntity,
+				retVal,
+				theParams.myDateParams,
+				existingParams.myDateParams,
+				null,
+				unchangedTypes.contains(IndexTypeEnum.DATE));
+		synchronize(
+				theEntity,
+				retVal,
+				theParams.myUriParams,
+				existingParams.myUriParams,
+				null,
+				unchangedTypes.contains(IndexTypeEnum.URI));
+		synchronize(
+				theEntity,
+				retVal,
+				theParams.myCoordsParams,
+				existingParams.myCoordsParams,
+				null,
+				unchangedTypes.contains(IndexTypeEnum.COORDS));
+		synchronize(theEntity, retVal, theParams.myLinks, existingParams.myLinks, null, false);
+		synchronize(
+				theEntity,
+				retVal,
+				theParams.myComboTokenNonUnique,
+				existingParams.myComboTokenNonUnique,
+				null,
+				unchangedTypes.contains(IndexTypeEnum.COMBO_TOKEN_NON_UNIQUE));
 		synchronize(
 				theEntity,
 				retVal,
 				theParams.myComboStringUniques,
 				existingParams.myComboStringUniques,
-				new UniqueIndexPreExistenceChecker());
+				new UniqueIndexPreExistenceChecker(),
+				unchangedTypes.contains(IndexTypeEnum.COMBO_STRING_UNIQUE));
 
 		// make sure links are indexed
 		theEntity.setResourceLinks(theParams.myLinks);
 
+		theEntity.setIndexFingerprint(fingerprint != null ? fingerprint.encode() : null);
+		theParams.setIndexTypesUnchangedInDatabase(unchangedTypes);
+
 		return retVal;
 	}
 
@@ -112,12 +218,12 @@ public class DaoSearchParamSynchronizer {
 			AddRemoveCount theAddRemoveCount,
 			Collection<T> theNewParams,
 			Collection<T> theExistingParams,
-			@Nullable IPreSaveHook<T> theAddParamPreSaveHook) {
-		Collection<T> newParams = theNewParams;
-		for (T next : newParams) {
-			next.setPartitionId(theEntity.getPartitionId());
-			next.calculateHashes();
+			@Nullable IPreSaveHook<T> theAddParamPreSaveHook,
+			boolean theUnchanged) {
+		if (theUnchanged) {
+			return;
 		}
+		Collection<T> newParams = theNewParams;
 
 		/*
 		 * It's technically possible that the existing index collection
@@ -149,7 +255,7 @@ public class DaoSearchParamSynchronizer {
 		newParams = new HashSet<>(newParams);
 
 		List<T> paramsToRemove = subtract(theExistingParams, newParams);
-		List<T> paramsToAdd = subtract(newParams, theExistingParams);
+		List<T> paramsToAdd = subtract(newParams, existingParamsAsSet);
 
 		if (theAddParamPreSaveHook != null) {
 			theAddParamPreSaveHook.preSave(paramsToRemove, paramsToAdd);
@@ -168,8 +274,19 @@ public class DaoSearchParamSynchronizer {
 			myEntityManager.remove(next);
 		}
 
+		/*
+		 * Brand new rows are persisted rather than merged, which avoids Hibernate
+		 * creating a managed copy of each one. New rows are assigned IDs from pooled
+		 * sequence blocks and written as ordered JDBC batches at flush time (see
+		 * HapiFhirLocalContainerEntityManagerFactoryBean), so the inserts for all of the
+		 * rows in a given index table are grouped together.
+		 */
 		for (T next : paramsToAdd) {
-			myEntityManager.merge(next);
+			if (next.getId() == null) {
+				myEntityManager.persist(next);
+			} else {
+				myEntityManager.merge(next);
+			}
 		}
 
 		// TODO:  are there any unintended consequences to fixing this bug?
@@ -177,6 +294,13 @@ public class DaoSearchParamSynchronizer {
 		theAddRemoveCount.addToRemoveCount(paramsToRemove.size());
 	}
 
+	private void prepareNewParams(ResourceTable theEntity, Collection<? extends BaseResourceIndex> theNewParams) {
+		for (BaseResourceIndex next : theNewParams) {
+			next.setPartitionId(theEntity.getPartitionId());
+			next.calculateHashes();
+		}
+	}
+
 	/**
 	 * <p>
 	 * This method performs an update of Search Parameter's fields in the case of
@@ -0,0 +1,304 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.IDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceDeferredIndexDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.model.entity.ResourceDeferredIndexEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.sched.HapiJob;
+import ca.uhn.fhir.jpa.model.sched.IHasScheduledJobs;
+import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
+import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
+import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.search.reindex.ResourceReindexer;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
+import ca.uhn.fhir.util.ResourceReferenceInfo;
+import ca.uhn.fhir.util.SleepUtil;
+import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceContextType;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the search indexes of resources whose types use deferred indexing. When such a resource
+ * is stored, {@link #enqueue(ResourceTable)} adds a row to the {@link ResourceDeferredIndexEntity}
+ * queue in the same database transaction, and a scheduled job later reindexes every queued resource
+ * in its own transaction and removes its rows from the queue. Resources are reindexed concurrently
+ * using up to {@link JpaStorageSettings#getReindexThreadCount()} threads, and a resource which fails
+ * to index stays in the queue and is retried after an exponential back-off of up to one hour.
+ * References are resolved and validated when the resource is stored, so only the writing of the
+ * index rows is deferred. Searches which request strong consistency wait in
+ * {@link #awaitIndexed(RequestDetails, String)} until everything of their type queued before they
+ * started has been indexed, including resources which are waiting to be retried.
+ *
+ * @see JpaStorageSettings#setDeferredIndexingResourceTypes(java.util.Set)
+ * @since 7.6.0
+ */
+public class DeferredIndexingSvc implements IHasScheduledJobs {
+
+	static final long POLL_INTERVAL_MILLIS = DateUtils.MILLIS_PER_SECOND;
+	static final int MAX_RESOURCES_PER_PASS = 1000;
+	static final long MAX_RETRY_DELAY_MILLIS = DateUtils.MILLIS_PER_HOUR;
+	private static final long CONSISTENCY_CHECK_INTERVAL_MILLIS = 50;
+	private static final Logger ourLog = LoggerFactory.getLogger(DeferredIndexingSvc.class);
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	protected EntityManager myEntityManager;
+
+	@Autowired
+	private IResourceDeferredIndexDao myResourceDeferredIndexDao;
+
+	@Autowired
+	private IResourceTableDao myResourceTableDao;
+
+	@Autowired
+	private ResourceReindexer myResourceReindexer;
+
+	@Autowired
+	private IHapiTransactionService myTransactionService;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private FhirContext myFhirContext;
+
+	private final SleepUtil mySleepUtil = new SleepUtil();
+	private ThreadPoolTaskExecutor myIndexingExecutor;
+
+	/**
+	 * Should the search indexes of the given resource be written later instead of now?
+	 */
+	public boolean isDeferIndexing(ResourceTable theEntity, IBaseResource theResource) {
+		if (!myStorageSettings.getDeferredIndexingResourceTypes().contains(theEntity.getResourceType())) {
+			return false;
+		}
+		if (IDao.CURRENTLY_REINDEXING.get(theResource) == Boolean.TRUE) {
+			return false;
+		}
+
+		// Inline match URLs are replaced with the resolved reference while the resource is indexed
+		if (myStorageSettings.isAllowInlineMatchUrlReferences()) {
+			for (ResourceReferenceInfo next : myFhirContext.newTerser().getAllResourceReferences(theResource)) {
+				String reference = next.getResourceReference().getReferenceElement().getValue();
+				if (reference != null && reference.contains("?")) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Queues the current version of the given resource for indexing. Must be called in the
+	 * transaction which stores that version.
+	 */
+	public void enqueue(ResourceTable theEntity) {
+		myEntityManager.persist(ResourceDeferredIndexEntity.from(theEntity, new Date()));
+	}
+
+	/**
+	 * If the request asks for strong index consistency and the given resource type uses deferred
+	 * indexing, waits until every resource of that type queued before now has been indexed.
+	 *
+	 * @throws PreconditionFailedException If this takes longer than {@link JpaStorageSettings#getDeferredIndexingConsistencyTimeoutMillis()}
+	 * @return Returns <code>true</code> if the request asked for strong consistency
+	 */
+	public boolean awaitIndexed(RequestDetails theRequestDetails, String theResourceType) {
+		if (theRequestDetails == null
+				|| !JpaConstants.HEADER_INDEX_CONSISTENCY_STRONG.equalsIgnoreCase(
+						theRequestDetails.getHeader(JpaConstants.HEADER_INDEX_CONSISTENCY))
+				|| !myStorageSettings.getDeferredIndexingResourceTypes().contains(theResourceType)) {
+			return false;
+		}
+
+		Date watermark = new Date();
+		StopWatch sw = new StopWatch();
+		while (true) {
+			long pending = myTransactionService
+					.withRequest(theRequestDetails)
+					.readOnly()
+					.execute(() ->
+							myResourceDeferredIndexDao.countByResourceTypeQueuedBefore(theResourceType, watermark));
+			if (pending == 0) {
+				ourLog.debug("Indexes of {} are consistent after {}", theResourceType, sw);
+				return true;
+			}
+			if (sw.getMillis() >= myStorageSettings.getDeferredIndexingConsistencyTimeoutMillis()) {
+				throw new PreconditionFailedException(Msg.code(2559) + "Timed out waiting for " + pending + " "
+						+ theResourceType + " resources to be indexed");
+			}
+			mySleepUtil.sleepAtLeast(CONSISTENCY_CHECK_INTERVAL_MILLIS, false);
+		}
+	}
+
+	/**
+	 * Indexes every resource which was queued before this method was called, except for
+	 * resources which failed to index recently and are waiting to be retried
+	 *
+	 * @return Returns the number of resources indexed
+	 */
+	public synchronized int indexPendingResources() {
+		if (myStorageSettings.getDeferredIndexingResourceTypes().isEmpty()) {
+			return 0;
+		}
+
+		if (myIndexingExecutor == null) {
+			int threadCount = myStorageSettings.getReindexThreadCount();
+			myIndexingExecutor = ThreadPoolUtil.newThreadPool(threadCount, threadCount, "deferred-indexing-");
+		}
+
+		Date high = new Date();
+		StopWatch sw = new StopWatch();
+		int count = 0;
+		int failed = 0;
+		while (true) {
+			Slice<Long> pids = myTransactionService
+					.withSystemRequest()
+					.readOnly()
+					.execute(() -> myResourceDeferredIndexDao.findResourcePidsQueuedBefore(
+							PageRequest.of(0, MAX_RESOURCES_PER_PASS), high));
+
+			List<Future<Boolean>> futures = new ArrayList<>(pids.getNumberOfElements());
+			for (Long next : pids) {
+				futures.add(myIndexingExecutor.submit(() -> indexResource(next)));
+			}
+			for (Future<Boolean> next : futures) {
+				try {
+					if (next.get()) {
+						count++;
+					} else {
+						failed++;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					ourLog.warn("Interrupted while indexing deferred resources");
+					return count;
+				} catch (ExecutionException e) {
+					ourLog.error("Failure indexing deferred resource", e);
+					failed++;
+				}
+			}
+
+			if (!pids.hasNext()) {
+				break;
+			}
+		}
+
+		if (count > 0 || failed > 0) {
+			ourLog.info("Indexed {} deferred resources in {}, {} will be retried", count, sw, failed);
+		}
+		return count;
+	}
+
+	/**
+	 * @return Returns <code>false</code> if indexing failed and the resource will be retried later
+	 */
+	private boolean indexResource(Long theResourcePid) {
+		try {
+			myTransactionService.withSystemRequest().execute(() -> {
+				Optional<ResourceTable> entity = myResourceTableDao.findById(theResourcePid);
+				if (entity.isEmpty() || entity.get().getDeleted() != null) {
+					// Deleting or expunging the resource already took care of its indexes
+					myResourceDeferredIndexDao.deleteByResourcePid(theResourcePid);
+					return;
+				}
+
+				long version = entity.get().getVersion();
+				myResourceReindexer.reindexResourceEntity(entity.get());
+				// Any version stored since it was read here stays queued
+				myResourceDeferredIndexDao.deleteByResourcePidUpToVersion(theResourcePid, version);
+			});
+			return true;
+		} catch (Exception e) {
+			myTransactionService.withSystemRequest().execute(() -> {
+				Integer previousAttempts = myResourceDeferredIndexDao.findMaxFailedAttempts(theResourcePid);
+				int attempts = previousAttempts != null ? previousAttempts + 1 : 1;
+				long delay = Math.min(MAX_RETRY_DELAY_MILLIS, POLL_INTERVAL_MILLIS << Math.min(attempts, 20));
+				Date nextAttempt = new Date(System.currentTimeMillis() + delay);
+				ourLog.warn(
+						"Failed to index resource with PID {} (attempt {}), retrying after {}: {}",
+						theResourcePid,
+						attempts,
+						nextAttempt,
+						e.toString());
+				myResourceDeferredIndexDao.updateFailedAttempts(theResourcePid, attempts, nextAttempt);
+			});
+			return false;
+		}
+	}
+
+	@VisibleForTesting
+	public void setResourceReindexerForUnitTest(ResourceReindexer theResourceReindexer) {
+		myResourceReindexer = theResourceReindexer;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myIndexingExecutor != null) {
+			myIndexingExecutor.shutdown();
+			myIndexingExecutor = null;
+		}
+	}
+
+	@Override
+	public void scheduleJobs(ISchedulerService theSchedulerService) {
+		ScheduledJobDefinition jobDetail = new ScheduledJobDefinition();
+		jobDetail.setId(getClass().getName());
+		jobDetail.setJobClass(Job.class);
+		theSchedulerService.scheduleClusteredJob(POLL_INTERVAL_MILLIS, jobDetail);
+	}
+
+	public static class Job implements HapiJob {
+		@Autowired
+		private DeferredIndexingSvc myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			myTarget.indexPendingResources();
+		}
+	}
+}
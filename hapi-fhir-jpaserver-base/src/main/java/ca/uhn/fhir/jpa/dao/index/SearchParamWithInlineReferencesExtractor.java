@@ -79,4 +79,25 @@ public class SearchParamWithInlineReferencesExtractor extends BaseSearchParamWit
 				thePerformIndexing,
 				ISearchParamExtractor.ALL_PARAMS);
 	}
+
+	/**
+	 * Resolves and validates the references of a resource whose other search indexes are written later
+	 *
+	 * @see SearchParamExtractorService#validateResourceLinks(RequestPartitionId, RequestDetails, ResourceTable, IBaseResource, TransactionDetails, boolean)
+	 */
+	public void validateResourceLinks(
+			RequestPartitionId theRequestPartitionId,
+			TransactionDetails theTransactionDetails,
+			ResourceTable theEntity,
+			IBaseResource theResource,
+			RequestDetails theRequest,
+			boolean theFailOnInvalidReference) {
+		mySearchParamExtractorService.validateResourceLinks(
+				theRequestPartitionId,
+				theRequest,
+				theEntity,
+				theResource,
+				theTransactionDetails,
+				theFailOnInvalidReference);
+	}
 }
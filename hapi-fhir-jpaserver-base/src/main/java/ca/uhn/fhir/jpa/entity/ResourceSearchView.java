@@ -61,6 +61,7 @@ import java.util.Date;
 		+ "               h.RES_UPDATED       as RES_UPDATED,    "
 		+ "               h.RES_TEXT          as RES_TEXT,       "
 		+ "               h.RES_TEXT_VC       as RES_TEXT_VC,    "
+		+ "               h.RES_TEXT_BIN      as RES_TEXT_BIN,   "
 		+ "               h.RES_ENCODING      as RES_ENCODING,   "
 		+ "               h.PARTITION_ID      as PARTITION_ID,   "
 		+ "               p.SOURCE_URI        as PROV_SOURCE_URI,"
@@ -118,6 +119,9 @@ public class ResourceSearchView implements IBaseResourceEntity, Serializable {
 	@Column(name = "RES_TEXT_VC")
 	private String myResourceTextVc;
 
+	@Column(name = "RES_TEXT_BIN")
+	private byte[] myResourceBinary;
+
 	@Column(name = "RES_ENCODING")
 	@Enumerated(EnumType.STRING)
 	private ResourceEncodingEnum myEncoding;
@@ -238,6 +242,16 @@ public class ResourceSearchView implements IBaseResourceEntity, Serializable {
 		return myResource;
 	}
 
+	/**
+	 * @see ResourceHistoryTable#getResourceBytes()
+	 */
+	public byte[] getResourceBytes() {
+		if (myEncoding != null && myEncoding.isStoredInBinaryColumn()) {
+			return myResourceBinary;
+		}
+		return myResource;
+	}
+
 	public ResourceEncodingEnum getEncoding() {
 		return myEncoding;
 	}
@@ -125,6 +125,60 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		init700();
 		init720();
 		init740();
+		init760();
+	}
+
+	protected void init760() {
+		// Start of migrations from 7.4 to 7.6
+
+		final Builder version = forVersion(VersionEnum.V7_6_0);
+
+		{
+			version.onTable("HFJ_RESOURCE")
+					.addColumn("20240901.1", "INDEX_FINGERPRINT")
+					.nullable()
+					.type(ColumnTypeEnum.STRING, ResourceTable.INDEX_FINGERPRINT_LENGTH);
+		}
+
+		{
+			Builder.BuilderAddTableByColumns deferredIndexTable =
+					version.addTableByColumns("20240910.1", "HFJ_RES_DEFERRED_IDX", "RES_ID", "RES_VER");
+			deferredIndexTable.addColumn("RES_ID").nonNullable().type(ColumnTypeEnum.LONG);
+			deferredIndexTable.addColumn("RES_VER").nonNullable().type(ColumnTypeEnum.LONG);
+			deferredIndexTable
+					.addColumn("RES_TYPE")
+					.nonNullable()
+					.type(ColumnTypeEnum.STRING, ResourceTable.RESTYPE_LEN);
+			deferredIndexTable.addColumn("QUEUED_TIME").nonNullable().type(ColumnTypeEnum.DATE_TIMESTAMP);
+
+			version.onTable("HFJ_RES_DEFERRED_IDX")
+					.addIndex("20240910.2", "IDX_RESDEFIDX_TYPE_TIME")
+					.unique(false)
+					.withColumns("RES_TYPE", "QUEUED_TIME");
+			version.onTable("HFJ_RES_DEFERRED_IDX")
+					.addIndex("20240910.3", "IDX_RESDEFIDX_TIME")
+					.unique(false)
+					.withColumns("QUEUED_TIME");
+
+			// Failed deferred indexing attempts are retried with a back-off
+			version.onTable("HFJ_RES_DEFERRED_IDX")
+					.addColumn("20240920.1", "FAILED_ATTEMPTS")
+					.nullable()
+					.type(ColumnTypeEnum.INT);
+			version.onTable("HFJ_RES_DEFERRED_IDX")
+					.addColumn("20240920.2", "NEXT_ATTEMPT_TIME")
+					.nullable()
+					.type(ColumnTypeEnum.DATE_TIMESTAMP);
+		}
+
+		{
+			// Resource bodies compressed with ZSTD or LZ4 are stored in a plain binary column
+			// instead of the legacy RES_TEXT LOB column
+			version.onTable("HFJ_RES_VER")
+					.addColumn("20240915.1", "RES_TEXT_BIN")
+					.nullable()
+					.type(ColumnTypeEnum.BINARY);
+		}
 	}
 
 	protected void init740() {
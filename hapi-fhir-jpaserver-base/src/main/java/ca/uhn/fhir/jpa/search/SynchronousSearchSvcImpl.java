@@ -178,6 +178,13 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						receivedResourceCount = pids.size();
 						int resourcesToReturn = Math.min(theParams.getCount(), pids.size());
 						pids = pids.subList(0, resourcesToReturn);
+
+						// there is a next page, remember where this one ended
+						if (theParams.isOffsetQuery()
+								&& resourcesToReturn > 0
+								&& receivedResourceCount > resourcesToReturn) {
+							theSb.setOffsetPageEnd(theParams, pids.get(resourcesToReturn - 1));
+						}
 					}
 
 					JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(pids, () -> theSb);
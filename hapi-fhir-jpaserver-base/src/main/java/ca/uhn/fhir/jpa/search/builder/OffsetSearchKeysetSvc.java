@@ -0,0 +1,185 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import jakarta.annotation.Nullable;
+
+import java.util.Date;
+
+/**
+ * Supports keyset (seek) paging of offset searches, see
+ * {@link JpaStorageSettings#setOffsetSearchKeysetPagingEnabled(boolean)}.
+ * <p>
+ * Offset searches are stateless and their paging links only carry <code>_offset</code> and
+ * <code>_count</code>, so the position where each page ended (the sort key and PID of its last row)
+ * is remembered in {@link MemoryCacheService.CacheEnum#OFFSET_SEARCH_KEYSET}, keyed by the normalized
+ * search and the offset of the following page. When that page is requested, {@link SearchBuilder}
+ * selects the rows after the remembered position with a <code>(sortcol, res_id) &gt; (?, ?)</code>
+ * style predicate instead of asking the database to skip over the preceding rows.
+ * <p>
+ * Only unsorted searches and searches sorted by <code>_lastUpdated</code> or <code>_pid</code> are
+ * supported, since those sort keys are single-valued per resource and can therefore be compared in
+ * the WHERE clause of the grouped offset query.
+ *
+ * @since 7.6.0
+ */
+public class OffsetSearchKeysetSvc {
+
+	private final JpaStorageSettings myStorageSettings;
+	private final FhirContext myContext;
+	private final MemoryCacheService myMemoryCacheService;
+	private final IResourceTableDao myResourceTableDao;
+
+	/**
+	 * Constructor
+	 */
+	public OffsetSearchKeysetSvc(
+			JpaStorageSettings theStorageSettings,
+			FhirContext theContext,
+			MemoryCacheService theMemoryCacheService,
+			IResourceTableDao theResourceTableDao) {
+		myStorageSettings = theStorageSettings;
+		myContext = theContext;
+		myMemoryCacheService = theMemoryCacheService;
+		myResourceTableDao = theResourceTableDao;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given search should be ordered and paged by keyset
+	 */
+	public boolean isKeysetPagingCandidate(SearchParameterMap theParams) {
+		return myStorageSettings.isOffsetSearchKeysetPagingEnabled()
+				&& theParams.isOffsetQuery()
+				&& theParams.getEverythingMode() == null
+				&& !theParams.isLastN()
+				&& isSupportedSort(theParams.getSort());
+	}
+
+	/**
+	 * Returns the position where the page preceding the requested one ended, or <code>null</code>
+	 * if the search isn't a keyset paging candidate, if this is the first page, or if the
+	 * position isn't known (e.g. because the page was requested out of sequence).
+	 */
+	@Nullable
+	public Keyset getPageStart(
+			String theResourceName, SearchParameterMap theParams, RequestPartitionId theRequestPartitionId) {
+		if (!isKeysetPagingCandidate(theParams) || theParams.getOffset() == 0) {
+			return null;
+		}
+		String key = toCacheKey(theResourceName, theParams, theRequestPartitionId, theParams.getOffset());
+		return myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.OFFSET_SEARCH_KEYSET, key);
+	}
+
+	/**
+	 * Remembers the last row of the current page as the start position of the following page.
+	 * Must be called with the last PID returned by the database for the page, before any
+	 * filtering of the results.
+	 */
+	public void setNextPageStart(
+			String theResourceName,
+			SearchParameterMap theParams,
+			RequestPartitionId theRequestPartitionId,
+			JpaPid theLastPid) {
+		if (!isKeysetPagingCandidate(theParams)) {
+			return;
+		}
+
+		Date lastUpdated = null;
+		if (isSortOnLastUpdated(theParams.getSort())) {
+			lastUpdated = myResourceTableDao.findUpdatedById(theLastPid.getId());
+			if (lastUpdated == null) {
+				return;
+			}
+		}
+
+		int nextOffset = theParams.getOffset() + theParams.getCount();
+		String key = toCacheKey(theResourceName, theParams, theRequestPartitionId, nextOffset);
+		myMemoryCacheService.put(
+				MemoryCacheService.CacheEnum.OFFSET_SEARCH_KEYSET, key, new Keyset(theLastPid.getId(), lastUpdated));
+	}
+
+	private String toCacheKey(
+			String theResourceName,
+			SearchParameterMap theParams,
+			RequestPartitionId theRequestPartitionId,
+			int theOffset) {
+		// The page size doesn't affect where a page starts, and callers may fetch one extra row
+		SearchParameterMap params = theParams.clone();
+		params.setOffset(null);
+		params.setCount(null);
+		return theResourceName
+				+ params.toNormalizedQueryString(myContext)
+				+ " " + theRequestPartitionId.toJson()
+				+ " " + theOffset;
+	}
+
+	static boolean isSupportedSort(@Nullable SortSpec theSort) {
+		if (theSort == null) {
+			return true;
+		}
+		return theSort.getChain() == null
+				&& (Constants.PARAM_LASTUPDATED.equals(theSort.getParamName())
+						|| Constants.PARAM_PID.equals(theSort.getParamName()));
+	}
+
+	static boolean isSortOnLastUpdated(@Nullable SortSpec theSort) {
+		return theSort != null && Constants.PARAM_LASTUPDATED.equals(theSort.getParamName());
+	}
+
+	static boolean isSortAscending(@Nullable SortSpec theSort) {
+		return theSort == null || theSort.getOrder() == null || theSort.getOrder() == SortOrderEnum.ASC;
+	}
+
+	/**
+	 * The sort key and PID of the last row of a page
+	 */
+	public static class Keyset {
+
+		private final long myResourcePid;
+		private final Date myLastUpdated;
+
+		public Keyset(long theResourcePid, @Nullable Date theLastUpdated) {
+			myResourcePid = theResourcePid;
+			myLastUpdated = theLastUpdated;
+		}
+
+		public long getResourcePid() {
+			return myResourcePid;
+		}
+
+		/**
+		 * Only populated if the search is sorted by <code>_lastUpdated</code>
+		 */
+		@Nullable
+		public Date getLastUpdated() {
+			return myLastUpdated;
+		}
+	}
+}
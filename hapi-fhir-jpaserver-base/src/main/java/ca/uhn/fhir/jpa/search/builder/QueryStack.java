@@ -74,6 +74,7 @@ import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.HasParam;
 import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
 import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.SpecialParam;
@@ -293,6 +294,54 @@ public class QueryStack {
 		mySqlBuilder.addSortString(predicateBuilder.getResourceIdColumn(), theAscending);
 	}
 
+	/**
+	 * Orders the results for keyset paging of an offset search, by <code>_lastUpdated</code> if
+	 * requested and then by resource PID, and if the position where the previous page ended is
+	 * known, only selects the rows after it. The predicate is the portable expansion of
+	 * <code>(RES_UPDATED, RES_ID) &gt; (?, ?)</code> (or <code>&lt;</code> when descending), since
+	 * row value comparisons aren't supported by every database.
+	 *
+	 * @see OffsetSearchKeysetSvc
+	 */
+	public void addKeysetPaging(
+			boolean theSortOnLastUpdated, boolean theAscending, @Nullable OffsetSearchKeysetSvc.Keyset theAfter) {
+		BaseJoiningPredicateBuilder firstPredicateBuilder = mySqlBuilder.getOrCreateFirstPredicateBuilder();
+		DbColumn resourceIdColumn = firstPredicateBuilder.getResourceIdColumn();
+		ParamPrefixEnum after = theAscending ? ParamPrefixEnum.GREATERTHAN : ParamPrefixEnum.LESSTHAN;
+
+		Condition seekPredicate = null;
+		if (theSortOnLastUpdated) {
+			ResourceTablePredicateBuilder resourceTablePredicateBuilder;
+			if (firstPredicateBuilder instanceof ResourceTablePredicateBuilder) {
+				resourceTablePredicateBuilder = (ResourceTablePredicateBuilder) firstPredicateBuilder;
+			} else {
+				resourceTablePredicateBuilder = mySqlBuilder.addResourceTablePredicateBuilder(resourceIdColumn);
+			}
+			DbColumn lastUpdatedColumn = resourceTablePredicateBuilder.getColumnLastUpdated();
+			mySqlBuilder.addSortDate(lastUpdatedColumn, theAscending, myUseAggregate);
+
+			if (theAfter != null) {
+				seekPredicate = ComboCondition.or(
+						mySqlBuilder.createConditionForValueWithComparator(
+								after, lastUpdatedColumn, theAfter.getLastUpdated()),
+						ComboCondition.and(
+								BinaryCondition.equalTo(
+										lastUpdatedColumn, mySqlBuilder.generatePlaceholder(theAfter.getLastUpdated())),
+								mySqlBuilder.createConditionForValueWithComparator(
+										after, resourceIdColumn, theAfter.getResourcePid())));
+			}
+		} else if (theAfter != null) {
+			seekPredicate =
+					mySqlBuilder.createConditionForValueWithComparator(after, resourceIdColumn, theAfter.getResourcePid());
+		}
+
+		mySqlBuilder.addSortString(resourceIdColumn, theAscending);
+
+		if (seekPredicate != null) {
+			mySqlBuilder.addPredicate(seekPredicate);
+		}
+	}
+
 	public void addSortOnResourceLink(
 			String theResourceName,
 			String theReferenceTargetType,
@@ -46,6 +46,7 @@ import ca.uhn.fhir.jpa.dao.ISearchBuilder;
 import ca.uhn.fhir.jpa.dao.data.IResourceSearchViewDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.search.ResourceNotFoundInIndexException;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.entity.ResourceSearchView;
 import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
@@ -91,6 +92,7 @@ import ca.uhn.fhir.rest.param.ParameterUtil;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
@@ -120,6 +122,8 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
@@ -135,6 +139,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.model.util.JpaConstants.UNDESIRED_RESOURCE_LINKAGES_FOR_EVERYTHING_ON_PATIENT_INSTANCE;
@@ -165,6 +176,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	public static final String RESOURCE_ID_ALIAS = "resource_id";
 	public static final String RESOURCE_VERSION_ALIAS = "resource_version";
 	private static final Logger ourLog = LoggerFactory.getLogger(SearchBuilder.class);
+	/**
+	 * Number of PIDs each per-partition query can read ahead of the search thread
+	 */
+	private static final int PARALLEL_PARTITION_SEARCH_BUFFER_SIZE = 1000;
 	private static final JpaPid NO_MORE = JpaPid.fromId(-1L);
 	private static final String MY_TARGET_RESOURCE_PID = "myTargetResourcePid";
 	private static final String MY_SOURCE_RESOURCE_PID = "mySourceResourcePid";
@@ -209,6 +224,21 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
 
+	@Autowired
+	private IHapiTransactionService myTxService;
+
+	@Autowired
+	private SearchPredicateOrderPlanner mySearchPredicateOrderPlanner;
+
+	@Autowired
+	private OffsetSearchKeysetSvc myOffsetSearchKeysetSvc;
+
+	private boolean myKeysetPaging;
+	private OffsetSearchKeysetSvc.Keyset myKeysetPageStart;
+
+	private AsyncTaskExecutor myParallelPartitionSearchExecutor;
+	private AsyncTaskExecutor myParallelIncludeLoadingExecutor;
+
 	/**
 	 * Constructor
 	 */
@@ -247,6 +277,24 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		myIdHelperService = theIdHelperService;
 	}
 
+	/**
+	 * Sets the executor used to run per-partition queries concurrently
+	 *
+	 * @see JpaStorageSettings#setParallelPartitionSearchThreadCount(int)
+	 */
+	public void setParallelPartitionSearchExecutor(AsyncTaskExecutor theParallelPartitionSearchExecutor) {
+		myParallelPartitionSearchExecutor = theParallelPartitionSearchExecutor;
+	}
+
+	/**
+	 * Sets the executor used to run the include queries of a single round concurrently
+	 *
+	 * @see JpaStorageSettings#setParallelIncludeLoadingThreadCount(int)
+	 */
+	public void setParallelIncludeLoadingExecutor(AsyncTaskExecutor theParallelIncludeLoadingExecutor) {
+		myParallelIncludeLoadingExecutor = theParallelIncludeLoadingExecutor;
+	}
+
 	@VisibleForTesting
 	void setResourceName(String theName) {
 		myResourceName = theName;
@@ -261,7 +309,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			SearchQueryBuilder theSearchSqlBuilder,
 			QueryStack theQueryStack,
 			@Nonnull SearchParameterMap theParams,
-			RequestDetails theRequest) {
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId) {
 		myParams = theParams;
 
 		// Remove any empty parameters
@@ -274,7 +323,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		// Attempt to lookup via composite unique key.
 		if (isCompositeUniqueSpCandidate()) {
-			attemptComboUniqueSpProcessing(theQueryStack, theParams, theRequest);
+			attemptComboUniqueSpProcessing(theQueryStack, theParams, theRequest, theRequestPartitionId);
 		}
 
 		// Handle _id and _tag last, since they can typically be tacked onto a different parameter
@@ -282,6 +331,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				.filter(t -> !t.equals(IAnyResource.SP_RES_ID))
 				.filter(t -> !t.equals(Constants.PARAM_TAG))
 				.collect(Collectors.toList());
+		if (myStorageSettings.isCostBasedPredicateOrderingEnabled()) {
+			paramNames = mySearchPredicateOrderPlanner.orderBySelectivity(
+					myResourceName, myParams, paramNames, theRequestPartitionId);
+		}
 		if (myParams.containsKey(IAnyResource.SP_RES_ID)) {
 			paramNames.add(IAnyResource.SP_RES_ID);
 		}
@@ -301,7 +354,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 					.setParamName(nextParamName)
 					.setAndOrParams(andOrParams)
 					.setRequest(theRequest)
-					.setRequestPartitionId(myRequestPartitionId));
+					.setRequestPartitionId(theRequestPartitionId));
 			if (predicate != null) {
 				theSearchSqlBuilder.addPredicate(predicate);
 			}
@@ -365,6 +418,13 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			myPidSet = new HashSet<>();
 		}
 
+		if (myStorageSettings.isOffsetSearchKeysetPagingEnabled()
+				&& myOffsetSearchKeysetSvc.isKeysetPagingCandidate(theParams)) {
+			myKeysetPaging = true;
+			myKeysetPageStart =
+					myOffsetSearchKeysetSvc.getPageStart(myResourceName, theParams, theRequestPartitionId);
+		}
+
 		return new QueryIterator(theSearchRuntimeDetails, theRequest);
 	}
 
@@ -467,6 +527,9 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 								t -> doCreateChunkedQueries(
 										theParams, t, theOffset, sort, theCountOnlyFlag, theRequest, queries));
 			}
+		} else if (isParallelPartitionSearchCandidate(sort, theOffset, theCountOnlyFlag)) {
+			// do everything in the database, with one query per group of partitions
+			createParallelPartitionQueries(theParams, sort, theRequest, queries);
 		} else {
 			// do everything in the database.
 			createChunkedQuery(
@@ -623,7 +686,14 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 					theParams, theOffset, theMaximumResults, theCountOnlyFlag, thePidList, theSearchQueryExecutors);
 		} else {
 			createChunkedQueryNormalSearch(
-					theParams, sort, theOffset, theCountOnlyFlag, theRequest, thePidList, theSearchQueryExecutors);
+					theParams,
+					sort,
+					theOffset,
+					theCountOnlyFlag,
+					theRequest,
+					thePidList,
+					theSearchQueryExecutors,
+					myRequestPartitionId);
 		}
 	}
 
@@ -634,12 +704,13 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			boolean theCountOnlyFlag,
 			RequestDetails theRequest,
 			List<Long> thePidList,
-			List<ISearchQueryExecutor> theSearchQueryExecutors) {
+			List<ISearchQueryExecutor> theSearchQueryExecutors,
+			RequestPartitionId theRequestPartitionId) {
 		SearchQueryBuilder sqlBuilder = new SearchQueryBuilder(
 				myContext,
 				myStorageSettings,
 				myPartitionSettings,
-				myRequestPartitionId,
+				theRequestPartitionId,
 				myResourceName,
 				mySqlBuilderFactory,
 				myDialectProvider,
@@ -666,21 +737,21 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		if (theParams.containsKey(Constants.PARAM_FILTER)) {
 			Condition partitionIdPredicate = sqlBuilder
 					.getOrCreateResourceTablePredicateBuilder()
-					.createPartitionIdPredicate(myRequestPartitionId);
+					.createPartitionIdPredicate(theRequestPartitionId);
 			if (partitionIdPredicate != null) {
 				sqlBuilder.addPredicate(partitionIdPredicate);
 			}
 		}
 
 		// Normal search
-		searchForIdsWithAndOr(sqlBuilder, queryStack3, myParams, theRequest);
+		searchForIdsWithAndOr(sqlBuilder, queryStack3, myParams, theRequest, theRequestPartitionId);
 
 		// If we haven't added any predicates yet, we're doing a search for all resources. Make sure we add the
 		// partition ID predicate in that case.
 		if (!sqlBuilder.haveAtLeastOnePredicate()) {
 			Condition partitionIdPredicate = sqlBuilder
 					.getOrCreateResourceTablePredicateBuilder()
-					.createPartitionIdPredicate(myRequestPartitionId);
+					.createPartitionIdPredicate(theRequestPartitionId);
 			if (partitionIdPredicate != null) {
 				sqlBuilder.addPredicate(partitionIdPredicate);
 			}
@@ -726,9 +797,22 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		 * Sort
 		 *
 		 * If we have a sort, we wrap the criteria search (the search that actually
-		 * finds the appropriate resources) in an outer search which is then sorted
+		 * finds the appropriate resources) in an outer search which is then sorted.
+		 *
+		 * Offset searches using keyset paging are always sorted (with the PID as a
+		 * tie-breaker), and seek past the end of the previous page if we know where
+		 * it was instead of using the offset.
 		 */
-		if (sort != null) {
+		Integer offset = theOffset;
+		if (myKeysetPaging && theOffset != null && thePidList == null && !theCountOnlyFlag) {
+			queryStack3.addKeysetPaging(
+					OffsetSearchKeysetSvc.isSortOnLastUpdated(sort),
+					OffsetSearchKeysetSvc.isSortAscending(sort),
+					myKeysetPageStart);
+			if (myKeysetPageStart != null) {
+				offset = null;
+			}
+		} else if (sort != null) {
 			assert !theCountOnlyFlag;
 
 			createSort(queryStack3, sort, theParams);
@@ -737,7 +821,121 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		/*
 		 * Now perform the search
 		 */
-		executeSearch(theOffset, theSearchQueryExecutors, sqlBuilder);
+		executeSearch(offset, theSearchQueryExecutors, sqlBuilder);
+	}
+
+	/**
+	 * Can this search be split into one query per group of partitions, executed concurrently?
+	 * The per-partition results can only be merged by PID, so searches with any other sort
+	 * (or with an offset, or which need a count) always use a single query.
+	 */
+	private boolean isParallelPartitionSearchCandidate(SortSpec theSort, Integer theOffset, boolean theCountOnlyFlag) {
+		if (myParallelPartitionSearchExecutor == null
+				|| myStorageSettings.getParallelPartitionSearchThreadCount() <= 0
+				|| !myPartitionSettings.isPartitioningEnabled()
+				|| !myRequestPartitionId.hasPartitionIds()
+				|| theCountOnlyFlag
+				|| theOffset != null
+				|| myParams.getEverythingMode() != null) {
+			return false;
+		}
+		if (theSort != null && (!Constants.PARAM_PID.equals(theSort.getParamName()) || theSort.getChain() != null)) {
+			return false;
+		}
+		return myRequestPartitionId.getPartitionIds().size() > myStorageSettings.getParallelPartitionSearchGroupSize();
+	}
+
+	/**
+	 * Creates one query per group of partitions in the request partition, and executes them
+	 * concurrently, each in its own read-only transaction. This lets the database use the
+	 * per-partition index ranges instead of a large <code>PARTITION_ID IN (...)</code> predicate.
+	 * Results sorted by <code>_pid</code> are merged back into sort order, and unsorted results
+	 * are returned one group after another. Each query is streamed through a bounded buffer, and
+	 * any query which no worker has started by the time its results are needed is run on the
+	 * search thread instead, so the search thread never waits for a connection held back by the
+	 * pool.
+	 */
+	private void createParallelPartitionQueries(
+			SearchParameterMap theParams,
+			SortSpec theSort,
+			RequestDetails theRequest,
+			List<ISearchQueryExecutor> theSearchQueryExecutors) {
+		List<List<Integer>> partitionGroups = Lists.partition(
+				myRequestPartitionId.getPartitionIds(), myStorageSettings.getParallelPartitionSearchGroupSize());
+
+		List<ISearchQueryExecutor> groupExecutors = new ArrayList<>();
+		try {
+			for (List<Integer> nextGroup : partitionGroups) {
+				RequestPartitionId groupPartitionId = RequestPartitionId.fromPartitionIds(nextGroup);
+
+				// Building the SQL mutates the params, so each group needs its own copy
+				SearchParameterMap groupParams = theParams.clone();
+				myParams = groupParams;
+				List<ISearchQueryExecutor> groupQueries = new ArrayList<>();
+				createChunkedQueryNormalSearch(
+						groupParams, theSort, null, false, theRequest, null, groupQueries, groupPartitionId);
+
+				for (ISearchQueryExecutor nextQuery : groupQueries) {
+					SearchQueryExecutors.PrefetchingSearchQueryExecutor executor =
+							SearchQueryExecutors.prefetching(nextQuery, PARALLEL_PARTITION_SEARCH_BUFFER_SIZE);
+					groupExecutors.add(executor);
+					submitPrefetch(executor, theRequest, groupPartitionId);
+				}
+			}
+		} finally {
+			myParams = theParams;
+		}
+
+		ourLog.debug(
+				"Searching {} partitions using {} parallel queries",
+				myRequestPartitionId.getPartitionIds().size(),
+				groupExecutors.size());
+
+		ISearchQueryExecutor executor;
+		if (theSort != null) {
+			boolean ascending = theSort.getOrder() == null || theSort.getOrder() == SortOrderEnum.ASC;
+			Comparator<Long> comparator = ascending ? Comparator.naturalOrder() : Comparator.reverseOrder();
+			executor = SearchQueryExecutors.mergeSorted(groupExecutors, comparator);
+		} else {
+			executor = SearchQueryExecutors.concat(groupExecutors);
+		}
+		if (myMaxResultsToFetch != null) {
+			executor = SearchQueryExecutors.limited(executor, myMaxResultsToFetch);
+		}
+		theSearchQueryExecutors.add(executor);
+	}
+
+	/**
+	 * Starts reading the query on the parallel partition search executor. If no worker has
+	 * started it by the time the search thread needs the results (e.g. because the executor is
+	 * saturated), or the worker can't open a transaction, the search thread reads it itself.
+	 */
+	private void submitPrefetch(
+			SearchQueryExecutors.PrefetchingSearchQueryExecutor theExecutor,
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId) {
+		try {
+			myParallelPartitionSearchExecutor.execute(() -> {
+				if (!theExecutor.start()) {
+					return;
+				}
+				try {
+					myTxService
+							.withRequest(theRequest)
+							.withRequestPartitionId(theRequestPartitionId)
+							.readOnly()
+							.execute(theExecutor::prefetch);
+				} catch (Exception e) {
+					// Failures while reading the query are reported to the search thread by the executor,
+					// this is a failure to open the transaction
+					ourLog.debug("Failed to start prefetching partition search results: {}", e.toString());
+				} finally {
+					theExecutor.abandon();
+				}
+			});
+		} catch (TaskRejectedException e) {
+			ourLog.debug("Partition search executor is saturated, query will run on the search thread");
+		}
 	}
 
 	private void executeSearch(
@@ -1390,7 +1588,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		do {
 			roundCounts++;
 
-			HashSet<JpaPid> pidsToInclude = new HashSet<>();
+			List<Function<EntityManager, Collection<JpaPid>>> includeQueries = new ArrayList<>();
+			Set<String> includeQueryKeys = new HashSet<>();
+			// Include queries may run on other threads, so their warnings are fired once they are done
+			Set<String> includeQueryWarnings = ConcurrentHashMap.newKeySet();
 
 			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
 				Include nextInclude = iter.next();
@@ -1420,11 +1621,11 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 							reverseMode,
 							hasDesiredResourceTypes,
 							nextRoundMatches,
-							entityManager,
 							maxCount,
 							desiredResourceTypes,
-							pidsToInclude,
-							request);
+							includeQueryKeys,
+							includeQueries,
+							includeQueryWarnings);
 				} else {
 					loadIncludesMatchSpecific(
 							nextInclude,
@@ -1434,12 +1635,17 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 							searchPidFieldName,
 							reverseMode,
 							nextRoundMatches,
-							entityManager,
 							maxCount,
-							pidsToInclude);
+							includeQueryKeys,
+							includeQueries);
 				}
 			}
 
+			HashSet<JpaPid> pidsToInclude = executeIncludeQueries(includeQueries, entityManager, request);
+			for (String next : includeQueryWarnings) {
+				firePerformanceWarning(request, next);
+			}
+
 			nextRoundMatches.clear();
 			for (JpaPid next : pidsToInclude) {
 				if (!original.contains(next) && !allAdded.contains(next)) {
@@ -1508,9 +1714,9 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			String searchPidFieldName,
 			boolean reverseMode,
 			List<JpaPid> nextRoundMatches,
-			EntityManager entityManager,
 			Integer maxCount,
-			HashSet<JpaPid> pidsToInclude) {
+			Set<String> theIncludeQueryKeys,
+			List<Function<EntityManager, Collection<JpaPid>>> theIncludeQueries) {
 		List<String> paths;
 
 		// Start replace
@@ -1584,29 +1790,40 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 			String sql = localReferenceQuery + " UNION " + canonicalQuery.getLeft();
 
+			// Different includes can resolve to the same query (e.g. the same path reached through
+			// two parameters), so only issue each distinct query once per round
+			String queryKey = sql + new TreeMap<>(localReferenceQueryParams) + new TreeMap<>(canonicalQuery.getRight());
+			if (!theIncludeQueryKeys.add(queryKey)) {
+				continue;
+			}
+
 			List<Collection<JpaPid>> partitions = partition(nextRoundMatches, getMaximumPageSize());
 			for (Collection<JpaPid> nextPartition : partitions) {
-				Query q = entityManager.createNativeQuery(sql, Tuple.class);
-				q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
-				localReferenceQueryParams.forEach(q::setParameter);
-				canonicalQuery.getRight().forEach(q::setParameter);
-
-				if (maxCount != null) {
-					q.setMaxResults(maxCount);
-				}
-				@SuppressWarnings("unchecked")
-				List<Tuple> results = q.getResultList();
-				for (Tuple result : results) {
-					if (result != null) {
-						Long resourceId = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_ID_ALIAS)));
-						Long resourceVersion = null;
-						if (findVersionFieldName != null && result.get(RESOURCE_VERSION_ALIAS) != null) {
-							resourceVersion =
-									NumberUtils.createLong(String.valueOf(result.get(RESOURCE_VERSION_ALIAS)));
+				theIncludeQueries.add(entityManager -> {
+					Query q = entityManager.createNativeQuery(sql, Tuple.class);
+					q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
+					localReferenceQueryParams.forEach(q::setParameter);
+					canonicalQuery.getRight().forEach(q::setParameter);
+
+					if (maxCount != null) {
+						q.setMaxResults(maxCount);
+					}
+					@SuppressWarnings("unchecked")
+					List<Tuple> results = q.getResultList();
+					List<JpaPid> pidsToInclude = new ArrayList<>(results.size());
+					for (Tuple result : results) {
+						if (result != null) {
+							Long resourceId = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_ID_ALIAS)));
+							Long resourceVersion = null;
+							if (findVersionFieldName != null && result.get(RESOURCE_VERSION_ALIAS) != null) {
+								resourceVersion =
+										NumberUtils.createLong(String.valueOf(result.get(RESOURCE_VERSION_ALIAS)));
+							}
+							pidsToInclude.add(JpaPid.fromIdAndVersion(resourceId, resourceVersion));
 						}
-						pidsToInclude.add(JpaPid.fromIdAndVersion(resourceId, resourceVersion));
 					}
-				}
+					return pidsToInclude;
+				});
 			}
 		}
 	}
@@ -1620,11 +1837,11 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			boolean reverseMode,
 			boolean hasDesiredResourceTypes,
 			List<JpaPid> nextRoundMatches,
-			EntityManager entityManager,
 			Integer maxCount,
 			List<String> desiredResourceTypes,
-			HashSet<JpaPid> pidsToInclude,
-			RequestDetails request) {
+			Set<String> theIncludeQueryKeys,
+			List<Function<EntityManager, Collection<JpaPid>>> theIncludeQueries,
+			Set<String> theIncludeQueryWarnings) {
 		StringBuilder sqlBuilder = new StringBuilder();
 		sqlBuilder.append("SELECT r.").append(findPidFieldName);
 		sqlBuilder.append(", r.").append(findResourceTypeFieldName);
@@ -1675,54 +1892,138 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 
 		String sql = sqlBuilder.toString();
+		String wantResourceTypeParam = wantResourceType;
+		if (!theIncludeQueryKeys.add(sql + wantResourceTypeParam)) {
+			return;
+		}
+
 		List<Collection<JpaPid>> partitions = partition(nextRoundMatches, getMaximumPageSize());
 		for (Collection<JpaPid> nextPartition : partitions) {
-			TypedQuery<?> q = entityManager.createQuery(sql, Object[].class);
-			q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
-			if (wantResourceType != null) {
-				q.setParameter("want_resource_type", wantResourceType);
-			}
-			if (maxCount != null) {
-				q.setMaxResults(maxCount);
-			}
-			if (hasDesiredResourceTypes) {
-				q.setParameter("desired_target_resource_types", desiredResourceTypes);
-			}
-			List<?> results = q.getResultList();
-			Set<String> canonicalUrls = null;
-			for (Object nextRow : results) {
-				if (nextRow == null) {
-					// This can happen if there are outgoing references which are canonical or point to
-					// other servers
-					continue;
+			theIncludeQueries.add(entityManager -> {
+				TypedQuery<?> q = entityManager.createQuery(sql, Object[].class);
+				q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
+				if (wantResourceTypeParam != null) {
+					q.setParameter("want_resource_type", wantResourceTypeParam);
 				}
-
-				Long version = null;
-				Long resourceId = (Long) ((Object[]) nextRow)[0];
-				String resourceType = (String) ((Object[]) nextRow)[1];
-				String resourceCanonicalUrl = (String) ((Object[]) nextRow)[2];
-				if (findVersionFieldName != null) {
-					version = (Long) ((Object[]) nextRow)[3];
+				if (maxCount != null) {
+					q.setMaxResults(maxCount);
+				}
+				if (hasDesiredResourceTypes) {
+					q.setParameter("desired_target_resource_types", desiredResourceTypes);
 				}
+				List<?> results = q.getResultList();
+				HashSet<JpaPid> pidsToInclude = new HashSet<>();
+				Set<String> canonicalUrls = null;
+				for (Object nextRow : results) {
+					if (nextRow == null) {
+						// This can happen if there are outgoing references which are canonical or point to
+						// other servers
+						continue;
+					}
+
+					Long version = null;
+					Long resourceId = (Long) ((Object[]) nextRow)[0];
+					String resourceType = (String) ((Object[]) nextRow)[1];
+					String resourceCanonicalUrl = (String) ((Object[]) nextRow)[2];
+					if (findVersionFieldName != null) {
+						version = (Long) ((Object[]) nextRow)[3];
+					}
 
-				if (resourceId != null) {
-					JpaPid pid = JpaPid.fromIdAndVersionAndResourceType(resourceId, version, resourceType);
-					pidsToInclude.add(pid);
-				} else if (resourceCanonicalUrl != null) {
-					if (canonicalUrls == null) {
-						canonicalUrls = new HashSet<>();
+					if (resourceId != null) {
+						JpaPid pid = JpaPid.fromIdAndVersionAndResourceType(resourceId, version, resourceType);
+						pidsToInclude.add(pid);
+					} else if (resourceCanonicalUrl != null) {
+						if (canonicalUrls == null) {
+							canonicalUrls = new HashSet<>();
+						}
+						canonicalUrls.add(resourceCanonicalUrl);
 					}
-					canonicalUrls.add(resourceCanonicalUrl);
 				}
+
+				if (canonicalUrls != null) {
+					String message =
+							"Search with _include=* can be inefficient when references using canonical URLs are detected. Use more specific _include values instead.";
+					theIncludeQueryWarnings.add(message);
+					loadCanonicalUrls(canonicalUrls, entityManager, pidsToInclude, reverseMode);
+				}
+				return pidsToInclude;
+			});
+		}
+	}
+
+	/**
+	 * Executes the include queries for a single round. If parallel include loading is enabled
+	 * (see {@link JpaStorageSettings#setParallelIncludeLoadingThreadCount(int)}), the queries are
+	 * run concurrently, each in its own read-only transaction. Otherwise they are run one after
+	 * another using the supplied entity manager.
+	 * <p>
+	 * The request thread holds a connection while it waits for the concurrent queries, so it never
+	 * waits for a query which no worker has started (e.g. because the executor is busy): it runs
+	 * any such query itself, using the supplied entity manager.
+	 * </p>
+	 */
+	private HashSet<JpaPid> executeIncludeQueries(
+			List<Function<EntityManager, Collection<JpaPid>>> theIncludeQueries,
+			EntityManager theEntityManager,
+			RequestDetails theRequest) {
+		HashSet<JpaPid> retVal = new HashSet<>();
+		if (!isParallelIncludeLoadingCandidate(theIncludeQueries, theRequest)) {
+			for (Function<EntityManager, Collection<JpaPid>> next : theIncludeQueries) {
+				retVal.addAll(next.apply(theEntityManager));
 			}
+			return retVal;
+		}
 
-			if (canonicalUrls != null) {
-				String message =
-						"Search with _include=* can be inefficient when references using canonical URLs are detected. Use more specific _include values instead.";
-				firePerformanceWarning(request, message);
-				loadCanonicalUrls(canonicalUrls, entityManager, pidsToInclude, reverseMode);
+		ourLog.debug("Loading includes using {} parallel queries", theIncludeQueries.size());
+		RequestPartitionId requestPartitionId = myRequestPartitionId;
+		List<IncludeQueryTask> tasks = new ArrayList<>(theIncludeQueries.size());
+		for (Function<EntityManager, Collection<JpaPid>> next : theIncludeQueries) {
+			IncludeQueryTask task = new IncludeQueryTask(next);
+			tasks.add(task);
+			try {
+				myParallelIncludeLoadingExecutor.execute(() -> {
+					if (!task.start()) {
+						return;
+					}
+					try {
+						myTxService
+								.withRequest(theRequest)
+								.withRequestPartitionId(requestPartitionId)
+								.readOnly()
+								.execute(() -> task.run(myEntityManager));
+					} catch (Exception e) {
+						// Failures of the query itself are reported through the task, this is a
+						// failure to open the transaction
+						ourLog.debug("Failed to start include query: {}", e.toString());
+					} finally {
+						task.abandon();
+					}
+				});
+			} catch (TaskRejectedException e) {
+				ourLog.debug("Include loading executor is saturated, query will run on the request thread");
+			}
+		}
+
+		try {
+			for (IncludeQueryTask next : tasks) {
+				retVal.addAll(next.get(theEntityManager));
 			}
+		} finally {
+			tasks.forEach(IncludeQueryTask::cancel);
 		}
+		return retVal;
+	}
+
+	private boolean isParallelIncludeLoadingCandidate(
+			List<Function<EntityManager, Collection<JpaPid>>> theIncludeQueries, RequestDetails theRequest) {
+		if (theIncludeQueries.size() < 2
+				|| myParallelIncludeLoadingExecutor == null
+				|| myStorageSettings.getParallelIncludeLoadingThreadCount() == 0) {
+			return false;
+		}
+		// The raw SQL hook only sees queries issued on the current thread
+		return !CompositeInterceptorBroadcaster.hasHooks(
+				Pointcut.JPA_PERFTRACE_RAW_SQL, myInterceptorBroadcaster, theRequest);
 	}
 
 	private void loadCanonicalUrls(
@@ -1925,7 +2226,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	}
 
 	private void attemptComboUniqueSpProcessing(
-			QueryStack theQueryStack, @Nonnull SearchParameterMap theParams, RequestDetails theRequest) {
+			QueryStack theQueryStack,
+			@Nonnull SearchParameterMap theParams,
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId) {
 		RuntimeSearchParam comboParam = null;
 		List<String> comboParamNames = null;
 		List<RuntimeSearchParam> exactMatchParams =
@@ -1973,7 +2277,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			 * are multiple AND expressions for the related parameters.
 			 */
 			while (validateParamValuesAreValidForComboParam(theRequest, theParams, comboParamNames)) {
-				applyComboSearchParam(theQueryStack, theParams, theRequest, comboParamNames, comboParam);
+				applyComboSearchParam(
+						theQueryStack, theParams, theRequest, comboParamNames, comboParam, theRequestPartitionId);
 			}
 		}
 	}
@@ -1983,7 +2288,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			@Nonnull SearchParameterMap theParams,
 			RequestDetails theRequest,
 			List<String> theComboParamNames,
-			RuntimeSearchParam theComboParam) {
+			RuntimeSearchParam theComboParam,
+			RequestPartitionId theRequestPartitionId) {
 
 		List<List<IQueryParameterType>> inputs = new ArrayList<>();
 		for (String nextParamName : theComboParamNames) {
@@ -2050,10 +2356,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		switch (requireNonNull(theComboParam.getComboSearchParamType())) {
 			case UNIQUE:
-				theQueryStack.addPredicateCompositeUnique(indexStrings, myRequestPartitionId);
+				theQueryStack.addPredicateCompositeUnique(indexStrings, theRequestPartitionId);
 				break;
 			case NON_UNIQUE:
-				theQueryStack.addPredicateCompositeNonUnique(indexStrings, myRequestPartitionId);
+				theQueryStack.addPredicateCompositeNonUnique(indexStrings, theRequestPartitionId);
 				break;
 		}
 
@@ -2171,6 +2477,13 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		return myResourceName;
 	}
 
+	@Override
+	public void setOffsetPageEnd(SearchParameterMap theParams, JpaPid theLastPid) {
+		if (myKeysetPaging) {
+			myOffsetSearchKeysetSvc.setNextPageStart(myResourceName, theParams, myRequestPartitionId, theLastPid);
+		}
+	}
+
 	/**
 	 * IncludesIterator, used to recursively fetch resources from the provided list of PIDs
 	 */
@@ -2565,4 +2878,70 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	public static void setMaxPageSize50ForTest(boolean theIsTest) {
 		myUseMaxPageSize50ForTest = theIsTest;
 	}
+
+	/**
+	 * A single include query which is run either by a worker of the parallel include loading executor, or
+	 * by the request thread if no worker has started it by the time its results are needed. A worker calls
+	 * {@link #start()} before opening its transaction, {@link #run(EntityManager)} once it is open, and
+	 * {@link #abandon()} if it couldn't be opened, so that the request thread runs the query instead.
+	 */
+	private static class IncludeQueryTask {
+		private static final int PENDING = 0;
+		private static final int STARTING = 1;
+		private static final int RUNNING = 2;
+		private static final int CLAIMED = 3;
+
+		private final Function<EntityManager, Collection<JpaPid>> myQuery;
+		private final AtomicInteger myState = new AtomicInteger(PENDING);
+		private final CompletableFuture<Collection<JpaPid>> myResult = new CompletableFuture<>();
+
+		private IncludeQueryTask(Function<EntityManager, Collection<JpaPid>> theQuery) {
+			myQuery = theQuery;
+		}
+
+		boolean start() {
+			return myState.compareAndSet(PENDING, STARTING);
+		}
+
+		void abandon() {
+			myState.compareAndSet(STARTING, PENDING);
+		}
+
+		void cancel() {
+			myState.compareAndSet(PENDING, CLAIMED);
+		}
+
+		void run(EntityManager theEntityManager) {
+			if (myState.compareAndSet(STARTING, RUNNING)) {
+				try {
+					myResult.complete(myQuery.apply(theEntityManager));
+				} catch (RuntimeException e) {
+					myResult.completeExceptionally(e);
+				}
+			}
+		}
+
+		Collection<JpaPid> get(EntityManager theEntityManager) {
+			try {
+				while (true) {
+					if (myState.compareAndSet(PENDING, CLAIMED)) {
+						return myQuery.apply(theEntityManager);
+					}
+					if (myState.get() == RUNNING) {
+						return myResult.get();
+					}
+					// The worker is opening its transaction, and either runs the query or abandons it
+					TimeUnit.MILLISECONDS.sleep(10);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(Msg.code(2551) + "Interrupted while loading includes");
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new InternalErrorException(Msg.code(2552) + e.getCause(), e.getCause());
+			}
+		}
+	}
 }
@@ -0,0 +1,240 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.param.BaseParamWithPrefix;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.UriParam;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Orders the parameters of a search so that the most selective ones are turned into
+ * SQL predicates first. The first predicate determines the driving table (or the first
+ * join) of the generated SQL, so starting from a selective index narrows the candidate
+ * set before the remaining indexes are joined.
+ * <p>
+ * Estimates are deliberately coarse. Token parameters are costed by sampling the number
+ * of HFJ_SPIDX_TOKEN rows with the requested hash (capped at {@link #MAX_TOKEN_SAMPLE_SIZE}
+ * and cached in {@link MemoryCacheService.CacheEnum#SEARCH_PARAM_CARDINALITY}). Other
+ * parameter types are given a fixed estimate based on the kind of match they perform,
+ * and anything that can't be estimated keeps its original relative position after the
+ * parameters that can. OR lists with more than {@link #MAX_ESTIMATED_OR_VALUES} values
+ * are not estimated at all, so that planning a search never costs more than a handful
+ * of sampling queries per parameter.
+ *
+ * @see ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setCostBasedPredicateOrderingEnabled(boolean)
+ * @since 7.6.0
+ */
+public class SearchPredicateOrderPlanner {
+
+	static final int MAX_TOKEN_SAMPLE_SIZE = 1000;
+	static final int MAX_ESTIMATED_OR_VALUES = 10;
+	static final long EXACT_MATCH_ESTIMATE = 100;
+	static final long PARTIAL_MATCH_ESTIMATE = MAX_TOKEN_SAMPLE_SIZE;
+	static final long RANGE_MATCH_ESTIMATE = 10L * MAX_TOKEN_SAMPLE_SIZE;
+	static final long UNKNOWN_ESTIMATE = Long.MAX_VALUE;
+
+	private final ISearchParamRegistry mySearchParamRegistry;
+	private final PartitionSettings myPartitionSettings;
+	private final IResourceIndexedSearchParamTokenDao myResourceIndexedSearchParamTokenDao;
+	private final MemoryCacheService myMemoryCacheService;
+
+	/**
+	 * Constructor
+	 */
+	public SearchPredicateOrderPlanner(
+			ISearchParamRegistry theSearchParamRegistry,
+			PartitionSettings thePartitionSettings,
+			IResourceIndexedSearchParamTokenDao theResourceIndexedSearchParamTokenDao,
+			MemoryCacheService theMemoryCacheService) {
+		mySearchParamRegistry = theSearchParamRegistry;
+		myPartitionSettings = thePartitionSettings;
+		myResourceIndexedSearchParamTokenDao = theResourceIndexedSearchParamTokenDao;
+		myMemoryCacheService = theMemoryCacheService;
+	}
+
+	/**
+	 * Returns the given parameter names ordered from most to least selective. The sort is
+	 * stable, so parameters with equal estimates keep the order they were supplied in.
+	 */
+	public List<String> orderBySelectivity(
+			String theResourceName,
+			SearchParameterMap theParams,
+			List<String> theParamNames,
+			RequestPartitionId theRequestPartitionId) {
+		Map<String, Long> estimates = new HashMap<>();
+		for (String nextParamName : theParamNames) {
+			estimates.put(
+					nextParamName,
+					estimateParameter(
+							theResourceName, nextParamName, theParams.get(nextParamName), theRequestPartitionId));
+		}
+
+		List<String> retVal = new ArrayList<>(theParamNames);
+		retVal.sort(Comparator.comparing(estimates::get));
+		return retVal;
+	}
+
+	/**
+	 * Estimates the number of resources matched by a single parameter. AND-ed values
+	 * can only narrow the match, so the smallest AND estimate is used, while OR-ed values
+	 * are summed. Summing stops as soon as an OR list can no longer beat the smallest
+	 * estimate found so far, so that no more values are sampled than necessary.
+	 */
+	@VisibleForTesting
+	long estimateParameter(
+			String theResourceName,
+			String theParamName,
+			List<List<IQueryParameterType>> theAndOrParams,
+			RequestPartitionId theRequestPartitionId) {
+		RuntimeSearchParam searchParam = mySearchParamRegistry.getActiveSearchParam(theResourceName, theParamName);
+		if (searchParam == null || theAndOrParams == null || theAndOrParams.isEmpty()) {
+			return UNKNOWN_ESTIMATE;
+		}
+
+		long retVal = UNKNOWN_ESTIMATE;
+		for (List<IQueryParameterType> nextOrList : theAndOrParams) {
+			if (nextOrList.isEmpty() || nextOrList.size() > MAX_ESTIMATED_OR_VALUES) {
+				continue;
+			}
+			long orEstimate = 0;
+			for (IQueryParameterType nextOr : nextOrList) {
+				long estimate = estimateValue(theResourceName, searchParam, nextOr, theRequestPartitionId);
+				if (estimate == UNKNOWN_ESTIMATE) {
+					orEstimate = UNKNOWN_ESTIMATE;
+					break;
+				}
+				orEstimate += estimate;
+				if (orEstimate >= retVal) {
+					break;
+				}
+			}
+			retVal = Math.min(retVal, orEstimate);
+		}
+		return retVal;
+	}
+
+	private long estimateValue(
+			String theResourceName,
+			RuntimeSearchParam theSearchParam,
+			IQueryParameterType theParam,
+			RequestPartitionId theRequestPartitionId) {
+		if (theParam.getMissing() != null) {
+			return UNKNOWN_ESTIMATE;
+		}
+
+		switch (theSearchParam.getParamType()) {
+			case TOKEN:
+				if (theParam instanceof TokenParam) {
+					TokenParam param = (TokenParam) theParam;
+					if (param.getModifier() == null && !param.isMdmExpand() && isNotBlank(param.getValue())) {
+						return sampleTokenCount(
+								theResourceName, theSearchParam.getName(), param, theRequestPartitionId);
+					}
+				}
+				return UNKNOWN_ESTIMATE;
+			case REFERENCE:
+				if (theParam instanceof ReferenceParam) {
+					ReferenceParam param = (ReferenceParam) theParam;
+					if (isBlank(param.getChain()) && !param.isMdmExpand() && isNotBlank(param.getIdPart())) {
+						return EXACT_MATCH_ESTIMATE;
+					}
+				}
+				return UNKNOWN_ESTIMATE;
+			case URI:
+				if (theParam instanceof UriParam && ((UriParam) theParam).getQualifier() == null) {
+					return EXACT_MATCH_ESTIMATE;
+				}
+				return UNKNOWN_ESTIMATE;
+			case STRING:
+				if (theParam instanceof StringParam) {
+					StringParam param = (StringParam) theParam;
+					if (param.isExact()) {
+						return EXACT_MATCH_ESTIMATE;
+					}
+					return param.isContains() ? RANGE_MATCH_ESTIMATE : PARTIAL_MATCH_ESTIMATE;
+				}
+				return UNKNOWN_ESTIMATE;
+			case DATE:
+			case NUMBER:
+			case QUANTITY:
+				if (theParam instanceof BaseParamWithPrefix) {
+					ParamPrefixEnum prefix = ((BaseParamWithPrefix<?>) theParam).getPrefix();
+					if (prefix == null || prefix == ParamPrefixEnum.EQUAL) {
+						return PARTIAL_MATCH_ESTIMATE;
+					}
+					return RANGE_MATCH_ESTIMATE;
+				}
+				return UNKNOWN_ESTIMATE;
+			default:
+				return UNKNOWN_ESTIMATE;
+		}
+	}
+
+	private long sampleTokenCount(
+			String theResourceName,
+			String theParamName,
+			TokenParam theParam,
+			RequestPartitionId theRequestPartitionId) {
+		Pageable page = Pageable.ofSize(MAX_TOKEN_SAMPLE_SIZE);
+		if (isNotBlank(theParam.getSystem())) {
+			long hash = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(
+					myPartitionSettings,
+					theRequestPartitionId,
+					theResourceName,
+					theParamName,
+					theParam.getSystem(),
+					theParam.getValue());
+			return myMemoryCacheService.get(
+					MemoryCacheService.CacheEnum.SEARCH_PARAM_CARDINALITY,
+					hash,
+					t -> (long) myResourceIndexedSearchParamTokenDao
+							.findIdsByHashSystemAndValue(t, page)
+							.size());
+		}
+
+		long hash = ResourceIndexedSearchParamToken.calculateHashValue(
+				myPartitionSettings, theRequestPartitionId, theResourceName, theParamName, theParam.getValue());
+		return myMemoryCacheService.get(MemoryCacheService.CacheEnum.SEARCH_PARAM_CARDINALITY, hash, t -> (long)
+				myResourceIndexedSearchParamTokenDao.findIdsByHashValue(t, page).size());
+	}
+}
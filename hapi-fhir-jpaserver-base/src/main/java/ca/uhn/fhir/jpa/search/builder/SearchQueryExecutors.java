@@ -19,13 +19,23 @@
  */
 package ca.uhn.fhir.jpa.search.builder;
 
+import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.search.builder.models.ResolvedSearchQueryExecutor;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import jakarta.annotation.Nonnull;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
 
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SearchQueryExecutors {
 
@@ -66,6 +76,288 @@ public class SearchQueryExecutors {
 		return new JpaPidQueryAdaptor(theIterable.iterator());
 	}
 
+	/**
+	 * Returns an executor which can be {@link PrefetchingSearchQueryExecutor#prefetch() prefetched}
+	 * by another thread.
+	 *
+	 * @param theQuery      The query to read the PIDs from
+	 * @param theBufferSize The maximum number of PIDs read ahead by the prefetching thread
+	 */
+	public static PrefetchingSearchQueryExecutor prefetching(ISearchQueryExecutor theQuery, int theBufferSize) {
+		return new PrefetchingSearchQueryExecutor(theQuery, theBufferSize);
+	}
+
+	/**
+	 * Returns an executor which returns the PIDs of each of the given executors in turn.
+	 */
+	public static ISearchQueryExecutor concat(List<? extends ISearchQueryExecutor> theExecutors) {
+		return new ConcatenatingSearchQueryExecutor(theExecutors);
+	}
+
+	/**
+	 * Merges executors which each return their PIDs in the order defined by the given comparator
+	 * into a single executor which returns all of the PIDs in that order (i.e. a k-way merge).
+	 * The underlying executors are not consumed until the returned executor is.
+	 */
+	public static ISearchQueryExecutor mergeSorted(
+			List<? extends ISearchQueryExecutor> theExecutors, Comparator<Long> theComparator) {
+		return new MergingSearchQueryExecutor(theExecutors, theComparator);
+	}
+
+	/**
+	 * An executor whose query can be read by a worker thread ahead of the thread consuming it, through a
+	 * bounded buffer so that the PIDs are streamed rather than all held in memory.
+	 * <p>
+	 * The consuming thread typically holds a database connection while it waits, and the worker needs a
+	 * connection of its own. The consumer therefore never waits for a worker which has not been started
+	 * yet (e.g. because it is still queued): if the query is still pending when the consumer first needs
+	 * a PID, the consumer claims it and reads it directly on its own thread (and transaction) instead.
+	 * A worker calls {@link #start()} before opening its transaction and {@link #prefetch()} once it is
+	 * open. If it can't open a transaction, it calls {@link #abandon()} so that the consumer takes over.
+	 * </p>
+	 */
+	public static class PrefetchingSearchQueryExecutor implements ISearchQueryExecutor {
+		private static final int PENDING = 0;
+		private static final int STARTING = 1;
+		private static final int PREFETCHING = 2;
+		private static final int CONSUMER = 3;
+		private static final int CLOSED = 4;
+		private static final long STALLED_CONSUMER_TIMEOUT_MILLIS = DateUtils.MILLIS_PER_MINUTE * 5;
+
+		private final ISearchQueryExecutor myQuery;
+		private final BlockingQueue<Long> myBuffer;
+		private final AtomicInteger myState = new AtomicInteger(PENDING);
+		private volatile boolean myPrefetchFinished;
+		private volatile RuntimeException myPrefetchFailure;
+		private Long myNext;
+		private boolean myExhausted;
+
+		PrefetchingSearchQueryExecutor(ISearchQueryExecutor theQuery, int theBufferSize) {
+			myQuery = theQuery;
+			myBuffer = new ArrayBlockingQueue<>(theBufferSize);
+		}
+
+		/**
+		 * Claims the query for a worker.
+		 *
+		 * @return <code>false</code> if the query has already been claimed by the consumer, in which case
+		 * the worker has nothing to do
+		 */
+		public boolean start() {
+			return myState.compareAndSet(PENDING, STARTING);
+		}
+
+		/**
+		 * Releases the query if the worker claimed it but never started prefetching, so that the
+		 * consumer reads it instead
+		 */
+		public void abandon() {
+			myState.compareAndSet(STARTING, PENDING);
+		}
+
+		/**
+		 * Reads the query into the buffer, blocking whenever it is full, until the query is exhausted or
+		 * this executor is closed. Does nothing unless {@link #start()} has claimed the query.
+		 */
+		public void prefetch() {
+			if (!myState.compareAndSet(STARTING, PREFETCHING)) {
+				return;
+			}
+			try {
+				while (myQuery.hasNext()) {
+					Long next = myQuery.next();
+					if (next != null && !offer(next)) {
+						break;
+					}
+				}
+			} catch (RuntimeException e) {
+				myPrefetchFailure = e;
+			} finally {
+				myPrefetchFinished = true;
+				myQuery.close();
+			}
+		}
+
+		private boolean offer(Long theNext) {
+			try {
+				long deadline = System.currentTimeMillis() + STALLED_CONSUMER_TIMEOUT_MILLIS;
+				while (myState.get() == PREFETCHING) {
+					if (myBuffer.offer(theNext, 100, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+					if (System.currentTimeMillis() > deadline) {
+						// Don't hold on to the connection forever if the consumer was never closed
+						throw new InternalErrorException(Msg.code(2567)
+								+ "Search results were not consumed for " + STALLED_CONSUMER_TIMEOUT_MILLIS + "ms");
+					}
+				}
+				return false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(Msg.code(2550) + "Interrupted while prefetching search results");
+			}
+		}
+
+		@Override
+		public void close() {
+			int previousState = myState.getAndSet(CLOSED);
+			if (previousState != PREFETCHING) {
+				// Otherwise the prefetching thread closes the query once it notices
+				myQuery.close();
+			}
+			myBuffer.clear();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (myNext == null && !myExhausted) {
+				myNext = fetchNext();
+				myExhausted = myNext == null;
+			}
+			return myNext != null;
+		}
+
+		@Override
+		public Long next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException(Msg.code(2574) + "No more results");
+			}
+			Long retVal = myNext;
+			myNext = null;
+			return retVal;
+		}
+
+		private Long fetchNext() {
+			try {
+				while (true) {
+					myState.compareAndSet(PENDING, CONSUMER);
+					switch (myState.get()) {
+						case CONSUMER:
+							return myQuery.hasNext() ? myQuery.next() : null;
+						case PREFETCHING:
+							return takeFromBuffer();
+						case STARTING:
+							// The worker is opening its transaction, and either starts prefetching or abandons
+							TimeUnit.MILLISECONDS.sleep(10);
+							break;
+						default:
+							return null;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(Msg.code(2549) + "Interrupted while waiting for search results");
+			}
+		}
+
+		private Long takeFromBuffer() throws InterruptedException {
+			while (true) {
+				Long retVal = myBuffer.poll(100, TimeUnit.MILLISECONDS);
+				if (retVal != null) {
+					return retVal;
+				}
+				if (myPrefetchFinished && myBuffer.isEmpty()) {
+					if (myPrefetchFailure != null) {
+						throw myPrefetchFailure;
+					}
+					return null;
+				}
+			}
+		}
+	}
+
+	static class ConcatenatingSearchQueryExecutor implements ISearchQueryExecutor {
+		private final List<? extends ISearchQueryExecutor> myExecutors;
+		private int myIndex;
+
+		ConcatenatingSearchQueryExecutor(List<? extends ISearchQueryExecutor> theExecutors) {
+			myExecutors = theExecutors;
+		}
+
+		@Override
+		public void close() {
+			myExecutors.forEach(ISearchQueryExecutor::close);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (myIndex < myExecutors.size()) {
+				if (myExecutors.get(myIndex).hasNext()) {
+					return true;
+				}
+				myIndex++;
+			}
+			return false;
+		}
+
+		@Override
+		public Long next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException(Msg.code(2575) + "No more results");
+			}
+			return myExecutors.get(myIndex).next();
+		}
+	}
+
+	static class MergingSearchQueryExecutor implements ISearchQueryExecutor {
+		private final List<? extends ISearchQueryExecutor> myExecutors;
+		private final Comparator<Long> myComparator;
+		private PriorityQueue<MergeHead> myHeads;
+
+		MergingSearchQueryExecutor(List<? extends ISearchQueryExecutor> theExecutors, Comparator<Long> theComparator) {
+			myExecutors = theExecutors;
+			myComparator = Comparator.nullsLast(theComparator);
+		}
+
+		@Override
+		public void close() {
+			myExecutors.forEach(ISearchQueryExecutor::close);
+		}
+
+		@Override
+		public boolean hasNext() {
+			initializeHeads();
+			return !myHeads.isEmpty();
+		}
+
+		@Override
+		public Long next() {
+			initializeHeads();
+			MergeHead head = myHeads.poll();
+			if (head == null) {
+				throw new NoSuchElementException(Msg.code(2576) + "No more results");
+			}
+			Long retVal = head.myValue;
+			if (head.myExecutor.hasNext()) {
+				head.myValue = head.myExecutor.next();
+				myHeads.add(head);
+			}
+			return retVal;
+		}
+
+		private void initializeHeads() {
+			if (myHeads == null) {
+				myHeads = new PriorityQueue<>(
+						Math.max(1, myExecutors.size()), (a, b) -> myComparator.compare(a.myValue, b.myValue));
+				for (ISearchQueryExecutor next : myExecutors) {
+					if (next.hasNext()) {
+						myHeads.add(new MergeHead(next.next(), next));
+					}
+				}
+			}
+		}
+	}
+
+	private static class MergeHead {
+		private final ISearchQueryExecutor myExecutor;
+		private Long myValue;
+
+		private MergeHead(Long theValue, ISearchQueryExecutor theExecutor) {
+			myValue = theValue;
+			myExecutor = theExecutor;
+		}
+	}
+
 	static class JpaPidQueryAdaptor implements ISearchQueryExecutor {
 		final Iterator<JpaPid> myIterator;
 
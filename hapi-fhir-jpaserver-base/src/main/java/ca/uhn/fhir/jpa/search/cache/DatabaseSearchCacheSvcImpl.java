@@ -420,12 +420,20 @@ public class DatabaseSearchCacheSvcImpl implements ISearchCacheSvc {
 	}
 
 	@Nonnull
-	private Date getCutoff() {
-		long cutoffMillis = myStorageSettings.getExpireSearchResultsAfterMillis();
-		if (myStorageSettings.getReuseCachedSearchResultsForMillis() != null) {
-			cutoffMillis = cutoffMillis + myStorageSettings.getReuseCachedSearchResultsForMillis();
+	/**
+	 * Searches created before the returned date, and without an expiry in the future, are deleted
+	 * by {@link #pollForStaleSearchesAndDeleteThem(RequestPartitionId, Instant)}
+	 */
+	static Date getCutoff(JpaStorageSettings theStorageSettings, long theNow, long theCutoffSlack) {
+		long cutoffMillis = theStorageSettings.getExpireSearchResultsAfterMillis();
+		if (theStorageSettings.getReuseCachedSearchResultsForMillis() != null) {
+			cutoffMillis = cutoffMillis + theStorageSettings.getReuseCachedSearchResultsForMillis();
 		}
-		final Date cutoff = new Date((now() - cutoffMillis) - myCutoffSlack);
+		return new Date((theNow - cutoffMillis) - theCutoffSlack);
+	}
+
+	private Date getCutoff() {
+		final Date cutoff = getCutoff(myStorageSettings, now(), myCutoffSlack);
 
 		if (ourNowForUnitTests != null) {
 			ourLog.info(
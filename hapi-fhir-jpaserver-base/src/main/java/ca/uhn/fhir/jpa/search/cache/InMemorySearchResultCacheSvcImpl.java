@@ -0,0 +1,354 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.ISearchDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Search result cache which keeps the result PIDs of each search in memory, in blocks of
+ * primitive <code>long</code> values, instead of writing them to the HFJ_SEARCH_RESULT table
+ * and reading them back for every page.
+ * <p>
+ * The total number of cached PIDs is bounded. When the bound is exceeded, the least recently
+ * used searches are evicted. If spilling is enabled, evicted results are written to the
+ * database (using the regular {@link DatabaseSearchResultCacheSvcImpl} behaviour) and any
+ * later requests for that search are served from there. Searches which have failed, or which
+ * have expired or been deleted by the stale search cleanup in the meantime, are dropped instead
+ * of being spilled. If spilling is disabled, evicted searches are only served if their results
+ * are in the database anyway (e.g. because they were stored before this cache was enabled), and
+ * are otherwise reported as no longer available. Searches which had no results at all are
+ * remembered when they are evicted, so that they can still be paged through.
+ * <p>
+ * Note that cached results are only visible to the server instance which performed the search,
+ * so this implementation should only be used on a single server or behind a load balancer with
+ * session affinity.
+ *
+ * @see ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setInMemorySearchResultCacheMaxPids(int)
+ * @since 7.6.0
+ */
+public class InMemorySearchResultCacheSvcImpl extends DatabaseSearchResultCacheSvcImpl {
+	static final int BLOCK_SIZE = 1024;
+	private static final Logger ourLog = LoggerFactory.getLogger(InMemorySearchResultCacheSvcImpl.class);
+
+	private final int myMaxCachedPids;
+	private final boolean mySpillToDatabase;
+	private final LinkedHashMap<Long, CachedResults> myResults = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<Long, CachedResults> mySpilling = new ConcurrentHashMap<>();
+	private final Set<Long> myEvictedEmptySearchPids;
+	private long myCachedPidCount;
+
+	@Autowired
+	private ISearchDao mySearchDao;
+
+	@Autowired
+	private IHapiTransactionService myTransactionService;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theMaxCachedPids   The maximum number of result PIDs to hold in memory across all searches
+	 * @param theSpillToDatabase Should results evicted from memory be written to the database
+	 */
+	public InMemorySearchResultCacheSvcImpl(int theMaxCachedPids, boolean theSpillToDatabase) {
+		Validate.isTrue(theMaxCachedPids > 0, "theMaxCachedPids must be positive");
+		myMaxCachedPids = theMaxCachedPids;
+		mySpillToDatabase = theSpillToDatabase;
+		// Each marker costs about as much as a cached PID, so the same bound applies
+		myEvictedEmptySearchPids = Collections.newSetFromMap(new LinkedHashMap<>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Boolean> theEldest) {
+				return size() > myMaxCachedPids;
+			}
+		});
+	}
+
+	@Override
+	public List<JpaPid> fetchResultPids(
+			Search theSearch,
+			int theFrom,
+			int theTo,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		synchronized (this) {
+			CachedResults results = getCachedResults(theSearch.getId());
+			if (results != null) {
+				return results.get(theFrom, theTo);
+			}
+			if (myEvictedEmptySearchPids.contains(theSearch.getId())) {
+				return new ArrayList<>();
+			}
+		}
+
+		List<JpaPid> retVal =
+				super.fetchResultPids(theSearch, theFrom, theTo, theRequestDetails, theRequestPartitionId);
+		/*
+		 * Nothing was stored for this search (e.g. it was evicted without spilling, or performed
+		 * before a restart). Past the first page, an empty result can also just mean the end of
+		 * spilled results, but without spilling it means the results are no longer available.
+		 */
+		if (retVal.isEmpty() && theTo > theFrom && (theFrom == 0 || !mySpillToDatabase)) {
+			return null;
+		}
+		return retVal;
+	}
+
+	@Override
+	public List<JpaPid> fetchAllResultPids(
+			Search theSearch, RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId) {
+		synchronized (this) {
+			CachedResults results = getCachedResults(theSearch.getId());
+			if (results != null) {
+				return results.get(0, results.size());
+			}
+			if (myEvictedEmptySearchPids.contains(theSearch.getId())) {
+				return new ArrayList<>();
+			}
+		}
+
+		List<JpaPid> retVal = super.fetchAllResultPids(theSearch, theRequestDetails, theRequestPartitionId);
+		// Nothing was stored for this search (e.g. it was evicted without spilling, or performed before a restart)
+		if (retVal.isEmpty()) {
+			return null;
+		}
+		return retVal;
+	}
+
+	@Override
+	public void storeResults(
+			Search theSearch,
+			List<JpaPid> thePreviouslyStoredResourcePids,
+			List<JpaPid> theNewResourcePids,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		List<CachedResults> evicted;
+		synchronized (this) {
+			CachedResults results = myResults.get(theSearch.getId());
+			if (results == null && thePreviouslyStoredResourcePids.isEmpty()) {
+				results = new CachedResults(theSearch, theRequestPartitionId);
+				myResults.put(theSearch.getId(), results);
+				myEvictedEmptySearchPids.remove(theSearch.getId());
+			}
+
+			if (results != null) {
+				int previousSize = results.size();
+				results.set(thePreviouslyStoredResourcePids.size(), theNewResourcePids);
+				myCachedPidCount += results.size() - previousSize;
+				evicted = evictIfNeeded();
+			} else {
+				// The earlier results for this search have already left memory
+				evicted = null;
+			}
+		}
+
+		if (evicted == null) {
+			if (mySpillToDatabase) {
+				super.storeResults(
+						theSearch,
+						thePreviouslyStoredResourcePids,
+						theNewResourcePids,
+						theRequestDetails,
+						theRequestPartitionId);
+			}
+			return;
+		}
+
+		for (CachedResults next : evicted) {
+			spill(next, theRequestDetails);
+		}
+	}
+
+	private CachedResults getCachedResults(Long theSearchPid) {
+		CachedResults retVal = myResults.get(theSearchPid);
+		if (retVal == null) {
+			retVal = mySpilling.get(theSearchPid);
+		}
+		return retVal;
+	}
+
+	private List<CachedResults> evictIfNeeded() {
+		if (myCachedPidCount <= myMaxCachedPids) {
+			return Collections.emptyList();
+		}
+
+		List<CachedResults> retVal = new ArrayList<>();
+		for (Iterator<CachedResults> iter = myResults.values().iterator();
+				iter.hasNext() && myCachedPidCount > myMaxCachedPids; ) {
+			CachedResults next = iter.next();
+			iter.remove();
+			myCachedPidCount -= next.size();
+			if (next.size() == 0) {
+				myEvictedEmptySearchPids.add(next.getSearch().getId());
+			}
+			if (mySpillToDatabase) {
+				mySpilling.put(next.getSearch().getId(), next);
+			}
+			retVal.add(next);
+		}
+		return retVal;
+	}
+
+	private void spill(CachedResults theResults, RequestDetails theRequestDetails) {
+		Long searchPid = theResults.getSearch().getId();
+		if (!mySpillToDatabase) {
+			ourLog.debug("Evicted {} results for search {}", theResults.size(), searchPid);
+			return;
+		}
+
+		try {
+			myTransactionService
+					.withRequest(theRequestDetails)
+					.withRequestPartitionId(theResults.getRequestPartitionId())
+					.execute(() -> {
+						if (!isStillAvailable(searchPid)) {
+							ourLog.debug(
+									"Dropping {} results for search {} which is no longer available",
+									theResults.size(),
+									searchPid);
+							return;
+						}
+
+						ourLog.debug(
+								"Spilling {} results for search {} to the database", theResults.size(), searchPid);
+						super.storeResults(
+								theResults.getSearch(),
+								Collections.emptyList(),
+								theResults.get(0, theResults.size()),
+								theRequestDetails,
+								theResults.getRequestPartitionId());
+					});
+		} catch (Exception e) {
+			ourLog.warn("Failed to spill results for search {} to the database: {}", searchPid, e.toString());
+		} finally {
+			mySpilling.remove(searchPid);
+		}
+	}
+
+	/**
+	 * Reloads the search, since it may have failed, or been expired or deleted by the stale
+	 * search cleanup, while its results were held in memory. There is no point writing results
+	 * to the database that can never be fetched again, and the cleanup would not find them.
+	 */
+	private boolean isStillAvailable(Long theSearchPid) {
+		Optional<Search> searchOpt = mySearchDao.findById(theSearchPid);
+		if (!searchOpt.isPresent()) {
+			return false;
+		}
+
+		Search search = searchOpt.get();
+		if (Boolean.TRUE.equals(search.getDeleted())
+				|| search.getStatus() == SearchStatusEnum.FAILED
+				|| search.getStatus() == SearchStatusEnum.GONE) {
+			return false;
+		}
+
+		if (myStorageSettings.isExpireSearchResults()) {
+			long now = System.currentTimeMillis();
+			Date expiry = search.getExpiryOrNull();
+			Date cutoff = DatabaseSearchCacheSvcImpl.getCutoff(
+					myStorageSettings, now, DatabaseSearchCacheSvcImpl.SEARCH_CLEANUP_JOB_INTERVAL_MILLIS);
+			return search.getCreated().after(cutoff) || (expiry != null && expiry.getTime() > now);
+		}
+		return true;
+	}
+
+	@VisibleForTesting
+	synchronized long getCachedPidCount() {
+		return myCachedPidCount;
+	}
+
+	/**
+	 * The result PIDs of a single search, stored in fixed size blocks so that growing
+	 * a large result set never requires copying it.
+	 */
+	private static class CachedResults {
+
+		private final Search mySearch;
+		private final RequestPartitionId myRequestPartitionId;
+		private final List<long[]> myBlocks = new ArrayList<>();
+		private int mySize;
+
+		private CachedResults(Search theSearch, RequestPartitionId theRequestPartitionId) {
+			mySearch = theSearch;
+			myRequestPartitionId = theRequestPartitionId;
+		}
+
+		Search getSearch() {
+			return mySearch;
+		}
+
+		RequestPartitionId getRequestPartitionId() {
+			return myRequestPartitionId;
+		}
+
+		int size() {
+			return mySize;
+		}
+
+		void set(int theFrom, List<JpaPid> thePids) {
+			int index = theFrom;
+			for (JpaPid next : thePids) {
+				while (index / BLOCK_SIZE >= myBlocks.size()) {
+					myBlocks.add(new long[BLOCK_SIZE]);
+				}
+				myBlocks.get(index / BLOCK_SIZE)[index % BLOCK_SIZE] = next.getId();
+				index++;
+			}
+			mySize = Math.max(mySize, index);
+		}
+
+		List<JpaPid> get(int theFrom, int theTo) {
+			int to = Math.min(theTo, mySize);
+			if (to <= theFrom) {
+				return new ArrayList<>();
+			}
+			List<JpaPid> retVal = new ArrayList<>(to - theFrom);
+			for (int i = theFrom; i < to; i++) {
+				retVal.add(JpaPid.fromId(myBlocks.get(i / BLOCK_SIZE)[i % BLOCK_SIZE]));
+			}
+			return retVal;
+		}
+	}
+}
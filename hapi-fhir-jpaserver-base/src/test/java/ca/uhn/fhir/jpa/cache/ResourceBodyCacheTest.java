@@ -0,0 +1,125 @@
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResourceBodyCacheTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private ResourceBodyCache mySvc;
+
+	@BeforeEach
+	public void beforeEach() {
+		myStorageSettings.setResourceBodyCacheMaxEntries(100);
+		mySvc = new ResourceBodyCache(ourCtx, myStorageSettings);
+	}
+
+	@AfterEach
+	public void afterEach() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		mySvc = new ResourceBodyCache(ourCtx, new JpaStorageSettings());
+		assertFalse(mySvc.isEnabled());
+
+		mySvc.putAfterCommit(1L, 1, new Patient().setActive(true));
+		assertNull(mySvc.get(1L, 1, Patient.class));
+		assertEquals(0, mySvc.getMissCount());
+	}
+
+	@Test
+	public void testGetReturnsCopy() {
+		Patient patient = new Patient();
+		patient.addName().setFamily("Simpson");
+		mySvc.putAfterCommit(1L, 2, patient);
+
+		// Changes made by the caller after the put must not leak into the cache
+		patient.getNameFirstRep().setFamily("Flanders");
+
+		Patient first = mySvc.get(1L, 2, Patient.class);
+		assertNotNull(first);
+		assertEquals("Simpson", first.getNameFirstRep().getFamily());
+		first.getNameFirstRep().setFamily("Flanders");
+
+		Patient second = mySvc.get(1L, 2, Patient.class);
+		assertNotNull(second);
+		assertNotSame(first, second);
+		assertEquals("Simpson", second.getNameFirstRep().getFamily());
+
+		assertNull(mySvc.get(1L, 1, Patient.class));
+		assertNull(mySvc.get(1L, 2, Practitioner.class));
+		assertEquals(2, mySvc.getHitCount());
+		assertEquals(2, mySvc.getMissCount());
+	}
+
+	@Test
+	public void testContainedReferencesPointAtCopy() {
+		Patient patient = ourCtx.newJsonParser().parseResource(Patient.class, "{\"resourceType\":\"Patient\",\"contained\":[{\"resourceType\":\"Organization\",\"id\":\"org1\",\"name\":\"Org\"}],\"managingOrganization\":{\"reference\":\"#org1\"}}");
+		mySvc.putAfterCommit(1L, 1, patient);
+
+		Patient copy = mySvc.get(1L, 1, Patient.class);
+		assertNotNull(copy);
+		Reference reference = copy.getManagingOrganization();
+		assertSame(copy.getContained().get(0), reference.getResource());
+		assertEquals("Org", ((Organization) reference.getResource()).getName());
+		assertEquals(ourCtx.newJsonParser().encodeResourceToString(patient), ourCtx.newJsonParser().encodeResourceToString(copy));
+	}
+
+	@Test
+	public void testPutIsDeferredUntilCommit() {
+		TransactionSynchronizationManager.initSynchronization();
+		mySvc.putAfterCommit(1L, 1, new Patient().setActive(true));
+		mySvc.putAfterCommit(2L, 1, new Patient().setActive(true));
+		assertNull(mySvc.get(1L, 1, Patient.class));
+
+		// Only the first transaction commits
+		TransactionSynchronization commit = TransactionSynchronizationManager.getSynchronizations().get(0);
+		TransactionSynchronizationManager.clearSynchronization();
+		commit.afterCommit();
+
+		assertNotNull(mySvc.get(1L, 1, Patient.class));
+		assertNull(mySvc.get(2L, 1, Patient.class));
+	}
+
+	@Test
+	public void testInvalidateAndResize() {
+		mySvc.putAfterCommit(1L, 1, new Patient().setActive(true));
+		mySvc.putAfterCommit(1L, 2, new Patient().setActive(false));
+
+		mySvc.invalidate(1L, 1);
+		assertNull(mySvc.get(1L, 1, Patient.class));
+		assertNotNull(mySvc.get(1L, 2, Patient.class));
+
+		// Changing the size at runtime rebuilds (and therefore empties) the cache
+		myStorageSettings.setResourceBodyCacheMaxEntries(200);
+		assertTrue(mySvc.isEnabled());
+		assertNull(mySvc.get(1L, 2, Patient.class));
+
+		myStorageSettings.setResourceBodyCacheMaxEntries(0);
+		assertFalse(mySvc.isEnabled());
+		assertThat(mySvc.getEstimatedSize()).isZero();
+	}
+}
@@ -165,7 +165,9 @@ class ResourceHistoryCalculatorTest {
 			Arguments.of(FhirContext.forR4Cached(), ResourceEncodingEnum.ESR, EXCLUDED_ELEMENTS_1),
 			Arguments.of(FhirContext.forR4Cached(), ResourceEncodingEnum.ESR, EXCLUDED_ELEMENTS_2),
 			Arguments.of(FhirContext.forR4Cached(), ResourceEncodingEnum.JSON, EXCLUDED_ELEMENTS_1),
-			Arguments.of(FhirContext.forR4Cached(), ResourceEncodingEnum.JSON, EXCLUDED_ELEMENTS_2)
+			Arguments.of(FhirContext.forR4Cached(), ResourceEncodingEnum.JSON, EXCLUDED_ELEMENTS_2),
+			Arguments.of(FhirContext.forR4Cached(), ResourceEncodingEnum.ZSTD, EXCLUDED_ELEMENTS_1),
+			Arguments.of(FhirContext.forR4Cached(), ResourceEncodingEnum.LZ4, EXCLUDED_ELEMENTS_2)
 		);
 	}
 
@@ -181,6 +183,76 @@ class ResourceHistoryCalculatorTest {
 		assertEquals(expectedEncoding, encodedResource);
 	}
 
+	@ParameterizedTest
+	@MethodSource("encodeResourceArguments")
+	void encodeResourceToBinary_matchesBinaryOfEncodedString(FhirContext theFhirContext, ResourceEncodingEnum theResourceEncoding, List<String> theExcludedElements) {
+		final IBaseResource patient = getPatient(theFhirContext);
+		final ResourceHistoryCalculator calculator = getCalculator(theFhirContext, true);
+
+		final byte[] resourceBinary = calculator.encodeResourceToBinary(patient, theResourceEncoding, theExcludedElements);
+
+		final String encodedResource = calculator.encodeResource(patient, theResourceEncoding, theExcludedElements);
+		assertArrayEquals(ResourceHistoryCalculator.getResourceBinary(theResourceEncoding, encodedResource), resourceBinary);
+	}
+
+	private static Stream<Arguments> binaryOnlyEncodingArguments() {
+		return Stream.of(
+			Arguments.of(true, ResourceEncodingEnum.ZSTD),
+			Arguments.of(false, ResourceEncodingEnum.ZSTD),
+			Arguments.of(true, ResourceEncodingEnum.LZ4),
+			Arguments.of(false, ResourceEncodingEnum.LZ4)
+		);
+	}
+
+	@ParameterizedTest
+	@MethodSource("binaryOnlyEncodingArguments")
+	void calculateResourceHistoryState_binaryOnlyEncodingIsAlwaysBinary(boolean theIsOracle, ResourceEncodingEnum theResourceEncoding) {
+		final IBaseResource patient = getPatient(CONTEXT);
+		final ResourceHistoryCalculator calculator = getCalculator(theIsOracle);
+
+		final ResourceHistoryState result = calculator.calculateResourceHistoryState(patient, theResourceEncoding, EXCLUDED_ELEMENTS_1);
+
+		assertNotNull(result.getResourceBinary());
+		assertNull(result.getResourceText());
+		assertEquals(theResourceEncoding, result.getEncoding());
+		assertEquals(SHA_256.hashBytes(result.getResourceBinary()), result.getHashCode());
+		assertEquals(calculator.encodeResource(patient, theResourceEncoding, EXCLUDED_ELEMENTS_1), BaseHapiFhirDao.decodeResource(result.getResourceBinary(), theResourceEncoding));
+	}
+
+	@ParameterizedTest
+	@MethodSource("binaryOnlyEncodingArguments")
+	void conditionallyAlterHistoryEntity_reencodesIntoBinaryOnlyEncoding(boolean theIsOracle, ResourceEncodingEnum theResourceEncoding) {
+		final ResourceTable resourceTable = new ResourceTable();
+		resourceTable.setId(123L);
+
+		final ResourceHistoryTable resourceHistoryTable = new ResourceHistoryTable();
+		resourceHistoryTable.setVersion(1);
+		resourceHistoryTable.setEncoding(ResourceEncodingEnum.JSON);
+		resourceHistoryTable.setResourceTextVc(ENCODED_RESOURCE_1);
+
+		final ResourceHistoryCalculator calculator = getCalculator(theIsOracle);
+		assertTrue(calculator.conditionallyAlterHistoryEntity(resourceTable, resourceHistoryTable, ENCODED_RESOURCE_1, theResourceEncoding));
+		assertNull(resourceHistoryTable.getResourceTextVc());
+		assertEquals(theResourceEncoding, resourceHistoryTable.getEncoding());
+		// Binary-only encodings never use the legacy LOB column
+		assertNull(resourceHistoryTable.getResource());
+		assertEquals(ENCODED_RESOURCE_1, BaseHapiFhirDao.decodeResource(resourceHistoryTable.getResourceBinary(), theResourceEncoding));
+		assertArrayEquals(resourceHistoryTable.getResourceBinary(), resourceHistoryTable.getResourceBytes());
+
+		// Already in the target encoding
+		assertFalse(calculator.conditionallyAlterHistoryEntity(resourceTable, resourceHistoryTable, ENCODED_RESOURCE_1, theResourceEncoding));
+
+		// Switching back to JSONC only changes the row on non-Oracle databases
+		final boolean isChanged = calculator.conditionallyAlterHistoryEntity(resourceTable, resourceHistoryTable, ENCODED_RESOURCE_1, ResourceEncodingEnum.JSONC);
+		assertEquals(!theIsOracle, isChanged);
+		if (!theIsOracle) {
+			assertNull(resourceHistoryTable.getResource());
+			assertNull(resourceHistoryTable.getResourceBinary());
+			assertEquals(ENCODED_RESOURCE_1, resourceHistoryTable.getResourceTextVc());
+			assertEquals(ResourceEncodingEnum.JSON, resourceHistoryTable.getEncoding());
+		}
+	}
+
 	private static Stream<Arguments> getResourceBinaryArguments() {
 		return Stream.of(
 			Arguments.of(ResourceEncodingEnum.JSONC, ENCODED_RESOURCE_1),
@@ -190,7 +262,11 @@ class ResourceHistoryCalculatorTest {
 			Arguments.of(ResourceEncodingEnum.ESR, ENCODED_RESOURCE_1),
 			Arguments.of(ResourceEncodingEnum.ESR, ENCODED_RESOURCE_2),
 			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_1),
-			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_2)
+			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_2),
+			Arguments.of(ResourceEncodingEnum.ZSTD, ENCODED_RESOURCE_1),
+			Arguments.of(ResourceEncodingEnum.ZSTD, ENCODED_RESOURCE_2),
+			Arguments.of(ResourceEncodingEnum.LZ4, ENCODED_RESOURCE_1),
+			Arguments.of(ResourceEncodingEnum.LZ4, ENCODED_RESOURCE_2)
 		);
 	}
 
@@ -206,6 +282,10 @@ class ResourceHistoryCalculatorTest {
 			case JSONC:
 				assertArrayEquals(GZipUtil.compress(theEncodedResource), resourceBinary);
 				break;
+			case ZSTD:
+			case LZ4:
+				assertEquals(theEncodedResource, BaseHapiFhirDao.decodeResource(resourceBinary, theResourceEncoding));
+				break;
 			case DEL :
 			case ESR :
 			default:
@@ -59,6 +59,7 @@ public class DaoSearchParamSynchronizerTest {
 		final ResourceTable resourceTable = new ResourceTable();
 		resourceTable.setId(1L);
 		EXISTING_SEARCH_PARAM_NUMBER.setResource(resourceTable);
+		EXISTING_SEARCH_PARAM_NUMBER.setId(100L);
 		THE_SEARCH_PARAM_NUMBER.setResource(resourceTable);
 
 		subject.setEntityManager(entityManager);
@@ -75,4 +76,22 @@ public class DaoSearchParamSynchronizerTest {
 		verify(entityManager, never()).remove(any(BaseResourceIndex.class));
 		verify(entityManager, times(1)).merge(THE_SEARCH_PARAM_NUMBER);
 	}
+
+	@Test
+	void synchronizeSearchParamsNewRowIsPersisted() {
+		ResourceIndexedSearchParamNumber newParam = new ResourceIndexedSearchParamNumber(new PartitionSettings(), "Patient", GRITTSCORE, BigDecimal.valueOf(14));
+		newParam.setResource(THE_SEARCH_PARAM_NUMBER.getResource());
+		when(existingEntity.getParamsNumber()).thenReturn(List.of());
+		when(theEntity.getParamsNumber()).thenReturn(List.of(newParam));
+		theParams = ResourceIndexedSearchParams.withLists(theEntity);
+		existingParams = ResourceIndexedSearchParams.withLists(existingEntity);
+
+		final AddRemoveCount addRemoveCount = subject.synchronizeSearchParamsToDatabase(theParams, theEntity, existingParams);
+
+		assertEquals(0, addRemoveCount.getRemoveCount());
+		assertEquals(1, addRemoveCount.getAddCount());
+
+		verify(entityManager, times(1)).persist(newParam);
+		verify(entityManager, never()).merge(any(BaseResourceIndex.class));
+	}
 }
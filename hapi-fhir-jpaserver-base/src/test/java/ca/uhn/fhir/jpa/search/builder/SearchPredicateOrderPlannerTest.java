@@ -0,0 +1,151 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class SearchPredicateOrderPlannerTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private final PartitionSettings myPartitionSettings = new PartitionSettings();
+
+	@Mock
+	private IResourceIndexedSearchParamTokenDao myTokenDao;
+
+	private SearchPredicateOrderPlanner mySvc;
+
+	@BeforeEach
+	public void beforeEach() {
+		mySvc = new SearchPredicateOrderPlanner(
+			new FhirContextSearchParamRegistry(ourCtx),
+			myPartitionSettings,
+			myTokenDao,
+			new MemoryCacheService(new JpaStorageSettings()));
+	}
+
+	@Test
+	public void testOrderBySelectivity_TokenBeforeRange() {
+		mockTokenCount("http://loinc.org", "1234-5", 3);
+
+		SearchParameterMap map = new SearchParameterMap()
+			.add("date", new DateParam("gt2020"))
+			.add("subject", new ReferenceParam("Patient/123"))
+			.add("code", new TokenParam("http://loinc.org", "1234-5"));
+
+		List<String> ordered = mySvc.orderBySelectivity("Observation", map, List.copyOf(map.keySet()), RequestPartitionId.allPartitions());
+
+		assertThat(ordered).containsExactly("code", "subject", "date");
+	}
+
+	@Test
+	public void testOrderBySelectivity_CommonTokenAfterReference() {
+		mockTokenCount("http://loinc.org", "common", SearchPredicateOrderPlanner.MAX_TOKEN_SAMPLE_SIZE);
+
+		SearchParameterMap map = new SearchParameterMap()
+			.add("code", new TokenParam("http://loinc.org", "common"))
+			.add("subject", new ReferenceParam("Patient/123"));
+
+		List<String> ordered = mySvc.orderBySelectivity("Observation", map, List.copyOf(map.keySet()), RequestPartitionId.allPartitions());
+
+		assertThat(ordered).containsExactly("subject", "code");
+	}
+
+	@Test
+	public void testOrderBySelectivity_UnknownKeepsOriginalOrder() {
+		SearchParameterMap map = new SearchParameterMap()
+			.add("code", new TokenParam("http://loinc.org", "1234-5").setModifier(TokenParamModifier.NOT))
+			.add("value-string", new StringParam("foo").setContains(true))
+			.add("subject", new ReferenceParam("Patient", "name", "smith"));
+
+		List<String> ordered = mySvc.orderBySelectivity("Observation", map, List.copyOf(map.keySet()), RequestPartitionId.allPartitions());
+
+		assertThat(ordered).containsExactly("value-string", "code", "subject");
+	}
+
+	@Test
+	public void testEstimateParameter_OrValuesAreSummedAndValuesUseMinimum() {
+		mockTokenCount("http://loinc.org", "a", 3);
+		mockTokenCount("http://loinc.org", "b", 4);
+		mockTokenCount("http://loinc.org", "c", 50);
+
+		SearchParameterMap map = new SearchParameterMap()
+			.add("code", new TokenOrListParam().addOr(new TokenParam("http://loinc.org", "a")).addOr(new TokenParam("http://loinc.org", "b")))
+			.add("code", new TokenParam("http://loinc.org", "c"));
+
+		assertEquals(7, mySvc.estimateParameter("Observation", "code", map.get("code"), RequestPartitionId.allPartitions()));
+		assertEquals(SearchPredicateOrderPlanner.UNKNOWN_ESTIMATE, mySvc.estimateParameter("Observation", "foo", map.get("code"), RequestPartitionId.allPartitions()));
+	}
+
+	@Test
+	public void testEstimateParameter_LargeOrListIsNotSampled() {
+		TokenOrListParam orList = new TokenOrListParam();
+		for (int i = 0; i <= SearchPredicateOrderPlanner.MAX_ESTIMATED_OR_VALUES; i++) {
+			orList.addOr(new TokenParam("http://loinc.org", "code" + i));
+		}
+		SearchParameterMap map = new SearchParameterMap().add("code", orList);
+
+		assertEquals(SearchPredicateOrderPlanner.UNKNOWN_ESTIMATE, mySvc.estimateParameter("Observation", "code", map.get("code"), RequestPartitionId.allPartitions()));
+		verifyNoInteractions(myTokenDao);
+	}
+
+	@Test
+	public void testEstimateParameter_StopsSamplingOnceOrListCannotBeatBestEstimate() {
+		mockTokenCount("http://loinc.org", "a", 3);
+		mockTokenCount("http://loinc.org", "b", 4);
+
+		SearchParameterMap map = new SearchParameterMap()
+			.add("code", new TokenParam("http://loinc.org", "a"))
+			.add("code", new TokenOrListParam().addOr(new TokenParam("http://loinc.org", "b")).addOr(new TokenParam("http://loinc.org", "c")));
+
+		assertEquals(3, mySvc.estimateParameter("Observation", "code", map.get("code"), RequestPartitionId.allPartitions()));
+		verify(myTokenDao, times(2)).findIdsByHashSystemAndValue(any(), any());
+	}
+
+	@Test
+	public void testEstimateParameter_SampleIsCached() {
+		mockTokenCount("http://loinc.org", "1234-5", 3);
+		SearchParameterMap map = new SearchParameterMap()
+			.add("code", new TokenParam("http://loinc.org", "1234-5"));
+
+		mySvc.estimateParameter("Observation", "code", map.get("code"), RequestPartitionId.allPartitions());
+		mySvc.estimateParameter("Observation", "code", map.get("code"), RequestPartitionId.allPartitions());
+
+		long hash = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(myPartitionSettings, RequestPartitionId.allPartitions(), "Observation", "code", "http://loinc.org", "1234-5");
+		verify(myTokenDao, times(1)).findIdsByHashSystemAndValue(eq(hash), any());
+	}
+
+	private void mockTokenCount(String theSystem, String theValue, int theCount) {
+		long hash = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(myPartitionSettings, RequestPartitionId.allPartitions(), "Observation", "code", theSystem, theValue);
+		lenient().when(myTokenDao.findIdsByHashSystemAndValue(eq(hash), any())).thenReturn(Collections.nCopies(theCount, 1L));
+	}
+}
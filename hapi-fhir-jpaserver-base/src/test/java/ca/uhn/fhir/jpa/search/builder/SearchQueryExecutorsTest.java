@@ -1,14 +1,24 @@
 package ca.uhn.fhir.jpa.search.builder;
 
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Spliterators;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.StreamSupport;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SearchQueryExecutorsTest {
 
@@ -43,6 +53,105 @@ class SearchQueryExecutorsTest {
 		assertThat(drain(queryExecutor)).containsExactly(1L, 2L, 3L);
 	}
 
+	@Test
+	public void mergeSortedYieldsValuesInOrder() {
+		ISearchQueryExecutor queryExecutor = SearchQueryExecutors.mergeSorted(List.of(
+			SearchQueryExecutors.from(Arrays.asList(1L, 4L, 7L)),
+			SearchQueryExecutors.from(List.<Long>of()),
+			SearchQueryExecutors.from(Arrays.asList(2L, 3L, 9L)),
+			SearchQueryExecutors.from(Arrays.asList(5L))), Comparator.naturalOrder());
+
+		assertThat(drain(queryExecutor)).containsExactly(1L, 2L, 3L, 4L, 5L, 7L, 9L);
+	}
+
+	@Test
+	public void mergeSortedDescendingYieldsValuesInOrder() {
+		ISearchQueryExecutor queryExecutor = SearchQueryExecutors.mergeSorted(List.of(
+			SearchQueryExecutors.from(Arrays.asList(7L, 4L, 1L)),
+			SearchQueryExecutors.from(Arrays.asList(9L, 3L, 2L))), Comparator.reverseOrder());
+
+		assertThat(drain(queryExecutor)).containsExactly(9L, 7L, 4L, 3L, 2L, 1L);
+	}
+
+	@Test
+	public void concatYieldsValuesOfEachExecutorInTurn() {
+		ISearchQueryExecutor queryExecutor = SearchQueryExecutors.concat(List.of(
+			SearchQueryExecutors.from(List.<Long>of()),
+			SearchQueryExecutors.from(Arrays.asList(3L, 1L)),
+			SearchQueryExecutors.from(List.<Long>of()),
+			SearchQueryExecutors.from(Arrays.asList(2L))));
+
+		assertThat(drain(queryExecutor)).containsExactly(3L, 1L, 2L);
+	}
+
+	@Test
+	public void prefetchingReadByConsumerWhenNoWorkerStarted() {
+		SearchQueryExecutors.PrefetchingSearchQueryExecutor queryExecutor = SearchQueryExecutors.prefetching(SearchQueryExecutors.from(Arrays.asList(1L, 2L, 3L)), 2);
+
+		assertThat(drain(queryExecutor)).containsExactly(1L, 2L, 3L);
+		assertFalse(queryExecutor.start());
+	}
+
+	@Test
+	public void prefetchingReadByWorker() throws InterruptedException {
+		List<Long> values = LongStream.range(0, 100).boxed().collect(Collectors.toList());
+		SearchQueryExecutors.PrefetchingSearchQueryExecutor queryExecutor = SearchQueryExecutors.prefetching(SearchQueryExecutors.from(values), 5);
+
+		assertTrue(queryExecutor.start());
+		Thread worker = new Thread(queryExecutor::prefetch);
+		worker.start();
+
+		assertThat(drain(queryExecutor)).containsExactlyElementsOf(values);
+		worker.join(10000);
+		assertFalse(worker.isAlive());
+	}
+
+	@Test
+	public void prefetchingAbandonedIsReadByConsumer() {
+		SearchQueryExecutors.PrefetchingSearchQueryExecutor queryExecutor = SearchQueryExecutors.prefetching(SearchQueryExecutors.from(Arrays.asList(1L, 2L)), 2);
+
+		assertTrue(queryExecutor.start());
+		queryExecutor.abandon();
+
+		assertThat(drain(queryExecutor)).containsExactly(1L, 2L);
+	}
+
+	@Test
+	public void prefetchingRethrowsFailure() {
+		ISearchQueryExecutor failingQuery = SearchQueryExecutors.from(new Iterator<JpaPid>() {
+			@Override
+			public boolean hasNext() {
+				throw new InvalidRequestException("bad");
+			}
+
+			@Override
+			public JpaPid next() {
+				throw new NoSuchElementException();
+			}
+		});
+		SearchQueryExecutors.PrefetchingSearchQueryExecutor queryExecutor = SearchQueryExecutors.prefetching(failingQuery, 2);
+
+		assertTrue(queryExecutor.start());
+		queryExecutor.prefetch();
+
+		assertThatThrownBy(queryExecutor::hasNext).isInstanceOf(InvalidRequestException.class).hasMessage("bad");
+	}
+
+	@Test
+	public void prefetchingStopsWhenClosed() throws InterruptedException {
+		List<Long> values = LongStream.range(0, 100).boxed().collect(Collectors.toList());
+		SearchQueryExecutors.PrefetchingSearchQueryExecutor queryExecutor = SearchQueryExecutors.prefetching(SearchQueryExecutors.from(values), 1);
+
+		assertTrue(queryExecutor.start());
+		Thread worker = new Thread(queryExecutor::prefetch);
+		worker.start();
+		assertEquals(0L, queryExecutor.next());
+
+		queryExecutor.close();
+		worker.join(10000);
+		assertFalse(worker.isAlive());
+		assertFalse(queryExecutor.hasNext());
+	}
 
 	private List<Long> drain(ISearchQueryExecutor theQueryExecutor) {
 		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(theQueryExecutor, 0), false)
@@ -0,0 +1,99 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InMemorySearchResultCacheSvcImplTest {
+
+	@Mock
+	private ISearchResultDao mySearchResultDao;
+	@SuppressWarnings("unused") // injected into mySvc
+	@Spy
+	private IHapiTransactionService myTransactionService = new NonTransactionalHapiTransactionService();
+	@InjectMocks
+	private InMemorySearchResultCacheSvcImpl mySvc = new InMemorySearchResultCacheSvcImpl(5000, false);
+
+	@Test
+	public void testStoreAndFetchAcrossBlocks() {
+		Search search = newSearch(1L);
+		List<JpaPid> first = pids(0, 1000);
+		List<JpaPid> second = pids(1000, 2500);
+		mySvc.storeResults(search, Collections.emptyList(), first, null, null);
+		mySvc.storeResults(search, first, second, null, null);
+
+		assertEquals(pids(1020, 1030), mySvc.fetchResultPids(search, 1020, 1030, null, null));
+		assertEquals(pids(2490, 2500), mySvc.fetchResultPids(search, 2490, 2600, null, null));
+		assertThat(mySvc.fetchResultPids(search, 2500, 2600, null, null)).isEmpty();
+		assertThat(mySvc.fetchAllResultPids(search, null, null)).hasSize(2500);
+		assertEquals(2500, mySvc.getCachedPidCount());
+	}
+
+	@Test
+	public void testEmptySearchIsKnown() {
+		Search search = newSearch(1L);
+		mySvc.storeResults(search, Collections.emptyList(), Collections.emptyList(), null, null);
+
+		assertThat(mySvc.fetchResultPids(search, 0, 10, null, null)).isEmpty();
+		assertThat(mySvc.fetchAllResultPids(search, null, null)).isEmpty();
+	}
+
+	@Test
+	public void testUnknownSearch() {
+		assertNull(mySvc.fetchResultPids(newSearch(1L), 0, 10, null, null));
+		assertNull(mySvc.fetchAllResultPids(newSearch(1L), null, null));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedSearchIsEvicted() {
+		Search search1 = newSearch(1L);
+		Search search2 = newSearch(2L);
+		Search search3 = newSearch(3L);
+		mySvc.storeResults(search1, Collections.emptyList(), pids(0, 2000), null, null);
+		mySvc.storeResults(search2, Collections.emptyList(), pids(0, 2000), null, null);
+
+		// Touch search 1 so that search 2 is the least recently used
+		mySvc.fetchResultPids(search1, 0, 10, null, null);
+		mySvc.storeResults(search3, Collections.emptyList(), pids(0, 2000), null, null);
+
+		assertThat(mySvc.fetchResultPids(search1, 0, 10, null, null)).hasSize(10);
+		assertNull(mySvc.fetchResultPids(search2, 0, 10, null, null));
+		assertThat(mySvc.fetchResultPids(search3, 0, 10, null, null)).hasSize(10);
+		assertEquals(4000, mySvc.getCachedPidCount());
+
+		// Further results for an evicted search are dropped
+		mySvc.storeResults(search2, pids(0, 2000), pids(2000, 2010), null, null);
+		assertNull(mySvc.fetchResultPids(search2, 2000, 2010, null, null));
+	}
+
+	private static Search newSearch(Long theId) {
+		Search retVal = mock(Search.class);
+		when(retVal.getId()).thenReturn(theId);
+		return retVal;
+	}
+
+	private static List<JpaPid> pids(long theFrom, long theTo) {
+		return LongStream.range(theFrom, theTo).mapToObj(JpaPid::fromId).collect(Collectors.toCollection(ArrayList::new));
+	}
+}
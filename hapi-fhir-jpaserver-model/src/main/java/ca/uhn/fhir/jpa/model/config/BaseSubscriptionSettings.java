@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.model.config;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.dstu2.model.Subscription;
 
 import java.util.Collections;
@@ -34,6 +35,10 @@ public abstract class BaseSubscriptionSettings {
 	public static final String DEFAULT_WEBSOCKET_CONTEXT_PATH = "/websocket";
 	public static final String DEFAULT_RESTHOOK_ENDPOINTURL_VALIDATION_REGEX =
 			"((((http?|https?)://))([-%()_.!~*';/?:@&=+$,A-Za-z0-9])+)";
+	public static final int DEFAULT_RESTHOOK_DELIVERY_BATCH_MAX_SIZE = 100;
+	public static final long DEFAULT_RESTHOOK_DELIVERY_BATCH_MAX_WAIT_MILLIS = 1000;
+	public static final int DEFAULT_RESTHOOK_DELIVERY_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT = 2;
+	public static final int DEFAULT_RESTHOOK_DELIVERY_THREAD_COUNT = 10;
 
 	private final Set<Subscription.SubscriptionChannelType> mySupportedSubscriptionTypes = new HashSet<>();
 	private String myEmailFromAddress = DEFAULT_EMAIL_FROM_ADDRESS;
@@ -56,6 +61,13 @@ public abstract class BaseSubscriptionSettings {
 	 */
 	private String myRestHookEndpointUrlValidationRegex = DEFAULT_RESTHOOK_ENDPOINTURL_VALIDATION_REGEX;
 
+	private boolean myRestHookDeliveryBatchingEnabled = false;
+	private int myRestHookDeliveryBatchMaxSize = DEFAULT_RESTHOOK_DELIVERY_BATCH_MAX_SIZE;
+	private long myRestHookDeliveryBatchMaxWaitMillis = DEFAULT_RESTHOOK_DELIVERY_BATCH_MAX_WAIT_MILLIS;
+	private int myRestHookDeliveryMaxConcurrentRequestsPerEndpoint =
+			DEFAULT_RESTHOOK_DELIVERY_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT;
+	private int myRestHookDeliveryThreadCount = DEFAULT_RESTHOOK_DELIVERY_THREAD_COUNT;
+
 	/**
 	 * This setting indicates which subscription channel types are supported by the server.  Any subscriptions submitted
 	 * to the server matching these types will be activated.
@@ -274,4 +286,131 @@ public abstract class BaseSubscriptionSettings {
 	public boolean hasRestHookEndpointUrlValidationRegex() {
 		return isNotBlank(myRestHookEndpointUrlValidationRegex);
 	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), notifications for rest-hook subscriptions
+	 * are not sent one at a time. Instead they are accumulated per subscription and sent together as a single
+	 * notification Bundle with the same shape as a topic subscription notification (a <code>history</code>
+	 * Bundle on R4 and R4B, a <code>subscription-notification</code> Bundle on R5). A batch is sent once it
+	 * holds {@link #getRestHookDeliveryBatchMaxSize()} notifications, or
+	 * {@link #getRestHookDeliveryBatchMaxWaitMillis()} after its first notification was added, whichever
+	 * comes first.
+	 * <p>
+	 * Batches are sent asynchronously. If a batch can not be delivered, its notifications are sent back to
+	 * the delivery channel to be delivered one at a time, so that they are retried by the channel like any
+	 * other notification. Batches still in progress are delivered when the server shuts down, but a
+	 * notification is acknowledged to the delivery channel once it has been added to a batch, so batches
+	 * held in memory are lost if the server stops abruptly. Only
+	 * subscriptions delivering full resources with a payload type are batched, other rest-hook subscriptions
+	 * (including topic subscriptions, which already deliver a Bundle) are delivered as before.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isRestHookDeliveryBatchingEnabled() {
+		return myRestHookDeliveryBatchingEnabled;
+	}
+
+	/**
+	 * @see #isRestHookDeliveryBatchingEnabled()
+	 * @since 7.6.0
+	 */
+	public void setRestHookDeliveryBatchingEnabled(boolean theRestHookDeliveryBatchingEnabled) {
+		myRestHookDeliveryBatchingEnabled = theRestHookDeliveryBatchingEnabled;
+	}
+
+	/**
+	 * The maximum number of notifications sent in a single rest-hook delivery when
+	 * {@link #isRestHookDeliveryBatchingEnabled() batching is enabled}.
+	 * Default is {@value #DEFAULT_RESTHOOK_DELIVERY_BATCH_MAX_SIZE}.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getRestHookDeliveryBatchMaxSize() {
+		return myRestHookDeliveryBatchMaxSize;
+	}
+
+	/**
+	 * The maximum number of notifications sent in a single rest-hook delivery when
+	 * {@link #isRestHookDeliveryBatchingEnabled() batching is enabled}.
+	 * Default is {@value #DEFAULT_RESTHOOK_DELIVERY_BATCH_MAX_SIZE}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setRestHookDeliveryBatchMaxSize(int theRestHookDeliveryBatchMaxSize) {
+		Validate.isTrue(theRestHookDeliveryBatchMaxSize >= 1, "Batch size must be at least 1");
+		myRestHookDeliveryBatchMaxSize = theRestHookDeliveryBatchMaxSize;
+	}
+
+	/**
+	 * The maximum number of milliseconds a notification waits for others to be batched with when
+	 * {@link #isRestHookDeliveryBatchingEnabled() batching is enabled}.
+	 * Default is {@value #DEFAULT_RESTHOOK_DELIVERY_BATCH_MAX_WAIT_MILLIS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public long getRestHookDeliveryBatchMaxWaitMillis() {
+		return myRestHookDeliveryBatchMaxWaitMillis;
+	}
+
+	/**
+	 * The maximum number of milliseconds a notification waits for others to be batched with when
+	 * {@link #isRestHookDeliveryBatchingEnabled() batching is enabled}.
+	 * Default is {@value #DEFAULT_RESTHOOK_DELIVERY_BATCH_MAX_WAIT_MILLIS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setRestHookDeliveryBatchMaxWaitMillis(long theRestHookDeliveryBatchMaxWaitMillis) {
+		Validate.isTrue(theRestHookDeliveryBatchMaxWaitMillis >= 0, "Wait time must not be negative");
+		myRestHookDeliveryBatchMaxWaitMillis = theRestHookDeliveryBatchMaxWaitMillis;
+	}
+
+	/**
+	 * The maximum number of batched rest-hook deliveries sent to the same endpoint URL at the same time when
+	 * {@link #isRestHookDeliveryBatchingEnabled() batching is enabled}. Further batches for that endpoint
+	 * are queued until one of the requests completes.
+	 * Default is {@value #DEFAULT_RESTHOOK_DELIVERY_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT}.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getRestHookDeliveryMaxConcurrentRequestsPerEndpoint() {
+		return myRestHookDeliveryMaxConcurrentRequestsPerEndpoint;
+	}
+
+	/**
+	 * The maximum number of batched rest-hook deliveries sent to the same endpoint URL at the same time when
+	 * {@link #isRestHookDeliveryBatchingEnabled() batching is enabled}. Further batches for that endpoint
+	 * are queued until one of the requests completes.
+	 * Default is {@value #DEFAULT_RESTHOOK_DELIVERY_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setRestHookDeliveryMaxConcurrentRequestsPerEndpoint(
+			int theRestHookDeliveryMaxConcurrentRequestsPerEndpoint) {
+		Validate.isTrue(theRestHookDeliveryMaxConcurrentRequestsPerEndpoint >= 1, "Concurrency must be at least 1");
+		myRestHookDeliveryMaxConcurrentRequestsPerEndpoint = theRestHookDeliveryMaxConcurrentRequestsPerEndpoint;
+	}
+
+	/**
+	 * The number of threads shared by all endpoints for sending batched rest-hook deliveries when
+	 * {@link #isRestHookDeliveryBatchingEnabled() batching is enabled}. This is read once at startup.
+	 * Default is {@value #DEFAULT_RESTHOOK_DELIVERY_THREAD_COUNT}.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getRestHookDeliveryThreadCount() {
+		return myRestHookDeliveryThreadCount;
+	}
+
+	/**
+	 * The number of threads shared by all endpoints for sending batched rest-hook deliveries when
+	 * {@link #isRestHookDeliveryBatchingEnabled() batching is enabled}. This is read once at startup.
+	 * Default is {@value #DEFAULT_RESTHOOK_DELIVERY_THREAD_COUNT}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setRestHookDeliveryThreadCount(int theRestHookDeliveryThreadCount) {
+		Validate.isTrue(theRestHookDeliveryThreadCount >= 1, "Thread count must be at least 1");
+		myRestHookDeliveryThreadCount = theRestHookDeliveryThreadCount;
+	}
 }
@@ -0,0 +1,206 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.dialect;
+
+import org.apache.commons.lang3.Validate;
+import org.hibernate.service.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * This is an internal API and may change or disappear without notice
+ * <p>
+ * Hands out IDs for the {@link HapiSequenceStyleGenerator} from blocks which are fetched from the
+ * database sequences several sequence values at a time. Every sequence value <code>v</code> fetched
+ * reserves the IDs from <code>v - increment + 1</code> up to <code>v</code>, which is the same range
+ * the Hibernate <code>pooled</code> optimizer reserves for it. This means that nodes using different
+ * block sizes (or not using this allocator at all) can safely share the same sequences, and that the
+ * sequences created by the migration tasks don't need to be changed when the block size is.
+ * </p>
+ * <p>
+ * IDs are handed out from the current block of each sequence using an atomic counter. Only the thread
+ * which finds that a block has been exhausted takes a lock in order to fetch the next one.
+ * </p>
+ *
+ * @see ca.uhn.fhir.jpa.model.entity.StorageSettings#setSequenceBlockSize(int)
+ * @since 7.6.0
+ */
+public class HapiIdBlockAllocator implements Service {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(HapiIdBlockAllocator.class);
+
+	private final int myDefaultBlockSize;
+	private final Map<String, Integer> myBlockSizes;
+	private final Map<String, SequenceState> mySequences = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param theDefaultBlockSize The number of IDs to reserve at a time for each sequence
+	 * @param theBlockSizes       The number of IDs to reserve at a time for specific sequences, keyed by sequence name
+	 */
+	public HapiIdBlockAllocator(int theDefaultBlockSize, Map<String, Integer> theBlockSizes) {
+		Validate.isTrue(theDefaultBlockSize >= 1, "Block size must be at least 1");
+		myDefaultBlockSize = theDefaultBlockSize;
+		myBlockSizes = new HashMap<>(theBlockSizes);
+	}
+
+	/**
+	 * Returns the number of IDs reserved at a time for the given sequence
+	 */
+	public int getBlockSize(String theSequenceName) {
+		return myBlockSizes.getOrDefault(theSequenceName, myDefaultBlockSize);
+	}
+
+	/**
+	 * Returns the number of sequence values which should be fetched at a time for the given sequence,
+	 * given the increment it was created with
+	 */
+	public int getSequenceValuesPerBlock(String theSequenceName, int theIncrementSize) {
+		return Math.max(1, getBlockSize(theSequenceName) / theIncrementSize);
+	}
+
+	/**
+	 * Returns the next ID for the given sequence.
+	 *
+	 * @param theSequenceName         The sequence name
+	 * @param theIncrementSize        The increment the sequence was created with
+	 * @param theSequenceValueFetcher Fetches the next block of sequence values from the database. This is only
+	 *                                called when the current block has been exhausted.
+	 */
+	public long nextId(String theSequenceName, int theIncrementSize, Supplier<long[]> theSequenceValueFetcher) {
+		SequenceState state = mySequences.computeIfAbsent(theSequenceName, t -> new SequenceState());
+		while (true) {
+			Block block = state.myBlock.get();
+			if (block != null) {
+				long retVal = block.next();
+				if (retVal != -1) {
+					state.myMetrics.myAllocatedIds.incrementAndGet();
+					return retVal;
+				}
+			}
+
+			synchronized (state) {
+				// Another thread may have fetched a new block while we were waiting
+				if (state.myBlock.get() == block) {
+					long[] values = theSequenceValueFetcher.get();
+					Validate.isTrue(values.length > 0, "No values fetched from sequence %s", theSequenceName);
+					state.myBlock.set(new Block(values, theIncrementSize));
+					state.myMetrics.myFetchedBlocks.incrementAndGet();
+					state.myMetrics.myFetchedSequenceValues.addAndGet(values.length);
+					ourLog.trace("Fetched {} values from sequence {}", values.length, theSequenceName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns metrics about the IDs allocated so far, keyed by sequence name
+	 */
+	public Map<String, Metrics> getMetrics() {
+		Map<String, Metrics> retVal = new HashMap<>();
+		mySequences.forEach((k, v) -> retVal.put(k, v.myMetrics));
+		return Collections.unmodifiableMap(retVal);
+	}
+
+	public static class Metrics {
+
+		private final AtomicLong myFetchedBlocks = new AtomicLong();
+		private final AtomicLong myFetchedSequenceValues = new AtomicLong();
+		private final AtomicLong myAllocatedIds = new AtomicLong();
+
+		/**
+		 * The number of blocks fetched, which is also the number of database round trips made
+		 */
+		public long getFetchedBlocks() {
+			return myFetchedBlocks.get();
+		}
+
+		/**
+		 * The number of sequence values fetched
+		 */
+		public long getFetchedSequenceValues() {
+			return myFetchedSequenceValues.get();
+		}
+
+		/**
+		 * The number of IDs handed out
+		 */
+		public long getAllocatedIds() {
+			return myAllocatedIds.get();
+		}
+
+		@Override
+		public String toString() {
+			return "Metrics[fetchedBlocks=" + getFetchedBlocks() + ", fetchedSequenceValues="
+					+ getFetchedSequenceValues() + ", allocatedIds=" + getAllocatedIds() + "]";
+		}
+	}
+
+	private static class SequenceState {
+
+		private final AtomicReference<Block> myBlock = new AtomicReference<>();
+		private final Metrics myMetrics = new Metrics();
+	}
+
+	private static class Block {
+
+		private final long[] mySequenceValues;
+		private final int myIncrementSize;
+		private final long mySize;
+		private final AtomicLong myNextIndex = new AtomicLong();
+
+		private Block(long[] theSequenceValues, int theIncrementSize) {
+			mySequenceValues = theSequenceValues.clone();
+			Arrays.sort(mySequenceValues);
+			myIncrementSize = theIncrementSize;
+			mySize = (long) mySequenceValues.length * theIncrementSize;
+		}
+
+		/**
+		 * Returns the next ID in this block, or -1 if it has been exhausted
+		 */
+		private long next() {
+			while (true) {
+				long index = myNextIndex.getAndIncrement();
+				if (index >= mySize) {
+					return -1;
+				}
+
+				long sequenceValue = mySequenceValues[(int) (index / myIncrementSize)];
+				long retVal = sequenceValue - myIncrementSize + 1 + (index % myIncrementSize);
+
+				// The first value of a new sequence only reserves itself, as with the pooled optimizer
+				if (retVal >= 1) {
+					return retVal;
+				}
+			}
+		}
+	}
+}
@@ -27,29 +27,63 @@ import org.hibernate.MappingException;
 import org.hibernate.boot.model.relational.Database;
 import org.hibernate.boot.model.relational.ExportableProducer;
 import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.dialect.CockroachDialect;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.OracleDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.id.BulkInsertionCapableIdentifierGenerator;
 import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.id.OptimizableGenerator;
 import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.DatabaseStructure;
 import org.hibernate.id.enhanced.Optimizer;
 import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
 import org.hibernate.service.ServiceRegistry;
 import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Properties;
 
 /**
  * This is a sequence generator that wraps the Hibernate default sequence generator {@link SequenceStyleGenerator}
  * and by default will therefore work exactly as the default would, but allows for customization.
+ * <p>
+ * If a {@link HapiIdBlockAllocator} is registered and the block size configured for a sequence is
+ * larger than the increment the sequence was created with, IDs are handed out by the allocator instead,
+ * and several sequence values are fetched in a single round trip when the database supports it.
+ * </p>
+ * <p>
+ * The registered {@link ISequenceValueMassager} is only applied to the resource ID sequence
+ * ({@link #RESOURCE_ID_GENERATOR_NAME}).
+ * </p>
  */
 @SuppressWarnings("unused")
 public class HapiSequenceStyleGenerator
 		implements PersistentIdentifierGenerator, BulkInsertionCapableIdentifierGenerator, ExportableProducer {
 	public static final String ID_MASSAGER_TYPE_KEY = "hapi_fhir.sequence_generator_massager";
+
+	/**
+	 * The only sequence the {@link ISequenceValueMassager} is applied to. The other
+	 * sequences use this generator for ID blocks only.
+	 */
+	public static final String RESOURCE_ID_GENERATOR_NAME = "SEQ_RESOURCE_ID";
+
+	/**
+	 * The increment the HAPI FHIR sequences are created with by the migration tasks
+	 */
+	public static final int SEQUENCE_INCREMENT = 50;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(HapiSequenceStyleGenerator.class);
 	private final SequenceStyleGenerator myGen = new SequenceStyleGenerator();
 
 	@Autowired
@@ -58,6 +92,9 @@ public class HapiSequenceStyleGenerator
 	private ISequenceValueMassager myIdMassager;
 	private boolean myConfigured;
 	private String myGeneratorName;
+	private HapiIdBlockAllocator myIdBlockAllocator;
+	private String myNextSequenceValuesSql;
+	private int mySequenceValuesPerBlock;
 
 	@Override
 	public boolean supportsBulkInsertionIdentifierGeneration() {
@@ -74,29 +111,66 @@ public class HapiSequenceStyleGenerator
 			throws HibernateException {
 		Long retVal = myIdMassager != null ? myIdMassager.generate(myGeneratorName) : null;
 		if (retVal == null) {
-			Long next = (Long) myGen.generate(theSession, theObject);
+			Long next;
+			if (myNextSequenceValuesSql != null) {
+				next = myIdBlockAllocator.nextId(
+						myGeneratorName, SEQUENCE_INCREMENT, () -> fetchSequenceValues(theSession));
+			} else {
+				next = (Long) myGen.generate(theSession, theObject);
+			}
 			retVal = myIdMassager.massage(myGeneratorName, next);
 		}
 		return retVal;
 	}
 
+	private long[] fetchSequenceValues(SharedSessionContractImplementor theSession) {
+		long[] retVal = new long[mySequenceValuesPerBlock];
+		JdbcCoordinator jdbcCoordinator = theSession.getJdbcCoordinator();
+		PreparedStatement statement =
+				jdbcCoordinator.getStatementPreparer().prepareStatement(myNextSequenceValuesSql);
+		try {
+			ResultSet resultSet = jdbcCoordinator.getResultSetReturn().extract(statement, myNextSequenceValuesSql);
+			try {
+				int count = 0;
+				while (resultSet.next() && count < retVal.length) {
+					retVal[count++] = resultSet.getLong(1);
+				}
+				Validate.isTrue(count == retVal.length, "Expected %d sequence values but got %d", retVal.length, count);
+			} finally {
+				jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(resultSet, statement);
+			}
+		} catch (SQLException e) {
+			throw theSession
+					.getJdbcServices()
+					.getSqlExceptionHelper()
+					.convert(e, "Could not fetch values from sequence " + myGeneratorName, myNextSequenceValuesSql);
+		} finally {
+			jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+			jdbcCoordinator.afterStatementExecution();
+		}
+		return retVal;
+	}
+
 	@Override
 	public void configure(Type theType, Properties theParams, ServiceRegistry theServiceRegistry)
 			throws MappingException {
 
-		myIdMassager = theServiceRegistry.getService(ISequenceValueMassager.class);
-		if (myIdMassager == null) {
-			myIdMassager = new ISequenceValueMassager.NoopSequenceValueMassager();
-		}
-
 		// Create a HAPI FHIR sequence style generator
 		myGeneratorName = theParams.getProperty(IdentifierGenerator.GENERATOR_NAME);
 		Validate.notBlank(myGeneratorName, "No generator name found");
 
+		if (RESOURCE_ID_GENERATOR_NAME.equals(myGeneratorName)) {
+			myIdMassager = theServiceRegistry.getService(ISequenceValueMassager.class);
+		}
+		if (myIdMassager == null) {
+			myIdMassager = new ISequenceValueMassager.NoopSequenceValueMassager();
+		}
+		myIdBlockAllocator = theServiceRegistry.getService(HapiIdBlockAllocator.class);
+
 		Properties props = new Properties(theParams);
 		props.put(OptimizableGenerator.OPT_PARAM, StandardOptimizerDescriptor.POOLED.getExternalName());
 		props.put(OptimizableGenerator.INITIAL_PARAM, "1");
-		props.put(OptimizableGenerator.INCREMENT_PARAM, "50");
+		props.put(OptimizableGenerator.INCREMENT_PARAM, Integer.toString(SEQUENCE_INCREMENT));
 		props.put(GENERATOR_NAME, myGeneratorName);
 
 		myGen.configure(theType, props, theServiceRegistry);
@@ -112,6 +186,41 @@ public class HapiSequenceStyleGenerator
 	@Override
 	public void initialize(SqlStringGenerationContext context) {
 		myGen.initialize(context);
+
+		if (myIdBlockAllocator != null) {
+			mySequenceValuesPerBlock =
+					myIdBlockAllocator.getSequenceValuesPerBlock(myGeneratorName, SEQUENCE_INCREMENT);
+			DatabaseStructure databaseStructure = myGen.getDatabaseStructure();
+			if (mySequenceValuesPerBlock > 1 && databaseStructure.isPhysicalSequence()) {
+				String sequenceName = context.format(databaseStructure.getPhysicalName());
+				myNextSequenceValuesSql =
+						createNextSequenceValuesSql(context.getDialect(), sequenceName, mySequenceValuesPerBlock);
+				if (myNextSequenceValuesSql == null) {
+					ourLog.info(
+							"Dialect {} does not support fetching multiple sequence values at once, sequence {} will not use ID blocks",
+							context.getDialect().getClass().getSimpleName(),
+							myGeneratorName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a statement which fetches the given number of values from a sequence in a
+	 * single round trip, or <code>null</code> if we don't know how to do that on the given database
+	 */
+	static String createNextSequenceValuesSql(Dialect theDialect, String theSequenceName, int theCount) {
+		String nextValue = theDialect.getSequenceSupport().getSelectSequenceNextValString(theSequenceName);
+		if (theDialect instanceof PostgreSQLDialect || theDialect instanceof CockroachDialect) {
+			return "select " + nextValue + " from generate_series(1, " + theCount + ")";
+		}
+		if (theDialect instanceof OracleDialect) {
+			return "select " + nextValue + " from dual connect by level <= " + theCount;
+		}
+		if (theDialect instanceof H2Dialect) {
+			return "select " + nextValue + " from system_range(1, " + theCount + ")";
+		}
+		return null;
 	}
 
 	@Override
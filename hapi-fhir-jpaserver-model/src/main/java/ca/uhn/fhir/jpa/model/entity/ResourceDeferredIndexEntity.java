@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+import java.util.Date;
+
+/**
+ * This entity is a durable queue of resource versions whose search indexes have not been
+ * written yet, because they were stored while deferred indexing was enabled for their
+ * resource type. A row is inserted in the same database transaction as the resource version
+ * itself, and removed once the resource has been indexed. If indexing fails, the row stays in
+ * the queue and the attempt is retried after a back-off. There is intentionally no foreign
+ * key to {@link ResourceTable}, so that rows for resources which have since been expunged
+ * can simply be discarded by the indexing workers.
+ *
+ * @since 7.6.0
+ */
+@Entity
+@Table(
+		name = "HFJ_RES_DEFERRED_IDX",
+		indexes = {
+			@Index(name = "IDX_RESDEFIDX_TYPE_TIME", columnList = "RES_TYPE, QUEUED_TIME"),
+			@Index(name = "IDX_RESDEFIDX_TIME", columnList = "QUEUED_TIME")
+		})
+public class ResourceDeferredIndexEntity {
+
+	@EmbeddedId
+	private ResourceDeferredIndexEntityPK myPk;
+
+	@Column(name = "RES_TYPE", length = ResourceTable.RESTYPE_LEN, nullable = false, updatable = false)
+	private String myResourceType;
+
+	@Column(name = "QUEUED_TIME", nullable = false, updatable = false)
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date myQueuedTime;
+
+	@Column(name = "FAILED_ATTEMPTS", nullable = true)
+	private Integer myFailedAttempts;
+
+	@Column(name = "NEXT_ATTEMPT_TIME", nullable = true)
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date myNextAttemptTime;
+
+	public ResourceDeferredIndexEntityPK getPk() {
+		return myPk;
+	}
+
+	public ResourceDeferredIndexEntity setPk(ResourceDeferredIndexEntityPK thePk) {
+		myPk = thePk;
+		return this;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public ResourceDeferredIndexEntity setResourceType(String theResourceType) {
+		myResourceType = theResourceType;
+		return this;
+	}
+
+	public Date getQueuedTime() {
+		return myQueuedTime;
+	}
+
+	public ResourceDeferredIndexEntity setQueuedTime(Date theQueuedTime) {
+		myQueuedTime = theQueuedTime;
+		return this;
+	}
+
+	/**
+	 * Returns the number of times indexing this resource has failed so far. May be <code>null</code>
+	 * if it has never failed.
+	 */
+	public Integer getFailedAttempts() {
+		return myFailedAttempts;
+	}
+
+	public ResourceDeferredIndexEntity setFailedAttempts(Integer theFailedAttempts) {
+		myFailedAttempts = theFailedAttempts;
+		return this;
+	}
+
+	/**
+	 * Returns the earliest time at which indexing this resource is attempted again after a failure.
+	 * May be <code>null</code> if it has never failed.
+	 */
+	public Date getNextAttemptTime() {
+		return myNextAttemptTime;
+	}
+
+	public ResourceDeferredIndexEntity setNextAttemptTime(Date theNextAttemptTime) {
+		myNextAttemptTime = theNextAttemptTime;
+		return this;
+	}
+
+	public static ResourceDeferredIndexEntity from(ResourceTable theResourceTable, Date theQueuedTime) {
+		return new ResourceDeferredIndexEntity()
+				.setPk(new ResourceDeferredIndexEntityPK(theResourceTable.getId(), theResourceTable.getVersion()))
+				.setResourceType(theResourceTable.getResourceType())
+				.setQueuedTime(theQueuedTime);
+	}
+}
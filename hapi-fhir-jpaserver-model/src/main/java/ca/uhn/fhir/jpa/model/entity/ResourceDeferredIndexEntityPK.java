@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Multi-column primary Key for {@link ResourceDeferredIndexEntity}
+ */
+@Embeddable
+public class ResourceDeferredIndexEntityPK implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Column(name = "RES_ID", nullable = false, updatable = false)
+	private Long myResourcePid;
+
+	@Column(name = "RES_VER", nullable = false, updatable = false)
+	private Long myResourceVersion;
+
+	public ResourceDeferredIndexEntityPK() {}
+
+	public ResourceDeferredIndexEntityPK(Long theResourcePid, Long theResourceVersion) {
+		myResourcePid = theResourcePid;
+		myResourceVersion = theResourceVersion;
+	}
+
+	public Long getResourcePid() {
+		return myResourcePid;
+	}
+
+	public Long getResourceVersion() {
+		return myResourceVersion;
+	}
+
+	@Override
+	public boolean equals(Object theO) {
+		if (this == theO) {
+			return true;
+		}
+		if (theO == null || getClass() != theO.getClass()) {
+			return false;
+		}
+		ResourceDeferredIndexEntityPK that = (ResourceDeferredIndexEntityPK) theO;
+		return Objects.equals(myResourcePid, that.myResourcePid)
+				&& Objects.equals(myResourceVersion, that.myResourceVersion);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(myResourcePid, myResourceVersion);
+	}
+
+	@Override
+	public String toString() {
+		return myResourcePid + "/" + myResourceVersion;
+	}
+}
@@ -40,6 +40,22 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Json compressed using zstd. Unlike {@link #JSONC}, this encoding is stored as
+	 * binary on all databases, in the <code>RES_TEXT_BIN</code> column.
+	 *
+	 * @since 7.6.0
+	 */
+	ZSTD,
+
+	/**
+	 * Json compressed using LZ4. Unlike {@link #JSONC}, this encoding is stored as
+	 * binary on all databases, in the <code>RES_TEXT_BIN</code> column.
+	 *
+	 * @since 7.6.0
+	 */
+	LZ4,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
@@ -54,4 +70,15 @@ public enum ResourceEncodingEnum {
 	public IParser newParser(FhirContext theContext) {
 		return theContext.newJsonParser();
 	}
+
+	/**
+	 * Returns <code>true</code> if resource bodies with this encoding are stored in
+	 * {@link ResourceHistoryTable#getResourceBinary()} rather than in the legacy
+	 * {@link ResourceHistoryTable#getResource()} LOB column.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isStoredInBinaryColumn() {
+		return this == ZSTD || this == LZ4;
+	}
 }
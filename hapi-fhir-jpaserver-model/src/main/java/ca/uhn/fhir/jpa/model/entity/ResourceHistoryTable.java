@@ -38,13 +38,13 @@ import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
-import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.persistence.UniqueConstraint;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.hibernate.Length;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.OptimisticLock;
 
 import java.io.Serializable;
@@ -78,7 +78,7 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 	private static final long serialVersionUID = 1L;
 
 	@Id
-	@SequenceGenerator(name = "SEQ_RESOURCE_HISTORY_ID", sequenceName = "SEQ_RESOURCE_HISTORY_ID")
+	@GenericGenerator(name = "SEQ_RESOURCE_HISTORY_ID", type = ca.uhn.fhir.jpa.model.dialect.HapiSequenceStyleGenerator.class)
 	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_RESOURCE_HISTORY_ID")
 	@Column(name = "PID")
 	private Long myId;
@@ -112,6 +112,16 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 	@OptimisticLock(excluded = true)
 	private String myResourceTextVc;
 
+	/**
+	 * Holds the resource body for encodings which are only ever stored in binary form
+	 * (see {@link ResourceEncodingEnum#isStoredInBinaryColumn()})
+	 *
+	 * @since 7.6.0
+	 */
+	@Column(name = "RES_TEXT_BIN", length = Length.LONG32, nullable = true)
+	@OptimisticLock(excluded = true)
+	private byte[] myResourceBinary;
+
 	@Column(name = "RES_ENCODING", nullable = false, length = ENCODING_COL_LENGTH)
 	@Enumerated(EnumType.STRING)
 	@OptimisticLock(excluded = true)
@@ -235,6 +245,41 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 		myResource = theResource;
 	}
 
+	public byte[] getResourceBinary() {
+		return myResourceBinary;
+	}
+
+	public void setResourceBinary(byte[] theResourceBinary) {
+		myResourceBinary = theResourceBinary;
+	}
+
+	/**
+	 * Returns the binary resource body for the current encoding, which is read from
+	 * {@link #getResourceBinary()} if the encoding is stored in the binary column, and
+	 * from {@link #getResource()} otherwise.
+	 */
+	public byte[] getResourceBytes() {
+		if (myEncoding != null && myEncoding.isStoredInBinaryColumn()) {
+			return myResourceBinary;
+		}
+		return myResource;
+	}
+
+	/**
+	 * Sets the encoding and the binary resource body, storing the body in the column
+	 * used by that encoding and clearing the other one.
+	 */
+	public void setEncodingAndResourceBytes(ResourceEncodingEnum theEncoding, byte[] theResourceBytes) {
+		myEncoding = theEncoding;
+		if (theEncoding != null && theEncoding.isStoredInBinaryColumn()) {
+			myResourceBinary = theResourceBytes;
+			myResource = null;
+		} else {
+			myResource = theResourceBytes;
+			myResourceBinary = null;
+		}
+	}
+
 	@Override
 	public Long getResourceId() {
 		return myResourceId;
@@ -307,11 +352,11 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 
 	/**
 	 * Returns <code>true</code> if there is a populated resource text (i.e.
-	 * either {@link #getResource()} or {@link #getResourceTextVc()} return a non null
-	 * value.
+	 * either {@link #getResource()}, {@link #getResourceBinary()} or {@link #getResourceTextVc()}
+	 * return a non null value.
 	 */
 	public boolean hasResource() {
-		return myResource != null || myResourceTextVc != null;
+		return myResource != null || myResourceBinary != null || myResourceTextVc != null;
 	}
 
 	/**
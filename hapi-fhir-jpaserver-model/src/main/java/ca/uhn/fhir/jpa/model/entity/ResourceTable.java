@@ -104,6 +104,7 @@ public class ResourceTable extends BaseHasResource implements Serializable, IBas
 	private static final int MAX_LANGUAGE_LENGTH = 20;
 	private static final long serialVersionUID = 1L;
 	public static final int MAX_FORCED_ID_LENGTH = 100;
+	public static final int INDEX_FINGERPRINT_LENGTH = 300;
 	public static final String IDX_RES_TYPE_FHIR_ID = "IDX_RES_TYPE_FHIR_ID";
 
 	/**
@@ -131,6 +132,17 @@ public class ResourceTable extends BaseHasResource implements Serializable, IBas
 	@OptimisticLock(excluded = true)
 	private boolean myHasLinks;
 
+	/**
+	 * A hash of the search parameter index rows of each type, used to skip unchanged
+	 * index types when the resource is updated. Must be cleared by anything which
+	 * modifies the index rows of the resource without updating it.
+	 *
+	 * @since 7.6.0
+	 */
+	@Column(name = "INDEX_FINGERPRINT", length = INDEX_FINGERPRINT_LENGTH, nullable = true)
+	@OptimisticLock(excluded = true)
+	private String myIndexFingerprint;
+
 	@Id
 	@GenericGenerator(name = "SEQ_RESOURCE_ID", type = ca.uhn.fhir.jpa.model.dialect.HapiSequenceStyleGenerator.class)
 	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_RESOURCE_ID")
@@ -702,6 +714,21 @@ public class ResourceTable extends BaseHasResource implements Serializable, IBas
 		myParamsQuantityNormalizedPopulated = false;
 		myParamsUriPopulated = false;
 		myHasLinks = false;
+		myIndexFingerprint = null;
+	}
+
+	/**
+	 * @since 7.6.0
+	 */
+	public String getIndexFingerprint() {
+		return myIndexFingerprint;
+	}
+
+	/**
+	 * @since 7.6.0
+	 */
+	public void setIndexFingerprint(String theIndexFingerprint) {
+		myIndexFingerprint = theIndexFingerprint;
 	}
 
 	public boolean isParamsComboStringUniquePresent() {
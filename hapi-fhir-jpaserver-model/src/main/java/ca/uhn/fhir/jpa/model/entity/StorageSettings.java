@@ -22,6 +22,7 @@ package ca.uhn.fhir.jpa.model.entity;
 import ca.uhn.fhir.context.ParserOptions;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.dialect.HapiSequenceStyleGenerator;
 import ca.uhn.fhir.jpa.util.ISequenceValueMassager;
 import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
 import ca.uhn.fhir.rest.server.interceptor.ResponseTerminologyTranslationSvc;
@@ -83,6 +84,11 @@ public class StorageSettings {
 	protected static final String DEFAULT_PERIOD_INDEX_START_OF_TIME = "1001-01-01";
 	protected static final String DEFAULT_PERIOD_INDEX_END_OF_TIME = "9000-01-01";
 	private static final Integer DEFAULT_MAXIMUM_TRANSACTION_BUNDLE_SIZE = null;
+
+	/**
+	 * @since 7.6.0
+	 */
+	public static final int DEFAULT_SEQUENCE_BLOCK_SIZE = HapiSequenceStyleGenerator.SEQUENCE_INCREMENT;
 	/**
 	 * update setter javadoc if default changes
 	 */
@@ -143,6 +149,21 @@ public class StorageSettings {
 	 */
 	private boolean myIndexStorageOptimized = false;
 
+	/**
+	 * @since 7.6.0
+	 */
+	private int myTransactionIndexingPoolSize = 1;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int mySequenceBlockSize = DEFAULT_SEQUENCE_BLOCK_SIZE;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private Map<String, Integer> mySequenceBlockSizes = Collections.emptyMap();
+
 	/**
 	 * Constructor
 	 */
@@ -239,6 +260,37 @@ public class StorageSettings {
 		this.myBundleBatchMaxPoolSize = theBundleBatchMaxPoolSize;
 	}
 
+	/**
+	 * The number of threads used to extract the search indexes of the resources in a FHIR
+	 * transaction. When this is greater than <code>1</code>, once the references between
+	 * the entries in a transaction have been resolved, the CPU-bound part of search parameter
+	 * extraction is performed for all entries concurrently before they are indexed. Database
+	 * writes are still performed one entry at a time on the request thread, in the same order
+	 * as before. The default is <code>1</code>, meaning that all extraction happens on the
+	 * request thread.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getTransactionIndexingPoolSize() {
+		return myTransactionIndexingPoolSize;
+	}
+
+	/**
+	 * The number of threads used to extract the search indexes of the resources in a FHIR
+	 * transaction. When this is greater than <code>1</code>, once the references between
+	 * the entries in a transaction have been resolved, the CPU-bound part of search parameter
+	 * extraction is performed for all entries concurrently before they are indexed. Database
+	 * writes are still performed one entry at a time on the request thread, in the same order
+	 * as before. The default is <code>1</code>, meaning that all extraction happens on the
+	 * request thread.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setTransactionIndexingPoolSize(int theTransactionIndexingPoolSize) {
+		Validate.isTrue(theTransactionIndexingPoolSize >= 1, "Pool size must be at least 1");
+		myTransactionIndexingPoolSize = theTransactionIndexingPoolSize;
+	}
+
 	/**
 	 * If set to {@link IndexEnabledEnum#DISABLED} (default is {@link IndexEnabledEnum#DISABLED})
 	 * the server will not create search indexes for search parameters with no values in resources.
@@ -438,6 +490,75 @@ public class StorageSettings {
 		mySequenceValueMassagerClass = theSequenceValueMassagerClass;
 	}
 
+	/**
+	 * The number of IDs which are reserved at a time from each database sequence used to
+	 * generate entity IDs. Larger blocks mean fewer round trips to the database when many
+	 * rows are inserted, at the cost of larger gaps in the IDs when a server is restarted.
+	 * This is rounded down to a multiple of {@link HapiSequenceStyleGenerator#SEQUENCE_INCREMENT},
+	 * the increment the sequences are created with, and the values of a block are fetched in
+	 * a single statement on Postgres, Oracle and H2. Default is {@link #DEFAULT_SEQUENCE_BLOCK_SIZE},
+	 * meaning a single sequence value is fetched at a time. This setting is read when the
+	 * entity manager factory is created.
+	 *
+	 * @see #setSequenceBlockSizes(Map)
+	 * @since 7.6.0
+	 */
+	public int getSequenceBlockSize() {
+		return mySequenceBlockSize;
+	}
+
+	/**
+	 * The number of IDs which are reserved at a time from each database sequence used to
+	 * generate entity IDs. Larger blocks mean fewer round trips to the database when many
+	 * rows are inserted, at the cost of larger gaps in the IDs when a server is restarted.
+	 * This is rounded down to a multiple of {@link HapiSequenceStyleGenerator#SEQUENCE_INCREMENT},
+	 * the increment the sequences are created with, and the values of a block are fetched in
+	 * a single statement on Postgres, Oracle and H2. Default is {@link #DEFAULT_SEQUENCE_BLOCK_SIZE},
+	 * meaning a single sequence value is fetched at a time. This setting is read when the
+	 * entity manager factory is created.
+	 *
+	 * @see #setSequenceBlockSizes(Map)
+	 * @since 7.6.0
+	 */
+	public void setSequenceBlockSize(int theSequenceBlockSize) {
+		Validate.isTrue(
+				theSequenceBlockSize >= HapiSequenceStyleGenerator.SEQUENCE_INCREMENT,
+				"Sequence block size must be at least %d",
+				HapiSequenceStyleGenerator.SEQUENCE_INCREMENT);
+		mySequenceBlockSize = theSequenceBlockSize;
+	}
+
+	/**
+	 * Overrides {@link #getSequenceBlockSize()} for specific sequences, keyed by sequence
+	 * name (e.g. <code>SEQ_SPIDX_TOKEN</code>). This can be used to reserve larger blocks
+	 * for the sequences of tables which grow quickly, such as the search index tables.
+	 * Default is an empty map.
+	 *
+	 * @since 7.6.0
+	 */
+	public Map<String, Integer> getSequenceBlockSizes() {
+		return mySequenceBlockSizes;
+	}
+
+	/**
+	 * Overrides {@link #getSequenceBlockSize()} for specific sequences, keyed by sequence
+	 * name (e.g. <code>SEQ_SPIDX_TOKEN</code>). This can be used to reserve larger blocks
+	 * for the sequences of tables which grow quickly, such as the search index tables.
+	 * Default is an empty map.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setSequenceBlockSizes(Map<String, Integer> theSequenceBlockSizes) {
+		Validate.notNull(theSequenceBlockSizes, "theSequenceBlockSizes must not be null");
+		for (Integer next : theSequenceBlockSizes.values()) {
+			Validate.isTrue(
+					next != null && next >= HapiSequenceStyleGenerator.SEQUENCE_INCREMENT,
+					"Sequence block size must be at least %d",
+					HapiSequenceStyleGenerator.SEQUENCE_INCREMENT);
+		}
+		mySequenceBlockSizes = Map.copyOf(theSequenceBlockSizes);
+	}
+
 	/**
 	 * If set to <code>true</code> (default is <code>false</code>) the
 	 * <code>:of-type</code> modifier on token search parameters for
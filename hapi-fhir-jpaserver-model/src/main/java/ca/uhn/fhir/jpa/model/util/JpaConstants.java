@@ -279,6 +279,18 @@ public class JpaConstants {
 	public static final String HEADER_UPSERT_EXISTENCE_CHECK = "X-Upsert-Extistence-Check";
 	public static final String HEADER_UPSERT_EXISTENCE_CHECK_DISABLED = "disabled";
 
+	/**
+	 * Header name for the "X-Index-Consistency" header. If a search for a resource type which
+	 * uses deferred indexing includes this header with a value of {@link #HEADER_INDEX_CONSISTENCY_STRONG},
+	 * the search waits until every resource of that type stored before the search started
+	 * has been indexed.
+	 *
+	 * @since 7.6.0
+	 */
+	public static final String HEADER_INDEX_CONSISTENCY = "X-Index-Consistency";
+
+	public static final String HEADER_INDEX_CONSISTENCY_STRONG = "strong";
+
 	/**
 	 * Parameters for the rewrite history operation
 	 */
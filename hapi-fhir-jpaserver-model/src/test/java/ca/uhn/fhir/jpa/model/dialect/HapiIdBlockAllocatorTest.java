@@ -0,0 +1,111 @@
+package ca.uhn.fhir.jpa.model.dialect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HapiIdBlockAllocatorTest {
+
+	private static final int INCREMENT = 50;
+
+	/**
+	 * Behaves like a database sequence created with the given increment
+	 */
+	private static Supplier<long[]> newSequence(AtomicLong theSequence, int theValuesPerBlock) {
+		return () -> {
+			long[] retVal = new long[theValuesPerBlock];
+			for (int i = 0; i < theValuesPerBlock; i++) {
+				retVal[i] = theSequence.getAndAdd(INCREMENT);
+			}
+			return retVal;
+		};
+	}
+
+	@Test
+	public void testBlockSizes() {
+		HapiIdBlockAllocator allocator = new HapiIdBlockAllocator(1000, Map.of("SEQ_SPIDX_TOKEN", 5000));
+
+		assertEquals(1000, allocator.getBlockSize("SEQ_RESOURCE_ID"));
+		assertEquals(20, allocator.getSequenceValuesPerBlock("SEQ_RESOURCE_ID", INCREMENT));
+		assertEquals(100, allocator.getSequenceValuesPerBlock("SEQ_SPIDX_TOKEN", INCREMENT));
+		assertEquals(1, new HapiIdBlockAllocator(60, Map.of()).getSequenceValuesPerBlock("SEQ_RESOURCE_ID", INCREMENT));
+	}
+
+	@Test
+	public void testNextId_SameIdsAsPooledOptimizer() {
+		HapiIdBlockAllocator allocator = new HapiIdBlockAllocator(150, Map.of());
+		Supplier<long[]> sequence = newSequence(new AtomicLong(1), 3);
+
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			ids.add(allocator.nextId("SEQ_RESOURCE_ID", INCREMENT, sequence));
+		}
+
+		// The first sequence value only reserves itself, after that each one reserves the previous 50 IDs
+		for (int i = 0; i < 200; i++) {
+			assertEquals(i + 1, ids.get(i));
+		}
+
+		HapiIdBlockAllocator.Metrics metrics = allocator.getMetrics().get("SEQ_RESOURCE_ID");
+		assertEquals(2, metrics.getFetchedBlocks());
+		assertEquals(6, metrics.getFetchedSequenceValues());
+		assertEquals(200, metrics.getAllocatedIds());
+	}
+
+	@Test
+	public void testNextId_SharedSequence() {
+		// Two nodes with different block sizes using the same database sequence
+		AtomicLong databaseSequence = new AtomicLong(1);
+		HapiIdBlockAllocator allocator0 = new HapiIdBlockAllocator(100, Map.of());
+		HapiIdBlockAllocator allocator1 = new HapiIdBlockAllocator(500, Map.of());
+		Supplier<long[]> sequence0 = newSequence(databaseSequence, 2);
+		Supplier<long[]> sequence1 = newSequence(databaseSequence, 10);
+
+		Set<Long> ids = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			assertThat(ids.add(allocator0.nextId("SEQ_RESOURCE_ID", INCREMENT, sequence0))).isTrue();
+			assertThat(ids.add(allocator1.nextId("SEQ_RESOURCE_ID", INCREMENT, sequence1))).isTrue();
+		}
+	}
+
+	@Test
+	public void testNextId_Concurrent() throws Exception {
+		HapiIdBlockAllocator allocator = new HapiIdBlockAllocator(500, Map.of());
+		Supplier<long[]> sequence = newSequence(new AtomicLong(1), 10);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<Long>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					List<Long> retVal = new ArrayList<>();
+					for (int j = 0; j < 5000; j++) {
+						retVal.add(allocator.nextId("SEQ_RESOURCE_ID", INCREMENT, sequence));
+					}
+					return retVal;
+				}));
+			}
+
+			Set<Long> ids = new HashSet<>();
+			for (Future<List<Long>> next : futures) {
+				ids.addAll(next.get());
+			}
+			assertEquals(40000, ids.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,349 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA - Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboStringUnique;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboTokenNonUnique;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamCoords;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamDate;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamNumber;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantity;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantityNormalized;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamUri;
+import ca.uhn.fhir.util.VersionEnum;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A compact summary of the search parameter index rows of a resource, consisting of
+ * one hash per index type. It is stored in the <code>INDEX_FINGERPRINT</code> column of
+ * <code>HFJ_RESOURCE</code> so that when a resource is updated, the index types whose
+ * rows have not changed can be skipped without loading the existing rows.
+ * <p>
+ * Each row contributes a hash of the values compared by its <code>equals</code> method,
+ * so two collections which the search parameter synchronizer would consider identical
+ * have the same fingerprint. Row hashes are summed, so the fingerprint does not depend on
+ * the order of the rows.
+ * <p>
+ * The stored fingerprint is only trusted if it was written by the same schema version
+ * ({@link VersionEnum#latestVersion()}), since the migrations run by an upgrade may rewrite
+ * index rows without updating it. Anything else which modifies the index rows of a resource
+ * outside of the search parameter synchronizer must clear the fingerprint.
+ *
+ * @since 7.6.0
+ */
+public class ResourceIndexFingerprint {
+
+	private static final String VERSION = "1-" + VersionEnum.latestVersion().name();
+	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128(0);
+	private static final ResourceIndexFingerprint UNKNOWN = new ResourceIndexFingerprint(null);
+
+	/**
+	 * Contains a hash for every non-empty index type, or is <code>null</code> if the
+	 * fingerprint is unknown
+	 */
+	private final Map<IndexTypeEnum, String> myHashes;
+
+	private ResourceIndexFingerprint(@Nullable Map<IndexTypeEnum, String> theHashes) {
+		myHashes = theHashes;
+	}
+
+	/**
+	 * Returns <code>true</code> if both fingerprints are known, and they have the same
+	 * hash for the given index type
+	 */
+	public boolean isUnchanged(IndexTypeEnum theIndexType, ResourceIndexFingerprint theOther) {
+		if (myHashes == null || theOther.myHashes == null) {
+			return false;
+		}
+		return Objects.equals(myHashes.get(theIndexType), theOther.myHashes.get(theIndexType));
+	}
+
+	/**
+	 * Returns the fingerprint in the form stored in the database
+	 */
+	@Nullable
+	public String encode() {
+		if (myHashes == null) {
+			return null;
+		}
+		StringBuilder b = new StringBuilder(VERSION);
+		myHashes.forEach(
+				(type, hash) -> b.append(';').append(type.getCode()).append('=').append(hash));
+		return b.toString();
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(encode());
+	}
+
+	/**
+	 * Parses a fingerprint previously returned by {@link #encode()}. A <code>null</code> value, or a
+	 * value written by a different version of this class or of the schema, produces a fingerprint
+	 * which is never considered unchanged.
+	 */
+	@Nonnull
+	public static ResourceIndexFingerprint parse(@Nullable String theEncoded) {
+		if (theEncoded == null) {
+			return UNKNOWN;
+		}
+		String[] parts = theEncoded.split(";");
+		if (!VERSION.equals(parts[0])) {
+			return UNKNOWN;
+		}
+		Map<IndexTypeEnum, String> hashes = new EnumMap<>(IndexTypeEnum.class);
+		for (int i = 1; i < parts.length; i++) {
+			int equalsIdx = parts[i].indexOf('=');
+			IndexTypeEnum type = equalsIdx > 0 ? IndexTypeEnum.fromCode(parts[i].substring(0, equalsIdx)) : null;
+			if (type == null) {
+				return UNKNOWN;
+			}
+			hashes.put(type, parts[i].substring(equalsIdx + 1));
+		}
+		return new ResourceIndexFingerprint(hashes);
+	}
+
+	/**
+	 * Calculates the fingerprint of the given index rows. The hashes of the rows must already
+	 * have been calculated.
+	 *
+	 * @param theParams                The index rows
+	 * @param theIndexStorageOptimized The current value of the index storage optimized setting, which
+	 *                                 changes the rows that are written without changing their equality
+	 */
+	@Nonnull
+	public static ResourceIndexFingerprint calculate(
+			ResourceIndexedSearchParams theParams, boolean theIndexStorageOptimized) {
+		Map<IndexTypeEnum, String> hashes = new EnumMap<>(IndexTypeEnum.class);
+		for (IndexTypeEnum next : IndexTypeEnum.values()) {
+			Collection<? extends BaseResourceIndex> rows = next.getRows(theParams);
+			if (!rows.isEmpty()) {
+				long sum = 0;
+				for (BaseResourceIndex row : rows) {
+					Hasher hasher = HASH_FUNCTION.newHasher();
+					next.hashRow(row, hasher);
+					sum += hasher.hash().asLong();
+				}
+				long hash = HASH_FUNCTION
+						.newHasher()
+						.putBoolean(theIndexStorageOptimized)
+						.putInt(rows.size())
+						.putLong(sum)
+						.hash()
+						.asLong();
+				hashes.put(next, Long.toHexString(hash));
+			}
+		}
+		return new ResourceIndexFingerprint(hashes);
+	}
+
+	/**
+	 * The index types covered by the fingerprint. Resource links are not included because the
+	 * existing links are always loaded in order to resolve unchanged references.
+	 * <p>
+	 * The values hashed for each row must include every value compared by the row's
+	 * <code>equals</code> method.
+	 */
+	public enum IndexTypeEnum {
+		STRING("s", t -> t.myStringParams) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedSearchParamString row = (ResourceIndexedSearchParamString) theRow;
+				putString(theHasher, row.getValueExact());
+				putString(theHasher, row.getValueNormalized());
+				putLong(theHasher, row.getHashIdentity());
+				putLong(theHasher, row.getHashExact());
+				putLong(theHasher, row.getHashNormalizedPrefix());
+				putMissing(theHasher, row);
+			}
+		},
+		TOKEN("t", t -> t.myTokenParams) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedSearchParamToken row = (ResourceIndexedSearchParamToken) theRow;
+				putLong(theHasher, row.getHashIdentity());
+				putLong(theHasher, row.getHashSystem());
+				putLong(theHasher, row.getHashValue());
+				putLong(theHasher, row.getHashSystemAndValue());
+				putMissing(theHasher, row);
+			}
+		},
+		NUMBER("n", t -> t.myNumberParams) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedSearchParamNumber row = (ResourceIndexedSearchParamNumber) theRow;
+				putLong(theHasher, row.getHashIdentity());
+				putString(theHasher, row.getValue() != null ? row.getValue().toString() : null);
+				putMissing(theHasher, row);
+			}
+		},
+		QUANTITY("q", t -> t.myQuantityParams) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedSearchParamQuantity row = (ResourceIndexedSearchParamQuantity) theRow;
+				putLong(theHasher, row.getHashIdentity());
+				putLong(theHasher, row.getHashIdentityAndUnits());
+				putLong(theHasher, row.getHashIdentitySystemAndUnits());
+				putString(theHasher, row.getValue() != null ? row.getValue().toString() : null);
+				putMissing(theHasher, row);
+			}
+		},
+		QUANTITY_NORMALIZED("qn", t -> t.myQuantityNormalizedParams) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedSearchParamQuantityNormalized row =
+						(ResourceIndexedSearchParamQuantityNormalized) theRow;
+				putLong(theHasher, row.getHashIdentity());
+				putLong(theHasher, row.getHashIdentityAndUnits());
+				putLong(theHasher, row.getHashIdentitySystemAndUnits());
+				putString(theHasher, row.getValue() != null ? row.getValue().toString() : null);
+				putMissing(theHasher, row);
+			}
+		},
+		DATE("d", t -> t.myDateParams) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedSearchParamDate row = (ResourceIndexedSearchParamDate) theRow;
+				putLong(theHasher, row.getHashIdentity());
+				putLong(theHasher, toTime(row.getValueLow()));
+				putLong(theHasher, toTime(row.getValueHigh()));
+				putLong(
+						theHasher,
+						row.getValueLowDateOrdinal() != null
+								? row.getValueLowDateOrdinal().longValue()
+								: null);
+				putLong(
+						theHasher,
+						row.getValueHighDateOrdinal() != null
+								? row.getValueHighDateOrdinal().longValue()
+								: null);
+				putMissing(theHasher, row);
+			}
+		},
+		URI("u", t -> t.myUriParams) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedSearchParamUri row = (ResourceIndexedSearchParamUri) theRow;
+				putString(theHasher, row.getUri());
+				putLong(theHasher, row.getHashIdentity());
+				putLong(theHasher, row.getHashUri());
+				putMissing(theHasher, row);
+			}
+		},
+		COORDS("c", t -> t.myCoordsParams) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedSearchParamCoords row = (ResourceIndexedSearchParamCoords) theRow;
+				putLong(theHasher, row.getHashIdentity());
+				putString(theHasher, String.valueOf(row.getLatitude()));
+				putString(theHasher, String.valueOf(row.getLongitude()));
+				putMissing(theHasher, row);
+			}
+		},
+		COMBO_STRING_UNIQUE("cu", t -> t.myComboStringUniques) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedComboStringUnique row = (ResourceIndexedComboStringUnique) theRow;
+				putString(theHasher, row.getIndexString());
+				putLong(theHasher, row.getHashComplete());
+				putLong(theHasher, row.getHashComplete2());
+			}
+		},
+		COMBO_TOKEN_NON_UNIQUE("ct", t -> t.myComboTokenNonUnique) {
+			@Override
+			void hashRow(BaseResourceIndex theRow, Hasher theHasher) {
+				ResourceIndexedComboTokenNonUnique row = (ResourceIndexedComboTokenNonUnique) theRow;
+				putString(theHasher, row.getIndexString());
+				putLong(theHasher, row.getHashComplete());
+			}
+		};
+
+		private final String myCode;
+		private final Function<ResourceIndexedSearchParams, Collection<? extends BaseResourceIndex>> myRowsGetter;
+
+		IndexTypeEnum(
+				String theCode,
+				Function<ResourceIndexedSearchParams, Collection<? extends BaseResourceIndex>> theRowsGetter) {
+			myCode = theCode;
+			myRowsGetter = theRowsGetter;
+		}
+
+		public String getCode() {
+			return myCode;
+		}
+
+		public Collection<? extends BaseResourceIndex> getRows(ResourceIndexedSearchParams theParams) {
+			return myRowsGetter.apply(theParams);
+		}
+
+		abstract void hashRow(BaseResourceIndex theRow, Hasher theHasher);
+
+		@Nullable
+		static IndexTypeEnum fromCode(String theCode) {
+			for (IndexTypeEnum next : values()) {
+				if (next.myCode.equals(theCode)) {
+					return next;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static void putLong(Hasher theHasher, @Nullable Long theValue) {
+		if (theValue == null) {
+			theHasher.putByte((byte) 0);
+		} else {
+			theHasher.putByte((byte) 1).putLong(theValue);
+		}
+	}
+
+	private static void putString(Hasher theHasher, @Nullable String theValue) {
+		if (theValue == null) {
+			theHasher.putInt(-1);
+		} else {
+			theHasher.putInt(theValue.length()).putString(theValue, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static void putMissing(Hasher theHasher, BaseResourceIndexedSearchParam theRow) {
+		theHasher.putBoolean(theRow.isMissing());
+	}
+
+	@Nullable
+	private static Long toTime(@Nullable Date theDate) {
+		return theDate != null ? theDate.getTime() : null;
+	}
+}
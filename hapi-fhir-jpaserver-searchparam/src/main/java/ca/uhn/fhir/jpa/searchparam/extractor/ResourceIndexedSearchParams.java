@@ -47,6 +47,7 @@ import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
 import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.server.util.ResourceSearchParams;
+import com.google.common.collect.ForwardingList;
 import jakarta.annotation.Nonnull;
 import org.apache.commons.lang3.StringUtils;
 
@@ -78,6 +79,7 @@ public final class ResourceIndexedSearchParams {
 	public final Collection<SearchParamPresentEntity> mySearchParamPresentEntities;
 	public final Collection<ResourceIndexedSearchParamComposite> myCompositeParams;
 	public final Set<String> myPopulatedResourceLinkParameters = new HashSet<>();
+	private Set<ResourceIndexFingerprint.IndexTypeEnum> myIndexTypesUnchangedInDatabase = Set.of();
 
 	/**
 	 * TODO: Remove this - Currently used by CDR though
@@ -108,38 +110,38 @@ public final class ResourceIndexedSearchParams {
 	private ResourceIndexedSearchParams(ResourceTable theEntity, Mode theMode) {
 		this(theMode);
 		if (theEntity.isParamsStringPopulated()) {
-			myStringParams.addAll(theEntity.getParamsString());
+			theMode.populate(myStringParams, theEntity.getParamsString());
 		}
 		if (theEntity.isParamsTokenPopulated()) {
-			myTokenParams.addAll(theEntity.getParamsToken());
+			theMode.populate(myTokenParams, theEntity.getParamsToken());
 		}
 		if (theEntity.isParamsNumberPopulated()) {
-			myNumberParams.addAll(theEntity.getParamsNumber());
+			theMode.populate(myNumberParams, theEntity.getParamsNumber());
 		}
 		if (theEntity.isParamsQuantityPopulated()) {
-			myQuantityParams.addAll(theEntity.getParamsQuantity());
+			theMode.populate(myQuantityParams, theEntity.getParamsQuantity());
 		}
 		if (theEntity.isParamsQuantityNormalizedPopulated()) {
-			myQuantityNormalizedParams.addAll(theEntity.getParamsQuantityNormalized());
+			theMode.populate(myQuantityNormalizedParams, theEntity.getParamsQuantityNormalized());
 		}
 		if (theEntity.isParamsDatePopulated()) {
-			myDateParams.addAll(theEntity.getParamsDate());
+			theMode.populate(myDateParams, theEntity.getParamsDate());
 		}
 		if (theEntity.isParamsUriPopulated()) {
-			myUriParams.addAll(theEntity.getParamsUri());
+			theMode.populate(myUriParams, theEntity.getParamsUri());
 		}
 		if (theEntity.isParamsCoordsPopulated()) {
-			myCoordsParams.addAll(theEntity.getParamsCoords());
+			theMode.populate(myCoordsParams, theEntity.getParamsCoords());
 		}
 		if (theEntity.isHasLinks()) {
-			myLinks.addAll(theEntity.getResourceLinks());
+			theMode.populate(myLinks, theEntity.getResourceLinks());
 		}
 
 		if (theEntity.isParamsComboStringUniquePresent()) {
-			myComboStringUniques.addAll(theEntity.getParamsComboStringUnique());
+			theMode.populate(myComboStringUniques, theEntity.getParamsComboStringUnique());
 		}
 		if (theEntity.isParamsComboTokensNonUniquePresent()) {
-			myComboTokenNonUnique.addAll(theEntity.getmyParamsComboTokensNonUnique());
+			theMode.populate(myComboTokenNonUnique, theEntity.getmyParamsComboTokensNonUnique());
 		}
 	}
 
@@ -161,18 +163,50 @@ public final class ResourceIndexedSearchParams {
 		theEntity.setHasLinks(myLinks.isEmpty() == false);
 	}
 
+	/**
+	 * Marks index types whose rows were not written because the rows already in the
+	 * database are identical. The collections of these types on the entity are left as
+	 * they are by {@link #populateResourceTableParamCollections(ResourceTable)}, since
+	 * they already reflect these rows and may not have been loaded yet.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setIndexTypesUnchangedInDatabase(Set<ResourceIndexFingerprint.IndexTypeEnum> theIndexTypes) {
+		myIndexTypesUnchangedInDatabase = theIndexTypes;
+	}
+
 	public void populateResourceTableParamCollections(ResourceTable theEntity) {
-		theEntity.setParamsString(myStringParams);
-		theEntity.setParamsToken(myTokenParams);
-		theEntity.setParamsNumber(myNumberParams);
-		theEntity.setParamsQuantity(myQuantityParams);
-		theEntity.setParamsQuantityNormalized(myQuantityNormalizedParams);
-		theEntity.setParamsDate(myDateParams);
-		theEntity.setParamsUri(myUriParams);
-		theEntity.setParamsCoords(myCoordsParams);
+		if (!isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum.STRING)) {
+			theEntity.setParamsString(myStringParams);
+		}
+		if (!isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum.TOKEN)) {
+			theEntity.setParamsToken(myTokenParams);
+		}
+		if (!isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum.NUMBER)) {
+			theEntity.setParamsNumber(myNumberParams);
+		}
+		if (!isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum.QUANTITY)) {
+			theEntity.setParamsQuantity(myQuantityParams);
+		}
+		if (!isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum.QUANTITY_NORMALIZED)) {
+			theEntity.setParamsQuantityNormalized(myQuantityNormalizedParams);
+		}
+		if (!isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum.DATE)) {
+			theEntity.setParamsDate(myDateParams);
+		}
+		if (!isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum.URI)) {
+			theEntity.setParamsUri(myUriParams);
+		}
+		if (!isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum.COORDS)) {
+			theEntity.setParamsCoords(myCoordsParams);
+		}
 		theEntity.setResourceLinks(myLinks);
 	}
 
+	private boolean isUnchangedInDatabase(ResourceIndexFingerprint.IndexTypeEnum theIndexType) {
+		return myIndexTypesUnchangedInDatabase.contains(theIndexType);
+	}
+
 	public void updateSpnamePrefixForIndexOnUpliftedChain(String theContainingType, String theSpnamePrefix) {
 		updateSpnamePrefixForIndexOnUpliftedChain(theContainingType, myNumberParams, theSpnamePrefix);
 		updateSpnamePrefixForIndexOnUpliftedChain(theContainingType, myQuantityParams, theSpnamePrefix);
@@ -654,6 +688,17 @@ public final class ResourceIndexedSearchParams {
 		return new ResourceIndexedSearchParams(theResourceTable, Mode.LIST);
 	}
 
+	/**
+	 * Like {@link #withLists(ResourceTable)}, but each collection of indexes is only
+	 * loaded from the entity when it is first accessed. This means that index types
+	 * which are never examined are never fetched from the database.
+	 *
+	 * @since 7.6.0
+	 */
+	public static ResourceIndexedSearchParams withLazyLists(ResourceTable theResourceTable) {
+		return new ResourceIndexedSearchParams(theResourceTable, Mode.LAZY_LIST);
+	}
+
 	private enum Mode {
 		LIST {
 			@Override
@@ -672,8 +717,48 @@ public final class ResourceIndexedSearchParams {
 			public <T> Collection<T> newCollection() {
 				return List.of();
 			}
+		},
+		LAZY_LIST {
+			@Override
+			public <T> Collection<T> newCollection() {
+				return new LazyList<>();
+			}
+
+			@Override
+			public <T> void populate(Collection<T> theTarget, Collection<T> theSource) {
+				((LazyList<T>) theTarget).setSource(theSource);
+			}
 		};
 
 		public abstract <T> Collection<T> newCollection();
+
+		public <T> void populate(Collection<T> theTarget, Collection<T> theSource) {
+			theTarget.addAll(theSource);
+		}
+	}
+
+	/**
+	 * A list which copies its initial contents from a source collection (typically
+	 * a lazy-loaded entity collection) the first time it is accessed. The source is
+	 * captured when the list is created, so later replacing the collection on the
+	 * entity does not change what is loaded.
+	 */
+	private static class LazyList<T> extends ForwardingList<T> {
+
+		private Collection<T> mySource = List.of();
+		private List<T> myDelegate;
+
+		void setSource(Collection<T> theSource) {
+			mySource = theSource;
+		}
+
+		@Override
+		protected List<T> delegate() {
+			if (myDelegate == null) {
+				myDelegate = new ArrayList<>(mySource);
+				mySource = null;
+			}
+			return myDelegate;
+		}
 	}
 }
@@ -52,6 +52,9 @@ import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import ca.uhn.fhir.rest.server.util.ResourceSearchParams;
 import ca.uhn.fhir.util.FhirTerser;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Uninterruptibles;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
@@ -61,15 +64,20 @@ import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.IdType;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.model.config.PartitionSettings.CrossPartitionReferenceMode.ALLOWED_UNQUALIFIED;
@@ -80,6 +88,13 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 public class SearchParamExtractorService {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorService.class);
 
+	/**
+	 * {@link TransactionDetails} user data key for the search indexes prepared by
+	 * {@link #prepareSearchIndexes(TransactionDetails, List, Executor)}
+	 */
+	private static final String XACT_USERDATA_KEY_PREPARED_SEARCH_INDEXES =
+			SearchParamExtractorService.class.getName() + "_PREPARED_SEARCH_INDEXES";
+
 	@Autowired
 	private ISearchParamExtractor mySearchParamExtractor;
 
@@ -124,15 +139,26 @@ public class SearchParamExtractorService {
 			TransactionDetails theTransactionDetails,
 			boolean theFailOnInvalidReference,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
-		// All search parameter types except Reference
-		ResourceIndexedSearchParams normalParams = ResourceIndexedSearchParams.withSets();
-		getExtractionUtil()
-				.extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
-		mergeParams(normalParams, theNewParams);
-
 		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
-		ISearchParamExtractor.SearchParamSet<PathAndRef> indexedReferences =
-				mySearchParamExtractor.extractResourceLinks(theResource, indexOnContainedResources);
+		ResourceIndexedSearchParams normalParams;
+		ISearchParamExtractor.SearchParamSet<PathAndRef> indexedReferences;
+
+		PreparedSearchIndexes prepared = takePreparedSearchIndexes(
+				theTransactionDetails, theResource, theSearchParamFilter, indexOnContainedResources);
+		if (prepared != null) {
+			normalParams = prepared.getParams();
+			indexedReferences = prepared.getIndexedReferences();
+			for (ISearchParamExtractor.SearchParamSet<?> next : prepared.getSetsWithWarnings()) {
+				handleWarnings(theRequestDetails, myInterceptorBroadcaster, next);
+			}
+		} else {
+			// All search parameter types except Reference
+			normalParams = ResourceIndexedSearchParams.withSets();
+			getExtractionUtil()
+					.extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
+			indexedReferences = mySearchParamExtractor.extractResourceLinks(theResource, indexOnContainedResources);
+		}
+		mergeParams(normalParams, theNewParams);
 		SearchParamExtractorService.handleWarnings(theRequestDetails, myInterceptorBroadcaster, indexedReferences);
 
 		if (indexOnContainedResources) {
@@ -211,6 +237,144 @@ public class SearchParamExtractorService {
 		theNewParams.setUpdatedTime(theTransactionDetails.getTransactionDate());
 	}
 
+	/**
+	 * Resolves the references of the given resource in the same way as {@link #extractFromResource}
+	 * does, creating placeholder targets and failing on invalid references as configured, but without
+	 * extracting any other search indexes. The resolved links are discarded. This is used when the
+	 * search indexes of a resource are written later, so that invalid references are still rejected
+	 * when the resource is stored.
+	 *
+	 * @since 7.6.0
+	 */
+	public void validateResourceLinks(
+			RequestPartitionId theRequestPartitionId,
+			RequestDetails theRequestDetails,
+			ResourceTable theEntity,
+			IBaseResource theResource,
+			TransactionDetails theTransactionDetails,
+			boolean theFailOnInvalidReference) {
+		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
+		ISearchParamExtractor.SearchParamSet<PathAndRef> indexedReferences =
+				mySearchParamExtractor.extractResourceLinks(theResource, indexOnContainedResources);
+		SearchParamExtractorService.handleWarnings(theRequestDetails, myInterceptorBroadcaster, indexedReferences);
+
+		ResourceIndexedSearchParams params = ResourceIndexedSearchParams.withSets();
+		extractResourceLinks(
+				theRequestPartitionId,
+				params,
+				theEntity,
+				theResource,
+				theTransactionDetails,
+				theFailOnInvalidReference,
+				theRequestDetails,
+				indexedReferences);
+
+		if (indexOnContainedResources) {
+			extractResourceLinksForContainedResources(
+					theRequestPartitionId,
+					params,
+					theEntity,
+					theResource,
+					theTransactionDetails,
+					theFailOnInvalidReference,
+					theRequestDetails);
+		}
+	}
+
+	/**
+	 * Extracts the search indexes of the given resources concurrently using the given executor, and
+	 * stores them in {@literal theTransactionDetails} so that a subsequent call to
+	 * {@link #extractFromResource} for the same resource instance reuses them. Only the CPU-bound part
+	 * of extraction is performed here: no database access happens and no interceptors are invoked on
+	 * the executor threads, and resource links are still resolved by {@link #extractFromResource}.
+	 * <p>
+	 * A prepared result is discarded if the resource has been modified since it was prepared, and a
+	 * resource which fails here is simply extracted again (failing in the normal way) when it is stored,
+	 * so the outcome is always identical to extracting inline. The given resources must not be modified
+	 * until this method returns.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void prepareSearchIndexes(
+			TransactionDetails theTransactionDetails, List<IBaseResource> theResources, Executor theExecutor) {
+		SearchParamExtractionUtil extractionUtil = getExtractionUtil();
+		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
+
+		List<CompletableFuture<PreparedSearchIndexes>> futures = new ArrayList<>(theResources.size());
+		for (IBaseResource next : theResources) {
+			futures.add(CompletableFuture.supplyAsync(
+					() -> prepareSearchIndexes(extractionUtil, next, indexOnContainedResources), theExecutor));
+		}
+
+		IdentityHashMap<IBaseResource, PreparedSearchIndexes> preparedSearchIndexes =
+				theTransactionDetails.getOrCreateUserData(
+						XACT_USERDATA_KEY_PREPARED_SEARCH_INDEXES, IdentityHashMap::new);
+		for (int i = 0; i < theResources.size(); i++) {
+			IBaseResource resource = theResources.get(i);
+			try {
+				// Always wait for every task, since they read the resources the caller is about to modify
+				preparedSearchIndexes.put(resource, Uninterruptibles.getUninterruptibly(futures.get(i)));
+			} catch (ExecutionException e) {
+				ourLog.debug(
+						"Failed to prepare search indexes for {}, they will be extracted when it is stored: {}",
+						resource.getIdElement().getValue(),
+						e.getCause().toString());
+			}
+		}
+		ourLog.debug("Prepared search indexes for {} resources", preparedSearchIndexes.size());
+	}
+
+	private PreparedSearchIndexes prepareSearchIndexes(
+			SearchParamExtractionUtil theExtractionUtil,
+			IBaseResource theResource,
+			boolean theIndexOnContainedResources) {
+		PreparedSearchIndexes retVal =
+				new PreparedSearchIndexes(fingerprint(theResource), theIndexOnContainedResources);
+		theExtractionUtil.extractSearchIndexParameters(
+				retVal.getParams(), theResource, ISearchParamExtractor.ALL_PARAMS, retVal::addSetIfItHasWarnings);
+		retVal.setIndexedReferences(
+				mySearchParamExtractor.extractResourceLinks(theResource, theIndexOnContainedResources));
+		return retVal;
+	}
+
+	@Nullable
+	private PreparedSearchIndexes takePreparedSearchIndexes(
+			@Nullable TransactionDetails theTransactionDetails,
+			IBaseResource theResource,
+			ISearchParamExtractor.ISearchParamFilter theSearchParamFilter,
+			boolean theIndexOnContainedResources) {
+		if (theTransactionDetails == null || theSearchParamFilter != ISearchParamExtractor.ALL_PARAMS) {
+			return null;
+		}
+		IdentityHashMap<IBaseResource, PreparedSearchIndexes> preparedSearchIndexes =
+				theTransactionDetails.getUserData(XACT_USERDATA_KEY_PREPARED_SEARCH_INDEXES);
+		if (preparedSearchIndexes == null) {
+			return null;
+		}
+
+		PreparedSearchIndexes retVal = preparedSearchIndexes.remove(theResource);
+		if (retVal != null) {
+			if (retVal.isIndexOnContainedResources() != theIndexOnContainedResources
+					|| !retVal.getFingerprint().equals(fingerprint(theResource))) {
+				ourLog.debug(
+						"Resource {} was modified after its search indexes were prepared, extracting them again",
+						theResource.getIdElement().getValue());
+				return null;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Hash of the resource contents, excluding the resource ID which is assigned while the
+	 * resource is being stored and has no effect on the extracted indexes
+	 */
+	private HashCode fingerprint(IBaseResource theResource) {
+		String encoded = myContext.newJsonParser().setOmitResourceId(true).encodeResourceToString(theResource);
+		return Hashing.murmur3_128().hashString(encoded, StandardCharsets.UTF_8);
+	}
+
 	private SearchParamExtractionUtil getExtractionUtil() {
 		if (mySearchParamExtractionUtil == null) {
 			mySearchParamExtractionUtil = new SearchParamExtractionUtil(
@@ -1075,6 +1239,54 @@ public class SearchParamExtractorService {
 		IBaseResource fetchResourceAtPath(@Nonnull PathAndRef thePathAndRef);
 	}
 
+	/**
+	 * The search indexes of a single resource, extracted ahead of time by
+	 * {@link #prepareSearchIndexes(TransactionDetails, List, Executor)}
+	 */
+	private static class PreparedSearchIndexes {
+
+		private final HashCode myFingerprint;
+		private final boolean myIndexOnContainedResources;
+		private final ResourceIndexedSearchParams myParams = ResourceIndexedSearchParams.withSets();
+		private final List<ISearchParamExtractor.SearchParamSet<?>> mySetsWithWarnings = new ArrayList<>();
+		private ISearchParamExtractor.SearchParamSet<PathAndRef> myIndexedReferences;
+
+		PreparedSearchIndexes(HashCode theFingerprint, boolean theIndexOnContainedResources) {
+			myFingerprint = theFingerprint;
+			myIndexOnContainedResources = theIndexOnContainedResources;
+		}
+
+		HashCode getFingerprint() {
+			return myFingerprint;
+		}
+
+		boolean isIndexOnContainedResources() {
+			return myIndexOnContainedResources;
+		}
+
+		ResourceIndexedSearchParams getParams() {
+			return myParams;
+		}
+
+		List<ISearchParamExtractor.SearchParamSet<?>> getSetsWithWarnings() {
+			return mySetsWithWarnings;
+		}
+
+		void addSetIfItHasWarnings(ISearchParamExtractor.SearchParamSet<?> theSet) {
+			if (!theSet.getWarnings().isEmpty()) {
+				mySetsWithWarnings.add(theSet);
+			}
+		}
+
+		ISearchParamExtractor.SearchParamSet<PathAndRef> getIndexedReferences() {
+			return myIndexedReferences;
+		}
+
+		void setIndexedReferences(ISearchParamExtractor.SearchParamSet<PathAndRef> theIndexedReferences) {
+			myIndexedReferences = theIndexedReferences;
+		}
+	}
+
 	static void handleWarnings(
 			RequestDetails theRequestDetails,
 			IInterceptorBroadcaster theInterceptorBroadcaster,
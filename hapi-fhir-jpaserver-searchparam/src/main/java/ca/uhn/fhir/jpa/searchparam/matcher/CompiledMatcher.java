@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA - Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam.matcher;
+
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Criteria which have been parsed once by {@link InMemoryResourceMatcher#compile(String, RuntimeResourceDefinition)}
+ * so that they can be matched against any number of resources without being parsed again. Instances are
+ * immutable and can be shared between threads.
+ * <p>
+ * The search parameter definitions in use when the criteria were parsed are kept, so that a compiled
+ * matcher which was created before a search parameter was added, changed or removed can be detected
+ * using {@link #isStale(ISearchParamRegistry)}.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class CompiledMatcher {
+
+	private final String myCriteria;
+	private final RuntimeResourceDefinition myResourceDefinition;
+	private final SearchParameterMap mySearchParameterMap;
+	private final Map<String, RuntimeSearchParam> mySearchParamDefinitions;
+
+	private CompiledMatcher(
+			String theCriteria,
+			RuntimeResourceDefinition theResourceDefinition,
+			@Nullable SearchParameterMap theSearchParameterMap,
+			Map<String, RuntimeSearchParam> theSearchParamDefinitions) {
+		myCriteria = theCriteria;
+		myResourceDefinition = theResourceDefinition;
+		mySearchParameterMap = theSearchParameterMap;
+		mySearchParamDefinitions = theSearchParamDefinitions;
+	}
+
+	public String getCriteria() {
+		return myCriteria;
+	}
+
+	public RuntimeResourceDefinition getResourceDefinition() {
+		return myResourceDefinition;
+	}
+
+	/**
+	 * Returns the parsed criteria, or <code>null</code> if they could not be parsed for in-memory
+	 * matching. The returned map must not be modified.
+	 */
+	@Nullable
+	public SearchParameterMap getSearchParameterMap() {
+		return mySearchParameterMap;
+	}
+
+	public boolean isParseFailure() {
+		return mySearchParameterMap == null;
+	}
+
+	/**
+	 * Returns <code>true</code> if any of the search parameters used by the criteria has been added,
+	 * changed or removed in the registry since they were compiled
+	 */
+	public boolean isStale(ISearchParamRegistry theSearchParamRegistry) {
+		String resourceName = myResourceDefinition.getName();
+		for (Map.Entry<String, RuntimeSearchParam> next : mySearchParamDefinitions.entrySet()) {
+			RuntimeSearchParam current = theSearchParamRegistry.getActiveSearchParam(resourceName, next.getKey());
+			// Compared by identity, which errs on the side of recompiling
+			if (current != next.getValue()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static CompiledMatcher forParseFailure(String theCriteria, RuntimeResourceDefinition theResourceDefinition) {
+		return new CompiledMatcher(theCriteria, theResourceDefinition, null, Collections.emptyMap());
+	}
+
+	static CompiledMatcher forSearchParameterMap(
+			String theCriteria,
+			RuntimeResourceDefinition theResourceDefinition,
+			@Nonnull SearchParameterMap theSearchParameterMap,
+			ISearchParamRegistry theSearchParamRegistry) {
+		Map<String, RuntimeSearchParam> searchParamDefinitions = new HashMap<>();
+		for (String next : theSearchParameterMap.keySet()) {
+			searchParamDefinitions.put(
+					next, theSearchParamRegistry.getActiveSearchParam(theResourceDefinition.getName(), next));
+		}
+		return new CompiledMatcher(theCriteria, theResourceDefinition, theSearchParameterMap, searchParamDefinitions);
+	}
+}
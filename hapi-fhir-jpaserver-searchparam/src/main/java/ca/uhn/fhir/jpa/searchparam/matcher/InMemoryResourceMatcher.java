@@ -31,7 +31,6 @@ import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
-import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
 import ca.uhn.fhir.jpa.searchparam.util.SourceParam;
@@ -48,6 +47,8 @@ import ca.uhn.fhir.rest.param.TokenParamModifier;
 import ca.uhn.fhir.rest.param.UriParam;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
 import ca.uhn.fhir.util.MetaUtil;
 import ca.uhn.fhir.util.UrlUtil;
 import com.google.common.collect.Sets;
@@ -69,6 +70,8 @@ import org.springframework.context.ApplicationContext;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams.isMatchSearchParam;
@@ -101,6 +104,9 @@ public class InMemoryResourceMatcher {
 	@Autowired
 	private MatchUrlService myMatchUrlService;
 
+	private final Cache<String, CompiledMatcher> myCompiledMatcherCache =
+			CacheFactory.build(TimeUnit.MINUTES.toMillis(10), 10000);
+
 	private ValidationSupportInitializationState validationSupportState =
 			ValidationSupportInitializationState.NOT_INITIALIZED;
 	private IValidationSupport myValidationSupport = null;
@@ -171,27 +177,121 @@ public class InMemoryResourceMatcher {
 		} else {
 			resourceDefinition = myFhirContext.getResourceDefinition(theResource);
 		}
+
+		CompiledMatcher compiledMatcher = compile(theCriteria, resourceDefinition);
+		return match(compiledMatcher, theResource, theIndexedSearchParams, theRequestDetails);
+	}
+
+	/**
+	 * Parses the criteria for matching resources of the given type. Compiled matchers are cached by criteria
+	 * and resource type, and recompiled if any of the search parameters they use change.
+	 *
+	 * @throws InvalidRequestException If the criteria are invalid
+	 * @since 7.6.0
+	 */
+	@Nonnull
+	public CompiledMatcher compile(String theCriteria, RuntimeResourceDefinition theResourceDefinition) {
+		String key = theResourceDefinition.getName() + " " + theCriteria;
+		CompiledMatcher retVal = myCompiledMatcherCache.getIfPresent(key);
+		if (retVal == null || retVal.isStale(mySearchParamRegistry)) {
+			retVal = doCompile(theCriteria, theResourceDefinition);
+			myCompiledMatcherCache.put(key, retVal);
+		}
+		return retVal;
+	}
+
+	private CompiledMatcher doCompile(String theCriteria, RuntimeResourceDefinition theResourceDefinition) {
 		SearchParameterMap searchParameterMap;
 		try {
-			searchParameterMap = myMatchUrlService.translateMatchUrl(theCriteria, resourceDefinition);
+			searchParameterMap = myMatchUrlService.translateMatchUrl(theCriteria, theResourceDefinition);
 		} catch (UnsupportedOperationException e) {
-			return InMemoryMatchResult.unsupportedFromReason(InMemoryMatchResult.PARSE_FAIL);
+			return CompiledMatcher.forParseFailure(theCriteria, theResourceDefinition);
 		}
 		searchParameterMap.clean();
+		return CompiledMatcher.forSearchParameterMap(
+				theCriteria, theResourceDefinition, searchParameterMap, mySearchParamRegistry);
+	}
 
-		ResourceIndexedSearchParams relevantSearchParams = null;
+	/**
+	 * Matches a resource against compiled criteria. The search parameters of the resource are only extracted
+	 * as each parameter of the criteria is evaluated, and only for that parameter, so nothing more is
+	 * extracted once one of them fails to match.
+	 *
+	 * @param theIndexedSearchParams If the search params have already been calculated for the given resource,
+	 *                               they can be passed in, otherwise they are extracted as needed
+	 * @since 7.6.0
+	 */
+	@Nonnull
+	public InMemoryMatchResult match(
+			CompiledMatcher theCompiledMatcher,
+			@Nullable IBaseResource theResource,
+			@Nullable ResourceIndexedSearchParams theIndexedSearchParams,
+			RequestDetails theRequestDetails) {
+		SearchParameterMap searchParameterMap = theCompiledMatcher.getSearchParameterMap();
+		if (searchParameterMap == null) {
+			return InMemoryMatchResult.unsupportedFromReason(InMemoryMatchResult.PARSE_FAIL);
+		}
+
+		Function<String, ResourceIndexedSearchParams> searchParamsProvider;
 		if (theIndexedSearchParams != null) {
-			relevantSearchParams = theIndexedSearchParams;
+			searchParamsProvider = t -> theIndexedSearchParams;
 		} else if (theResource != null) {
-			// Don't index search params we don't actully need for the given criteria
-			ISearchParamExtractor.ISearchParamFilter filter = theSearchParams -> theSearchParams.stream()
-					.filter(t -> searchParameterMap.containsKey(t.getName()))
-					.collect(Collectors.toList());
-			relevantSearchParams =
-					myIndexedSearchParamExtractor.extractIndexedSearchParams(theResource, theRequestDetails, filter);
+			searchParamsProvider = paramName -> extractSearchParam(theResource, paramName, theRequestDetails);
+		} else {
+			searchParamsProvider = t -> null;
+		}
+
+		return doMatch(
+				searchParameterMap, theResource, theCompiledMatcher.getResourceDefinition(), searchParamsProvider);
+	}
+
+	/**
+	 * Matches the resource of an extraction context against compiled criteria. Search parameters already
+	 * extracted into the context by previous matches are reused, and any others needed are extracted
+	 * and added to it.
+	 *
+	 * @since 7.6.0
+	 */
+	@Nonnull
+	public InMemoryMatchResult match(
+			CompiledMatcher theCompiledMatcher,
+			SearchParamExtractionContext theExtractionContext,
+			RequestDetails theRequestDetails) {
+		SearchParameterMap searchParameterMap = theCompiledMatcher.getSearchParameterMap();
+		if (searchParameterMap == null) {
+			return InMemoryMatchResult.unsupportedFromReason(InMemoryMatchResult.PARSE_FAIL);
 		}
 
-		return match(searchParameterMap, theResource, resourceDefinition, relevantSearchParams);
+		IBaseResource resource = theExtractionContext.getResource();
+		return doMatch(
+				searchParameterMap,
+				resource,
+				theCompiledMatcher.getResourceDefinition(),
+				paramName -> theExtractionContext.getOrExtract(
+						paramName, t -> extractSearchParam(resource, t, theRequestDetails)));
+	}
+
+	/**
+	 * Matches the resource of an extraction context against the given criteria.
+	 *
+	 * @see #match(CompiledMatcher, SearchParamExtractionContext, RequestDetails)
+	 * @since 7.6.0
+	 */
+	@Nonnull
+	public InMemoryMatchResult match(
+			String theCriteria, SearchParamExtractionContext theExtractionContext, RequestDetails theRequestDetails) {
+		RuntimeResourceDefinition resourceDefinition =
+				myFhirContext.getResourceDefinition(theExtractionContext.getResource());
+		return match(compile(theCriteria, resourceDefinition), theExtractionContext, theRequestDetails);
+	}
+
+	private ResourceIndexedSearchParams extractSearchParam(
+			IBaseResource theResource, String theParamName, RequestDetails theRequestDetails) {
+		// Don't index search params we don't actually need for the given parameter
+		return myIndexedSearchParamExtractor.extractIndexedSearchParams(
+				theResource, theRequestDetails, theSearchParams -> theSearchParams.stream()
+						.filter(t -> theParamName.equals(t.getName()))
+						.collect(Collectors.toList()));
 	}
 
 	/**
@@ -218,6 +318,15 @@ public class InMemoryResourceMatcher {
 			IBaseResource theResource,
 			RuntimeResourceDefinition theResourceDefinition,
 			ResourceIndexedSearchParams theSearchParams) {
+		return doMatch(theSearchParameterMap, theResource, theResourceDefinition, t -> theSearchParams);
+	}
+
+	@Nonnull
+	private InMemoryMatchResult doMatch(
+			SearchParameterMap theSearchParameterMap,
+			IBaseResource theResource,
+			RuntimeResourceDefinition theResourceDefinition,
+			Function<String, ResourceIndexedSearchParams> theSearchParamsProvider) {
 		if (theSearchParameterMap.getLastUpdated() != null) {
 			return InMemoryMatchResult.unsupportedFromParameterAndReason(
 					Constants.PARAM_LASTUPDATED, InMemoryMatchResult.STANDARD_PARAMETER);
@@ -230,7 +339,7 @@ public class InMemoryResourceMatcher {
 			String theParamName = entry.getKey();
 			List<List<IQueryParameterType>> theAndOrParams = entry.getValue();
 			InMemoryMatchResult result = matchIdsWithAndOr(
-					theParamName, theAndOrParams, theResourceDefinition, theResource, theSearchParams);
+					theParamName, theAndOrParams, theResourceDefinition, theResource, theSearchParamsProvider);
 			if (!result.matched()) {
 				return result;
 			}
@@ -244,7 +353,7 @@ public class InMemoryResourceMatcher {
 			List<List<IQueryParameterType>> theAndOrParams,
 			RuntimeResourceDefinition theResourceDefinition,
 			IBaseResource theResource,
-			ResourceIndexedSearchParams theSearchParams) {
+			Function<String, ResourceIndexedSearchParams> theSearchParamsProvider) {
 		if (theAndOrParams.isEmpty()) {
 			return InMemoryMatchResult.successfulMatch();
 		}
@@ -270,7 +379,12 @@ public class InMemoryResourceMatcher {
 				return InMemoryMatchResult.fromBoolean(matchProfilesAndOr(theAndOrParams, theResource));
 			default:
 				return matchResourceParam(
-						myStorageSettings, theParamName, theAndOrParams, theSearchParams, resourceName, paramDef);
+						myStorageSettings,
+						theParamName,
+						theAndOrParams,
+						theSearchParamsProvider,
+						resourceName,
+						paramDef);
 		}
 	}
 
@@ -464,7 +578,7 @@ public class InMemoryResourceMatcher {
 			StorageSettings theStorageSettings,
 			String theParamName,
 			List<List<IQueryParameterType>> theAndOrParams,
-			ResourceIndexedSearchParams theSearchParams,
+			Function<String, ResourceIndexedSearchParams> theSearchParamsProvider,
 			String theResourceName,
 			RuntimeSearchParam theParamDef) {
 		if (theParamDef != null) {
@@ -476,7 +590,8 @@ public class InMemoryResourceMatcher {
 				case URI:
 				case DATE:
 				case REFERENCE:
-					if (theSearchParams == null) {
+					ResourceIndexedSearchParams searchParams = theSearchParamsProvider.apply(theParamName);
+					if (searchParams == null) {
 						return InMemoryMatchResult.successfulMatch();
 					} else {
 						return InMemoryMatchResult.fromBoolean(theAndOrParams.stream()
@@ -486,7 +601,7 @@ public class InMemoryResourceMatcher {
 										theParamName,
 										theParamDef,
 										nextAnd,
-										theSearchParams)));
+										searchParams)));
 					}
 				case COMPOSITE:
 				case HAS:
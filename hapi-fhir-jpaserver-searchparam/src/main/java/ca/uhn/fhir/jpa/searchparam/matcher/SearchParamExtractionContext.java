@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA - Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam.matcher;
+
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import jakarta.annotation.Nonnull;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Memoizes the search parameters extracted from a single resource, so that several matchers evaluating
+ * criteria against the same resource (e.g. every subscription and subscription topic checked for one
+ * modified resource) only extract each search parameter once. Parameters are extracted lazily, one at a
+ * time, as the matchers need them.
+ * <p>
+ * Instances are thread safe, but should not outlive the resource they were created for, which must not
+ * be modified while the context is in use.
+ * </p>
+ *
+ * @see InMemoryResourceMatcher#match(CompiledMatcher, SearchParamExtractionContext, ca.uhn.fhir.rest.api.server.RequestDetails)
+ * @since 7.6.0
+ */
+public class SearchParamExtractionContext {
+
+	private final IBaseResource myResource;
+	private final Map<String, ResourceIndexedSearchParams> myExtractedSearchParams = new ConcurrentHashMap<>();
+
+	public SearchParamExtractionContext(@Nonnull IBaseResource theResource) {
+		myResource = theResource;
+	}
+
+	@Nonnull
+	public IBaseResource getResource() {
+		return myResource;
+	}
+
+	/**
+	 * Returns the number of search parameters extracted so far
+	 */
+	public int getExtractedSearchParamCount() {
+		return myExtractedSearchParams.size();
+	}
+
+	ResourceIndexedSearchParams getOrExtract(
+			String theParamName, Function<String, ResourceIndexedSearchParams> theExtractor) {
+		return myExtractedSearchParams.computeIfAbsent(theParamName, theExtractor);
+	}
+}
@@ -46,6 +46,17 @@ public class SearchParamMatcher {
 		return myInMemoryResourceMatcher.match(theCriteria, theResource, null, theRequest);
 	}
 
+	/**
+	 * Matches the resource of the given extraction context, reusing the search parameters already
+	 * extracted into it.
+	 *
+	 * @since 7.6.0
+	 */
+	public InMemoryMatchResult match(
+			String theCriteria, SearchParamExtractionContext theExtractionContext, RequestDetails theRequest) {
+		return myInMemoryResourceMatcher.match(theCriteria, theExtractionContext, theRequest);
+	}
+
 	public InMemoryMatchResult match(SearchParameterMap theSearchParameterMap, IBaseResource theResource) {
 		if (theSearchParameterMap.isEmpty()) {
 			return InMemoryMatchResult.successfulMatch();
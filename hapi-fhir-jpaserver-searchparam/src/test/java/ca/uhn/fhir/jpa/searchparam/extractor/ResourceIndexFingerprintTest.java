@@ -0,0 +1,110 @@
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexFingerprint.IndexTypeEnum;
+import ca.uhn.fhir.util.VersionEnum;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceIndexFingerprintTest {
+
+	private final PartitionSettings myPartitionSettings = new PartitionSettings();
+	private final StorageSettings myStorageSettings = new StorageSettings();
+
+	@Test
+	public void testRowOrderDoesNotMatter() {
+		ResourceIndexedSearchParams params1 = ResourceIndexedSearchParams.withLists(new ResourceTable());
+		params1.myTokenParams.add(token("a"));
+		params1.myTokenParams.add(token("b"));
+		ResourceIndexedSearchParams params2 = ResourceIndexedSearchParams.withLists(new ResourceTable());
+		params2.myTokenParams.add(token("b"));
+		params2.myTokenParams.add(token("a"));
+
+		ResourceIndexFingerprint fingerprint1 = ResourceIndexFingerprint.calculate(params1, false);
+		ResourceIndexFingerprint fingerprint2 = ResourceIndexFingerprint.calculate(params2, false);
+
+		assertEquals(fingerprint1.encode(), fingerprint2.encode());
+		assertTrue(fingerprint1.isUnchanged(IndexTypeEnum.TOKEN, fingerprint2));
+	}
+
+	@Test
+	public void testChangesAreDetectedPerType() {
+		ResourceIndexedSearchParams params1 = ResourceIndexedSearchParams.withSets();
+		params1.myTokenParams.add(token("a"));
+		params1.myStringParams.add(string("smith"));
+		ResourceIndexedSearchParams params2 = ResourceIndexedSearchParams.withSets();
+		params2.myTokenParams.add(token("a"));
+		params2.myTokenParams.add(token("b"));
+		params2.myStringParams.add(string("smith"));
+
+		ResourceIndexFingerprint fingerprint1 = ResourceIndexFingerprint.calculate(params1, false);
+		ResourceIndexFingerprint fingerprint2 = ResourceIndexFingerprint.calculate(params2, false);
+
+		assertFalse(fingerprint1.isUnchanged(IndexTypeEnum.TOKEN, fingerprint2));
+		assertTrue(fingerprint1.isUnchanged(IndexTypeEnum.STRING, fingerprint2));
+		assertTrue(fingerprint1.isUnchanged(IndexTypeEnum.DATE, fingerprint2));
+	}
+
+	@Test
+	public void testIndexStorageOptimizedChangesFingerprint() {
+		ResourceIndexedSearchParams params = ResourceIndexedSearchParams.withSets();
+		params.myTokenParams.add(token("a"));
+
+		ResourceIndexFingerprint fingerprint1 = ResourceIndexFingerprint.calculate(params, false);
+		ResourceIndexFingerprint fingerprint2 = ResourceIndexFingerprint.calculate(params, true);
+
+		assertFalse(fingerprint1.isUnchanged(IndexTypeEnum.TOKEN, fingerprint2));
+	}
+
+	@Test
+	public void testEncodeAndParse() {
+		ResourceIndexedSearchParams params = ResourceIndexedSearchParams.withSets();
+		params.myTokenParams.add(token("a"));
+		params.myStringParams.add(string("smith"));
+		ResourceIndexFingerprint fingerprint = ResourceIndexFingerprint.calculate(params, false);
+
+		String encoded = fingerprint.encode();
+		assertThat(encoded).startsWith("1-" + VersionEnum.latestVersion().name() + ";").contains(";s=").contains(";t=");
+		assertThat(encoded.length()).isLessThanOrEqualTo(ResourceTable.INDEX_FINGERPRINT_LENGTH);
+
+		ResourceIndexFingerprint parsed = ResourceIndexFingerprint.parse(encoded);
+		assertEquals(encoded, parsed.encode());
+		for (IndexTypeEnum next : IndexTypeEnum.values()) {
+			assertTrue(parsed.isUnchanged(next, fingerprint), next.name());
+		}
+	}
+
+	@Test
+	public void testUnknownFingerprintIsNeverUnchanged() {
+		ResourceIndexFingerprint empty = ResourceIndexFingerprint.calculate(ResourceIndexedSearchParams.withSets(), false);
+
+		assertNull(ResourceIndexFingerprint.parse(null).encode());
+		assertFalse(ResourceIndexFingerprint.parse(null).isUnchanged(IndexTypeEnum.TOKEN, empty));
+		assertFalse(ResourceIndexFingerprint.parse("0;t=123").isUnchanged(IndexTypeEnum.STRING, empty));
+		// Written before a schema upgrade
+		assertFalse(ResourceIndexFingerprint.parse("1-V7_4_0").isUnchanged(IndexTypeEnum.STRING, empty));
+		assertFalse(ResourceIndexFingerprint.parse("1;zz=123").isUnchanged(IndexTypeEnum.STRING, empty));
+		assertTrue(ResourceIndexFingerprint.parse("1-" + VersionEnum.latestVersion().name()).isUnchanged(IndexTypeEnum.STRING, empty));
+	}
+
+	private ResourceIndexedSearchParamToken token(String theValue) {
+		ResourceIndexedSearchParamToken retVal = new ResourceIndexedSearchParamToken(myPartitionSettings, "Patient", "identifier", "http://foo", theValue);
+		retVal.calculateHashes();
+		return retVal;
+	}
+
+	private ResourceIndexedSearchParamString string(String theValue) {
+		ResourceIndexedSearchParamString retVal = new ResourceIndexedSearchParamString(myPartitionSettings, myStorageSettings, "Patient", "family", theValue, theValue);
+		retVal.calculateHashes();
+		return retVal;
+	}
+}
@@ -96,6 +96,29 @@ public class ResourceIndexedSearchParamsTest {
 		return retVal;
 	}
 
+	@Test
+	public void testLazyListsLoadEntityCollectionsOnFirstAccess() {
+		mySource.setParamsStringPopulated(true);
+		ResourceIndexedSearchParams params = ResourceIndexedSearchParams.withLazyLists(mySource);
+
+		// Not loaded yet, so changes to the entity collection are visible
+		ResourceIndexedSearchParamString first = new ResourceIndexedSearchParamString().setValueExact("first");
+		mySource.getParamsString().add(first);
+		assertThat(params.myStringParams).containsExactly(first);
+
+		// Already loaded
+		mySource.getParamsString().add(new ResourceIndexedSearchParamString().setValueExact("second"));
+		assertThat(params.myStringParams).containsExactly(first);
+		assertThat(params.myTokenParams).isEmpty();
+
+		// Supports the whole List interface
+		List<ResourceIndexedSearchParamString> list = (List<ResourceIndexedSearchParamString>) params.myStringParams;
+		assertThat(list.get(0)).isSameAs(first);
+		assertThat(list.indexOf(first)).isEqualTo(0);
+		list.remove(0);
+		assertThat(list).isEmpty();
+	}
+
 	@Test
 	public void testExtractCompositeStringUniquesValueChains() {
 		List<List<String>> partsChoices;
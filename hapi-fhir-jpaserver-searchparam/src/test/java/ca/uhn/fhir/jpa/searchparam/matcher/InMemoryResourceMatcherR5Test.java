@@ -1,6 +1,7 @@
 package ca.uhn.fhir.jpa.searchparam.matcher;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.context.support.IValidationSupport;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
@@ -44,10 +45,13 @@ import java.util.Date;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -80,6 +84,8 @@ public class InMemoryResourceMatcherR5Test {
 	private InMemoryResourceMatcher myInMemoryResourceMatcher;
 	@Autowired
 	StorageSettings myStorageSettings;
+	@Autowired
+	FhirContext myFhirContext;
 	private Observation myObservation;
 	private ResourceIndexedSearchParams mySearchParams;
 
@@ -409,6 +415,49 @@ public class InMemoryResourceMatcherR5Test {
 		assertFalse(resultOutsidePeriod.matched());
 	}
 
+	@Test
+	public void testCompile_CachedUntilSearchParamChanges() {
+		RuntimeResourceDefinition resourceDefinition = myFhirContext.getResourceDefinition("Observation");
+		CompiledMatcher compiledMatcher = myInMemoryResourceMatcher.compile("Observation?code=" + OBSERVATION_CODE, resourceDefinition);
+		assertFalse(compiledMatcher.isParseFailure());
+		assertSame(compiledMatcher, myInMemoryResourceMatcher.compile("Observation?code=" + OBSERVATION_CODE, resourceDefinition));
+
+		InMemoryMatchResult result = myInMemoryResourceMatcher.match(compiledMatcher, myObservation, mySearchParams, newRequest());
+		assertTrue(result.matched());
+
+		RuntimeSearchParam codeSearchParam = new RuntimeSearchParam(null, null, null, null, "Observation.code", RestSearchParameterTypeEnum.TOKEN, null, null, RuntimeSearchParam.RuntimeSearchParamStatusEnum.ACTIVE, null, null, null);
+		when(mySearchParamRegistry.getActiveSearchParam("Observation", "code")).thenReturn(codeSearchParam);
+		assertTrue(compiledMatcher.isStale(mySearchParamRegistry));
+		assertNotSame(compiledMatcher, myInMemoryResourceMatcher.compile("Observation?code=" + OBSERVATION_CODE, resourceDefinition));
+	}
+
+	@Test
+	public void testMatch_StopsExtractingAtFirstFailingParam() {
+		when(myIndexedSearchParamExtractor.extractIndexedSearchParams(any(), any(), any())).thenReturn(mySearchParams);
+
+		// Neither parameter matches, so only the first one evaluated needs to be extracted
+		String criteria = "code=a_different_code&date=" + LATE_DATE;
+		InMemoryMatchResult result = myInMemoryResourceMatcher.match(criteria, myObservation, null, newRequest());
+		assertFalse(result.matched());
+		verify(myIndexedSearchParamExtractor, times(1)).extractIndexedSearchParams(any(), any(), any());
+	}
+
+	@Test
+	public void testMatch_ExtractionContextSharedBetweenCriteria() {
+		when(myIndexedSearchParamExtractor.extractIndexedSearchParams(any(), any(), any())).thenReturn(mySearchParams);
+		SearchParamExtractionContext extractionContext = new SearchParamExtractionContext(myObservation);
+
+		// Both criteria use the code parameter, which should only be extracted once
+		assertTrue(myInMemoryResourceMatcher.match("Observation?code=" + OBSERVATION_CODE, extractionContext, newRequest()).matched());
+		assertFalse(myInMemoryResourceMatcher.match("Observation?code=a_different_code", extractionContext, newRequest()).matched());
+		verify(myIndexedSearchParamExtractor, times(1)).extractIndexedSearchParams(any(), any(), any());
+		assertEquals(1, extractionContext.getExtractedSearchParamCount());
+
+		assertTrue(myInMemoryResourceMatcher.match("Observation?date=gt" + EARLY_DATE, extractionContext, newRequest()).matched());
+		verify(myIndexedSearchParamExtractor, times(2)).extractIndexedSearchParams(any(), any(), any());
+		assertEquals(2, extractionContext.getExtractedSearchParamCount());
+	}
+
 
 	private ResourceIndexedSearchParams extractSearchParams(Observation theObservation) {
 		ResourceIndexedSearchParams retval = ResourceIndexedSearchParams.withSets();
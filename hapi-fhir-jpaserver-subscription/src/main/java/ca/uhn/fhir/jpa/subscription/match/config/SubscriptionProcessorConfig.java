@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.subscription.match.config;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.jpa.model.config.SubscriptionSettings;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
 import ca.uhn.fhir.jpa.subscription.channel.subscription.SubscriptionChannelRegistry;
@@ -29,6 +30,7 @@ import ca.uhn.fhir.jpa.subscription.channel.subscription.SubscriptionDeliveryHan
 import ca.uhn.fhir.jpa.subscription.match.deliver.email.IEmailSender;
 import ca.uhn.fhir.jpa.subscription.match.deliver.email.SubscriptionDeliveringEmailSubscriber;
 import ca.uhn.fhir.jpa.subscription.match.deliver.message.SubscriptionDeliveringMessageSubscriber;
+import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.RestHookDeliveryBatcher;
 import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.SubscriptionDeliveringRestHookSubscriber;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.CompositeInMemoryDaoSubscriptionMatcher;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.DaoSubscriptionMatcher;
@@ -47,6 +49,7 @@ import ca.uhn.fhir.jpa.topic.SubscriptionTopicPayloadBuilder;
 import ca.uhn.fhir.jpa.topic.filter.InMemoryTopicFilterMatcher;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Primary;
@@ -114,6 +117,14 @@ public class SubscriptionProcessorConfig {
 				theFhirContext, theInterceptorBroadcaster, theSubscriptionChannelRegistry);
 	}
 
+	// Stopped before the channel registry, so that batches failing while being flushed on shutdown
+	// can still be handed back to the delivery channels
+	@Bean
+	@DependsOn("subscriptionChannelRegistry")
+	public RestHookDeliveryBatcher restHookDeliveryBatcher(SubscriptionSettings theSubscriptionSettings) {
+		return new RestHookDeliveryBatcher(theSubscriptionSettings);
+	}
+
 	@Bean
 	@Scope("prototype")
 	public SubscriptionDeliveringRestHookSubscriber subscriptionDeliveringRestHookSubscriber() {
@@ -0,0 +1,284 @@
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.match.deliver.resthook;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.model.config.SubscriptionSettings;
+import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryMessage;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates rest-hook notifications per subscription so that they can be delivered together, when
+ * {@link SubscriptionSettings#isRestHookDeliveryBatchingEnabled() batching is enabled}.
+ * <p>
+ * A batch is handed over for delivery once it is full, or once the maximum wait time has passed since its first
+ * notification was added. Batches are delivered by a pool of threads shared by all subscriptions. Each endpoint URL
+ * has its own queue, so that no more than the configured number of requests are sent to the same endpoint at a time,
+ * and a slow endpoint only holds up the threads that are delivering to it. Back-pressure from a slow endpoint is only
+ * ever applied to {@link #add(String, String, ResourceDeliveryMessage, IBaseResource, IRestHookBatchDeliverer) add()},
+ * never to the timer that hands over batches after the maximum wait time, since that timer is shared by all
+ * subscriptions. The HTTP connections themselves come from the connection pool of the restful client factory, which
+ * is shared by all clients.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class RestHookDeliveryBatcher {
+	private static final Logger ourLog = LoggerFactory.getLogger(RestHookDeliveryBatcher.class);
+
+	/**
+	 * Once this many batches are waiting for an endpoint, adding more blocks until one has been delivered, so that
+	 * a slow endpoint applies back-pressure to the delivery channel instead of filling up the heap. Batches handed
+	 * over by the timer are queued regardless, and the next call to add() waits for them too.
+	 */
+	private static final int MAX_WAITING_BATCHES_PER_ENDPOINT = 100;
+
+	private final SubscriptionSettings mySubscriptionSettings;
+	private final Map<String, Batch> myBatches = new ConcurrentHashMap<>();
+	private final Map<String, EndpointQueue> myEndpointQueues = new ConcurrentHashMap<>();
+	private ScheduledExecutorService myFlushScheduler;
+	private ThreadPoolTaskExecutor myDeliveryExecutor;
+
+	/**
+	 * Constructor
+	 */
+	public RestHookDeliveryBatcher(SubscriptionSettings theSubscriptionSettings) {
+		mySubscriptionSettings = theSubscriptionSettings;
+	}
+
+	public boolean isEnabled() {
+		return mySubscriptionSettings.isRestHookDeliveryBatchingEnabled();
+	}
+
+	/**
+	 * Adds a notification to the current batch of the given subscription, starting a new batch if there is none
+	 *
+	 * @param theSubscriptionId The subscription the notification is for
+	 * @param theEndpointUrl    The endpoint URL of the subscription
+	 * @param theMessage        The notification
+	 * @param thePayload        The resource to deliver for this notification
+	 * @param theDeliverer      Delivers the batch. If the subscription already has a batch in progress, the deliverer
+	 *                          it was started with is used.
+	 */
+	public void add(
+			@Nonnull String theSubscriptionId,
+			@Nonnull String theEndpointUrl,
+			@Nonnull ResourceDeliveryMessage theMessage,
+			@Nonnull IBaseResource thePayload,
+			@Nonnull IRestHookBatchDeliverer theDeliverer) {
+		start();
+
+		int maxSize = mySubscriptionSettings.getRestHookDeliveryBatchMaxSize();
+		Batch[] fullBatch = new Batch[1];
+		myBatches.compute(theSubscriptionId, (id, existing) -> {
+			Batch batch = existing;
+			if (batch == null) {
+				batch = new Batch(theEndpointUrl, theDeliverer);
+				Batch newBatch = batch;
+				batch.myFlushFuture = myFlushScheduler.schedule(
+						() -> flush(id, newBatch),
+						mySubscriptionSettings.getRestHookDeliveryBatchMaxWaitMillis(),
+						TimeUnit.MILLISECONDS);
+			}
+			batch.myMessages.add(theMessage);
+			batch.myPayloads.add(thePayload);
+			if (batch.myMessages.size() >= maxSize) {
+				fullBatch[0] = batch;
+				return null;
+			}
+			return batch;
+		});
+
+		if (fullBatch[0] != null) {
+			fullBatch[0].myFlushFuture.cancel(false);
+			enqueue(fullBatch[0], true);
+		}
+	}
+
+	/**
+	 * Hands over all the batches in progress for delivery, without waiting for them to fill up
+	 */
+	public void flushAll() {
+		for (Map.Entry<String, Batch> next : myBatches.entrySet()) {
+			next.getValue().myFlushFuture.cancel(false);
+			flush(next.getKey(), next.getValue());
+		}
+	}
+
+	private void flush(String theSubscriptionId, Batch theBatch) {
+		// The batch may have been handed over already because it filled up
+		if (myBatches.remove(theSubscriptionId, theBatch)) {
+			enqueue(theBatch, false);
+		}
+	}
+
+	/**
+	 * @param theWaitForRoom Should this block while the endpoint already has the maximum number of batches waiting
+	 */
+	private void enqueue(Batch theBatch, boolean theWaitForRoom) {
+		EndpointQueue queue = myEndpointQueues.computeIfAbsent(theBatch.myEndpointUrl, t -> new EndpointQueue());
+		int maxInProgress = mySubscriptionSettings.getRestHookDeliveryMaxConcurrentRequestsPerEndpoint();
+		if (queue.offer(theBatch, maxInProgress, theWaitForRoom)) {
+			myDeliveryExecutor.execute(() -> deliverUntilEmpty(theBatch, queue));
+		}
+	}
+
+	private void deliverUntilEmpty(Batch theFirstBatch, EndpointQueue theQueue) {
+		Batch batch = theFirstBatch;
+		while (batch != null) {
+			try {
+				batch.myDeliverer.deliver(
+						Collections.unmodifiableList(batch.myMessages), Collections.unmodifiableList(batch.myPayloads));
+			} catch (Exception e) {
+				ourLog.error(
+						"Failed to deliver {} notifications to {}: {}",
+						batch.myMessages.size(),
+						batch.myEndpointUrl,
+						e.toString(),
+						e);
+			}
+			batch = theQueue.next();
+		}
+	}
+
+	private synchronized void start() {
+		if (myDeliveryExecutor == null) {
+			int threadCount = mySubscriptionSettings.getRestHookDeliveryThreadCount();
+			// Tasks only wait in the queue while every thread is busy, and there are never more of them than the
+			// number of requests each endpoint may have in progress, so the queue is unbounded instead of blocking
+			myDeliveryExecutor = ThreadPoolUtil.newThreadPool(
+					threadCount, threadCount, "rest-hook-delivery-", Integer.MAX_VALUE);
+			myFlushScheduler = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+					.namingPattern("rest-hook-delivery-flush-%d")
+					.daemon(true)
+					.build());
+		}
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myDeliveryExecutor != null) {
+			flushAll();
+			myFlushScheduler.shutdownNow();
+			myDeliveryExecutor.setWaitForTasksToCompleteOnShutdown(true);
+			myDeliveryExecutor.setAwaitTerminationSeconds(30);
+			myDeliveryExecutor.shutdown();
+			myDeliveryExecutor = null;
+			myFlushScheduler = null;
+		}
+	}
+
+	@VisibleForTesting
+	int getPendingBatchCount() {
+		return myBatches.size();
+	}
+
+	/**
+	 * Delivers a batch of notifications for a single subscription
+	 */
+	@FunctionalInterface
+	public interface IRestHookBatchDeliverer {
+
+		/**
+		 * @param theMessages The notifications, in the order they were added
+		 * @param thePayloads The resource to deliver for each notification, in the same order
+		 */
+		void deliver(List<ResourceDeliveryMessage> theMessages, List<IBaseResource> thePayloads);
+	}
+
+	private static class Batch {
+		private final String myEndpointUrl;
+		private final IRestHookBatchDeliverer myDeliverer;
+		private final List<ResourceDeliveryMessage> myMessages = new ArrayList<>();
+		private final List<IBaseResource> myPayloads = new ArrayList<>();
+		private ScheduledFuture<?> myFlushFuture;
+
+		private Batch(String theEndpointUrl, IRestHookBatchDeliverer theDeliverer) {
+			myEndpointUrl = theEndpointUrl;
+			myDeliverer = theDeliverer;
+		}
+	}
+
+	/**
+	 * Batches waiting to be delivered to a single endpoint
+	 */
+	private static class EndpointQueue {
+		private final Deque<Batch> myWaiting = new ArrayDeque<>();
+		private int myInProgress;
+
+		/**
+		 * @param theWaitForRoom Should this block while {@link #MAX_WAITING_BATCHES_PER_ENDPOINT} batches are waiting,
+		 *                       rather than queueing the batch regardless
+		 * @return <code>true</code> if the batch can be delivered right away, or <code>false</code> if it has been
+		 * queued behind the deliveries in progress
+		 */
+		private synchronized boolean offer(Batch theBatch, int theMaxInProgress, boolean theWaitForRoom) {
+			while (true) {
+				if (myInProgress < theMaxInProgress) {
+					myInProgress++;
+					return true;
+				}
+				if (!theWaitForRoom || myWaiting.size() < MAX_WAITING_BATCHES_PER_ENDPOINT) {
+					myWaiting.add(theBatch);
+					return false;
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InternalErrorException(Msg.code(2561) + "Interrupted while waiting to queue a delivery");
+				}
+			}
+		}
+
+		/**
+		 * Called when a delivery completes. Returns the next batch to deliver, or <code>null</code> if there is none.
+		 */
+		private synchronized Batch next() {
+			Batch retVal = myWaiting.poll();
+			if (retVal == null) {
+				myInProgress--;
+			}
+			notifyAll();
+			return retVal;
+		}
+	}
+}
@@ -26,11 +26,16 @@ import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.subscription.channel.subscription.SubscriptionChannelRegistry;
 import ca.uhn.fhir.jpa.subscription.match.deliver.BaseSubscriptionDeliverySubscriber;
+import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
+import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryJsonMessage;
 import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryMessage;
+import ca.uhn.fhir.jpa.topic.SubscriptionTopicPayloadBuilder;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.client.api.Header;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
@@ -46,6 +51,7 @@ import ca.uhn.fhir.rest.server.messaging.BaseResourceModifiedMessage;
 import ca.uhn.fhir.util.BundleUtil;
 import ca.uhn.fhir.util.Logs;
 import ca.uhn.fhir.util.StopWatch;
+import com.google.common.annotations.VisibleForTesting;
 import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -54,6 +60,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessagingException;
 
 import java.io.IOException;
@@ -62,7 +69,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 @Scope("prototype")
@@ -72,6 +81,14 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 	@Autowired
 	private DaoRegistry myDaoRegistry;
 
+	@Autowired
+	private RestHookDeliveryBatcher myRestHookDeliveryBatcher;
+
+	@Autowired
+	private SubscriptionChannelRegistry mySubscriptionChannelRegistry;
+
+	private SubscriptionTopicPayloadBuilder myBatchPayloadBuilder;
+
 	/**
 	 * Constructor
 	 */
@@ -267,19 +284,21 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 			payloadType = EncodingEnum.forContentType(payloadString);
 		}
 
+		if (isBatchable(theMessage, subscription, endpointUrl, payloadType)) {
+			IBaseResource payloadResource = getBatchPayload(theMessage, subscription);
+			if (payloadResource != null) {
+				String subscriptionId = subscription.getIdElement(myFhirContext).getIdPart();
+				myRestHookDeliveryBatcher.add(
+						subscriptionId, endpointUrl, theMessage, payloadResource, this::deliverBatch);
+				// SUBSCRIPTION_AFTER_REST_HOOK_DELIVERY is called once the batch has been delivered
+				return;
+			}
+		}
+
 		// Create the client request
-		myFhirContext.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
 		IGenericClient client = null;
 		if (isNotBlank(endpointUrl)) {
-			client = myFhirContext.newRestfulGenericClient(endpointUrl);
-
-			// Additional headers specified in the subscription
-			List<String> headers = subscription.getHeaders();
-			for (String next : headers) {
-				if (isNotBlank(next)) {
-					client.registerInterceptor(new SimpleRequestHeaderInterceptor(next));
-				}
-			}
+			client = createClient(subscription);
 		}
 
 		deliverPayload(theMessage, subscription, payloadType, client);
@@ -294,6 +313,172 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		}
 	}
 
+	private IGenericClient createClient(CanonicalSubscription theSubscription) {
+		myFhirContext.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+		IGenericClient retVal = myFhirContext.newRestfulGenericClient(theSubscription.getEndpointUrl());
+
+		// Additional headers specified in the subscription
+		List<String> headers = theSubscription.getHeaders();
+		for (String next : headers) {
+			if (isNotBlank(next)) {
+				retVal.registerInterceptor(new SimpleRequestHeaderInterceptor(next));
+			}
+		}
+		return retVal;
+	}
+
+	private boolean isBatchable(
+			ResourceDeliveryMessage theMessage,
+			CanonicalSubscription theSubscription,
+			String theEndpointUrl,
+			EncodingEnum thePayloadType) {
+		return myRestHookDeliveryBatcher != null
+				&& myRestHookDeliveryBatcher.isEnabled()
+				&& !theMessage.isDeliverIndividually()
+				&& isNotBlank(theEndpointUrl)
+				&& thePayloadType != null
+				&& !theSubscription.isTopicSubscription()
+				&& isBlank(theSubscription.getPayloadSearchCriteria())
+				&& getBatchPayloadBuilder() != null;
+	}
+
+	@Nullable
+	private IBaseResource getBatchPayload(ResourceDeliveryMessage theMsg, CanonicalSubscription theSubscription) {
+		IBaseResource retVal = getAndMassagePayload(theMsg, theSubscription);
+		if (retVal == null && theMsg.getOperationType() == BaseResourceModifiedMessage.OperationTypeEnum.DELETE) {
+			// A delete entry only needs the ID of the resource
+			IIdType payloadId = theMsg.getPayloadId(myFhirContext);
+			retVal = myFhirContext.getResourceDefinition(payloadId.getResourceType()).newInstance();
+			retVal.setId(payloadId.toUnqualifiedVersionless());
+		}
+		return retVal;
+	}
+
+	@Nullable
+	private SubscriptionTopicPayloadBuilder getBatchPayloadBuilder() {
+		if (myBatchPayloadBuilder == null) {
+			switch (myFhirContext.getVersion().getVersion()) {
+				case R4:
+				case R4B:
+				case R5:
+					myBatchPayloadBuilder = new SubscriptionTopicPayloadBuilder(myFhirContext);
+					break;
+				default:
+					break;
+			}
+		}
+		return myBatchPayloadBuilder;
+	}
+
+	/**
+	 * Delivers several notifications for the same subscription as a single notification Bundle, with the same
+	 * shape as the ones delivered for topic subscriptions
+	 *
+	 * @see RestHookDeliveryBatcher
+	 * @since 7.6.0
+	 */
+	protected void deliverBatch(List<ResourceDeliveryMessage> theMessages, List<IBaseResource> thePayloads) {
+		// Use the most recent version of the subscription
+		CanonicalSubscription subscription = theMessages.get(theMessages.size() - 1).getSubscription();
+		ActiveSubscription activeSubscription =
+				mySubscriptionRegistry.get(subscription.getIdElement(myFhirContext).getIdPart());
+		if (activeSubscription == null) {
+			activeSubscription = new ActiveSubscription(subscription, null);
+		}
+		activeSubscription.incrementDeliveriesCount();
+
+		List<RestOperationTypeEnum> operationTypes = new ArrayList<>(theMessages.size());
+		for (ResourceDeliveryMessage next : theMessages) {
+			operationTypes.add(next.getOperationType().asRestOperationType());
+		}
+		IBaseBundle bundle =
+				getBatchPayloadBuilder().buildPayload(thePayloads, operationTypes, activeSubscription, null);
+		bundle.setId(UUID.randomUUID().toString());
+
+		StopWatch sw = new StopWatch();
+		try {
+			IClientExecutable<?, ?> operation = createDeliveryRequestTopic(bundle, createClient(subscription));
+			operation.encoded(EncodingEnum.forContentType(subscription.getPayloadString()));
+			operation.execute();
+		} catch (Exception e) {
+			ourLog.warn(
+					"Failure delivering {} notifications for subscription {} to {}, they will be retried individually: {}",
+					theMessages.size(),
+					subscription.getIdElementString(),
+					subscription.getEndpointUrl(),
+					e.toString());
+			requeueIndividually(theMessages, activeSubscription, e);
+			return;
+		}
+
+		Logs.getSubscriptionTroubleshootingLog()
+				.debug(
+						"Delivered {} rest-hook payloads in a single batch for {} in {}",
+						theMessages.size(),
+						subscription
+								.getIdElement(myFhirContext)
+								.toUnqualifiedVersionless()
+								.getValue(),
+						sw);
+
+		for (ResourceDeliveryMessage next : theMessages) {
+			// Interceptor call: SUBSCRIPTION_AFTER_REST_HOOK_DELIVERY
+			HookParams params = new HookParams()
+					.add(CanonicalSubscription.class, next.getSubscription())
+					.add(ResourceDeliveryMessage.class, next);
+			getInterceptorBroadcaster().callHooks(Pointcut.SUBSCRIPTION_AFTER_REST_HOOK_DELIVERY, params);
+		}
+	}
+
+	/**
+	 * Sends the notifications of a batch that could not be delivered back to the delivery channel of the
+	 * subscription, flagged so that each one is delivered on its own. This way they get the same retry
+	 * handling from the channel as notifications that are not batched.
+	 */
+	private void requeueIndividually(
+			List<ResourceDeliveryMessage> theMessages, ActiveSubscription theActiveSubscription, Exception theCause) {
+		MessageChannel deliveryChannel = null;
+		if (mySubscriptionChannelRegistry != null && theActiveSubscription.getChannelName() != null) {
+			deliveryChannel = mySubscriptionChannelRegistry.getDeliverySenderChannel(
+					theActiveSubscription.getChannelName());
+		}
+
+		for (ResourceDeliveryMessage next : theMessages) {
+			next.setDeliverIndividually(true);
+			Exception failure = theCause;
+			if (deliveryChannel != null) {
+				try {
+					if (deliveryChannel.send(new ResourceDeliveryJsonMessage(next))) {
+						continue;
+					}
+				} catch (Exception e) {
+					failure = e;
+				}
+			}
+
+			ourLog.error(
+					"Failed to requeue notification {} for subscription {}",
+					next.getPayloadId(),
+					theActiveSubscription.getId(),
+					failure);
+
+			// Interceptor call: SUBSCRIPTION_AFTER_DELIVERY_FAILED
+			HookParams params =
+					new HookParams().add(ResourceDeliveryMessage.class, next).add(Exception.class, failure);
+			getInterceptorBroadcaster().callHooks(Pointcut.SUBSCRIPTION_AFTER_DELIVERY_FAILED, params);
+		}
+	}
+
+	@VisibleForTesting
+	public void setSubscriptionChannelRegistryForUnitTest(SubscriptionChannelRegistry theSubscriptionChannelRegistry) {
+		mySubscriptionChannelRegistry = theSubscriptionChannelRegistry;
+	}
+
+	@VisibleForTesting
+	public void setRestHookDeliveryBatcherForUnitTest(RestHookDeliveryBatcher theRestHookDeliveryBatcher) {
+		myRestHookDeliveryBatcher = theRestHookDeliveryBatcher;
+	}
+
 	/**
 	 * Sends a POST notification without a payload
 	 */
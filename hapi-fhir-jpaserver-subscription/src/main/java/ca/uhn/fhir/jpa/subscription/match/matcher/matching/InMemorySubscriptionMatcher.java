@@ -22,6 +22,7 @@ package ca.uhn.fhir.jpa.subscription.match.matcher.matching;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
@@ -42,6 +43,11 @@ public class InMemorySubscriptionMatcher implements ISubscriptionMatcher {
 	@Override
 	public InMemoryMatchResult match(CanonicalSubscription theSubscription, ResourceModifiedMessage theMsg) {
 		try {
+			SearchParamExtractionContext extractionContext = theMsg.getSearchParamExtractionContext(myContext);
+			if (extractionContext != null) {
+				// Search params extracted for one subscription are reused when matching the others
+				return mySearchParamMatcher.match(theSubscription.getCriteriaString(), extractionContext, null);
+			}
 			return mySearchParamMatcher.match(
 					theSubscription.getCriteriaString(), theMsg.getNewPayload(myContext), null);
 		} catch (Exception e) {
@@ -20,9 +20,11 @@
 package ca.uhn.fhir.jpa.subscription.match.matcher.subscriber;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.ISubscriptionMatcher;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
@@ -30,8 +32,11 @@ import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionRegistry;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedJsonMessage;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import ca.uhn.fhir.subscription.api.IResourceModifiedMessagePersistenceSvc;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
@@ -41,11 +46,16 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessagingException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static ca.uhn.fhir.rest.server.messaging.BaseResourceMessage.OperationTypeEnum.DELETE;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.apache.commons.lang3.StringUtils.substringBefore;
 
 public class SubscriptionMatchingSubscriber implements MessageHandler {
 	private final Logger ourLog = LoggerFactory.getLogger(SubscriptionMatchingSubscriber.class);
@@ -69,6 +79,12 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	@Autowired
 	private IResourceModifiedMessagePersistenceSvc myResourceModifiedMessagePersistenceSvc;
 
+	@Autowired
+	private ISearchParamRegistry mySearchParamRegistry;
+
+	@Autowired
+	private SearchParamExtractorService mySearchParamExtractorService;
+
 	/**
 	 * Constructor
 	 */
@@ -129,7 +145,7 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	private void doMatchActiveSubscriptionsAndDeliver(ResourceModifiedMessage theMsg) {
 		IIdType resourceId = theMsg.getPayloadId(myFhirContext);
 
-		Collection<ActiveSubscription> subscriptions = mySubscriptionRegistry.getAllNonTopicSubscriptions();
+		Collection<ActiveSubscription> subscriptions = getCandidateSubscriptions(theMsg, resourceId);
 
 		ourLog.trace("Testing {} subscriptions for applicability", subscriptions.size());
 		boolean anySubscriptionsMatchedResource = false;
@@ -145,6 +161,79 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 		}
 	}
 
+	/**
+	 * Returns the subscriptions which need to be matched against the modified resource. This is usually
+	 * a small subset of the registered subscriptions, as the registry indexes them by the resource type and
+	 * search parameter values their criteria require.
+	 */
+	private Collection<ActiveSubscription> getCandidateSubscriptions(
+			ResourceModifiedMessage theMsg, @Nullable IIdType theResourceId) {
+		if (isNotBlank(theMsg.getSubscriptionId())) {
+			ActiveSubscription subscription = mySubscriptionRegistry.get(theMsg.getSubscriptionId());
+			if (subscription == null || subscription.getSubscription().isTopicSubscription()) {
+				return Collections.emptyList();
+			}
+			return Collections.singletonList(subscription);
+		}
+
+		IBaseResource payload = theMsg.getNewPayload(myFhirContext);
+		String resourceType = theResourceId != null ? theResourceId.getResourceType() : null;
+		if (payload == null || isBlank(resourceType)) {
+			return mySubscriptionRegistry.getAllNonTopicSubscriptions();
+		}
+
+		return mySubscriptionRegistry.getNonTopicSubscriptionCandidates(
+				resourceType, paramName -> extractParamValues(payload, theResourceId, paramName));
+	}
+
+	/**
+	 * Returns the values of the given search parameter in the resource as query tokens, or <code>null</code>
+	 * if the subscription registry can't narrow down the subscriptions by values of this parameter type.
+	 */
+	@Nullable
+	private Collection<String> extractParamValues(
+			IBaseResource theResource, IIdType theResourceId, String theParamName) {
+		if (IAnyResource.SP_RES_ID.equals(theParamName)) {
+			return Collections.singletonList(theResourceId.getIdPart());
+		}
+
+		try {
+			RuntimeSearchParam searchParam =
+					mySearchParamRegistry.getActiveSearchParam(theResourceId.getResourceType(), theParamName);
+			if (searchParam == null) {
+				return null;
+			}
+
+			switch (searchParam.getParamType()) {
+				case TOKEN:
+					return mySearchParamExtractorService.extractParamValuesAsStrings(searchParam, theResource);
+				case REFERENCE:
+					List<String> retVal = new ArrayList<>();
+					List<String> references =
+							mySearchParamExtractorService.extractParamValuesAsStrings(searchParam, theResource);
+					for (String next : references) {
+						if (next != null) {
+							retVal.add(next);
+							// Canonical references may be versioned, and match criteria with or without the version
+							if (next.indexOf('|') != -1) {
+								retVal.add(substringBefore(next, "|"));
+							}
+						}
+					}
+					return retVal;
+				default:
+					return null;
+			}
+		} catch (Exception e) {
+			ourLog.debug(
+					"Failed to extract {} values from {}, not narrowing down subscriptions: {}",
+					theParamName,
+					theResourceId.toUnqualifiedVersionless().getValue(),
+					e.toString());
+			return null;
+		}
+	}
+
 	/**
 	 * Returns true if subscription matched, and processing completed successfully, and the message was sent to the delivery channel. False otherwise.
 	 *
@@ -166,7 +255,6 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 
 		if (isNotBlank(theMsg.getSubscriptionId())) {
 			if (!theMsg.getSubscriptionId().equals(nextSubscriptionId)) {
-				// TODO KHS we should use a hash to look it up instead of this full table scan
 				ourLog.debug(
 						"Ignoring subscription {} because it is not {}",
 						nextSubscriptionId,
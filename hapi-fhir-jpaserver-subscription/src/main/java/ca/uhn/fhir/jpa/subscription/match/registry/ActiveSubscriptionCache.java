@@ -19,6 +19,9 @@
  */
 package ca.uhn.fhir.jpa.subscription.match.registry;
 
+import ca.uhn.fhir.jpa.subscription.match.matcher.subscriber.SubscriptionCriteriaParser;
+import ca.uhn.fhir.util.UrlUtil;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,18 +29,52 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.substringAfterLast;
 
+/**
+ * Besides the subscriptions themselves, this cache keeps an index of the non-topic subscriptions which
+ * is used to narrow down the subscriptions a modified resource needs to be matched against. Subscriptions
+ * are indexed by the resource types their criteria apply to and, where the criteria contain a plain
+ * token or reference parameter (e.g. <code>Observation?code=http://loinc.org|1234-5</code> or
+ * <code>Observation?patient=Patient/123</code>), by the values of that parameter. The index only ever
+ * returns a superset of the subscriptions which can match, so candidates still need to be fully matched.
+ */
 class ActiveSubscriptionCache {
 	private static final Logger ourLog = LoggerFactory.getLogger(ActiveSubscriptionCache.class);
 
+	/**
+	 * Index key used for subscriptions which apply to all resource types
+	 */
+	private static final String ALL_RESOURCE_TYPES = "*";
+
 	private final Map<String, ActiveSubscription> myCache = new ConcurrentHashMap<>();
 
+	/**
+	 * Subscriptions which can't be narrowed down any further than by resource type, keyed by resource type
+	 */
+	private final Map<String, Set<ActiveSubscription>> myUnindexedSubscriptions = new ConcurrentHashMap<>();
+
+	/**
+	 * Subscriptions keyed by resource type, then by search parameter name, then by normalized parameter value
+	 */
+	private final Map<String, Map<String, Map<String, Set<ActiveSubscription>>>> myIndexedSubscriptions =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * The index entries for each subscription, keyed by subscription ID, so that they can be removed
+	 */
+	private final Map<String, List<IndexEntry>> myIndexEntries = new ConcurrentHashMap<>();
+
 	public ActiveSubscription get(String theIdPart) {
 		return myCache.get(theIdPart);
 	}
@@ -50,8 +87,14 @@ class ActiveSubscriptionCache {
 		return myCache.size();
 	}
 
-	public void put(String theSubscriptionId, ActiveSubscription theActiveSubscription) {
+	/**
+	 * Adds the subscription to the cache. This should also be called after the criteria of a subscription
+	 * which is already in the cache have changed, so that it is re-indexed.
+	 */
+	public synchronized void put(String theSubscriptionId, ActiveSubscription theActiveSubscription) {
 		myCache.put(theSubscriptionId, theActiveSubscription);
+		unindex(theSubscriptionId);
+		index(theSubscriptionId, theActiveSubscription);
 	}
 
 	public synchronized ActiveSubscription remove(String theSubscriptionId) {
@@ -63,6 +106,7 @@ class ActiveSubscriptionCache {
 		}
 
 		myCache.remove(theSubscriptionId);
+		unindex(theSubscriptionId);
 		return activeSubscription;
 	}
 
@@ -103,4 +147,215 @@ class ActiveSubscriptionCache {
 				.filter(as -> !as.getSubscription().isTopicSubscription())
 				.collect(Collectors.toList());
 	}
+
+	/**
+	 * Returns the non-topic subscriptions which could match a resource of the given type. This doesn't
+	 * lock the cache, so subscriptions registered or unregistered concurrently may or may not be returned.
+	 *
+	 * @param theResourceType        The resource type
+	 * @param theParamValueExtractor Returns the values of the given search parameter in the resource, as
+	 *                               query tokens (e.g. <code>system|code</code> or <code>Patient/123</code>),
+	 *                               or <code>null</code> if they can't be determined. In that case, all
+	 *                               subscriptions indexed by that parameter are returned.
+	 */
+	public List<ActiveSubscription> getNonTopicSubscriptionCandidates(
+			String theResourceType, Function<String, Collection<String>> theParamValueExtractor) {
+		Set<ActiveSubscription> retVal = new LinkedHashSet<>();
+		retVal.addAll(myUnindexedSubscriptions.getOrDefault(ALL_RESOURCE_TYPES, Collections.emptySet()));
+		retVal.addAll(myUnindexedSubscriptions.getOrDefault(theResourceType, Collections.emptySet()));
+
+		Map<String, Map<String, Set<ActiveSubscription>>> paramIndexes = myIndexedSubscriptions.get(theResourceType);
+		if (paramIndexes != null) {
+			for (Map.Entry<String, Map<String, Set<ActiveSubscription>>> nextParamIndex : paramIndexes.entrySet()) {
+				Map<String, Set<ActiveSubscription>> valueIndex = nextParamIndex.getValue();
+				if (valueIndex.isEmpty()) {
+					continue;
+				}
+
+				Collection<String> values = theParamValueExtractor.apply(nextParamIndex.getKey());
+				if (values == null) {
+					valueIndex.values().forEach(retVal::addAll);
+					continue;
+				}
+				for (String nextValue : values) {
+					String key = normalizeValue(nextValue);
+					if (key != null) {
+						retVal.addAll(valueIndex.getOrDefault(key, Collections.emptySet()));
+					}
+				}
+			}
+		}
+
+		ourLog.trace(
+				"Narrowed {} subscriptions down to {} candidates for {}",
+				myCache.size(),
+				retVal.size(),
+				theResourceType);
+		return new ArrayList<>(retVal);
+	}
+
+	private void index(String theSubscriptionId, ActiveSubscription theActiveSubscription) {
+		if (theActiveSubscription.getSubscription().isTopicSubscription()) {
+			return;
+		}
+		SubscriptionCriteriaParser.SubscriptionCriteria criteria = theActiveSubscription.getCriteria();
+		if (criteria == null) {
+			// Subscriptions without criteria never match anything
+			return;
+		}
+
+		List<IndexEntry> entries = new ArrayList<>();
+		switch (criteria.getType()) {
+			case STARTYPE_EXPRESSION:
+				entries.add(new IndexEntry(myUnindexedSubscriptions, ALL_RESOURCE_TYPES));
+				break;
+			case MULTITYPE_EXPRESSION:
+				for (String nextResourceType : criteria.getApplicableResourceTypes()) {
+					entries.add(new IndexEntry(myUnindexedSubscriptions, nextResourceType));
+				}
+				break;
+			case SEARCH_EXPRESSION:
+			default:
+				String resourceType = criteria.getApplicableResourceTypes().iterator().next();
+				Map.Entry<String, List<String>> indexedParam = selectIndexedParam(criteria.getCriteria());
+				if (indexedParam == null) {
+					entries.add(new IndexEntry(myUnindexedSubscriptions, resourceType));
+				} else {
+					Map<String, Set<ActiveSubscription>> valueIndex = myIndexedSubscriptions
+							.computeIfAbsent(resourceType, t -> new ConcurrentHashMap<>())
+							.computeIfAbsent(indexedParam.getKey(), t -> new ConcurrentHashMap<>());
+					for (String nextKey : indexedParam.getValue()) {
+						entries.add(new IndexEntry(valueIndex, nextKey));
+					}
+				}
+				break;
+		}
+
+		for (IndexEntry next : entries) {
+			next.add(theActiveSubscription);
+		}
+		myIndexEntries.put(theSubscriptionId, entries);
+	}
+
+	private void unindex(String theSubscriptionId) {
+		List<IndexEntry> entries = myIndexEntries.remove(theSubscriptionId);
+		if (entries != null) {
+			for (IndexEntry next : entries) {
+				next.remove(theSubscriptionId);
+			}
+		}
+	}
+
+	/**
+	 * Picks a parameter from the subscription criteria which every matching resource must have one of a
+	 * known set of values for, and returns its name along with those values normalized. Returns
+	 * <code>null</code> if the criteria don't contain such a parameter.
+	 */
+	@Nullable
+	static Map.Entry<String, List<String>> selectIndexedParam(String theCriteria) {
+		int questionMarkIdx = theCriteria.indexOf('?');
+		if (questionMarkIdx == -1) {
+			return null;
+		}
+
+		Map.Entry<String, List<String>> retVal = null;
+		Map<String, String[]> params = UrlUtil.parseQueryString(theCriteria.substring(questionMarkIdx + 1));
+		for (Map.Entry<String, String[]> nextParam : params.entrySet()) {
+			String paramName = nextParam.getKey();
+			// Skip modifiers, chains and everything special other than _id
+			if (!paramName.equals("_id") && (paramName.startsWith("_") || !isPlainParamName(paramName))) {
+				continue;
+			}
+
+			// Each repetition of a parameter is ANDed, so any one of them will do
+			for (String nextAndValue : nextParam.getValue()) {
+				List<String> keys = normalizeOrValues(nextAndValue);
+				if (keys == null) {
+					continue;
+				}
+				Map.Entry<String, List<String>> candidate = Map.entry(paramName, keys);
+				if (retVal == null || isBetterIndexedParam(candidate, retVal)) {
+					retVal = candidate;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	private static boolean isBetterIndexedParam(
+			Map.Entry<String, List<String>> theCandidate, Map.Entry<String, List<String>> theCurrent) {
+		if (theCurrent.getKey().equals("_id") != theCandidate.getKey().equals("_id")) {
+			return theCandidate.getKey().equals("_id");
+		}
+		if (theCandidate.getValue().size() != theCurrent.getValue().size()) {
+			return theCandidate.getValue().size() < theCurrent.getValue().size();
+		}
+		return theCandidate.getKey().compareTo(theCurrent.getKey()) < 0;
+	}
+
+	private static boolean isPlainParamName(String theParamName) {
+		return theParamName.chars().allMatch(c -> Character.isLetterOrDigit(c) || c == '-' || c == '_');
+	}
+
+	@Nullable
+	private static List<String> normalizeOrValues(String theValue) {
+		if (isBlank(theValue) || theValue.indexOf('\\') != -1) {
+			return null;
+		}
+		List<String> retVal = new ArrayList<>();
+		for (String next : theValue.split(",")) {
+			String key = normalizeValue(next);
+			if (key == null || next.contains("/_history/")) {
+				return null;
+			}
+			retVal.add(key);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Reduces a token (<code>system|code</code>) or reference (<code>Patient/123</code> or an absolute URL)
+	 * value to the part which has to be equal for the value to match, i.e. the code or the ID. This is
+	 * applied to both the subscription criteria and the resource values, so ignoring the rest can only
+	 * ever add candidates, never remove them.
+	 */
+	@Nullable
+	static String normalizeValue(@Nullable String theValue) {
+		if (theValue == null) {
+			return null;
+		}
+		String retVal = theValue;
+		if (retVal.indexOf('|') != -1) {
+			retVal = substringAfterLast(retVal, "|");
+		}
+		if (retVal.indexOf('/') != -1) {
+			retVal = substringAfterLast(retVal, "/");
+		}
+		if (isBlank(retVal)) {
+			return null;
+		}
+		return retVal.toLowerCase(Locale.ROOT);
+	}
+
+	private static class IndexEntry {
+
+		private final Map<String, Set<ActiveSubscription>> myIndex;
+		private final String myKey;
+
+		private IndexEntry(Map<String, Set<ActiveSubscription>> theIndex, String theKey) {
+			myIndex = theIndex;
+			myKey = theKey;
+		}
+
+		private void add(ActiveSubscription theActiveSubscription) {
+			myIndex.computeIfAbsent(myKey, t -> ConcurrentHashMap.newKeySet()).add(theActiveSubscription);
+		}
+
+		private void remove(String theSubscriptionId) {
+			myIndex.computeIfPresent(myKey, (k, v) -> {
+				v.removeIf(t -> t.getId().equals(theSubscriptionId));
+				return v.isEmpty() ? null : v;
+			});
+		}
+	}
 }
@@ -40,6 +40,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Cache of active subscriptions.  When a new subscription is added to the cache, a new Spring Channel is created
@@ -214,6 +215,8 @@ public class SubscriptionRegistry {
 		Validate.notNull(activeSubscription);
 		CanonicalSubscription canonicalized = mySubscriptionCanonicalizer.canonicalize(theSubscription);
 		activeSubscription.setSubscription(canonicalized);
+		// Re-index, as the criteria may have changed
+		myActiveSubscriptionCache.put(theId.getIdPart(), activeSubscription);
 
 		// Interceptor call: SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED
 		HookParams params = new HookParams().add(CanonicalSubscription.class, canonicalized);
@@ -232,4 +235,19 @@ public class SubscriptionRegistry {
 	public synchronized List<ActiveSubscription> getAllNonTopicSubscriptions() {
 		return myActiveSubscriptionCache.getAllNonTopicSubscriptions();
 	}
+
+	/**
+	 * Returns the non-topic subscriptions which could match a resource of the given type, narrowed down using
+	 * the values of the resource for the search parameters used in the subscription criteria. The candidates
+	 * still need to be matched against the resource. Unlike the other methods of this class, this one doesn't
+	 * lock the registry, as it is called for every modified resource.
+	 *
+	 * @param theResourceType        The resource type
+	 * @param theParamValueExtractor Returns the values of the given search parameter in the resource as query
+	 *                               tokens, or <code>null</code> if they can't be determined
+	 */
+	public List<ActiveSubscription> getNonTopicSubscriptionCandidates(
+			String theResourceType, Function<String, Collection<String>> theParamValueExtractor) {
+		return myActiveSubscriptionCache.getNonTopicSubscriptionCandidates(theResourceType, theParamValueExtractor);
+	}
 }
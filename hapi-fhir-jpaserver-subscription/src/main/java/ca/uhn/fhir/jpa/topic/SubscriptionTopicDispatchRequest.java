@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.topic;
 
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.jpa.topic.filter.ISubscriptionTopicFilterMatcher;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import jakarta.annotation.Nonnull;
@@ -51,6 +52,9 @@ public class SubscriptionTopicDispatchRequest {
 	@Nullable
 	private final String myTransactionId;
 
+	@Nullable
+	private final SearchParamExtractionContext mySearchParamExtractionContext;
+
 	/**
 	 * @param theTopicUrl                       Deliver to subscriptions for this topic
 	 * @param theResources                      The list of resources to deliver.  The first resource will be the primary "focus" resource per the Subscription documentation.
@@ -73,6 +77,32 @@ public class SubscriptionTopicDispatchRequest {
 			@Nullable InMemoryMatchResult theInMemoryMatchResult,
 			@Nullable RequestPartitionId theRequestPartitionId,
 			@Nullable String theTransactionId) {
+		this(
+				theTopicUrl,
+				theResources,
+				theSubscriptionTopicFilterMatcher,
+				theRequestType,
+				theInMemoryMatchResult,
+				theRequestPartitionId,
+				theTransactionId,
+				null);
+	}
+
+	/**
+	 * @param theSearchParamExtractionContext The search parameters already extracted from the "focus" resource, if any.
+	 *                                        These are reused when matching the resource against the subscription filters.
+	 * @see #SubscriptionTopicDispatchRequest(String, List, ISubscriptionTopicFilterMatcher, RestOperationTypeEnum, InMemoryMatchResult, RequestPartitionId, String)
+	 * @since 7.6.0
+	 */
+	public SubscriptionTopicDispatchRequest(
+			@Nonnull String theTopicUrl,
+			@Nonnull List<IBaseResource> theResources,
+			@Nonnull ISubscriptionTopicFilterMatcher theSubscriptionTopicFilterMatcher,
+			@Nonnull RestOperationTypeEnum theRequestType,
+			@Nullable InMemoryMatchResult theInMemoryMatchResult,
+			@Nullable RequestPartitionId theRequestPartitionId,
+			@Nullable String theTransactionId,
+			@Nullable SearchParamExtractionContext theSearchParamExtractionContext) {
 		myTopicUrl = theTopicUrl;
 		myResources = theResources;
 		mySubscriptionTopicFilterMatcher = theSubscriptionTopicFilterMatcher;
@@ -80,6 +110,7 @@ public class SubscriptionTopicDispatchRequest {
 		myInMemoryMatchResult = theInMemoryMatchResult;
 		myRequestPartitionId = theRequestPartitionId;
 		myTransactionId = theTransactionId;
+		mySearchParamExtractionContext = theSearchParamExtractionContext;
 	}
 
 	public String getTopicUrl() {
@@ -109,4 +140,9 @@ public class SubscriptionTopicDispatchRequest {
 	public String getTransactionId() {
 		return myTransactionId;
 	}
+
+	@Nullable
+	public SearchParamExtractionContext getSearchParamExtractionContext() {
+		return mySearchParamExtractionContext;
+	}
 }
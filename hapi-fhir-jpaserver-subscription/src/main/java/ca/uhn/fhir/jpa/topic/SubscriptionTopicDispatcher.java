@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.topic;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.jpa.subscription.match.matcher.subscriber.SubscriptionDeliveryRequest;
 import ca.uhn.fhir.jpa.subscription.match.matcher.subscriber.SubscriptionMatchDeliverer;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
@@ -134,8 +135,17 @@ public class SubscriptionTopicDispatcher {
 								.toUnqualifiedVersionless()
 								.getValue());
 
-				if (!SubscriptionTopicFilterUtil.matchFilters(
-						firstResource, resourceType, subscriptionTopicFilterMatcher, topicSubscription)) {
+				SearchParamExtractionContext extractionContext =
+						theSubscriptionTopicDispatchRequest.getSearchParamExtractionContext();
+				boolean matched;
+				if (extractionContext != null && extractionContext.getResource() == firstResource) {
+					matched = SubscriptionTopicFilterUtil.matchFilters(
+							extractionContext, resourceType, subscriptionTopicFilterMatcher, topicSubscription);
+				} else {
+					matched = SubscriptionTopicFilterUtil.matchFilters(
+							firstResource, resourceType, subscriptionTopicFilterMatcher, topicSubscription);
+				}
+				if (!matched) {
 					return false;
 				}
 			}
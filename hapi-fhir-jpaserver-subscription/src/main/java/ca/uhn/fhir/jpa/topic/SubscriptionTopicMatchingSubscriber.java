@@ -144,6 +144,7 @@ public class SubscriptionTopicMatchingSubscriber implements MessageHandler {
 				restOperationType,
 				theInMemoryMatchResult,
 				theMsg.getPartitionId(),
-				theMsg.getTransactionId()));
+				theMsg.getTransactionId(),
+				theMsg.getSearchParamExtractionContext(myFhirContext)));
 	}
 }
@@ -31,12 +31,14 @@ import ca.uhn.fhir.jpa.topic.status.R5NotificationStatusBuilder;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.util.BundleBuilder;
 import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r5.model.Bundle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.List;
 
 import static org.hl7.fhir.r5.model.Subscription.SubscriptionPayloadContent.FULLRESOURCE;
@@ -71,13 +73,35 @@ public class SubscriptionTopicPayloadBuilder {
 			ActiveSubscription theActiveSubscription,
 			String theTopicUrl,
 			RestOperationTypeEnum theRestOperationType) {
+		return buildPayload(
+				theResources,
+				Collections.nCopies(theResources.size(), theRestOperationType),
+				theActiveSubscription,
+				theTopicUrl);
+	}
+
+	/**
+	 * Builds a notification Bundle for resources which were not all modified by the same type of operation,
+	 * e.g. when several notifications for a subscription are delivered together.
+	 *
+	 * @param theRestOperationTypes The operation which modified each resource, in the same order as the resources
+	 * @since 7.6.0
+	 */
+	public IBaseBundle buildPayload(
+			List<IBaseResource> theResources,
+			List<RestOperationTypeEnum> theRestOperationTypes,
+			ActiveSubscription theActiveSubscription,
+			String theTopicUrl) {
+		Validate.isTrue(
+				theResources.size() == theRestOperationTypes.size(),
+				"Expected one operation type per resource");
 		BundleBuilder bundleBuilder = new BundleBuilder(myFhirContext);
 
 		IBaseResource notificationStatus =
 				myNotificationStatusBuilder.buildNotificationStatus(theResources, theActiveSubscription, theTopicUrl);
 		bundleBuilder.addCollectionEntry(notificationStatus);
 
-		addResources(theResources, theActiveSubscription.getSubscription(), theRestOperationType, bundleBuilder);
+		addResources(theResources, theActiveSubscription.getSubscription(), theRestOperationTypes, bundleBuilder);
 		// WIP STR5 add support for notificationShape include, revinclude
 
 		// Note we need to set the bundle type after we add the resources since adding the resources automatically sets
@@ -94,29 +118,35 @@ public class SubscriptionTopicPayloadBuilder {
 	private void addResources(
 			List<IBaseResource> theResources,
 			CanonicalSubscription theCanonicalSubscription,
-			RestOperationTypeEnum theRestOperationType,
+			List<RestOperationTypeEnum> theRestOperationTypes,
 			BundleBuilder theBundleBuilder) {
 
+		// Batched rest-hook deliveries for subscriptions which aren't topic based always contain the full resources
 		org.hl7.fhir.r5.model.Subscription.SubscriptionPayloadContent content =
-				ObjectUtils.defaultIfNull(theCanonicalSubscription.getContent(), FULLRESOURCE);
+				theCanonicalSubscription.isTopicSubscription()
+						? ObjectUtils.defaultIfNull(theCanonicalSubscription.getContent(), FULLRESOURCE)
+						: FULLRESOURCE;
 
 		switch (content) {
 			case EMPTY:
 				// skip adding resource to the Bundle
 				break;
 			case IDONLY:
-				addIdOnly(theBundleBuilder, theResources, theRestOperationType);
+				addIdOnly(theBundleBuilder, theResources, theRestOperationTypes);
 				break;
 			case FULLRESOURCE:
-				addFullResources(theBundleBuilder, theResources, theRestOperationType);
+				addFullResources(theBundleBuilder, theResources, theRestOperationTypes);
 				break;
 		}
 	}
 
 	private void addIdOnly(
-			BundleBuilder bundleBuilder, List<IBaseResource> theResources, RestOperationTypeEnum theRestOperationType) {
-		for (IBaseResource resource : theResources) {
-			switch (theRestOperationType) {
+			BundleBuilder bundleBuilder,
+			List<IBaseResource> theResources,
+			List<RestOperationTypeEnum> theRestOperationTypes) {
+		for (int i = 0; i < theResources.size(); i++) {
+			IBaseResource resource = theResources.get(i);
+			switch (theRestOperationTypes.get(i)) {
 				case CREATE:
 					bundleBuilder.addTransactionCreateEntryIdOnly(resource);
 					break;
@@ -131,9 +161,12 @@ public class SubscriptionTopicPayloadBuilder {
 	}
 
 	private void addFullResources(
-			BundleBuilder bundleBuilder, List<IBaseResource> theResources, RestOperationTypeEnum theRestOperationType) {
-		for (IBaseResource resource : theResources) {
-			switch (theRestOperationType) {
+			BundleBuilder bundleBuilder,
+			List<IBaseResource> theResources,
+			List<RestOperationTypeEnum> theRestOperationTypes) {
+		for (int i = 0; i < theResources.size(); i++) {
+			IBaseResource resource = theResources.get(i);
+			switch (theRestOperationTypes.get(i)) {
 				case CREATE:
 					bundleBuilder.addTransactionCreateEntry(resource);
 					break;
@@ -24,6 +24,7 @@ import ca.uhn.fhir.fhirpath.IFhirPathEvaluationContext;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
 import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
@@ -51,6 +52,7 @@ public class SubscriptionTriggerMatcher {
 	private final SubscriptionTopic.SubscriptionTopicResourceTriggerComponent myTrigger;
 	private final String myResourceName;
 	private final IBaseResource myResource;
+	private final SearchParamExtractionContext myExtractionContext;
 	private final IFhirResourceDao myDao;
 	private final PreviousVersionReader myPreviousVersionReader;
 	private final SystemRequestDetails mySrd;
@@ -65,6 +67,8 @@ public class SubscriptionTriggerMatcher {
 		myOperation = theMsg.getOperationType();
 		myResource = theMsg.getPayload(theSubscriptionTopicSupport.getFhirContext());
 		myResourceName = myResource.fhirType();
+		myExtractionContext =
+				theMsg.getSearchParamExtractionContext(theSubscriptionTopicSupport.getFhirContext());
 		myDao = mySubscriptionTopicSupport.getDaoRegistry().getResourceDao(myResourceName);
 		myTrigger = theTrigger;
 		myPreviousVersionReader = new PreviousVersionReader(myDao);
@@ -96,7 +100,7 @@ public class SubscriptionTriggerMatcher {
 
 		// WIP STR5 implement fhirPathCriteria per https://build.fhir.org/subscriptiontopic.html#fhirpath-criteria
 		if (currentCriteria != null) {
-			currentMatches = matchResource(myResource, currentCriteria);
+			currentMatches = matchCurrentResource(currentCriteria);
 		}
 		if (myOperation == ResourceModifiedMessage.OperationTypeEnum.CREATE) {
 			return currentMatches;
@@ -201,15 +205,29 @@ public class SubscriptionTriggerMatcher {
 		return InMemoryMatchResult.fromBoolean(((BooleanType) result.get(0)).booleanValue());
 	}
 
+	private InMemoryMatchResult matchCurrentResource(String theCriteria) {
+		if (myExtractionContext == null || myExtractionContext.getResource() != myResource) {
+			return matchResource(myResource, theCriteria);
+		}
+		// Reuse the search params already extracted from the message by other triggers and subscriptions
+		InMemoryMatchResult result =
+				mySubscriptionTopicSupport.getSearchParamMatcher().match(theCriteria, myExtractionContext, mySrd);
+		return warnIfUnsupported(result, theCriteria);
+	}
+
 	private InMemoryMatchResult matchResource(IBaseResource theResource, String theCriteria) {
 		InMemoryMatchResult result =
 				mySubscriptionTopicSupport.getSearchParamMatcher().match(theCriteria, theResource, mySrd);
-		if (!result.supported()) {
+		return warnIfUnsupported(result, theCriteria);
+	}
+
+	private InMemoryMatchResult warnIfUnsupported(InMemoryMatchResult theResult, String theCriteria) {
+		if (!theResult.supported()) {
 			ourLog.warn(
 					"Subscription topic {} has a query criteria that is not supported in-memory: {}",
 					myTrigger.getId(),
 					theCriteria);
 		}
-		return result;
+		return theResult;
 	}
 }
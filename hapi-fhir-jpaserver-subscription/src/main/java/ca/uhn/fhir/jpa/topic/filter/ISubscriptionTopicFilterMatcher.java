@@ -20,6 +20,7 @@
 package ca.uhn.fhir.jpa.topic.filter;
 
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalTopicSubscriptionFilter;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
@@ -32,4 +33,16 @@ public interface ISubscriptionTopicFilterMatcher {
 	 */
 	InMemoryMatchResult match(
 			CanonicalTopicSubscriptionFilter theCanonicalTopicSubscriptionFilter, IBaseResource theIBaseResource);
+
+	/**
+	 * Match the resource of an extraction context against a single subscription topic filter. Implementations
+	 * which extract search parameters should reuse the ones already held by the context.
+	 *
+	 * @since 7.6.0
+	 */
+	default InMemoryMatchResult match(
+			CanonicalTopicSubscriptionFilter theCanonicalTopicSubscriptionFilter,
+			SearchParamExtractionContext theExtractionContext) {
+		return match(theCanonicalTopicSubscriptionFilter, theExtractionContext.getResource());
+	}
 }
@@ -20,6 +20,7 @@
 package ca.uhn.fhir.jpa.topic.filter;
 
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalTopicSubscriptionFilter;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
@@ -38,4 +39,14 @@ public class InMemoryTopicFilterMatcher implements ISubscriptionTopicFilterMatch
 		return mySearchParamMatcher.match(
 				theCanonicalTopicSubscriptionFilter.asCriteriaString(), theResource, new SystemRequestDetails());
 	}
+
+	@Override
+	public InMemoryMatchResult match(
+			CanonicalTopicSubscriptionFilter theCanonicalTopicSubscriptionFilter,
+			SearchParamExtractionContext theExtractionContext) {
+		return mySearchParamMatcher.match(
+				theCanonicalTopicSubscriptionFilter.asCriteriaString(),
+				theExtractionContext,
+				new SystemRequestDetails());
+	}
 }
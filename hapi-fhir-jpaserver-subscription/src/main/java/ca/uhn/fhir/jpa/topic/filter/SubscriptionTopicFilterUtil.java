@@ -19,10 +19,13 @@
  */
 package ca.uhn.fhir.jpa.topic.filter;
 
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalTopicSubscription;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalTopicSubscriptionFilter;
 import ca.uhn.fhir.util.Logs;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 
@@ -36,6 +39,34 @@ public final class SubscriptionTopicFilterUtil {
 			@Nonnull String theResourceType,
 			@Nonnull ISubscriptionTopicFilterMatcher theSubscriptionTopicFilterMatcher,
 			@Nonnull CanonicalTopicSubscription topicSubscription) {
+		return matchFilters(theResource, null, theResourceType, theSubscriptionTopicFilterMatcher, topicSubscription);
+	}
+
+	/**
+	 * Same as {@link #matchFilters(IBaseResource, String, ISubscriptionTopicFilterMatcher, CanonicalTopicSubscription)},
+	 * but reuses the search parameters already extracted into the given context from the resource
+	 *
+	 * @since 7.6.0
+	 */
+	public static boolean matchFilters(
+			@Nonnull SearchParamExtractionContext theExtractionContext,
+			@Nonnull String theResourceType,
+			@Nonnull ISubscriptionTopicFilterMatcher theSubscriptionTopicFilterMatcher,
+			@Nonnull CanonicalTopicSubscription topicSubscription) {
+		return matchFilters(
+				theExtractionContext.getResource(),
+				theExtractionContext,
+				theResourceType,
+				theSubscriptionTopicFilterMatcher,
+				topicSubscription);
+	}
+
+	private static boolean matchFilters(
+			@Nonnull IBaseResource theResource,
+			@Nullable SearchParamExtractionContext theExtractionContext,
+			@Nonnull String theResourceType,
+			@Nonnull ISubscriptionTopicFilterMatcher theSubscriptionTopicFilterMatcher,
+			@Nonnull CanonicalTopicSubscription topicSubscription) {
 		boolean match = true;
 		for (CanonicalTopicSubscriptionFilter filter : topicSubscription.getFilters()) {
 			if (filter.getResourceType() == null
@@ -43,7 +74,10 @@ public final class SubscriptionTopicFilterUtil {
 					|| !filter.getResourceType().equals(theResourceType)) {
 				continue;
 			}
-			if (!theSubscriptionTopicFilterMatcher.match(filter, theResource).matched()) {
+			InMemoryMatchResult result = theExtractionContext != null
+					? theSubscriptionTopicFilterMatcher.match(filter, theExtractionContext)
+					: theSubscriptionTopicFilterMatcher.match(filter, theResource);
+			if (!result.matched()) {
 				match = false;
 				ourLog.debug(
 						"Resource {} did not match filter {}.  Skipping remaining filters.",
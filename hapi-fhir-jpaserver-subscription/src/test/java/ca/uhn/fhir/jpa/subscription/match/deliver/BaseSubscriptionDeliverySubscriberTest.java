@@ -8,14 +8,18 @@ import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.model.config.SubscriptionSettings;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.subscription.SubscriptionChannelRegistry;
 import ca.uhn.fhir.jpa.subscription.match.deliver.email.IEmailSender;
 import ca.uhn.fhir.jpa.subscription.match.deliver.email.SubscriptionDeliveringEmailSubscriber;
 import ca.uhn.fhir.jpa.subscription.match.deliver.message.SubscriptionDeliveringMessageSubscriber;
+import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.RestHookDeliveryBatcher;
 import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.SubscriptionDeliveringRestHookSubscriber;
+import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
 import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionRegistry;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryJsonMessage;
@@ -26,6 +30,7 @@ import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
+import ca.uhn.fhir.rest.gclient.ITransaction;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.subscription.api.IResourceModifiedMessagePersistenceSvc;
@@ -33,6 +38,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import jakarta.annotation.Nonnull;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -47,6 +53,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.GenericMessage;
 
@@ -60,10 +67,13 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -85,6 +95,10 @@ public class BaseSubscriptionDeliverySubscriberTest {
 	private IChannelFactory myChannelFactory;
 	@Mock
 	private IChannelProducer myChannelProducer;
+	@Mock
+	private SubscriptionChannelRegistry mySubscriptionChannelRegistry;
+	@Mock
+	private MessageChannel myDeliveryChannel;
 
 	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
 	private IRestfulClientFactory myRestfulClientFactory;
@@ -164,6 +178,91 @@ public class BaseSubscriptionDeliverySubscriberTest {
 		verify(myGenericClient, times(1)).update();
 	}
 
+	@Test
+	public void testRestHookDeliveryBatched() {
+		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
+		SubscriptionSettings subscriptionSettings = new SubscriptionSettings();
+		subscriptionSettings.setRestHookDeliveryBatchingEnabled(true);
+		subscriptionSettings.setRestHookDeliveryBatchMaxSize(2);
+		subscriptionSettings.setRestHookDeliveryBatchMaxWaitMillis(60000);
+		RestHookDeliveryBatcher batcher = new RestHookDeliveryBatcher(subscriptionSettings);
+		mySubscriber.setRestHookDeliveryBatcherForUnitTest(batcher);
+		// Create the deep stub before the delivery thread can race us to it
+		ITransaction transaction = myGenericClient.transaction();
+
+		try {
+			CanonicalSubscription subscription = generateSubscription();
+			for (int i = 0; i < 2; i++) {
+				Patient patient = generatePatient();
+				patient.setId("Patient/" + i + "/_history/1");
+				ResourceDeliveryMessage payload = new ResourceDeliveryMessage();
+				payload.setSubscription(subscription);
+				payload.setPayload(myCtx, patient, EncodingEnum.JSON);
+				payload.setOperationType(i == 0 ? ResourceModifiedMessage.OperationTypeEnum.CREATE : ResourceModifiedMessage.OperationTypeEnum.DELETE);
+				mySubscriber.handleMessage(new ResourceDeliveryJsonMessage(payload));
+			}
+
+			ArgumentCaptor<Bundle> bundleCaptor = ArgumentCaptor.forClass(Bundle.class);
+			verify(transaction, timeout(5000)).withBundle(bundleCaptor.capture());
+			Bundle bundle = bundleCaptor.getValue();
+			assertEquals(Bundle.BundleType.HISTORY, bundle.getType());
+			assertThat(bundle.getEntry()).hasSize(3);
+			assertThat(bundle.getEntry().get(0).getResource()).isInstanceOf(Parameters.class);
+			assertEquals(Bundle.HTTPVerb.POST, bundle.getEntry().get(1).getRequest().getMethod());
+			assertEquals(Bundle.HTTPVerb.DELETE, bundle.getEntry().get(2).getRequest().getMethod());
+			verify(myGenericClient, never()).update();
+			verify(myInterceptorBroadcaster, timeout(5000).times(2)).callHooks(eq(Pointcut.SUBSCRIPTION_AFTER_REST_HOOK_DELIVERY), any());
+		} finally {
+			batcher.stop();
+		}
+	}
+
+	@Test
+	public void testRestHookDeliveryBatchFails_RequeuedIndividually() {
+		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
+		SubscriptionSettings subscriptionSettings = new SubscriptionSettings();
+		subscriptionSettings.setRestHookDeliveryBatchingEnabled(true);
+		subscriptionSettings.setRestHookDeliveryBatchMaxSize(2);
+		subscriptionSettings.setRestHookDeliveryBatchMaxWaitMillis(60000);
+		RestHookDeliveryBatcher batcher = new RestHookDeliveryBatcher(subscriptionSettings);
+		mySubscriber.setRestHookDeliveryBatcherForUnitTest(batcher);
+		mySubscriber.setSubscriptionChannelRegistryForUnitTest(mySubscriptionChannelRegistry);
+
+		CanonicalSubscription subscription = generateSubscription();
+		when(mySubscriptionRegistry.get("123")).thenReturn(new ActiveSubscription(subscription, "delivery-channel"));
+		when(mySubscriptionChannelRegistry.getDeliverySenderChannel("delivery-channel")).thenReturn(myDeliveryChannel);
+		when(myDeliveryChannel.send(any())).thenReturn(true);
+		when(myGenericClient.transaction().withBundle(any(Bundle.class)).execute()).thenThrow(new InternalErrorException("FOO"));
+
+		try {
+			for (int i = 0; i < 2; i++) {
+				Patient patient = generatePatient();
+				patient.setId("Patient/" + i + "/_history/1");
+				ResourceDeliveryMessage payload = new ResourceDeliveryMessage();
+				payload.setSubscription(subscription);
+				payload.setPayload(myCtx, patient, EncodingEnum.JSON);
+				payload.setOperationType(ResourceModifiedMessage.OperationTypeEnum.CREATE);
+				mySubscriber.handleMessage(new ResourceDeliveryJsonMessage(payload));
+			}
+
+			// Both notifications are handed back to the delivery channel
+			ArgumentCaptor<ResourceDeliveryJsonMessage> messageCaptor = ArgumentCaptor.forClass(ResourceDeliveryJsonMessage.class);
+			verify(myDeliveryChannel, timeout(5000).times(2)).send(messageCaptor.capture());
+			verify(myInterceptorBroadcaster, never()).callHooks(eq(Pointcut.SUBSCRIPTION_AFTER_DELIVERY_FAILED), any());
+			List<ResourceDeliveryJsonMessage> requeued = messageCaptor.getAllValues();
+			assertEquals("Patient/0", requeued.get(0).getPayload().getPayloadId());
+			assertEquals("Patient/1", requeued.get(1).getPayload().getPayloadId());
+			assertTrue(requeued.get(0).getPayload().isDeliverIndividually());
+
+			// ...and are then delivered one at a time, so that failures are retried by the channel
+			when(myGenericClient.update()).thenThrow(new InternalErrorException("FOO"));
+			assertThrows(MessagingException.class, () -> mySubscriber.handleMessage(requeued.get(0)));
+			verify(myGenericClient, times(1)).update();
+		} finally {
+			batcher.stop();
+		}
+	}
+
 	@Test
 	public void testRestHookDeliveryFails_ShouldRollBack() {
 		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
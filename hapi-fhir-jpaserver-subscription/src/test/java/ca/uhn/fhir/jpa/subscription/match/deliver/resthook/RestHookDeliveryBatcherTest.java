@@ -0,0 +1,169 @@
+package ca.uhn.fhir.jpa.subscription.match.deliver.resthook;
+
+import ca.uhn.fhir.jpa.model.config.SubscriptionSettings;
+import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryMessage;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RestHookDeliveryBatcherTest {
+
+	private static final String ENDPOINT_URL = "http://example.com/fhir";
+
+	private final SubscriptionSettings mySubscriptionSettings = new SubscriptionSettings();
+	private final List<List<ResourceDeliveryMessage>> myDeliveredBatches = Collections.synchronizedList(new ArrayList<>());
+	private RestHookDeliveryBatcher myBatcher;
+
+	@BeforeEach
+	public void before() {
+		mySubscriptionSettings.setRestHookDeliveryBatchingEnabled(true);
+		myBatcher = new RestHookDeliveryBatcher(mySubscriptionSettings);
+	}
+
+	@AfterEach
+	public void after() {
+		myBatcher.stop();
+	}
+
+	private void add(String theSubscriptionId, RestHookDeliveryBatcher.IRestHookBatchDeliverer theDeliverer) {
+		myBatcher.add(theSubscriptionId, ENDPOINT_URL, new ResourceDeliveryMessage(), new Patient(), theDeliverer);
+	}
+
+	private void recordBatch(List<ResourceDeliveryMessage> theMessages, List<IBaseResource> thePayloads) {
+		assertEquals(theMessages.size(), thePayloads.size());
+		myDeliveredBatches.add(theMessages);
+	}
+
+	@Test
+	public void testDeliveredWhenFull() {
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxSize(3);
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxWaitMillis(60000);
+
+		for (int i = 0; i < 7; i++) {
+			add("123", this::recordBatch);
+		}
+
+		await().until(() -> myDeliveredBatches.size() == 2);
+		assertThat(myDeliveredBatches).allMatch(t -> t.size() == 3);
+		assertEquals(1, myBatcher.getPendingBatchCount());
+	}
+
+	@Test
+	public void testDeliveredAfterMaxWait() {
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxSize(100);
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxWaitMillis(100);
+
+		add("123", this::recordBatch);
+		add("123", this::recordBatch);
+		add("456", this::recordBatch);
+
+		await().until(() -> myDeliveredBatches.size() == 2);
+		assertThat(myDeliveredBatches).extracting(List::size).containsExactlyInAnyOrder(2, 1);
+		assertEquals(0, myBatcher.getPendingBatchCount());
+	}
+
+	@Test
+	public void testConcurrentRequestsPerEndpointLimited() throws InterruptedException {
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxSize(1);
+		mySubscriptionSettings.setRestHookDeliveryMaxConcurrentRequestsPerEndpoint(2);
+
+		AtomicInteger inProgress = new AtomicInteger();
+		AtomicInteger maxInProgress = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		RestHookDeliveryBatcher.IRestHookBatchDeliverer slowDeliverer = (theMessages, thePayloads) -> {
+			maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+			try {
+				assertTrue(release.await(10, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			inProgress.decrementAndGet();
+			recordBatch(theMessages, thePayloads);
+		};
+
+		// Every notification is a batch of its own, but only two can be sent to the endpoint at a time
+		for (int i = 0; i < 10; i++) {
+			add("sub" + i, slowDeliverer);
+		}
+		await().until(() -> inProgress.get() == 2);
+		release.countDown();
+
+		await().until(() -> myDeliveredBatches.size() == 10);
+		assertEquals(2, maxInProgress.get());
+	}
+
+	@Test
+	public void testFailedDeliveryDoesNotBlockEndpoint() {
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxSize(1);
+		mySubscriptionSettings.setRestHookDeliveryMaxConcurrentRequestsPerEndpoint(1);
+
+		add("123", (theMessages, thePayloads) -> {
+			throw new IllegalStateException("FOO");
+		});
+		add("123", this::recordBatch);
+
+		await().until(() -> myDeliveredBatches.size() == 1);
+	}
+
+	@Test
+	public void testBlockedEndpointDoesNotHoldUpTimedBatchesOfOtherEndpoints() {
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxSize(2);
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxWaitMillis(100);
+		mySubscriptionSettings.setRestHookDeliveryMaxConcurrentRequestsPerEndpoint(1);
+		mySubscriptionSettings.setRestHookDeliveryThreadCount(2);
+
+		CountDownLatch release = new CountDownLatch(1);
+		RestHookDeliveryBatcher.IRestHookBatchDeliverer blockedDeliverer = (theMessages, thePayloads) -> {
+			try {
+				assertTrue(release.await(30, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+
+		try {
+			// One full batch is being delivered to the blocked endpoint, and the maximum number are waiting behind it
+			for (int i = 0; i < 101 * 2; i++) {
+				add("blocked", blockedDeliverer);
+			}
+			// Handed over by the timer, which must not wait for room at the blocked endpoint
+			add("blocked", blockedDeliverer);
+
+			myBatcher.add(
+					"other", "http://example.org/fhir", new ResourceDeliveryMessage(), new Patient(), this::recordBatch);
+
+			await().until(() -> myDeliveredBatches.size() == 1);
+			assertThat(myDeliveredBatches.get(0)).hasSize(1);
+			assertEquals(0, myBatcher.getPendingBatchCount());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void testStop_FlushesPendingBatches() {
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxSize(100);
+		mySubscriptionSettings.setRestHookDeliveryBatchMaxWaitMillis(60000);
+
+		add("123", this::recordBatch);
+		add("123", this::recordBatch);
+		myBatcher.stop();
+
+		assertThat(myDeliveredBatches).hasSize(1);
+		assertThat(myDeliveredBatches.get(0)).hasSize(2);
+	}
+}
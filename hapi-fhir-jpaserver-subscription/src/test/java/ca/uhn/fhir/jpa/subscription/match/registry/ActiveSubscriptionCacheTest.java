@@ -6,7 +6,9 @@ import jakarta.annotation.Nonnull;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -138,4 +140,77 @@ public class ActiveSubscriptionCacheTest {
 		return activeSub2;
 	}
 
+	@Test
+	public void getNonTopicSubscriptionCandidates() {
+		ActiveSubscriptionCache activeSubscriptionCache = new ActiveSubscriptionCache();
+		putSubscription(activeSubscriptionCache, "code", "Observation?code=http://loinc.org|1234-5&_format=xml");
+		putSubscription(activeSubscriptionCache, "codes", "Observation?code=1234-5,5678-9");
+		putSubscription(activeSubscriptionCache, "patient", "Observation?patient=Patient/123&status=final");
+		putSubscription(activeSubscriptionCache, "otherPatient", "Observation?subject=http://foo/fhir/Patient/456");
+		putSubscription(activeSubscriptionCache, "date", "Observation?date=ge2020-01-01");
+		putSubscription(activeSubscriptionCache, "modifier", "Observation?code:not=1234-5");
+		putSubscription(activeSubscriptionCache, "allObservations", "Observation");
+		putSubscription(activeSubscriptionCache, "multitype", "[Observation,Patient]");
+		putSubscription(activeSubscriptionCache, "star", "[*]");
+		putSubscription(activeSubscriptionCache, "patientId", "Patient?_id=123");
+
+		Map<String, Collection<String>> values = Map.of(
+			"code", List.of("http://loinc.org|1234-5"),
+			"patient", List.of("Patient/999"),
+			"subject", List.of("Patient/999"));
+		assertThat(getCandidateIds(activeSubscriptionCache, "Observation", values))
+			.containsExactlyInAnyOrder("code", "codes", "date", "modifier", "allObservations", "multitype", "star");
+
+		values = Map.of(
+			"code", List.of("http://loinc.org|9999-9"),
+			"patient", List.of("Patient/123"),
+			"subject", List.of("Patient/123"));
+		assertThat(getCandidateIds(activeSubscriptionCache, "Observation", values))
+			.containsExactlyInAnyOrder("patient", "date", "modifier", "allObservations", "multitype", "star");
+
+		// Values which can't be determined can't be used to narrow anything down
+		assertThat(getCandidateIds(activeSubscriptionCache, "Observation", Map.of()))
+			.containsExactlyInAnyOrder("code", "codes", "patient", "otherPatient", "date", "modifier", "allObservations", "multitype", "star");
+
+		assertThat(getCandidateIds(activeSubscriptionCache, "Patient", Map.of("_id", List.of("123"))))
+			.containsExactlyInAnyOrder("patientId", "multitype", "star");
+		assertThat(getCandidateIds(activeSubscriptionCache, "Encounter", Map.of()))
+			.containsExactlyInAnyOrder("star");
+	}
+
+	@Test
+	public void getNonTopicSubscriptionCandidates_UpdatedAndRemoved() {
+		ActiveSubscriptionCache activeSubscriptionCache = new ActiveSubscriptionCache();
+		ActiveSubscription activeSub1 = putSubscription(activeSubscriptionCache, ID1, "Observation?code=1234-5");
+		Map<String, Collection<String>> values = Map.of("code", List.of("http://loinc.org|1234-5"));
+		assertThat(getCandidateIds(activeSubscriptionCache, "Observation", values)).containsExactly(ID1);
+
+		activeSub1.getSubscription().setCriteriaString("Observation?code=5678-9");
+		activeSub1.setSubscription(activeSub1.getSubscription());
+		activeSubscriptionCache.put(ID1, activeSub1);
+		assertThat(getCandidateIds(activeSubscriptionCache, "Observation", values)).isEmpty();
+
+		values = Map.of("code", List.of("http://loinc.org|5678-9"));
+		assertThat(getCandidateIds(activeSubscriptionCache, "Observation", values)).containsExactly(ID1);
+
+		activeSubscriptionCache.remove(ID1);
+		assertThat(getCandidateIds(activeSubscriptionCache, "Observation", values)).isEmpty();
+	}
+
+	private ActiveSubscription putSubscription(ActiveSubscriptionCache theCache, String theId, String theCriteria) {
+		CanonicalSubscription canonicalSubscription = new CanonicalSubscription();
+		canonicalSubscription.setIdElement(new IdDt(theId));
+		canonicalSubscription.setCriteriaString(theCriteria);
+		ActiveSubscription retVal = new ActiveSubscription(canonicalSubscription, null);
+		theCache.put(theId, retVal);
+		return retVal;
+	}
+
+	private List<String> getCandidateIds(ActiveSubscriptionCache theCache, String theResourceType, Map<String, Collection<String>> theValues) {
+		return theCache.getNonTopicSubscriptionCandidates(theResourceType, theValues::get)
+			.stream()
+			.map(ActiveSubscription::getId)
+			.toList();
+	}
+
 }
@@ -7,6 +7,7 @@ import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.cache.IResourceChangeListenerRegistry;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.jpa.subscription.channel.config.SubscriptionChannelConfig;
@@ -68,6 +69,8 @@ public class WebsocketConnectionValidatorTest {
 	@MockBean
 	ISearchParamRegistry mySearchParamRegistry;
 	@MockBean
+	SearchParamExtractorService mySearchParamExtractorService;
+	@MockBean
 	SubscriptionSettings mySubscriptionSettings;
 
 	@Autowired
@@ -5,9 +5,11 @@ import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
 import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r5.model.Encounter;
 import org.hl7.fhir.r5.model.Enumerations;
 import org.hl7.fhir.r5.model.IdType;
@@ -25,6 +27,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -115,6 +118,27 @@ class SubscriptionTriggerMatcherTest {
 		assertTrue(result.matched());
 	}
 
+	@Test
+	public void testCreateWithCurrentCriteria_UsesMessageExtractionContext() {
+		// setup
+		ResourceModifiedMessage msg = new ResourceModifiedMessage(ourFhirContext, myEncounter, ResourceModifiedMessage.OperationTypeEnum.CREATE);
+		SearchParamExtractionContext extractionContext = msg.getSearchParamExtractionContext(ourFhirContext);
+
+		SubscriptionTopic.SubscriptionTopicResourceTriggerComponent trigger = new SubscriptionTopic.SubscriptionTopicResourceTriggerComponent();
+		trigger.setResource("Encounter");
+		trigger.addSupportedInteraction(SubscriptionTopic.InteractionTrigger.CREATE);
+		trigger.getQueryCriteria().setCurrent("Encounter?status=in-progress");
+
+		when(mySearchParamMatcher.match(eq("Encounter?status=in-progress"), same(extractionContext), any())).thenReturn(InMemoryMatchResult.successfulMatch());
+
+		// run
+		SubscriptionTriggerMatcher svc = new SubscriptionTriggerMatcher(mySubscriptionTopicSupport, msg, trigger, myMemoryCacheService);
+		InMemoryMatchResult result = svc.match();
+
+		// verify
+		assertTrue(result.matched());
+	}
+
 	@Test
 	public void testUpdateWithPrevCriteriaMatch() {
 		ResourceModifiedMessage msg = new ResourceModifiedMessage(ourFhirContext, myEncounter, ResourceModifiedMessage.OperationTypeEnum.UPDATE);
@@ -130,7 +154,7 @@ class SubscriptionTriggerMatcherTest {
 		when(myDaoRegistry.getResourceDao("Encounter")).thenReturn(mockEncounterDao);
 		Encounter encounterPreviousVersion = new Encounter();
 		when(mockEncounterDao.read(any(), any(), eq(false))).thenReturn(encounterPreviousVersion);
-		when(mySearchParamMatcher.match(any(), any(), any())).thenReturn(InMemoryMatchResult.successfulMatch());
+		when(mySearchParamMatcher.match(any(), any(IBaseResource.class), any())).thenReturn(InMemoryMatchResult.successfulMatch());
 
 		// run
 		SubscriptionTriggerMatcher svc = new SubscriptionTriggerMatcher(mySubscriptionTopicSupport, msg, trigger, myMemoryCacheService);
@@ -292,7 +316,7 @@ class SubscriptionTriggerMatcherTest {
 		when(myDaoRegistry.getResourceDao("Encounter")).thenReturn(mockEncounterDao);
 		Encounter encounterPreviousVersion = new Encounter();
 		when(mockEncounterDao.read(any(), any(), eq(false))).thenReturn(encounterPreviousVersion);
-		when(mySearchParamMatcher.match(any(), any(), any())).thenReturn(InMemoryMatchResult.successfulMatch());
+		when(mySearchParamMatcher.match(any(), any(IBaseResource.class), any())).thenReturn(InMemoryMatchResult.successfulMatch());
 
 		// run
 		SubscriptionTriggerMatcher svc = new SubscriptionTriggerMatcher(mySubscriptionTopicSupport, msg, trigger, myMemoryCacheService);
@@ -320,7 +344,7 @@ class SubscriptionTriggerMatcherTest {
 		when(myDaoRegistry.getResourceDao("Encounter")).thenReturn(mockEncounterDao);
 		Encounter encounterPreviousVersion = new Encounter();
 		when(mockEncounterDao.read(any(), any(), eq(false))).thenReturn(encounterPreviousVersion);
-		when(mySearchParamMatcher.match(any(), any(), any())).thenReturn(InMemoryMatchResult.successfulMatch());
+		when(mySearchParamMatcher.match(any(), any(IBaseResource.class), any())).thenReturn(InMemoryMatchResult.successfulMatch());
 
 		// run
 		SubscriptionTriggerMatcher svc = new SubscriptionTriggerMatcher(mySubscriptionTopicSupport, msg, trigger, myMemoryCacheService);
@@ -0,0 +1,148 @@
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MemoryCacheInvalidationR4Test extends BaseJpaR4Test {
+
+	private static final String MATCH_URL = "Patient?identifier=http://foo|bar";
+
+	@Autowired
+	private IChannelFactory myChannelFactory;
+	@Autowired
+	private MemoryCacheInvalidationBroadcaster myBroadcaster;
+	@Autowired
+	private MemoryCacheInvalidationPollingSvc myPollingSvc;
+
+	private MemoryCacheService myRemoteMemoryCacheService;
+	private MemoryCacheInvalidationBroadcaster myRemoteBroadcaster;
+
+	@BeforeEach
+	public void beforeEnable() {
+		myStorageSettings.setMatchUrlCacheEnabled(true);
+		myStorageSettings.setMemoryCacheInvalidationBroadcastEnabled(true);
+		myBroadcaster.start();
+
+		// Simulates a second node in the cluster
+		myRemoteMemoryCacheService = new MemoryCacheService(myStorageSettings);
+		myRemoteBroadcaster = new MemoryCacheInvalidationBroadcaster(myChannelFactory, myRemoteMemoryCacheService, myStorageSettings);
+		myRemoteBroadcaster.start();
+	}
+
+	@AfterEach
+	public void afterDisable() {
+		myRemoteBroadcaster.stop();
+		myBroadcaster.stop();
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setMatchUrlCacheEnabled(defaults.isMatchUrlCacheEnabled());
+		myStorageSettings.setMemoryCacheInvalidationBroadcastEnabled(defaults.isMemoryCacheInvalidationBroadcastEnabled());
+		myStorageSettings.setMemoryCacheInvalidationPollingEnabled(defaults.isMemoryCacheInvalidationPollingEnabled());
+	}
+
+	@Test
+	public void testDeleteInvalidatesMatchUrlOnOtherNode() {
+		IIdType id = createConditionally();
+		Long pid = id.getIdPartAsLong();
+		assertEquals(JpaPid.fromId(pid), myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL));
+		myRemoteMemoryCacheService.put(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL, JpaPid.fromId(pid));
+
+		myPatientDao.delete(id, mySrd);
+
+		assertNull(myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL));
+		await().until(() -> myRemoteMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL) == null);
+	}
+
+	@Test
+	public void testInvalidationFromOtherNodeIsApplied() {
+		createConditionally();
+		assertNotNull(myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL));
+
+		myRemoteMemoryCacheService.invalidateAfterCommit(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL);
+
+		await().until(() -> myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL) == null);
+	}
+
+	@Test
+	public void testPollingInvalidatesDeletedResources() {
+		myStorageSettings.setMemoryCacheInvalidationPollingEnabled(true);
+		myPollingSvc.setLastPollTimeForUnitTest(new Date());
+
+		IIdType id = createConditionally();
+		Long pid = id.getIdPartAsLong();
+		myPatientDao.delete(id, mySrd);
+
+		// Simulates a stale entry which was never broadcast to this node
+		myMemoryCacheService.put(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL, JpaPid.fromId(pid));
+		myMemoryCacheService.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, pid, 1L);
+		assertNotNull(myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL));
+
+		myPollingSvc.poll();
+
+		assertNull(myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL));
+		assertNull(myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, pid));
+	}
+
+	@Test
+	public void testPollingPagesThroughAllChanges() {
+		myStorageSettings.setMemoryCacheInvalidationPollingEnabled(true);
+		myPollingSvc.setLastPollTimeForUnitTest(new Date());
+		myPollingSvc.setPageSizeForUnitTest(2);
+
+		List<Long> pids = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Long pid = createPatient(withActiveTrue()).getIdPartAsLong();
+			pids.add(pid);
+			myMemoryCacheService.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, pid, 1L);
+		}
+		// Entries for resources which didn't change are left alone
+		myMemoryCacheService.put(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL, JpaPid.fromId(-1L));
+
+		try {
+			myPollingSvc.poll();
+		} finally {
+			myPollingSvc.setPageSizeForUnitTest(MemoryCacheInvalidationPollingSvc.DEFAULT_PAGE_SIZE);
+		}
+
+		for (Long pid : pids) {
+			assertNull(myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, pid));
+		}
+		assertEquals(JpaPid.fromId(-1L), myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, MATCH_URL));
+	}
+
+	@Test
+	public void testPollingDisabled() {
+		myPollingSvc.setLastPollTimeForUnitTest(new Date(System.currentTimeMillis() - DateUtils.MILLIS_PER_HOUR));
+		IIdType id = createConditionally();
+		Long pid = id.getIdPartAsLong();
+		myMemoryCacheService.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, pid, 1L);
+
+		myPollingSvc.poll();
+
+		assertEquals(1L, (Long) myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, pid));
+	}
+
+	private IIdType createConditionally() {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("bar");
+		return myPatientDao.create(patient, MATCH_URL, mySrd).getId().toUnqualifiedVersionless();
+	}
+}
@@ -0,0 +1,119 @@
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+public class ResourceBodyCacheR4Test extends BaseJpaR4Test {
+
+	@Autowired
+	private ResourceBodyCache myResourceBodyCache;
+
+	@BeforeEach
+	public void beforeEnableCache() {
+		myStorageSettings.setResourceBodyCacheMaxEntries(1000);
+	}
+
+	@AfterEach
+	public void afterDisableCache() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setResourceBodyCacheMaxEntries(defaults.getResourceBodyCacheMaxEntries());
+		myStorageSettings.setUpdateWithHistoryRewriteEnabled(defaults.isUpdateWithHistoryRewriteEnabled());
+	}
+
+	@Test
+	public void testIncludedResourceServedFromCache() {
+		IIdType practitionerId = createPractitioner("Smith");
+		for (int i = 0; i < 3; i++) {
+			Observation obs = new Observation();
+			obs.addPerformer().setReferenceElement(practitionerId);
+			myObservationDao.create(obs, mySrd);
+		}
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous().addInclude(Observation.INCLUDE_PERFORMER);
+		List<String> firstIds = toUnqualifiedVersionlessIdValues(myObservationDao.search(map, mySrd));
+		long hits = myResourceBodyCache.getHitCount();
+
+		map = SearchParameterMap.newSynchronous().addInclude(Observation.INCLUDE_PERFORMER);
+		IBundleProvider outcome = myObservationDao.search(map, mySrd);
+		assertThat(toUnqualifiedVersionlessIdValues(outcome)).containsExactlyElementsOf(firstIds);
+		assertThat(myResourceBodyCache.getHitCount()).isGreaterThanOrEqualTo(hits + 4);
+
+		Practitioner practitioner = outcome.getResources(0, 4).stream()
+			.filter(t -> t instanceof Practitioner)
+			.map(t -> (Practitioner) t)
+			.findFirst()
+			.orElseThrow();
+		assertEquals("Smith", practitioner.getNameFirstRep().getFamily());
+		assertEquals("1", practitioner.getIdElement().getVersionIdPart());
+	}
+
+	@Test
+	public void testUpdateAndDeleteAreVisible() {
+		IIdType id = createPractitioner("Smith");
+		assertEquals("Smith", searchForPractitionerFamily(id));
+		assertEquals("Smith", searchForPractitionerFamily(id));
+
+		Practitioner practitioner = new Practitioner();
+		practitioner.setId(id.toUnqualifiedVersionless());
+		practitioner.addName().setFamily("Jones");
+		myPractitionerDao.update(practitioner, mySrd);
+		assertEquals("Jones", searchForPractitionerFamily(id));
+		assertEquals("Smith", myPractitionerDao.read(id.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+
+		myPractitionerDao.delete(id.toUnqualifiedVersionless(), mySrd);
+		SearchParameterMap map = SearchParameterMap.newSynchronous("_id", new TokenParam(id.getIdPart()));
+		assertThat(toUnqualifiedVersionlessIdValues(myPractitionerDao.search(map, mySrd))).isEmpty();
+	}
+
+	@Test
+	public void testHistoryRewriteIsVisible() {
+		myStorageSettings.setUpdateWithHistoryRewriteEnabled(true);
+		Patient patient = new Patient();
+		patient.addName().setFamily("Smith");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualified();
+		assertEquals("Smith", myPatientDao.read(id, mySrd).getNameFirstRep().getFamily());
+		assertEquals("Smith", myPatientDao.read(id, mySrd).getNameFirstRep().getFamily());
+
+		when(mySrd.isRewriteHistory()).thenReturn(true);
+		patient = new Patient();
+		patient.setId(id);
+		patient.addName().setFamily("Jones");
+		myPatientDao.update(patient, mySrd);
+		when(mySrd.isRewriteHistory()).thenReturn(false);
+
+		assertEquals("Jones", myPatientDao.read(id, mySrd).getNameFirstRep().getFamily());
+		assertEquals("1", myPatientDao.read(id.toVersionless(), mySrd).getIdElement().getVersionIdPart());
+	}
+
+	private IIdType createPractitioner(String theFamily) {
+		Practitioner practitioner = new Practitioner();
+		practitioner.addName().setFamily(theFamily);
+		return myPractitionerDao.create(practitioner, mySrd).getId().toUnqualified();
+	}
+
+	private String searchForPractitionerFamily(IIdType theId) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous("_id", new TokenParam(theId.getIdPart()));
+		List<Practitioner> resources = myPractitionerDao.search(map, mySrd).getAllResources().stream()
+			.map(t -> (Practitioner) t)
+			.toList();
+		assertThat(resources).hasSize(1);
+		return resources.get(0).getNameFirstRep().getFamily();
+	}
+}
@@ -7,6 +7,8 @@ import ca.uhn.fhir.parser.LenientErrorHandler;
 import org.hl7.fhir.r4.model.Observation;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TolerantJsonParserR4Test {
@@ -29,6 +31,24 @@ public class TolerantJsonParserR4Test {
 		assertEquals("0.5", obs.getValueQuantity().getValueElement().getValueAsString());
 	}
 
+	@Test
+	public void testParseInvalidNumeric_LeadingDecimal_FromBytes() {
+		String input = "{\n" +
+			"\"resourceType\": \"Observation\",\n" +
+			"\"code\": { \"text\": \"Gr\u00fc\u00df \ud83d\ude00\" },\n" +
+			"\"valueQuantity\": {\n" +
+			"      \"value\": .5\n" +
+			"   }\n" +
+			"}";
+
+
+		TolerantJsonParser parser = new TolerantJsonParser(myFhirContext, new LenientErrorHandler(), 123L);
+		Observation obs = parser.parseResource(Observation.class, input.getBytes(StandardCharsets.UTF_8));
+
+		assertEquals("0.5", obs.getValueQuantity().getValueElement().getValueAsString());
+		assertEquals("Gr\u00fc\u00df \ud83d\ude00", obs.getCode().getText());
+	}
+
 	@Test
 	public void testParseInvalidNumeric_LeadingZeros() {
 		String input = "{\n" +
@@ -0,0 +1,170 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IResourceDeferredIndexDao;
+import ca.uhn.fhir.jpa.dao.index.DeferredIndexingSvc;
+import ca.uhn.fhir.jpa.model.entity.ResourceDeferredIndexEntity;
+import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.search.reindex.ResourceReindexer;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+public class FhirResourceDaoR4DeferredIndexingTest extends BaseJpaR4Test {
+
+	@Autowired
+	private DeferredIndexingSvc myDeferredIndexingSvc;
+	@Autowired
+	private IResourceDeferredIndexDao myResourceDeferredIndexDao;
+	@Autowired
+	private ResourceReindexer myResourceReindexer;
+
+	@BeforeEach
+	public void beforeEnableDeferredIndexing() {
+		myStorageSettings.setDeferredIndexingResourceTypes(Set.of("Observation"));
+	}
+
+	@AfterEach
+	public void afterDisableDeferredIndexing() {
+		// Don't leave anything queued for the next test
+		myDeferredIndexingSvc.indexPendingResources();
+
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setDeferredIndexingResourceTypes(defaults.getDeferredIndexingResourceTypes());
+		myStorageSettings.setDeferredIndexingConsistencyTimeoutMillis(defaults.getDeferredIndexingConsistencyTimeoutMillis());
+	}
+
+	private IIdType createObservation(String theCode) {
+		Observation observation = new Observation();
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		observation.getCode().addCoding().setSystem("http://loinc.org").setCode(theCode);
+		return myObservationDao.create(observation, mySrd).getId().toUnqualifiedVersionless();
+	}
+
+	private SearchParameterMap codeSearch(String theCode) {
+		return SearchParameterMap.newSynchronous(Observation.SP_CODE, new TokenParam("http://loinc.org", theCode));
+	}
+
+	private SystemRequestDetails newStrongConsistencyRequest() {
+		SystemRequestDetails retVal = new SystemRequestDetails();
+		retVal.addHeader(JpaConstants.HEADER_INDEX_CONSISTENCY, JpaConstants.HEADER_INDEX_CONSISTENCY_STRONG);
+		return retVal;
+	}
+
+	@Test
+	public void testCreate_IndexedAfterQueueIsProcessed() {
+		IIdType id = createObservation("code0");
+
+		// The resource itself is stored right away
+		assertEquals(id.getIdPart(), myObservationDao.read(id, mySrd).getIdElement().getIdPart());
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(codeSearch("code0"), mySrd))).isEmpty();
+
+		assertEquals(1, myDeferredIndexingSvc.indexPendingResources());
+
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(codeSearch("code0"), mySrd))).containsExactly(id.getValue());
+		assertEquals(0, myDeferredIndexingSvc.indexPendingResources());
+	}
+
+	@Test
+	public void testCreate_InvalidReferenceRejectedImmediately() {
+		Observation observation = new Observation();
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		observation.setSubject(new Reference("Patient/DOES-NOT-EXIST"));
+
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> myObservationDao.create(observation, mySrd));
+		assertThat(e.getMessage()).contains("Resource Patient/DOES-NOT-EXIST not found, specified in path: Observation.subject");
+		assertEquals(0, myDeferredIndexingSvc.indexPendingResources());
+	}
+
+	@Test
+	public void testIndexingFailure_RetriedAfterBackOff() {
+		ResourceReindexer failingReindexer = spy(myResourceReindexer);
+		doThrow(new IllegalStateException("FOO")).when(failingReindexer).reindexResourceEntity(any());
+		IIdType id = createObservation("code0");
+
+		try {
+			myDeferredIndexingSvc.setResourceReindexerForUnitTest(failingReindexer);
+			assertEquals(0, myDeferredIndexingSvc.indexPendingResources());
+		} finally {
+			myDeferredIndexingSvc.setResourceReindexerForUnitTest(myResourceReindexer);
+		}
+
+		// The resource stays queued, and isn't retried until the back-off has passed
+		List<ResourceDeferredIndexEntity> queued = runInTransaction(() -> myResourceDeferredIndexDao.findAll());
+		assertThat(queued).hasSize(1);
+		assertEquals(1, queued.get(0).getFailedAttempts());
+		assertThat(queued.get(0).getNextAttemptTime()).isInTheFuture();
+		assertEquals(0, myDeferredIndexingSvc.indexPendingResources());
+
+		Long pid = queued.get(0).getPk().getResourcePid();
+		runInTransaction(() -> myResourceDeferredIndexDao.updateFailedAttempts(pid, 1, new Date(0)));
+		assertEquals(1, myDeferredIndexingSvc.indexPendingResources());
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(codeSearch("code0"), mySrd))).containsExactly(id.getValue());
+		assertThat(runInTransaction(() -> myResourceDeferredIndexDao.findAll())).isEmpty();
+	}
+
+	@Test
+	public void testCreate_OtherResourceTypesIndexedImmediately() {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("bar");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "bar"));
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd))).containsExactly(id.getValue());
+		assertEquals(0, myDeferredIndexingSvc.indexPendingResources());
+	}
+
+	@Test
+	public void testSearch_StrongConsistency_WaitsForIndexing() throws Exception {
+		IIdType id = createObservation("code0");
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> indexing = executor.submit(() -> {
+				TestUtil.sleepAtLeast(200);
+				myDeferredIndexingSvc.indexPendingResources();
+			});
+
+			assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(codeSearch("code0"), newStrongConsistencyRequest()))).containsExactly(id.getValue());
+			indexing.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSearch_StrongConsistency_TimesOut() {
+		myStorageSettings.setDeferredIndexingConsistencyTimeoutMillis(100);
+		createObservation("code0");
+
+		PreconditionFailedException e = assertThrows(PreconditionFailedException.class, () -> myObservationDao.search(codeSearch("code0"), newStrongConsistencyRequest()));
+		assertThat(e.getMessage()).contains("Timed out waiting for 1 Observation resources to be indexed");
+	}
+
+}
@@ -0,0 +1,130 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
+import ca.uhn.fhir.jpa.dao.tx.GroupCommitSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.test.util.LogbackTestExtension;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FhirResourceDaoR4GroupCommitTest extends BaseJpaR4Test {
+
+	private static final int THREAD_COUNT = 5;
+
+	@RegisterExtension
+	private final LogbackTestExtension myLogbackTestExtension = new LogbackTestExtension(GroupCommitSvc.class, Level.DEBUG);
+
+	private ExecutorService myExecutor;
+
+	@BeforeEach
+	public void beforeEnableGroupCommit() {
+		myExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
+		myStorageSettings.setGroupCommitEnabled(true);
+		// Batches are only closed once they are full, so every create below ends up in the same one
+		myStorageSettings.setGroupCommitMaxBatchSize(THREAD_COUNT);
+		myStorageSettings.setGroupCommitMaxWaitMillis(60000);
+	}
+
+	@AfterEach
+	public void afterDisableGroupCommit() {
+		myExecutor.shutdown();
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setGroupCommitEnabled(defaults.isGroupCommitEnabled());
+		myStorageSettings.setGroupCommitMaxBatchSize(defaults.getGroupCommitMaxBatchSize());
+		myStorageSettings.setGroupCommitMaxWaitMillis(defaults.getGroupCommitMaxWaitMillis());
+	}
+
+	private List<String> getFormattedLogMessages() {
+		return myLogbackTestExtension.getLogEvents().stream().map(ILoggingEvent::getFormattedMessage).toList();
+	}
+
+	private List<Future<DaoMethodOutcome>> createObservationsConcurrently(List<Observation> theObservations) {
+		List<Future<DaoMethodOutcome>> retVal = new ArrayList<>();
+		for (Observation next : theObservations) {
+			retVal.add(myExecutor.submit(() -> myObservationDao.create(next, mySrd)));
+		}
+		return retVal;
+	}
+
+	private Observation newObservation(String theCode) {
+		Observation retVal = new Observation();
+		retVal.setStatus(Observation.ObservationStatus.FINAL);
+		retVal.getCode().addCoding().setSystem("http://loinc.org").setCode(theCode);
+		return retVal;
+	}
+
+	@Test
+	public void testConcurrentCreates_CommittedTogether() throws Exception {
+		List<Observation> observations = new ArrayList<>();
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			observations.add(newObservation("code" + i));
+		}
+
+		List<Future<DaoMethodOutcome>> outcomes = createObservationsConcurrently(observations);
+
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			DaoMethodOutcome outcome = outcomes.get(i).get();
+			assertThat(outcome.getCreated()).isTrue();
+			SearchParameterMap map = SearchParameterMap.newSynchronous(Observation.SP_CODE, new TokenParam("http://loinc.org", "code" + i));
+			assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(map, mySrd))).containsExactly(outcome.getId().toUnqualifiedVersionless().getValue());
+		}
+		assertThat(getFormattedLogMessages()).contains("Committed " + THREAD_COUNT + " operations in a single transaction");
+	}
+
+	@Test
+	public void testConcurrentCreates_OneFails_OthersAreStored() throws Exception {
+		List<Observation> observations = new ArrayList<>();
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			observations.add(newObservation("code" + i));
+		}
+		observations.get(2).setSubject(new Reference("Patient/DOES-NOT-EXIST"));
+
+		List<Future<DaoMethodOutcome>> outcomes = createObservationsConcurrently(observations);
+
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			Future<DaoMethodOutcome> outcome = outcomes.get(i);
+			if (i == 2) {
+				ExecutionException e = assertThrows(ExecutionException.class, outcome::get);
+				assertThat(e.getCause()).isInstanceOf(InvalidRequestException.class);
+			} else {
+				assertThat(outcome.get().getCreated()).isTrue();
+			}
+		}
+		assertThat(getFormattedLogMessages()).anyMatch(t -> t.startsWith("Group commit of " + THREAD_COUNT + " operations failed"));
+		assertEquals(THREAD_COUNT - 1, myObservationDao.search(SearchParameterMap.newSynchronous(), mySrd).size());
+	}
+
+	@Test
+	public void testConditionalCreate_NotGrouped() {
+		Observation observation = newObservation("code");
+		observation.addIdentifier().setSystem("http://foo").setValue("bar");
+
+		// With the settings above, a grouped create would wait for the whole batch to fill up
+		DaoMethodOutcome outcome = myObservationDao.create(observation, "Observation?identifier=http://foo|bar", mySrd);
+
+		assertThat(outcome.getCreated()).isTrue();
+		assertThat(getFormattedLogMessages()).isEmpty();
+	}
+
+}
@@ -0,0 +1,151 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings.ResourceHistoryPolicyEnum;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.util.SqlQuery;
+import ca.uhn.fhir.rest.server.exceptions.MethodNotAllowedException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.BundleBuilder;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FhirResourceDaoR4HistoryPolicyTest extends BaseJpaR4Test {
+
+	@AfterEach
+	public void afterResetHistoryPolicies() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setResourceHistoryPolicies(defaults.getResourceHistoryPolicies());
+		myStorageSettings.setResourceDbHistoryEnabled(defaults.isResourceDbHistoryEnabled());
+	}
+
+	private long countHistoryRows(String theResourceType) {
+		return runInTransaction(() -> myResourceHistoryTableDao.findAll().stream()
+				.filter(t -> t.getResourceType().equals(theResourceType))
+				.count());
+	}
+
+	@Test
+	public void testGetResourceHistoryPolicy() {
+		myStorageSettings.setResourceHistoryPolicies(Map.of("Observation", ResourceHistoryPolicyEnum.APPEND_ONLY));
+		assertEquals(ResourceHistoryPolicyEnum.APPEND_ONLY, myStorageSettings.getResourceHistoryPolicy("Observation"));
+		assertEquals(ResourceHistoryPolicyEnum.FULL, myStorageSettings.getResourceHistoryPolicy("Patient"));
+
+		myStorageSettings.setResourceDbHistoryEnabled(false);
+		assertEquals(ResourceHistoryPolicyEnum.CURRENT_VERSION_ONLY, myStorageSettings.getResourceHistoryPolicy("Patient"));
+	}
+
+	@Test
+	public void testUpdate_CurrentVersionOnly() {
+		myStorageSettings.setResourceHistoryPolicies(Map.of("Patient", ResourceHistoryPolicyEnum.CURRENT_VERSION_ONLY));
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		IIdType patientId = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		Observation observation = new Observation();
+		observation.setStatus(Observation.ObservationStatus.PRELIMINARY);
+		IIdType observationId = myObservationDao.create(observation, mySrd).getId().toUnqualifiedVersionless();
+
+		for (int i = 0; i < 2; i++) {
+			patient.setId(patientId);
+			patient.setActive(!patient.getActive());
+			myPatientDao.update(patient, mySrd);
+			observation.setId(observationId);
+			observation.setStatus(i == 0 ? Observation.ObservationStatus.FINAL : Observation.ObservationStatus.AMENDED);
+			myObservationDao.update(observation, mySrd);
+		}
+
+		assertEquals(1, countHistoryRows("Patient"));
+		assertEquals(3, countHistoryRows("Observation"));
+		assertEquals("3", myPatientDao.read(patientId, mySrd).getIdElement().getVersionIdPart());
+		assertThrows(ResourceNotFoundException.class, () -> myPatientDao.read(patientId.withVersion("2"), mySrd));
+		assertEquals(Observation.ObservationStatus.FINAL, myObservationDao.read(observationId.withVersion("2"), mySrd).getStatus());
+	}
+
+	@Test
+	public void testUpdate_AppendOnly() {
+		myStorageSettings.setResourceHistoryPolicies(Map.of("Observation", ResourceHistoryPolicyEnum.APPEND_ONLY));
+
+		Observation observation = new Observation();
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		IIdType id = myObservationDao.create(observation, mySrd).getId().toUnqualifiedVersionless();
+
+		observation.setId(id);
+		observation.setStatus(Observation.ObservationStatus.AMENDED);
+		MethodNotAllowedException e = assertThrows(MethodNotAllowedException.class, () -> myObservationDao.update(observation, mySrd));
+		assertThat(e.getMessage()).contains("Resources of type Observation are append-only and can not be updated");
+
+		myObservationDao.delete(id, mySrd);
+		assertThrows(ResourceGoneException.class, () -> myObservationDao.read(id, mySrd));
+		assertEquals(1, countHistoryRows("Observation"));
+	}
+
+	@Test
+	public void testTransaction_HistoryRowsPersisted() {
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		Patient patient = new Patient();
+		patient.setId(IdType.newRandomUuid());
+		patient.setActive(true);
+		bb.addTransactionCreateEntry(patient);
+		for (int i = 0; i < 5; i++) {
+			Observation observation = new Observation();
+			observation.setStatus(Observation.ObservationStatus.FINAL);
+			observation.setSubject(new Reference(patient.getIdElement()));
+			bb.addTransactionCreateEntry(observation);
+		}
+
+		myCaptureQueriesListener.clear();
+		Bundle outcome = mySystemDao.transaction(mySrd, bb.getBundleTyped());
+
+		// All the history rows are written by a single batched insert
+		myCaptureQueriesListener.logInsertQueriesForCurrentThread();
+		List<SqlQuery> historyInserts = myCaptureQueriesListener
+				.getInsertQueriesForCurrentThread()
+				.stream()
+				.filter(t -> t.getSql(false, false).contains("HFJ_RES_VER "))
+				.toList();
+		assertThat(historyInserts).hasSize(1);
+		assertEquals(6, historyInserts.get(0).getSize());
+
+		assertEquals(1, countHistoryRows("Patient"));
+		assertEquals(5, countHistoryRows("Observation"));
+		for (Bundle.BundleEntryComponent next : outcome.getEntry()) {
+			IdType id = new IdType(next.getResponse().getLocation());
+			assertEquals("1", myDaoRegistry.getResourceDao(id.getResourceType()).read(id, mySrd).getIdElement().getVersionIdPart());
+		}
+	}
+
+	@Test
+	public void testTransaction_UpdateCurrentVersionOnly() {
+		myStorageSettings.setResourceHistoryPolicies(Map.of("Patient", ResourceHistoryPolicyEnum.CURRENT_VERSION_ONLY));
+		Patient patient = new Patient();
+		patient.setActive(true);
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		patient.setId(id);
+		patient.setActive(false);
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		bb.addTransactionUpdateEntry(patient);
+		mySystemDao.transaction(mySrd, bb.getBundleTyped());
+
+		assertEquals(1, countHistoryRows("Patient"));
+		Patient actual = myPatientDao.read(id, mySrd);
+		assertEquals("2", actual.getIdElement().getVersionIdPart());
+		assertThat(actual.getActive()).isFalse();
+	}
+
+}
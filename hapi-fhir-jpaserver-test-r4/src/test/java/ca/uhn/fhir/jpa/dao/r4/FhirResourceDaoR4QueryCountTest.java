@@ -36,6 +36,7 @@ import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
@@ -59,6 +60,7 @@ import org.hl7.fhir.r4.model.CodeableConcept;
 import org.hl7.fhir.r4.model.Coding;
 import org.hl7.fhir.r4.model.Coverage;
 import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
 import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.ExplanationOfBenefit;
 import org.hl7.fhir.r4.model.Group;
@@ -162,6 +164,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 		myStorageSettings.setDeleteEnabled(new JpaStorageSettings().isDeleteEnabled());
 		myStorageSettings.setHistoryCountMode(JpaStorageSettings.DEFAULT_HISTORY_COUNT_MODE);
 		myStorageSettings.setIndexMissingFields(new JpaStorageSettings().getIndexMissingFields());
+		myStorageSettings.setIndexFingerprintEnabled(new JpaStorageSettings().isIndexFingerprintEnabled());
 		myStorageSettings.setMassIngestionMode(new JpaStorageSettings().isMassIngestionMode());
 		myStorageSettings.setMatchUrlCacheEnabled(new JpaStorageSettings().isMatchUrlCacheEnabled());
 		myStorageSettings.setPopulateIdentifierInAutoCreatedPlaceholderReferenceTargets(new JpaStorageSettings().isPopulateIdentifierInAutoCreatedPlaceholderReferenceTargets());
@@ -268,7 +271,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 			myPatientDao.update(p);
 		});
 		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
-		assertThat(myCaptureQueriesListener.getSelectQueriesForCurrentThread()).hasSize(5);
+		assertThat(myCaptureQueriesListener.getSelectQueriesForCurrentThread()).hasSize(4);
 		myCaptureQueriesListener.logUpdateQueriesForCurrentThread();
 		assertThat(myCaptureQueriesListener.getUpdateQueriesForCurrentThread()).isEmpty();
 		assertThat(myCaptureQueriesListener.getInsertQueriesForCurrentThread()).isEmpty();
@@ -456,7 +459,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 			myCaptureQueriesListener.clear();
 			myPatientDao.update(p, mySrd);
 		});
-		assertThat(myCaptureQueriesListener.getSelectQueriesForCurrentThread()).hasSize(5);
+		assertThat(myCaptureQueriesListener.getSelectQueriesForCurrentThread()).hasSize(2);
 		assertThat(myCaptureQueriesListener.getUpdateQueriesForCurrentThread()).isEmpty();
 		assertThat(myCaptureQueriesListener.getInsertQueriesForCurrentThread()).isEmpty();
 		assertThat(myCaptureQueriesListener.getDeleteQueriesForCurrentThread()).isEmpty();
@@ -726,6 +729,72 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 
 	}
 
+	/**
+	 * See the class javadoc before changing the counts in this test!
+	 */
+	@Test
+	public void testCreate_ManyIdentifiers_IndexRowsInsertedInOneBatch() {
+		myStorageSettings.setIndexMissingFields(JpaStorageSettings.IndexEnabledEnum.DISABLED);
+
+		Patient p = new Patient();
+		for (int i = 0; i < 25; i++) {
+			p.addIdentifier().setSystem("http://foo").setValue("value" + i);
+		}
+
+		myCaptureQueriesListener.clear();
+		myPatientDao.create(p, mySrd);
+
+		myCaptureQueriesListener.logInsertQueriesForCurrentThread();
+		List<SqlQuery> tokenInserts = myCaptureQueriesListener
+			.getInsertQueriesForCurrentThread()
+			.stream()
+			.filter(t -> t.getSql(false, false).contains("HFJ_SPIDX_TOKEN"))
+			.toList();
+		assertThat(tokenInserts).hasSize(1);
+		assertThat(tokenInserts.get(0).getSize()).isGreaterThanOrEqualTo(25);
+	}
+
+	@Test
+	public void testUpdate_IndexFingerprintEnabled_UnchangedIndexTypesNotLoaded() {
+		myStorageSettings.setIndexFingerprintEnabled(true);
+		myStorageSettings.setIndexMissingFields(JpaStorageSettings.IndexEnabledEnum.DISABLED);
+
+		Patient p = new Patient();
+		for (int i = 0; i < 10; i++) {
+			p.addIdentifier().setSystem("http://foo").setValue("value" + i);
+		}
+		p.addName().setFamily("Simpson");
+		p.setBirthDateElement(new DateType("2020-01-01"));
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		// Only the birth date changes
+		p.setId(id);
+		p.setBirthDateElement(new DateType("2021-01-01"));
+		myCaptureQueriesListener.clear();
+		myPatientDao.update(p, mySrd);
+
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		List<String> selects = myCaptureQueriesListener
+			.getSelectQueriesForCurrentThread()
+			.stream()
+			.map(t -> t.getSql(false, false))
+			.toList();
+		assertThat(selects).noneMatch(t -> t.contains("HFJ_SPIDX_TOKEN"));
+		assertThat(selects).noneMatch(t -> t.contains("HFJ_SPIDX_STRING"));
+		assertThat(selects).anyMatch(t -> t.contains("HFJ_SPIDX_DATE"));
+
+		// Unchanged indexes are still searchable, changed ones reflect the update
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "value3")), mySrd))).containsExactly(id.getValue());
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_BIRTHDATE, new DateParam("2021-01-01")), mySrd))).containsExactly(id.getValue());
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_BIRTHDATE, new DateParam("2020-01-01")), mySrd))).isEmpty();
+
+		// Changing an identifier updates the token index again
+		p.getIdentifierFirstRep().setValue("changed");
+		myPatientDao.update(p, mySrd);
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "changed")), mySrd))).containsExactly(id.getValue());
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "value0")), mySrd))).isEmpty();
+	}
+
 	/**
 	 * See the class javadoc before changing the counts in this test!
 	 */
@@ -2417,6 +2486,77 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 
 	}
 
+	/**
+	 * See the class javadoc before changing the counts in this test!
+	 */
+	@Test
+	public void testTransactionWithManyConditionalCreates_MatchUrlsResolvedInOneQuery() {
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (int i = 0; i < 150; i++) {
+			Patient pt = new Patient();
+			pt.addIdentifier().setSystem("http://foo").setValue(Integer.toString(i));
+			bb.addTransactionCreateEntry(pt);
+		}
+		mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+
+		bb = new BundleBuilder(myFhirContext);
+		for (int i = 0; i < 150; i++) {
+			Patient pt = new Patient();
+			pt.addIdentifier().setSystem("http://foo").setValue(Integer.toString(i));
+			bb.addTransactionCreateEntry(pt).conditional("Patient?identifier=http://foo|" + i);
+		}
+
+		myCaptureQueriesListener.clear();
+		Bundle outcome = mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+		myCaptureQueriesListener.logSelectQueries();
+		assertThat(myCaptureQueriesListener.getSelectQueries().stream().filter(t -> t.getSql(false, false).contains("HFJ_SPIDX_TOKEN"))).hasSize(1);
+		assertThat(outcome.getEntry()).allMatch(t -> t.getResponse().getStatus().startsWith("200"));
+		assertEquals(0, myCaptureQueriesListener.countInsertQueries());
+	}
+
+	/**
+	 * See the class javadoc before changing the counts in this test!
+	 */
+	@Test
+	public void testTransactionWithConditionalCreates_UriMatchUrlsPreFetched() {
+		ValueSet vs = new ValueSet();
+		vs.setUrl("http://vs1");
+		myValueSetDao.create(vs, mySrd);
+
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (String url : List.of("http://vs1", "http://vs2")) {
+			vs = new ValueSet();
+			vs.setUrl(url);
+			bb.addTransactionCreateEntry(vs).conditional("ValueSet?url=" + url);
+		}
+
+		myCaptureQueriesListener.clear();
+		Bundle outcome = mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+		myCaptureQueriesListener.logSelectQueries();
+		assertThat(myCaptureQueriesListener.getSelectQueries().stream().filter(t -> t.getSql(false, false).contains("HFJ_SPIDX_URI"))).hasSize(1);
+		assertThat(outcome.getEntry().get(0).getResponse().getStatus()).startsWith("200");
+		assertThat(outcome.getEntry().get(1).getResponse().getStatus()).startsWith("201");
+	}
+
+	@Test
+	public void testTransactionWithConditionalCreates_NonTokenMatchUrlNotAssumedMissing() {
+		Patient pt = new Patient();
+		pt.addName().setFamily("SMITH");
+		IIdType existingId = myPatientDao.create(pt, mySrd).getId().toUnqualifiedVersionless();
+
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		pt = new Patient();
+		pt.addName().setFamily("SMITH");
+		bb.addTransactionCreateEntry(pt).conditional("Patient?family=SMITH");
+		pt = new Patient();
+		pt.addIdentifier().setSystem("http://foo").setValue("123");
+		bb.addTransactionCreateEntry(pt).conditional("Patient?identifier=http://foo|123");
+
+		Bundle outcome = mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+		assertThat(outcome.getEntry().get(0).getResponse().getLocation()).startsWith(existingId.getValue() + "/");
+		assertThat(outcome.getEntry().get(1).getResponse().getStatus()).startsWith("201");
+	}
+
 	/**
 	 * See the class javadoc before changing the counts in this test!
 	 */
@@ -67,6 +67,7 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 	@AfterEach
 	public void afterEach() {
 		myStorageSettings.setMaximumIncludesToLoadPerPage(JpaStorageSettings.DEFAULT_MAXIMUM_INCLUDES_TO_LOAD_PER_PAGE);
+		myStorageSettings.setParallelIncludeLoadingThreadCount(new JpaStorageSettings().getParallelIncludeLoadingThreadCount());
 		myInterceptorRegistry.unregisterInterceptor(myAnonymousInterceptor);
 	}
 
@@ -193,6 +194,45 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 
 
 
+	@Test
+	public void testIncludesLoadedInParallel() {
+		createOrganizationWithReferencingEpisodesOfCare(10);
+		myStorageSettings.setParallelIncludeLoadingThreadCount(2);
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.add("_id", new TokenParam("ORG-0"))
+			.addInclude(Organization.INCLUDE_PARTOF)
+			.addInclude(new Include("Organization:partof:Organization"))
+			.addInclude(Organization.INCLUDE_ENDPOINT)
+			.addRevInclude(EpisodeOfCare.INCLUDE_ORGANIZATION);
+
+		myCaptureQueriesListener.clear();
+		IBundleProvider results = myOrganizationDao.search(map, mySrd);
+		List<String> ids = toUnqualifiedVersionlessIdValues(results);
+		assertThat(ids).containsExactlyInAnyOrder(
+			"Organization/ORG-0",
+			"Organization/ORG-P",
+			"EpisodeOfCare/EOC-0",
+			"EpisodeOfCare/EOC-1",
+			"EpisodeOfCare/EOC-2",
+			"EpisodeOfCare/EOC-3",
+			"EpisodeOfCare/EOC-4",
+			"EpisodeOfCare/EOC-5",
+			"EpisodeOfCare/EOC-6",
+			"EpisodeOfCare/EOC-7",
+			"EpisodeOfCare/EOC-8",
+			"EpisodeOfCare/EOC-9"
+		);
+
+		// The two includes of Organization.partOf are the same query, so it is only issued once
+		List<SqlQuery> includeQueries = myCaptureQueriesListener.getSelectQueries().stream()
+			.filter(t -> t.getSql(true, false).contains("hfj_res_link"))
+			.filter(t -> t.getSql(true, false).contains("'Organization.partOf'"))
+			.toList();
+		assertThat(includeQueries).hasSize(1);
+		assertThat(includeQueries.get(0).getThreadName()).startsWith("parallel-include-loading-");
+	}
+
 	@Test
 	public void testIncludesNotAppliedToIncludedResources() {
 		createOrganizationWithReferencingEpisodesOfCare(10);
@@ -598,6 +598,38 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 	}
 
 
+	@Test
+	public void testFetchDeepPageSeeksBySearchOrder() {
+		create200Patients();
+
+		myStorageSettings.setSearchPreFetchThresholds(Arrays.asList(-1));
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setSort(new SortSpec(Patient.SP_NAME));
+		IBundleProvider results = myPatientDao.search(params);
+		String uuid = results.getUuid();
+		await().until(() -> runInTransaction(() -> {
+			Search search = mySearchEntityDao.findByUuidAndFetchIncludes(uuid).orElseThrow(() -> new InternalErrorException(""));
+			return search.getStatus() == SearchStatusEnum.FINISHED;
+		}));
+
+		myCaptureQueriesListener.clear();
+		results = myDatabaseBackedPagingProvider.retrieveResultList(null, uuid);
+		List<String> ids = toUnqualifiedVersionlessIdValues(results, 180, 190, false);
+		assertThat(ids).hasSize(10);
+		assertEquals("Patient/PT00180", ids.get(0));
+		assertEquals("Patient/PT00189", ids.get(9));
+
+		// The page should be selected by its order range rather than an offset
+		String selectQuery = myCaptureQueriesListener.getSelectQueries().stream()
+			.map(t -> t.getSql(true, false))
+			.filter(t -> t.toUpperCase().contains("HFJ_SEARCH_RESULT"))
+			.findFirst()
+			.orElseThrow();
+		assertThat(selectQuery).containsIgnoringCase("SEARCH_ORDER>=").containsIgnoringCase("SEARCH_ORDER<");
+		assertThat(selectQuery).doesNotContainIgnoringCase("offset");
+	}
+
 	@Test
 	public void testFetchUnlimited() {
 		create200Patients();
@@ -6,10 +6,13 @@ import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.param.UriParam;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.DateType;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.SearchParameter;
 import org.junit.jupiter.api.AfterEach;
@@ -35,6 +38,7 @@ public class FhirResourceDaoR4SearchSqlTest extends BaseJpaR4Test {
 	@AfterEach
 	public void after() {
 		myStorageSettings.setTagStorageMode(JpaStorageSettings.DEFAULT_TAG_STORAGE_MODE);
+		myStorageSettings.setCostBasedPredicateOrderingEnabled(new JpaStorageSettings().isCostBasedPredicateOrderingEnabled());
 	}
 
 	/**
@@ -70,6 +74,62 @@ public class FhirResourceDaoR4SearchSqlTest extends BaseJpaR4Test {
 
 	}
 
+	/**
+	 * With cost based ordering, the selective identifier predicate should be joined
+	 * before the date range even though it appears last in the request
+	 */
+	@Test
+	public void testTwoRegularSearchParams_CostBasedPredicateOrdering() {
+		Patient p = new Patient();
+		p.addIdentifier().setSystem("http://foo").setValue("bar");
+		p.setBirthDateElement(new DateType("2021-01-01"));
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.add(Patient.SP_BIRTHDATE, new DateParam("gt2020"))
+			.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "bar"));
+
+		myCaptureQueriesListener.clear();
+		myPatientDao.search(map, mySrd);
+		String sql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().get(0).getSql(false, false);
+		assertThat(sql.indexOf("HFJ_SPIDX_DATE")).isLessThan(sql.indexOf("HFJ_SPIDX_TOKEN"));
+
+		myStorageSettings.setCostBasedPredicateOrderingEnabled(true);
+		myCaptureQueriesListener.clear();
+		IBundleProvider outcome = myPatientDao.search(map, mySrd);
+		sql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+			.map(t -> t.getSql(false, false))
+			.filter(t -> t.contains("HFJ_SPIDX_DATE"))
+			.findFirst()
+			.orElseThrow();
+		assertThat(sql.indexOf("HFJ_SPIDX_TOKEN")).isLessThan(sql.indexOf("HFJ_SPIDX_DATE"));
+		assertThat(toUnqualifiedVersionlessIds(outcome)).containsExactly(id);
+	}
+
+	/**
+	 * Planning must not issue a sampling query for every value of a large OR list
+	 */
+	@Test
+	public void testLargeOrList_CostBasedPredicateOrdering() {
+		TokenOrListParam identifiers = new TokenOrListParam();
+		for (int i = 0; i < 50; i++) {
+			identifiers.addOr(new TokenParam("http://foo", "value" + i));
+		}
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.add(Patient.SP_BIRTHDATE, new DateParam("gt2020"))
+			.add(Patient.SP_IDENTIFIER, identifiers);
+
+		myCaptureQueriesListener.clear();
+		myPatientDao.search(map, mySrd);
+		int queriesWithoutPlanning = myCaptureQueriesListener.countSelectQueries();
+
+		myStorageSettings.setCostBasedPredicateOrderingEnabled(true);
+		myMemoryCacheService.invalidateAllCaches();
+		myCaptureQueriesListener.clear();
+		myPatientDao.search(map, mySrd);
+		assertEquals(queriesWithoutPlanning, myCaptureQueriesListener.countSelectQueries());
+	}
+
 	@Test
 	public void testSearchByProfile_VersionedMode() {
 
@@ -31,6 +31,8 @@ import ca.uhn.fhir.jpa.model.util.JpaConstants;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.SqlQuery;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.param.DateAndListParam;
@@ -80,6 +82,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -127,6 +131,7 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 		JpaStorageSettings defaults = new JpaStorageSettings();
 		myStorageSettings.setMarkResourcesForReindexingUponSearchParameterChange(defaults.isMarkResourcesForReindexingUponSearchParameterChange());
 		myStorageSettings.setMatchUrlCacheEnabled(defaults.isMatchUrlCacheEnabled());
+		myStorageSettings.setParallelPartitionSearchThreadCount(defaults.getParallelPartitionSearchThreadCount());
 	}
 
 	@Test
@@ -1790,6 +1795,55 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 		assertThat(sql).as(sql).contains("PARTITION_ID IS NULL");
 	}
 
+	@Test
+	public void testSearch_SortByPid_ParallelPartitionSearch() {
+		myStorageSettings.setParallelPartitionSearchThreadCount(2);
+
+		List<IIdType> expected = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			expected.add(createPatient(withPartition(null), withActiveTrue()));
+			expected.add(createPatient(withPartition(1), withActiveTrue()));
+			createPatient(withPartition(1), withActiveFalse());
+			expected.add(createPatient(withPartition(2), withActiveTrue()));
+			createPatient(withPartition(3), withActiveTrue());
+		}
+		Collections.reverse(expected);
+
+		addReadPartitions(JpaConstants.DEFAULT_PARTITION_NAME, PARTITION_1, PARTITION_2);
+
+		myCaptureQueriesListener.clear();
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_ACTIVE, new TokenParam("true"));
+		map.setSort(new SortSpec(Constants.PARAM_PID, SortOrderEnum.DESC));
+		IBundleProvider results = myPatientDao.search(map, mySrd);
+		List<IIdType> ids = toUnqualifiedVersionlessIds(results);
+		assertThat(ids).containsExactlyElementsOf(expected);
+
+		// One query per partition, none of them using an IN clause
+		List<String> searchSql = myCaptureQueriesListener.getSelectQueries().stream()
+			.map(t -> t.getSql(true, false))
+			.filter(t -> t.contains("HFJ_SPIDX_TOKEN"))
+			.toList();
+		assertThat(searchSql).hasSize(3);
+		assertThat(searchSql).noneMatch(t -> t.contains("PARTITION_ID IN"));
+	}
+
+	@Test
+	public void testSearch_NoParams_ParallelPartitionSearch() {
+		myStorageSettings.setParallelPartitionSearchThreadCount(2);
+
+		IIdType patientIdNull = createPatient(withPartition(null), withActiveTrue());
+		IIdType patientId1 = createPatient(withPartition(1), withActiveTrue());
+		IIdType patientId2 = createPatient(withPartition(2), withActiveTrue());
+		createPatient(withPartition(3), withActiveTrue());
+
+		addReadPartitions(JpaConstants.DEFAULT_PARTITION_NAME, PARTITION_1, PARTITION_2);
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		IBundleProvider results = myPatientDao.search(map, mySrd);
+		List<IIdType> ids = toUnqualifiedVersionlessIds(results);
+		assertThat(ids).containsExactlyInAnyOrder(patientIdNull, patientId1, patientId2);
+	}
+
 	@Test
 	public void testSearch_DateParam_SearchAllPartitions() {
 		myPartitionSettings.setIncludePartitionInSearchHashes(false);
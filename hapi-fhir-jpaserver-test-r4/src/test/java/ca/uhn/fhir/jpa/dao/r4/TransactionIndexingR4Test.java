@@ -0,0 +1,157 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.test.util.LogbackTestExtension;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransactionIndexingR4Test extends BaseJpaR4SystemTest {
+
+	@RegisterExtension
+	private final LogbackTestExtension myLogbackTestExtension = new LogbackTestExtension(SearchParamExtractorService.class, Level.DEBUG);
+
+	private IAnonymousInterceptor myInterceptor;
+
+	@BeforeEach
+	public void beforeSetPoolSize() {
+		myStorageSettings.setTransactionIndexingPoolSize(4);
+	}
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setTransactionIndexingPoolSize(new JpaStorageSettings().getTransactionIndexingPoolSize());
+		if (myInterceptor != null) {
+			myInterceptorRegistry.unregisterInterceptor(myInterceptor);
+		}
+	}
+
+	private List<String> getFormattedLogMessages() {
+		return myLogbackTestExtension.getLogEvents().stream().map(ILoggingEvent::getFormattedMessage).toList();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	public void testTransactionWithPlaceholderReferences(int thePoolSize) {
+		myStorageSettings.setTransactionIndexingPoolSize(thePoolSize);
+
+		Bundle input = new Bundle();
+		input.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < 10; i++) {
+			Patient patient = new Patient();
+			patient.setId(IdType.newRandomUuid());
+			patient.addIdentifier().setSystem("http://patient").setValue("P" + i);
+			patient.addName().setFamily("Family" + i);
+			input.addEntry().setFullUrl(patient.getId()).setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+
+			Observation observation = new Observation();
+			observation.getCode().addCoding().setSystem("http://loinc.org").setCode("code" + i);
+			observation.setSubject(new Reference(patient.getId()));
+			input.addEntry().setResource(observation).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+		}
+
+		Bundle output = mySystemDao.transaction(mySrd, input);
+		assertThat(output.getEntry()).hasSize(20);
+
+		List<String> logMessages = getFormattedLogMessages();
+		if (thePoolSize > 1) {
+			assertThat(logMessages).contains("Prepared search indexes for 20 resources");
+		} else {
+			assertThat(logMessages).noneMatch(t -> t.startsWith("Prepared search indexes"));
+		}
+		assertThat(logMessages).noneMatch(t -> t.contains("extracting them again"));
+
+		for (int i = 0; i < 10; i++) {
+			String patientId = new IdType(output.getEntry().get(i * 2).getResponse().getLocation()).toUnqualifiedVersionless().getValue();
+			String observationId = new IdType(output.getEntry().get(i * 2 + 1).getResponse().getLocation()).toUnqualifiedVersionless().getValue();
+
+			assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://patient", "P" + i)), mySrd))).containsExactly(patientId);
+			assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("Family" + i).setExact(true)), mySrd))).containsExactly(patientId);
+			assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(SearchParameterMap.newSynchronous(Observation.SP_CODE, new TokenParam("http://loinc.org", "code" + i)), mySrd))).containsExactly(observationId);
+			assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(SearchParameterMap.newSynchronous(Observation.SP_SUBJECT, new ReferenceParam(patientId)), mySrd))).containsExactly(observationId);
+		}
+	}
+
+	@Test
+	public void testTransactionWithConditionalReference() {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://patient").setValue("P1");
+		IIdType patientId = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		Bundle input = new Bundle();
+		input.setType(Bundle.BundleType.TRANSACTION);
+		List<String> codes = List.of("A", "B", "C");
+		for (String code : codes) {
+			Observation observation = new Observation();
+			observation.getCode().addCoding().setSystem("http://loinc.org").setCode(code);
+			// Inline match URLs are resolved while the resource is being stored
+			observation.setSubject(new Reference("Patient?identifier=http://patient|P1"));
+			input.addEntry().setResource(observation).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+		}
+
+		mySystemDao.transaction(mySrd, input);
+		assertThat(getFormattedLogMessages()).anyMatch(t -> t.contains("extracting them again"));
+
+		assertThat(myObservationDao.search(SearchParameterMap.newSynchronous(Observation.SP_SUBJECT, new ReferenceParam(patientId.getValue())), mySrd).size()).isEqualTo(codes.size());
+	}
+
+	@Test
+	public void testTransactionWithResourceModifiedByInterceptor() {
+		Patient patient = new Patient();
+		patient.setId("Patient/A");
+		patient.addIdentifier().setSystem("http://patient").setValue("A");
+		myPatientDao.update(patient, mySrd);
+		patient = new Patient();
+		patient.setId("Patient/B");
+		patient.addIdentifier().setSystem("http://patient").setValue("B");
+		myPatientDao.update(patient, mySrd);
+
+		// Modifies the resources after their indexes have been prepared
+		myInterceptor = (thePointcut, theArgs) -> {
+			Patient updated = (Patient) theArgs.get(IBaseResource.class, 1);
+			updated.addIdentifier().setSystem("http://added").setValue(updated.getIdElement().getIdPart());
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_UPDATED, myInterceptor);
+
+		Bundle input = new Bundle();
+		input.setType(Bundle.BundleType.TRANSACTION);
+		for (String id : List.of("A", "B")) {
+			Patient updatedPatient = new Patient();
+			updatedPatient.setId("Patient/" + id);
+			updatedPatient.addIdentifier().setSystem("http://patient").setValue(id);
+			updatedPatient.setActive(true);
+			input.addEntry().setResource(updatedPatient).getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl("Patient/" + id);
+		}
+
+		mySystemDao.transaction(mySrd, input);
+		assertThat(getFormattedLogMessages()).anyMatch(t -> t.contains("extracting them again"));
+
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://added", "A")), mySrd))).containsExactly("Patient/A");
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://added", "B")), mySrd))).containsExactly("Patient/B");
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_ACTIVE, new TokenParam("true")), mySrd))).containsExactlyInAnyOrder("Patient/A", "Patient/B");
+	}
+
+}
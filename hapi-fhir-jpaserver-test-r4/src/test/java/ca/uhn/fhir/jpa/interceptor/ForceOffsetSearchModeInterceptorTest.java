@@ -2,6 +2,7 @@ package ca.uhn.fhir.jpa.interceptor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.rest.api.Constants;
@@ -11,6 +12,13 @@ import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -36,6 +44,71 @@ public class ForceOffsetSearchModeInterceptorTest extends BaseResourceProviderR4
 
 		myInterceptorRegistry.unregisterInterceptor(mySvc);
 		myServer.setDefaultPageSize(myInitialDefaultPageSize);
+		myStorageSettings.setOffsetSearchKeysetPagingEnabled(new JpaStorageSettings().isOffsetSearchKeysetPagingEnabled());
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		",                 A0 A1 A2 A3 A4 A5 A6 A7 A8 A9",
+		"_pid,             A0 A1 A2 A3 A4 A5 A6 A7 A8 A9",
+		"-_lastUpdated,    A9 A8 A7 A6 A5 A4 A3 A2 A1 A0"
+	})
+	public void testSearch_KeysetPaging(String theSort, String theExpectedIds) {
+		myStorageSettings.setOffsetSearchKeysetPagingEnabled(true);
+		myServer.setDefaultPageSize(3);
+
+		for (int i = 0; i < 10; i++) {
+			createPatient(withId("A" + i), withActiveTrue());
+		}
+
+		String url = "Patient?active=true";
+		if (theSort != null) {
+			url += "&_sort=" + theSort;
+		}
+
+		// First page
+		Bundle outcome = myClient.search().byUrl(url).returnBundle(Bundle.class).execute();
+		List<String> ids = new ArrayList<>(toUnqualifiedVersionlessIdValues(outcome));
+		assertThat(outcome.getLink("next").getUrl()).contains("_offset=3");
+
+		// Following pages seek past the end of the previous page instead of using an offset
+		while (outcome.getLink("next") != null) {
+			myCaptureQueriesListener.clear();
+			outcome = myClient.loadPage().next(outcome).execute();
+			ids.addAll(toUnqualifiedVersionlessIdValues(outcome));
+
+			myCaptureQueriesListener.logSelectQueries();
+			String sql = myCaptureQueriesListener.getSelectQueries().get(0).getSql(true, false);
+			assertThat(sql).containsPattern("RES_ID [<>] '");
+			assertThat(sql).doesNotContain("offset");
+		}
+
+		List<String> expectedIds = Arrays.stream(theExpectedIds.split(" "))
+			.map(t -> "Patient/" + t)
+			.collect(Collectors.toList());
+		assertThat(ids).containsExactlyElementsOf(expectedIds);
+	}
+
+	@Test
+	public void testSearch_KeysetPaging_PageRequestedOutOfSequence() {
+		myStorageSettings.setOffsetSearchKeysetPagingEnabled(true);
+
+		for (int i = 0; i < 10; i++) {
+			createPatient(withId("A" + i), withActiveTrue());
+		}
+
+		// Nothing is known about where the previous page ended, so the offset is used
+		myCaptureQueriesListener.clear();
+		Bundle outcome = myClient
+			.search()
+			.forResource("Patient")
+			.where(Patient.ACTIVE.exactly().code("true"))
+			.offset(6)
+			.count(3)
+			.returnBundle(Bundle.class)
+			.execute();
+		assertThat(toUnqualifiedVersionlessIdValues(outcome)).containsExactly("Patient/A6", "Patient/A7", "Patient/A8");
+		assertThat(myCaptureQueriesListener.getSelectQueries().get(0).getSql(true, false)).contains("offset '6'");
 	}
 
 	@Test
@@ -13,6 +13,7 @@ import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.dao.ReindexParameters;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.batch.models.Batch2JobStartResponse;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboStringUnique;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboTokenNonUnique;
@@ -32,6 +33,7 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -41,6 +43,7 @@ import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -69,6 +72,7 @@ public class ReindexJobTest extends BaseJpaR4Test {
 		myInterceptorRegistry.unregisterAllAnonymousInterceptors();
 		myStorageSettings.setStoreMetaSourceInformation(new JpaStorageSettings().getStoreMetaSourceInformation());
 		myStorageSettings.setPreserveRequestIdInResourceBody(new JpaStorageSettings().isPreserveRequestIdInResourceBody());
+		myStorageSettings.setResourceEncoding(new JpaStorageSettings().getResourceEncoding());
 	}
 
 	@Test
@@ -120,6 +124,7 @@ public class ReindexJobTest extends BaseJpaR4Test {
 			} else {
 				assertNotNull(history.getResourceTextVc());
 				assertNull(history.getResource());
+				assertNull(history.getResourceBinary());
 			}
 		});
 		Patient patient = myPatientDao.read(patientId, mySrd);
@@ -173,6 +178,7 @@ public class ReindexJobTest extends BaseJpaR4Test {
 			for (ResourceHistoryTable history : myResourceHistoryTableDao.findAll()) {
 				assertNotNull(history.getResourceTextVc());
 				assertNull(history.getResource());
+				assertNull(history.getResourceBinary());
 			}
 		});
 		Patient patient = myPatientDao.read(patientId, mySrd);
@@ -180,6 +186,79 @@ public class ReindexJobTest extends BaseJpaR4Test {
 
 	}
 
+	@ParameterizedTest
+	@EnumSource(value = ResourceEncodingEnum.class, names = {"ZSTD", "LZ4"})
+	public void testOptimizeStorage_AllVersions_BinaryEncoding(ResourceEncodingEnum theEncoding) {
+		// Setup
+		IIdType patientId = createPatient(withActiveTrue());
+		Patient p = new Patient();
+		p.setId(patientId.toUnqualifiedVersionless());
+		p.setActive(false);
+		myPatientDao.update(p, mySrd);
+
+		runInTransaction(()->{
+			for (ResourceHistoryTable history : myResourceHistoryTableDao.findAll()) {
+				assertEquals(ResourceEncodingEnum.JSON, history.getEncoding());
+				assertNotNull(history.getResourceTextVc());
+			}
+		});
+
+		// execute - move existing rows to the binary encoding
+		myStorageSettings.setResourceEncoding(theEncoding);
+		runOptimizeStorageAllVersions();
+
+		// validate
+		runInTransaction(()->{
+			assertEquals(2, myResourceHistoryTableDao.count());
+			for (ResourceHistoryTable history : myResourceHistoryTableDao.findAll()) {
+				assertEquals(theEncoding, history.getEncoding());
+				assertNull(history.getResourceTextVc());
+				assertNull(history.getResource());
+				assertNotNull(history.getResourceBinary());
+			}
+		});
+		assertFalse(myPatientDao.read(patientId.toVersionless(), mySrd).getActive());
+		assertTrue(myPatientDao.read(patientId.withVersion("1"), mySrd).getActive());
+
+		// New versions are written using the binary encoding too
+		p.setActive(true);
+		myPatientDao.update(p, mySrd);
+		runInTransaction(()->{
+			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(patientId.getIdPartAsLong(), 3);
+			assertEquals(theEncoding, history.getEncoding());
+			assertNull(history.getResourceTextVc());
+		});
+		assertTrue(myPatientDao.read(patientId.toVersionless(), mySrd).getActive());
+
+		// execute - move back to inline text
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		runOptimizeStorageAllVersions();
+
+		// validate
+		runInTransaction(()->{
+			assertEquals(3, myResourceHistoryTableDao.count());
+			for (ResourceHistoryTable history : myResourceHistoryTableDao.findAll()) {
+				assertEquals(ResourceEncodingEnum.JSON, history.getEncoding());
+				assertNotNull(history.getResourceTextVc());
+				assertNull(history.getResource());
+				assertNull(history.getResourceBinary());
+			}
+		});
+		assertFalse(myPatientDao.read(patientId.withVersion("2"), mySrd).getActive());
+	}
+
+	private void runOptimizeStorageAllVersions() {
+		JobInstanceStartRequest startRequest = new JobInstanceStartRequest();
+		startRequest.setJobDefinitionId(ReindexAppCtx.JOB_REINDEX);
+		startRequest.setParameters(
+			new ReindexJobParameters()
+				.setOptimizeStorage(ReindexParameters.OptimizeStorageModeEnum.ALL_VERSIONS)
+				.setReindexSearchParameters(ReindexParameters.ReindexSearchParametersEnum.NONE)
+		);
+		Batch2JobStartResponse startResponse = myJobCoordinator.startInstance(mySrd, startRequest);
+		myBatch2JobHelper.awaitJobCompletion(startResponse);
+	}
+
 	@Test
 	public void testOptimizeStorage_AllVersions_CopyProvenanceEntityData() {
 		// Setup
@@ -0,0 +1,141 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class InMemorySearchResultCacheSvcImplR4Test extends BaseJpaR4Test {
+
+	private InMemorySearchResultCacheSvcImpl mySvc;
+
+	@BeforeEach
+	public void beforeCreateSvc() {
+		mySvc = new InMemorySearchResultCacheSvcImpl(10, true);
+		myAppCtx.getAutowireCapableBeanFactory().autowireBean(mySvc);
+	}
+
+	@Test
+	public void testEvictedResultsAreSpilledToDatabase() {
+		Search search1 = createSearch();
+		Search search2 = createSearch();
+
+		mySvc.storeResults(search1, Collections.emptyList(), pids(0, 8), mySrd, null);
+		assertEquals(0, countResultsInDatabase(search1));
+		assertEquals(pids(2, 5), mySvc.fetchResultPids(search1, 2, 5, mySrd, null));
+
+		// Exceeds the limit, so the least recently used search is written to the database
+		mySvc.storeResults(search2, Collections.emptyList(), pids(100, 108), mySrd, null);
+		assertEquals(8, countResultsInDatabase(search1));
+		assertEquals(0, countResultsInDatabase(search2));
+
+		// Evicted results are still available, and further results go to the database
+		mySvc.storeResults(search1, pids(0, 8), pids(8, 10), mySrd, null);
+		assertEquals(10, countResultsInDatabase(search1));
+		assertEquals(pids(0, 10), mySvc.fetchResultPids(search1, 0, 10, mySrd, null));
+		assertEquals(10, mySvc.fetchAllResultPids(search1, mySrd, null).size());
+		assertEquals(pids(100, 108), mySvc.fetchResultPids(search2, 0, 10, mySrd, null));
+	}
+
+	@Test
+	public void testExpiredAndDeletedSearchesAreNotSpilled() {
+		Search expired = createSearch(DateUtils.addDays(new Date(), -2));
+		Search deleted = createSearch();
+		runInTransaction(() -> mySearchEntityDao.updateDeleted(Set.of(deleted.getId()), true));
+
+		mySvc.storeResults(expired, Collections.emptyList(), pids(0, 4), mySrd, null);
+		mySvc.storeResults(deleted, Collections.emptyList(), pids(4, 8), mySrd, null);
+
+		// Exceeds the limit, so both are evicted, but neither can be fetched again
+		mySvc.storeResults(createSearch(), Collections.emptyList(), pids(100, 108), mySrd, null);
+		assertEquals(0, countResultsInDatabase(expired));
+		assertEquals(0, countResultsInDatabase(deleted));
+		assertNull(mySvc.fetchResultPids(expired, 0, 10, mySrd, null));
+		assertNull(mySvc.fetchResultPids(deleted, 0, 10, mySrd, null));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testEvictedEmptySearchCanStillBePaged(boolean theSpillToDatabase) {
+		mySvc = new InMemorySearchResultCacheSvcImpl(10, theSpillToDatabase);
+		myAppCtx.getAutowireCapableBeanFactory().autowireBean(mySvc);
+
+		Search empty = createSearch();
+		mySvc.storeResults(empty, Collections.emptyList(), Collections.emptyList(), mySrd, null);
+
+		// Exceeds the limit, so the empty search is evicted along with the other one
+		mySvc.storeResults(createSearch(), Collections.emptyList(), pids(0, 8), mySrd, null);
+		mySvc.storeResults(createSearch(), Collections.emptyList(), pids(100, 108), mySrd, null);
+		assertEquals(8, mySvc.getCachedPidCount());
+
+		// The search is known to have no results, rather than reported as gone
+		assertEquals(List.of(), mySvc.fetchResultPids(empty, 0, 10, mySrd, null));
+		assertEquals(List.of(), mySvc.fetchResultPids(empty, 10, 20, mySrd, null));
+		assertEquals(List.of(), mySvc.fetchAllResultPids(empty, mySrd, null));
+	}
+
+	@Test
+	public void testEvictedResultsWithoutSpillingAreReadFromDatabase() {
+		mySvc = new InMemorySearchResultCacheSvcImpl(10, false);
+		myAppCtx.getAutowireCapableBeanFactory().autowireBean(mySvc);
+
+		// Results stored before the in-memory cache was enabled
+		Search search = createSearch();
+		DatabaseSearchResultCacheSvcImpl databaseSvc = new DatabaseSearchResultCacheSvcImpl();
+		myAppCtx.getAutowireCapableBeanFactory().autowireBean(databaseSvc);
+		runInTransaction(() -> databaseSvc.storeResults(search, Collections.emptyList(), pids(0, 5), mySrd, null));
+
+		assertEquals(pids(0, 5), mySvc.fetchResultPids(search, 0, 10, mySrd, null));
+		assertEquals(5, mySvc.fetchAllResultPids(search, mySrd, null).size());
+	}
+
+	@Test
+	public void testSearchNotInMemoryOrDatabase() {
+		Search search = createSearch();
+
+		assertNull(mySvc.fetchResultPids(search, 0, 10, mySrd, null));
+		assertNull(mySvc.fetchAllResultPids(search, mySrd, null));
+	}
+
+	private int countResultsInDatabase(Search theSearch) {
+		return runInTransaction(() -> mySearchResultDao.countForSearch(theSearch.getId()));
+	}
+
+	private Search createSearch() {
+		return createSearch(new Date());
+	}
+
+	private Search createSearch(Date theCreated) {
+		return runInTransaction(() -> {
+			Search search = new Search();
+			search.setStatus(SearchStatusEnum.FINISHED);
+			search.setUuid(UUID.randomUUID().toString());
+			search.setCreated(theCreated);
+			search.setSearchType(SearchTypeEnum.SEARCH);
+			search.setResourceType("Patient");
+			return mySearchEntityDao.save(search);
+		});
+	}
+
+	private static List<JpaPid> pids(long theFrom, long theTo) {
+		return LongStream.range(theFrom, theTo).mapToObj(JpaPid::fromId).collect(Collectors.toCollection(ArrayList::new));
+	}
+}
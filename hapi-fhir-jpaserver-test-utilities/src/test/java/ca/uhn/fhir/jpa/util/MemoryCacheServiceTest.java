@@ -1,17 +1,23 @@
 package ca.uhn.fhir.jpa.util;
 
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.TagDefinition;
 import ca.uhn.fhir.jpa.model.entity.TagTypeEnum;
 import ca.uhn.fhir.sl.cache.Cache;
 import ca.uhn.fhir.sl.cache.CacheFactory;
+import ca.uhn.fhir.util.JsonUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -64,6 +70,94 @@ class MemoryCacheServiceTest {
 		assertEquals(tagDef, retVal);
 	}
 
+	@Test
+	public void invalidateAfterCommit_NoTransaction_NotifiesImmediately() {
+		List<MemoryCacheInvalidation> invalidations = new ArrayList<>();
+		mySvc.registerInvalidationListener(invalidations::add);
+		mySvc.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 123L, 2L);
+
+		mySvc.invalidateAfterCommit(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 123L);
+
+		assertNull(mySvc.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 123L));
+		assertThat(invalidations).hasSize(1);
+		assertThat(invalidations.get(0).getKeys().get(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION)).containsExactly("123");
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void invalidateAfterCommit_Transaction_NotifiesOnceOnCommit(boolean theCommit) {
+		List<MemoryCacheInvalidation> invalidations = new ArrayList<>();
+		mySvc.registerInvalidationListener(invalidations::add);
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			mySvc.invalidateAfterCommit(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L);
+			mySvc.invalidateAfterCommit(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 2L);
+			mySvc.invalidateMatchUrlsForTargetAfterCommit(3L);
+			assertThat(invalidations).isEmpty();
+
+			// A reader re-populates the cache before the transaction completes
+			mySvc.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L, 1L);
+
+			int status = theCommit ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK;
+			List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+			assertThat(synchronizations).hasSize(1);
+			synchronizations.forEach(t -> t.afterCompletion(status));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertNull(mySvc.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L));
+		if (theCommit) {
+			assertThat(invalidations).hasSize(1);
+			MemoryCacheInvalidation invalidation = invalidations.get(0);
+			assertThat(invalidation.getKeys().get(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION)).containsExactly("1", "2");
+			assertThat(invalidation.getMatchUrlTargets()).containsExactly(3L);
+		} else {
+			assertThat(invalidations).isEmpty();
+		}
+	}
+
+	@Test
+	public void applyInvalidation_MatchUrlTarget() {
+		mySvc.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=a", JpaPid.fromId(1L));
+		mySvc.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=b", JpaPid.fromId(1L));
+		mySvc.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=c", JpaPid.fromId(2L));
+		// Re-resolved to another resource, so should survive the invalidation of PID 1
+		mySvc.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=b", JpaPid.fromId(3L));
+
+		mySvc.applyInvalidation(new MemoryCacheInvalidation().addMatchUrlTarget(1L));
+
+		assertNull(mySvc.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=a"));
+		assertEquals(JpaPid.fromId(3L), mySvc.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=b"));
+		assertEquals(JpaPid.fromId(2L), mySvc.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=c"));
+	}
+
+	@Test
+	public void applyInvalidation_SerializedRoundTrip() {
+		mySvc.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L, 1L);
+		mySvc.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 2L, 1L);
+		mySvc.put(MemoryCacheService.CacheEnum.FHIRPATH_EXPRESSION, "Patient.name", "foo");
+
+		MemoryCacheService.TagDefinitionCacheKey tagKey = new MemoryCacheService.TagDefinitionCacheKey(
+			TagTypeEnum.TAG, "http://example.com", "t", null, null);
+		MemoryCacheInvalidation invalidation = new MemoryCacheInvalidation()
+			.addKey(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L)
+			.addKey(MemoryCacheService.CacheEnum.TAG_DEFINITION, tagKey)
+			.addAllKeys(MemoryCacheService.CacheEnum.FHIRPATH_EXPRESSION);
+		String json = JsonUtil.serialize(invalidation);
+		ourLog.info("Invalidation: {}", json);
+
+		MemoryCacheInvalidation deserialized = JsonUtil.deserialize(json, MemoryCacheInvalidation.class);
+		assertThat(deserialized.getAllKeys()).containsExactlyInAnyOrder(
+			MemoryCacheService.CacheEnum.TAG_DEFINITION, MemoryCacheService.CacheEnum.FHIRPATH_EXPRESSION);
+		mySvc.applyInvalidation(deserialized);
+
+		assertNull(mySvc.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L));
+		assertEquals(1L, (Long) mySvc.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 2L));
+		assertNull(mySvc.getIfPresent(MemoryCacheService.CacheEnum.FHIRPATH_EXPRESSION, "Patient.name"));
+	}
+
 	@Nested
 	public static class CaffeineAbuseTest {
 
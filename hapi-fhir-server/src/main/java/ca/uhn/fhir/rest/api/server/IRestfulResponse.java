@@ -84,6 +84,30 @@ public interface IRestfulResponse {
 	OutputStream getResponseOutputStream(int theStatusCode, String theContentType, @Nullable Integer theContentLength)
 			throws IOException;
 
+	/**
+	 * Initiate a new textual response whose body will be written as bytes which are already encoded
+	 * in the given charset, e.g. by {@link ca.uhn.fhir.parser.IParser#encodeResourceToOutputStream}.
+	 * This avoids encoding the body to characters and then back to bytes. The OutputStream returned
+	 * by this method must be finalized by calling {@link #commitResponse(Closeable)} later.
+	 * <p>
+	 * Implementations which can't write bytes directly return {@literal null}, in which case the
+	 * caller should use {@link #getResponseWriter(int, String, String, boolean)} instead. This is
+	 * the default behaviour.
+	 * </p>
+	 *
+	 * @param theStatusCode  The HTTP status code.
+	 * @param theContentType The HTTP response content type.
+	 * @param theCharset     The HTTP response charset, which the bytes written must be encoded in.
+	 * @param theRespondGzip Should the response be GZip encoded?
+	 * @return Returns an {@link OutputStream} that can accept the response body, or {@literal null}.
+	 * @since 7.6.0
+	 */
+	@Nullable
+	default OutputStream getResponseTextOutputStream(
+			int theStatusCode, String theContentType, String theCharset, boolean theRespondGzip) throws IOException {
+		return null;
+	}
+
 	/**
 	 * Finalizes the response streaming using the writer that was returned by calling either
 	 * {@link #getResponseWriter(int, String, String, boolean)} or
@@ -1020,11 +1020,27 @@ public class RestfulServerUtils {
 		}
 		String charset = Constants.CHARSET_NAME_UTF8;
 
+		boolean hasWriterHooks = theServer.getInterceptorService() != null
+				&& theServer.getInterceptorService().hasHooks(Pointcut.SERVER_OUTGOING_WRITER_CREATED);
+
+		/*
+		 * If nobody needs to see the Writer, encode the resource straight to UTF-8 bytes
+		 */
+		if (theResource != null && !encodingDomainResourceAsText && !hasWriterHooks) {
+			OutputStream outputStream =
+					response.getResponseTextOutputStream(theStatusCode, contentType, charset, respondGzip);
+			if (outputStream != null) {
+				FhirVersionEnum forVersion = theResource.getStructureFhirVersionEnum();
+				IParser parser = getNewParser(theServer.getFhirContext(), forVersion, theRequestDetails);
+				parser.encodeResourceToOutputStream(theResource, outputStream);
+				return response.commitResponse(outputStream);
+			}
+		}
+
 		Writer writer = response.getResponseWriter(theStatusCode, contentType, charset, respondGzip);
 
 		// Interceptor call: SERVER_OUTGOING_WRITER_CREATED
-		if (theServer.getInterceptorService() != null
-				&& theServer.getInterceptorService().hasHooks(Pointcut.SERVER_OUTGOING_WRITER_CREATED)) {
+		if (hasWriterHooks) {
 			HookParams params = new HookParams()
 					.add(Writer.class, writer)
 					.add(RequestDetails.class, theRequestDetails)
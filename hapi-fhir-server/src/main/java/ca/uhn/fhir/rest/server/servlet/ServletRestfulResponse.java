@@ -73,6 +73,7 @@ public class ServletRestfulResponse extends BaseRestfulResponse<ServletRequestDe
 	@Override
 	public Writer getResponseWriter(int theStatusCode, String theContentType, String theCharset, boolean theRespondGzip)
 			throws IOException {
+		// A second writer is allowed so that exception handling can replace a partially written response
 		Validate.isTrue(myOutputStream == null, "getResponseWriter() called after getResponseOutputStream()");
 
 		addHeaders();
@@ -91,6 +92,28 @@ public class ServletRestfulResponse extends BaseRestfulResponse<ServletRequestDe
 		return myWriter;
 	}
 
+	@Nonnull
+	@Override
+	public OutputStream getResponseTextOutputStream(
+			int theStatusCode, String theContentType, String theCharset, boolean theRespondGzip) throws IOException {
+		Validate.isTrue(myWriter == null, "getResponseTextOutputStream() called after getResponseWriter()");
+		Validate.isTrue(myOutputStream == null, "getResponseTextOutputStream() called multiple times");
+
+		addHeaders();
+		HttpServletResponse httpResponse = getRequestDetails().getServletResponse();
+		httpResponse.setCharacterEncoding(theCharset);
+		httpResponse.setStatus(theStatusCode);
+		httpResponse.setContentType(theContentType);
+		ServletOutputStream outputStream = httpResponse.getOutputStream();
+		if (theRespondGzip) {
+			httpResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+			myOutputStream = new GZIPOutputStream(outputStream);
+			return myOutputStream;
+		}
+		myOutputStream = outputStream;
+		return myOutputStream;
+	}
+
 	private void addHeaders() {
 		HttpServletResponse httpResponse = getRequestDetails().getServletResponse();
 		getRequestDetails().getServer().addHeadersToResponse(httpResponse);
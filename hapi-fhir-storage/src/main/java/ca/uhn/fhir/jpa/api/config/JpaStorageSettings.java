@@ -43,6 +43,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -99,6 +100,24 @@ public class JpaStorageSettings extends StorageSettings {
 	public static final int DEFAULT_BUNDLE_BATCH_QUEUE_CAPACITY = 200;
 
 	public static final int DEFAULT_BULK_EXPORT_FILE_MAXIMUM_CAPACITY = 1_000;
+	/**
+	 * Default value for {@link #setGroupCommitMaxBatchSize(int)}
+	 *
+	 * @since 7.6.0
+	 */
+	public static final int DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE = 100;
+	/**
+	 * Default value for {@link #setGroupCommitMaxWaitMillis(long)}
+	 *
+	 * @since 7.6.0
+	 */
+	public static final long DEFAULT_GROUP_COMMIT_MAX_WAIT_MILLIS = 5;
+	/**
+	 * Default value for {@link #setDeferredIndexingConsistencyTimeoutMillis(long)}
+	 *
+	 * @since 7.6.0
+	 */
+	public static final long DEFAULT_DEFERRED_INDEXING_CONSISTENCY_TIMEOUT_MILLIS = 30 * DateUtils.MILLIS_PER_SECOND;
 	/**
 	 * Default value for {@link #setMaximumSearchResultCountInTransaction(Integer)}
 	 *
@@ -336,6 +355,11 @@ public class JpaStorageSettings extends StorageSettings {
 	 */
 	private boolean myResourceHistoryDbEnabled = true;
 
+	/**
+	 * @since 7.6.0
+	 */
+	private Map<String, ResourceHistoryPolicyEnum> myResourceHistoryPolicies = Collections.emptyMap();
+
 	/**
 	 * @since 7.0.0
 	 */
@@ -368,6 +392,86 @@ public class JpaStorageSettings extends StorageSettings {
 	 */
 	private boolean myWriteToLegacyLobColumns = false;
 
+	/**
+	 * @since 7.6.0
+	 */
+	private int myParallelPartitionSearchThreadCount = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myParallelPartitionSearchGroupSize = 1;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myCostBasedPredicateOrderingEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myOffsetSearchKeysetPagingEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myInMemorySearchResultCacheMaxPids = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myInMemorySearchResultCacheSpillToDatabase = true;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myParallelIncludeLoadingThreadCount = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myResourceBodyCacheMaxEntries = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myMemoryCacheInvalidationBroadcastEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myMemoryCacheInvalidationPollingEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myIndexFingerprintEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myGroupCommitEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myGroupCommitMaxBatchSize = DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private long myGroupCommitMaxWaitMillis = DEFAULT_GROUP_COMMIT_MAX_WAIT_MILLIS;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private Set<String> myDeferredIndexingResourceTypes = Collections.emptySet();
+
+	/**
+	 * @since 7.6.0
+	 */
+	private long myDeferredIndexingConsistencyTimeoutMillis = DEFAULT_DEFERRED_INDEXING_CONSISTENCY_TIMEOUT_MILLIS;
+
 	/**
 	 * Constructor
 	 */
@@ -1000,10 +1104,28 @@ public class JpaStorageSettings extends StorageSettings {
 		myExpungeThreadCount = Math.max(myExpungeThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * The encoding used to store resource bodies. On databases other than Oracle, {@link ResourceEncodingEnum#JSON}
+	 * and {@link ResourceEncodingEnum#JSONC} bodies are stored as inline text. {@link ResourceEncodingEnum#ZSTD} and
+	 * {@link ResourceEncodingEnum#LZ4} bodies are always stored as compressed binary. Existing resources can be
+	 * re-encoded using the <code>$reindex</code> operation with <code>optimizeStorage</code> enabled.
+	 * <p>
+	 * Default is {@link ResourceEncodingEnum#JSONC}
+	 * </p>
+	 */
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * The encoding used to store resource bodies. On databases other than Oracle, {@link ResourceEncodingEnum#JSON}
+	 * and {@link ResourceEncodingEnum#JSONC} bodies are stored as inline text. {@link ResourceEncodingEnum#ZSTD} and
+	 * {@link ResourceEncodingEnum#LZ4} bodies are always stored as compressed binary. Existing resources can be
+	 * re-encoded using the <code>$reindex</code> operation with <code>optimizeStorage</code> enabled.
+	 * <p>
+	 * Default is {@link ResourceEncodingEnum#JSONC}
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
 		myResourceEncoding = theResourceEncoding;
 	}
@@ -2415,6 +2537,52 @@ public class JpaStorageSettings extends StorageSettings {
 		myResourceHistoryDbEnabled = theResourceHistoryEnabled;
 	}
 
+	/**
+	 * Sets the way resource history is stored for specific resource types, keyed by resource
+	 * type. Resource types which are not in this map use {@link ResourceHistoryPolicyEnum#FULL}
+	 * if {@link #isResourceDbHistoryEnabled()} is enabled, and
+	 * {@link ResourceHistoryPolicyEnum#CURRENT_VERSION_ONLY} if it isn't. This can be used for
+	 * instance to store types which are never updated, such as Observations streamed from
+	 * devices, as {@link ResourceHistoryPolicyEnum#APPEND_ONLY}. Default is an empty map.
+	 *
+	 * @since 7.6.0
+	 */
+	public Map<String, ResourceHistoryPolicyEnum> getResourceHistoryPolicies() {
+		return myResourceHistoryPolicies;
+	}
+
+	/**
+	 * Sets the way resource history is stored for specific resource types, keyed by resource
+	 * type. Resource types which are not in this map use {@link ResourceHistoryPolicyEnum#FULL}
+	 * if {@link #isResourceDbHistoryEnabled()} is enabled, and
+	 * {@link ResourceHistoryPolicyEnum#CURRENT_VERSION_ONLY} if it isn't. This can be used for
+	 * instance to store types which are never updated, such as Observations streamed from
+	 * devices, as {@link ResourceHistoryPolicyEnum#APPEND_ONLY}. Default is an empty map.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setResourceHistoryPolicies(Map<String, ResourceHistoryPolicyEnum> theResourceHistoryPolicies) {
+		Validate.notNull(theResourceHistoryPolicies, "theResourceHistoryPolicies must not be null");
+		myResourceHistoryPolicies = Map.copyOf(theResourceHistoryPolicies);
+	}
+
+	/**
+	 * Returns the way resource history is stored for the given resource type
+	 *
+	 * @see #setResourceHistoryPolicies(Map)
+	 * @since 7.6.0
+	 */
+	@Nonnull
+	public ResourceHistoryPolicyEnum getResourceHistoryPolicy(String theResourceType) {
+		ResourceHistoryPolicyEnum retVal = myResourceHistoryPolicies.get(theResourceType);
+		if (retVal == null) {
+			retVal = isResourceDbHistoryEnabled()
+					? ResourceHistoryPolicyEnum.FULL
+					: ResourceHistoryPolicyEnum.CURRENT_VERSION_ONLY;
+		}
+		return retVal;
+	}
+
 	/**
 	 * This setting controls whether MdmLink and other non-resource DB history is enabled.
 	 * <p/>
@@ -2517,6 +2685,540 @@ public class JpaStorageSettings extends StorageSettings {
 		myRestDeleteByUrlResourceIdThreshold = theRestDeleteByUrlResourceIdThreshold;
 	}
 
+	/**
+	 * If set to a value greater than zero (default is <code>0</code>), searches whose request partition
+	 * spans more than one group of partitions (see {@link #setParallelPartitionSearchGroupSize(int)}) are
+	 * fanned out into one SQL query per group instead of a single query with a large
+	 * <code>PARTITION_ID IN (...)</code> predicate. The queries are executed concurrently using up to this
+	 * many threads, and their results are merged back into a single result stream.
+	 * <p>
+	 * Each thread uses a database connection of its own, in addition to the one used by the search. A query
+	 * which no thread has started by the time the search needs its results is run by the search itself, so
+	 * a busy thread or connection pool slows the search down rather than blocking it.
+	 * </p>
+	 * <p>
+	 * Only searches which are unsorted or sorted by <code>_pid</code> can be fanned out, since the
+	 * per-partition results are merged using the resource PID. Other searches always use a single query.
+	 * </p>
+	 * <p>
+	 * The thread pool is created on startup, so changing this value afterward only enables or
+	 * disables the fan-out.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getParallelPartitionSearchThreadCount() {
+		return myParallelPartitionSearchThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than zero (default is <code>0</code>), searches whose request partition
+	 * spans more than one group of partitions (see {@link #setParallelPartitionSearchGroupSize(int)}) are
+	 * fanned out into one SQL query per group instead of a single query with a large
+	 * <code>PARTITION_ID IN (...)</code> predicate. The queries are executed concurrently using up to this
+	 * many threads, and their results are merged back into a single result stream.
+	 * <p>
+	 * Only searches which are unsorted or sorted by <code>_pid</code> can be fanned out, since the
+	 * per-partition results are merged using the resource PID. Other searches always use a single query.
+	 * </p>
+	 * <p>
+	 * The thread pool is created on startup, so changing this value afterward only enables or
+	 * disables the fan-out.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setParallelPartitionSearchThreadCount(int theParallelPartitionSearchThreadCount) {
+		Validate.isTrue(
+				theParallelPartitionSearchThreadCount >= 0,
+				"theParallelPartitionSearchThreadCount must not be negative");
+		myParallelPartitionSearchThreadCount = theParallelPartitionSearchThreadCount;
+	}
+
+	/**
+	 * When searches are fanned out across partitions (see {@link #setParallelPartitionSearchThreadCount(int)}),
+	 * this is the number of partitions covered by each individual SQL query. Default is <code>1</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getParallelPartitionSearchGroupSize() {
+		return myParallelPartitionSearchGroupSize;
+	}
+
+	/**
+	 * When searches are fanned out across partitions (see {@link #setParallelPartitionSearchThreadCount(int)}),
+	 * this is the number of partitions covered by each individual SQL query. Default is <code>1</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setParallelPartitionSearchGroupSize(int theParallelPartitionSearchGroupSize) {
+		Validate.isTrue(
+				theParallelPartitionSearchGroupSize > 0, "theParallelPartitionSearchGroupSize must be positive");
+		myParallelPartitionSearchGroupSize = theParallelPartitionSearchGroupSize;
+	}
+
+	/**
+	 * If enabled, the parameters of a search are turned into SQL predicates in order of their
+	 * estimated selectivity (most selective first) instead of the order in which they appear
+	 * in the request. Token parameters are costed by sampling the number of index rows for
+	 * the requested code, other parameter types use coarse estimates based on the kind of
+	 * match they perform. Default is <code>false</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isCostBasedPredicateOrderingEnabled() {
+		return myCostBasedPredicateOrderingEnabled;
+	}
+
+	/**
+	 * If enabled, the parameters of a search are turned into SQL predicates in order of their
+	 * estimated selectivity (most selective first) instead of the order in which they appear
+	 * in the request. Token parameters are costed by sampling the number of index rows for
+	 * the requested code, other parameter types use coarse estimates based on the kind of
+	 * match they perform. Default is <code>false</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setCostBasedPredicateOrderingEnabled(boolean theCostBasedPredicateOrderingEnabled) {
+		myCostBasedPredicateOrderingEnabled = theCostBasedPredicateOrderingEnabled;
+	}
+
+	/**
+	 * If enabled, offset searches (searches using <code>_offset</code>, such as the ones produced by
+	 * <code>ForceOffsetSearchModeInterceptor</code>) which are unsorted, or sorted by
+	 * <code>_lastUpdated</code> or <code>_pid</code>, are ordered with the resource PID as a
+	 * tie-breaker, and the position where each page ended is remembered for a short time. When the
+	 * following page is requested, the search seeks directly past that position instead of
+	 * making the database skip over all of the preceding rows, so deep pages are as fast as the first
+	 * one. Pages requested out of sequence, or after the remembered position has expired, fall back
+	 * to regular offset paging. Default is <code>false</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isOffsetSearchKeysetPagingEnabled() {
+		return myOffsetSearchKeysetPagingEnabled;
+	}
+
+	/**
+	 * If enabled, offset searches (searches using <code>_offset</code>, such as the ones produced by
+	 * <code>ForceOffsetSearchModeInterceptor</code>) which are unsorted, or sorted by
+	 * <code>_lastUpdated</code> or <code>_pid</code>, are ordered with the resource PID as a
+	 * tie-breaker, and the position where each page ended is remembered for a short time. When the
+	 * following page is requested, the search seeks directly past that position instead of
+	 * making the database skip over all of the preceding rows, so deep pages are as fast as the first
+	 * one. Pages requested out of sequence, or after the remembered position has expired, fall back
+	 * to regular offset paging. Default is <code>false</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setOffsetSearchKeysetPagingEnabled(boolean theOffsetSearchKeysetPagingEnabled) {
+		myOffsetSearchKeysetPagingEnabled = theOffsetSearchKeysetPagingEnabled;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code>, the result PIDs of asynchronous searches are kept
+	 * in memory instead of being written to the HFJ_SEARCH_RESULT table, up to this many PIDs
+	 * in total across all searches. Least recently used searches are evicted when the limit is
+	 * reached (see {@link #setInMemorySearchResultCacheSpillToDatabase(boolean)}).
+	 * <p>
+	 * Cached results are only visible to the server which performed the search, so this should
+	 * only be used with a single server or with session affinity. This setting is read when the
+	 * server starts. Default is <code>0</code> (results are stored in the database).
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getInMemorySearchResultCacheMaxPids() {
+		return myInMemorySearchResultCacheMaxPids;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code>, the result PIDs of asynchronous searches are kept
+	 * in memory instead of being written to the HFJ_SEARCH_RESULT table, up to this many PIDs
+	 * in total across all searches. Least recently used searches are evicted when the limit is
+	 * reached (see {@link #setInMemorySearchResultCacheSpillToDatabase(boolean)}).
+	 * <p>
+	 * Cached results are only visible to the server which performed the search, so this should
+	 * only be used with a single server or with session affinity. This setting is read when the
+	 * server starts. Default is <code>0</code> (results are stored in the database).
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setInMemorySearchResultCacheMaxPids(int theInMemorySearchResultCacheMaxPids) {
+		Validate.isTrue(
+				theInMemorySearchResultCacheMaxPids >= 0, "theInMemorySearchResultCacheMaxPids must not be negative");
+		myInMemorySearchResultCacheMaxPids = theInMemorySearchResultCacheMaxPids;
+	}
+
+	/**
+	 * When the in-memory search result cache is enabled (see {@link #setInMemorySearchResultCacheMaxPids(int)}),
+	 * should the results of searches evicted from memory be written to the HFJ_SEARCH_RESULT table so
+	 * that they can still be paged through? If <code>false</code>, evicted searches are treated as
+	 * expired. Default is <code>true</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isInMemorySearchResultCacheSpillToDatabase() {
+		return myInMemorySearchResultCacheSpillToDatabase;
+	}
+
+	/**
+	 * When the in-memory search result cache is enabled (see {@link #setInMemorySearchResultCacheMaxPids(int)}),
+	 * should the results of searches evicted from memory be written to the HFJ_SEARCH_RESULT table so
+	 * that they can still be paged through? If <code>false</code>, evicted searches are treated as
+	 * expired. Default is <code>true</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setInMemorySearchResultCacheSpillToDatabase(boolean theInMemorySearchResultCacheSpillToDatabase) {
+		myInMemorySearchResultCacheSpillToDatabase = theInMemorySearchResultCacheSpillToDatabase;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code>, the queries needed to resolve one round of
+	 * <code>_include</code> / <code>_revinclude</code> parameters (one per include path and block of
+	 * source resources) are executed concurrently on a pool of this many threads, each in its own
+	 * read-only transaction. Default is <code>0</code>, meaning that include queries are executed
+	 * one after another on the request thread. A query which no thread has started by the time its
+	 * results are needed is run on the request thread. This setting is read when the server starts.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getParallelIncludeLoadingThreadCount() {
+		return myParallelIncludeLoadingThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code>, the queries needed to resolve one round of
+	 * <code>_include</code> / <code>_revinclude</code> parameters (one per include path and block of
+	 * source resources) are executed concurrently on a pool of this many threads, each in its own
+	 * read-only transaction. Default is <code>0</code>, meaning that include queries are executed
+	 * one after another on the request thread. This setting is read when the server starts.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setParallelIncludeLoadingThreadCount(int theParallelIncludeLoadingThreadCount) {
+		Validate.isTrue(
+				theParallelIncludeLoadingThreadCount >= 0, "theParallelIncludeLoadingThreadCount must not be negative");
+		myParallelIncludeLoadingThreadCount = theParallelIncludeLoadingThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code>, parsed resource bodies are kept in a cache
+	 * keyed by resource PID and version, so that resources which appear in many search result pages
+	 * (e.g. Practitioners, Organizations, Medications) are copied from memory instead of being
+	 * decoded and re-parsed every time they are loaded. The value is the maximum number of resource
+	 * versions to keep. Default is <code>0</code>, meaning that the cache is disabled.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getResourceBodyCacheMaxEntries() {
+		return myResourceBodyCacheMaxEntries;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code>, parsed resource bodies are kept in a cache
+	 * keyed by resource PID and version, so that resources which appear in many search result pages
+	 * (e.g. Practitioners, Organizations, Medications) are copied from memory instead of being
+	 * decoded and re-parsed every time they are loaded. The value is the maximum number of resource
+	 * versions to keep. Default is <code>0</code>, meaning that the cache is disabled.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setResourceBodyCacheMaxEntries(int theResourceBodyCacheMaxEntries) {
+		Validate.isTrue(theResourceBodyCacheMaxEntries >= 0, "theResourceBodyCacheMaxEntries must not be negative");
+		myResourceBodyCacheMaxEntries = theResourceBodyCacheMaxEntries;
+	}
+
+	/**
+	 * If enabled, entries which are invalidated in the in-memory caches of this node (e.g. match URL
+	 * resolutions of deleted resources, partition names, or everything after an expunge) are broadcast
+	 * to the other nodes of a cluster after the invalidating transaction commits. The broadcast uses the
+	 * queue channel factory, so the configured channel implementation must deliver every message to every
+	 * node (i.e. publish/subscribe semantics). This setting is read when the server starts.
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isMemoryCacheInvalidationBroadcastEnabled() {
+		return myMemoryCacheInvalidationBroadcastEnabled;
+	}
+
+	/**
+	 * If enabled, entries which are invalidated in the in-memory caches of this node (e.g. match URL
+	 * resolutions of deleted resources, partition names, or everything after an expunge) are broadcast
+	 * to the other nodes of a cluster after the invalidating transaction commits. The broadcast uses the
+	 * queue channel factory, so the configured channel implementation must deliver every message to every
+	 * node (i.e. publish/subscribe semantics). This setting is read when the server starts.
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setMemoryCacheInvalidationBroadcastEnabled(boolean theMemoryCacheInvalidationBroadcastEnabled) {
+		myMemoryCacheInvalidationBroadcastEnabled = theMemoryCacheInvalidationBroadcastEnabled;
+	}
+
+	/**
+	 * If enabled, each node periodically polls the database for resources which have been deleted or updated
+	 * by other nodes, and invalidates the in-memory cache entries derived from them (match URL resolutions and
+	 * conditional create versions). This is a fallback for clusters where
+	 * {@link #setMemoryCacheInvalidationBroadcastEnabled(boolean) broadcasting invalidations} is not possible,
+	 * and does not cover invalidations which are not caused by resource changes (e.g. partition changes).
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isMemoryCacheInvalidationPollingEnabled() {
+		return myMemoryCacheInvalidationPollingEnabled;
+	}
+
+	/**
+	 * If enabled, each node periodically polls the database for resources which have been deleted or updated
+	 * by other nodes, and invalidates the in-memory cache entries derived from them (match URL resolutions and
+	 * conditional create versions). This is a fallback for clusters where
+	 * {@link #setMemoryCacheInvalidationBroadcastEnabled(boolean) broadcasting invalidations} is not possible,
+	 * and does not cover invalidations which are not caused by resource changes (e.g. partition changes).
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setMemoryCacheInvalidationPollingEnabled(boolean theMemoryCacheInvalidationPollingEnabled) {
+		myMemoryCacheInvalidationPollingEnabled = theMemoryCacheInvalidationPollingEnabled;
+	}
+
+	/**
+	 * If enabled, a fingerprint of the search parameter index rows of each type is stored with every
+	 * resource. When the resource is updated, index types whose fingerprint has not changed are neither
+	 * loaded from the database nor compared with the newly extracted indexes, which makes frequent
+	 * updates of resources with many index rows much cheaper. Reindexing always compares every index
+	 * type, and can be used to repair index rows which were modified outside of the server.
+	 * <p>
+	 * This setting should only be enabled once every server writing to the database supports it, since
+	 * older servers do not keep the fingerprint up to date when they update a resource.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isIndexFingerprintEnabled() {
+		return myIndexFingerprintEnabled;
+	}
+
+	/**
+	 * If enabled, a fingerprint of the search parameter index rows of each type is stored with every
+	 * resource. When the resource is updated, index types whose fingerprint has not changed are neither
+	 * loaded from the database nor compared with the newly extracted indexes, which makes frequent
+	 * updates of resources with many index rows much cheaper. Reindexing always compares every index
+	 * type, and can be used to repair index rows which were modified outside of the server.
+	 * <p>
+	 * This setting should only be enabled once every server writing to the database supports it, since
+	 * older servers do not keep the fingerprint up to date when they update a resource.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setIndexFingerprintEnabled(boolean theIndexFingerprintEnabled) {
+		myIndexFingerprintEnabled = theIndexFingerprintEnabled;
+	}
+
+	/**
+	 * If enabled, concurrent non-conditional creates for the same partition which are not already part of
+	 * a database transaction (e.g. individual FHIR create operations, but not the entries of a transaction
+	 * Bundle) are coalesced into micro-batches, each of which is stored in a single database transaction.
+	 * This greatly reduces the number of commits when many clients create small resources at a high rate,
+	 * at the cost of up to {@link #getGroupCommitMaxWaitMillis()} of added latency per create.
+	 * <p>
+	 * Each create still gets its own outcome. If any create in a batch fails, the batch is rolled back
+	 * and each of its creates is executed again in its own transaction. Because the creates of a batch
+	 * are executed on a single thread, this should not be enabled if interceptors rely on thread-local
+	 * state (e.g. a security context) during storage.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isGroupCommitEnabled() {
+		return myGroupCommitEnabled;
+	}
+
+	/**
+	 * If enabled, concurrent non-conditional creates for the same partition which are not already part of
+	 * a database transaction (e.g. individual FHIR create operations, but not the entries of a transaction
+	 * Bundle) are coalesced into micro-batches, each of which is stored in a single database transaction.
+	 * This greatly reduces the number of commits when many clients create small resources at a high rate,
+	 * at the cost of up to {@link #getGroupCommitMaxWaitMillis()} of added latency per create.
+	 * <p>
+	 * Each create still gets its own outcome. If any create in a batch fails, the batch is rolled back
+	 * and each of its creates is executed again in its own transaction. Because the creates of a batch
+	 * are executed on a single thread, this should not be enabled if interceptors rely on thread-local
+	 * state (e.g. a security context) during storage.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setGroupCommitEnabled(boolean theGroupCommitEnabled) {
+		myGroupCommitEnabled = theGroupCommitEnabled;
+	}
+
+	/**
+	 * The maximum number of creates stored in a single transaction when
+	 * {@link #setGroupCommitEnabled(boolean) group commit} is enabled.
+	 * <p>
+	 * Default is {@value #DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE}
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getGroupCommitMaxBatchSize() {
+		return myGroupCommitMaxBatchSize;
+	}
+
+	/**
+	 * The maximum number of creates stored in a single transaction when
+	 * {@link #setGroupCommitEnabled(boolean) group commit} is enabled.
+	 * <p>
+	 * Default is {@value #DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE}
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setGroupCommitMaxBatchSize(int theGroupCommitMaxBatchSize) {
+		Validate.isTrue(theGroupCommitMaxBatchSize >= 1, "Batch size must be at least 1");
+		myGroupCommitMaxBatchSize = theGroupCommitMaxBatchSize;
+	}
+
+	/**
+	 * The maximum number of milliseconds a create waits for other creates to join its batch when
+	 * {@link #setGroupCommitEnabled(boolean) group commit} is enabled. A batch is stored as soon as it
+	 * is full, or once this time has elapsed.
+	 * <p>
+	 * Default is {@value #DEFAULT_GROUP_COMMIT_MAX_WAIT_MILLIS}
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public long getGroupCommitMaxWaitMillis() {
+		return myGroupCommitMaxWaitMillis;
+	}
+
+	/**
+	 * The maximum number of milliseconds a create waits for other creates to join its batch when
+	 * {@link #setGroupCommitEnabled(boolean) group commit} is enabled. A batch is stored as soon as it
+	 * is full, or once this time has elapsed.
+	 * <p>
+	 * Default is {@value #DEFAULT_GROUP_COMMIT_MAX_WAIT_MILLIS}
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setGroupCommitMaxWaitMillis(long theGroupCommitMaxWaitMillis) {
+		Validate.isTrue(theGroupCommitMaxWaitMillis >= 0, "Wait time must not be negative");
+		myGroupCommitMaxWaitMillis = theGroupCommitMaxWaitMillis;
+	}
+
+	/**
+	 * The resource types whose search indexes are written asynchronously. When a resource of one
+	 * of these types is created or updated, only the resource body and the resource table row are
+	 * written by the request, along with an entry in a durable queue. The search indexes are written
+	 * shortly afterwards by a scheduled job which drains the queue. This makes writes of resources
+	 * which are expensive to index much faster, at the cost of searches not seeing them immediately.
+	 * A client which needs to see its own writes can send the
+	 * {@link ca.uhn.fhir.jpa.model.util.JpaConstants#HEADER_INDEX_CONSISTENCY} header with its search.
+	 * <p>
+	 * Since conditional operations and referential integrity checks rely on the search indexes, this
+	 * should only be enabled for resource types which are not the target of conditional operations
+	 * (e.g. append-only device observations). References which can not be resolved are only detected
+	 * when the resource is indexed, in which case it is marked as having failed indexing. Resources
+	 * containing inline match URL references, and resources being reindexed, are always indexed
+	 * immediately.
+	 * </p>
+	 * <p>
+	 * Default is an empty set
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public Set<String> getDeferredIndexingResourceTypes() {
+		return myDeferredIndexingResourceTypes;
+	}
+
+	/**
+	 * The resource types whose search indexes are written asynchronously. When a resource of one
+	 * of these types is created or updated, only the resource body and the resource table row are
+	 * written by the request, along with an entry in a durable queue. The search indexes are written
+	 * shortly afterwards by a scheduled job which drains the queue. This makes writes of resources
+	 * which are expensive to index much faster, at the cost of searches not seeing them immediately.
+	 * A client which needs to see its own writes can send the
+	 * {@link ca.uhn.fhir.jpa.model.util.JpaConstants#HEADER_INDEX_CONSISTENCY} header with its search.
+	 * <p>
+	 * Since conditional operations and referential integrity checks rely on the search indexes, this
+	 * should only be enabled for resource types which are not the target of conditional operations
+	 * (e.g. append-only device observations). References which can not be resolved are only detected
+	 * when the resource is indexed, in which case it is marked as having failed indexing. Resources
+	 * containing inline match URL references, and resources being reindexed, are always indexed
+	 * immediately.
+	 * </p>
+	 * <p>
+	 * Default is an empty set
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setDeferredIndexingResourceTypes(Set<String> theDeferredIndexingResourceTypes) {
+		Validate.notNull(theDeferredIndexingResourceTypes, "theDeferredIndexingResourceTypes must not be null");
+		myDeferredIndexingResourceTypes = theDeferredIndexingResourceTypes;
+	}
+
+	/**
+	 * The maximum number of milliseconds a search which requests strong
+	 * {@link ca.uhn.fhir.jpa.model.util.JpaConstants#HEADER_INDEX_CONSISTENCY index consistency} waits for
+	 * pending resources of its type to be indexed before it fails.
+	 * <p>
+	 * Default is {@value #DEFAULT_DEFERRED_INDEXING_CONSISTENCY_TIMEOUT_MILLIS}
+	 * </p>
+	 *
+	 * @see #setDeferredIndexingResourceTypes(Set)
+	 * @since 7.6.0
+	 */
+	public long getDeferredIndexingConsistencyTimeoutMillis() {
+		return myDeferredIndexingConsistencyTimeoutMillis;
+	}
+
+	/**
+	 * The maximum number of milliseconds a search which requests strong
+	 * {@link ca.uhn.fhir.jpa.model.util.JpaConstants#HEADER_INDEX_CONSISTENCY index consistency} waits for
+	 * pending resources of its type to be indexed before it fails.
+	 * <p>
+	 * Default is {@value #DEFAULT_DEFERRED_INDEXING_CONSISTENCY_TIMEOUT_MILLIS}
+	 * </p>
+	 *
+	 * @see #setDeferredIndexingResourceTypes(Set)
+	 * @since 7.6.0
+	 */
+	public void setDeferredIndexingConsistencyTimeoutMillis(long theDeferredIndexingConsistencyTimeoutMillis) {
+		Validate.isTrue(theDeferredIndexingConsistencyTimeoutMillis >= 0, "Timeout must not be negative");
+		myDeferredIndexingConsistencyTimeoutMillis = theDeferredIndexingConsistencyTimeoutMillis;
+	}
+
 	public enum StoreMetaSourceInformationEnum {
 		NONE(false, false),
 		SOURCE_URI(true, false),
@@ -2607,4 +3309,28 @@ public class JpaStorageSettings extends StorageSettings {
 		 */
 		INLINE
 	}
+
+	/**
+	 * @see #setResourceHistoryPolicies(Map)
+	 * @since 7.6.0
+	 */
+	public enum ResourceHistoryPolicyEnum {
+
+		/**
+		 * Every version of a resource is stored
+		 */
+		FULL,
+
+		/**
+		 * Only the current version of a resource is stored. The history row of the previous
+		 * version is overwritten when a resource is updated or deleted.
+		 */
+		CURRENT_VERSION_ONLY,
+
+		/**
+		 * Resources can be created and deleted, but not updated, so that every resource
+		 * has exactly one history row
+		 */
+		APPEND_ONLY
+	}
 }
@@ -49,6 +49,7 @@ import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
@@ -186,6 +187,11 @@ public abstract class BaseTransactionProcessor {
 
 	private TaskExecutor myExecutor;
 
+	private TaskExecutor myIndexingExecutor;
+
+	@Autowired
+	private SearchParamExtractorService mySearchParamExtractorService;
+
 	@Autowired
 	private IResourceVersionSvc myResourceVersionSvc;
 
@@ -213,6 +219,14 @@ public abstract class BaseTransactionProcessor {
 		return myExecutor;
 	}
 
+	private synchronized TaskExecutor getIndexingTaskExecutor() {
+		if (myIndexingExecutor == null) {
+			int poolSize = myStorageSettings.getTransactionIndexingPoolSize();
+			myIndexingExecutor = myThreadPoolFactory.newThreadPool(poolSize, poolSize, "transaction-indexing-");
+		}
+		return myIndexingExecutor;
+	}
+
 	public <BUNDLE extends IBaseBundle> BUNDLE transaction(
 			RequestDetails theRequestDetails, BUNDLE theRequest, boolean theNestedMode) {
 		String actionName = "Transaction";
@@ -1435,7 +1449,7 @@ public abstract class BaseTransactionProcessor {
 			theTransactionStopWatch.startTask("Flush writes to database");
 
 			// flush the changes
-			flushSession(theIdToPersistedOutcome);
+			flushSession(theIdToPersistedOutcome, theTransactionDetails);
 
 			theTransactionStopWatch.endCurrentTask();
 
@@ -1666,6 +1680,9 @@ public abstract class BaseTransactionProcessor {
 		FhirTerser terser = myContext.newTerser();
 		theTransactionStopWatch.startTask("Index " + theIdToPersistedOutcome.size() + " resources");
 		IdentityHashMap<DaoMethodOutcome, Set<IBaseReference>> deferredIndexesForAutoVersioning = null;
+		boolean parallelIndexing =
+				myStorageSettings.getTransactionIndexingPoolSize() > 1 && theIdToPersistedOutcome.size() > 1;
+		List<DaoMethodOutcome> outcomesToIndex = new ArrayList<>();
 		int i = 0;
 		for (DaoMethodOutcome nextOutcome : theIdToPersistedOutcome.values()) {
 
@@ -1687,7 +1704,17 @@ public abstract class BaseTransactionProcessor {
 
 			Set<IBaseReference> referencesToAutoVersion =
 					BaseStorageDao.extractReferencesToAutoVersion(myContext, myStorageSettings, nextResource);
-			if (referencesToAutoVersion.isEmpty()) {
+			if (referencesToAutoVersion.isEmpty() && parallelIndexing) {
+				// no references to autoversion - resolve now, and save once the indexes have been prepared
+				resolveReferences(
+						theTransactionDetails,
+						theIdSubstitutions,
+						theIdToPersistedOutcome,
+						terser,
+						nextResource,
+						referencesToAutoVersion);
+				outcomesToIndex.add(nextOutcome);
+			} else if (referencesToAutoVersion.isEmpty()) {
 				// no references to autoversion - we can do the resolve and save now
 				resolveReferencesThenSaveAndIndexResource(
 						theRequest,
@@ -1710,6 +1737,33 @@ public abstract class BaseTransactionProcessor {
 			}
 		}
 
+		/*
+		 * All references between these resources have now been resolved, so they won't
+		 * change any further before they are stored. Extract their search indexes concurrently,
+		 * and then store them one at a time in their original order.
+		 */
+		if (!outcomesToIndex.isEmpty()) {
+			List<IBaseResource> resourcesToIndex =
+					outcomesToIndex.stream().map(DaoMethodOutcome::getResource).collect(Collectors.toList());
+			theTransactionStopWatch.startTask("Prepare indexes for " + resourcesToIndex.size() + " resources");
+			mySearchParamExtractorService.prepareSearchIndexes(
+					theTransactionDetails, resourcesToIndex, getIndexingTaskExecutor());
+
+			theTransactionStopWatch.startTask("Index " + resourcesToIndex.size() + " resources");
+			for (DaoMethodOutcome nextOutcome : outcomesToIndex) {
+				saveAndIndexResource(
+						theRequest,
+						theTransactionDetails,
+						theIdSubstitutions,
+						entriesToProcess,
+						nonUpdatedEntities,
+						updatedEntities,
+						nextOutcome,
+						nextOutcome.getResource(),
+						Set.of());
+			}
+		}
+
 		// If we have any resources we'll be auto-versioning, index these next
 		if (deferredIndexesForAutoVersioning != null) {
 			for (Map.Entry<DaoMethodOutcome, Set<IBaseReference>> nextEntry :
@@ -1746,6 +1800,32 @@ public abstract class BaseTransactionProcessor {
 			DaoMethodOutcome theDaoMethodOutcome,
 			IBaseResource theResource,
 			Set<IBaseReference> theReferencesToAutoVersion) {
+		resolveReferences(
+				theTransactionDetails,
+				theIdSubstitutions,
+				theIdToPersistedOutcome,
+				terser,
+				theResource,
+				theReferencesToAutoVersion);
+		saveAndIndexResource(
+				theRequest,
+				theTransactionDetails,
+				theIdSubstitutions,
+				entriesToProcess,
+				nonUpdatedEntities,
+				updatedEntities,
+				theDaoMethodOutcome,
+				theResource,
+				theReferencesToAutoVersion);
+	}
+
+	private void resolveReferences(
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome,
+			FhirTerser terser,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		// References
 		List<ResourceReferenceInfo> allRefs = terser.getAllResourceReferences(theResource);
 		for (ResourceReferenceInfo nextRef : allRefs) {
@@ -1853,7 +1933,18 @@ public abstract class BaseTransactionProcessor {
 				}
 			}
 		}
+	}
 
+	private void saveAndIndexResource(
+			RequestDetails theRequest,
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			EntriesToProcessMap entriesToProcess,
+			Set<IIdType> nonUpdatedEntities,
+			Set<IBasePersistedResource> updatedEntities,
+			DaoMethodOutcome theDaoMethodOutcome,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		IPrimitiveType<Date> deletedInstantOrNull = ResourceMetadataKeyEnum.DELETED_AT.get(theResource);
 		Date deletedTimestampOrNull = deletedInstantOrNull != null ? deletedInstantOrNull.getValue() : null;
 
@@ -1987,7 +2078,8 @@ public abstract class BaseTransactionProcessor {
 		}
 	}
 
-	protected abstract void flushSession(Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome);
+	protected abstract void flushSession(
+			Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome, TransactionDetails theTransactionDetails);
 
 	private void validateResourcePresent(IBaseResource theResource, Integer theOrder, String theVerb) {
 		if (theResource == null) {
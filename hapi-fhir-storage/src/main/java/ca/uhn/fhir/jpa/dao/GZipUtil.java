@@ -41,6 +41,17 @@ public class GZipUtil {
 		}
 	}
 
+	/**
+	 * Decompresses the contents to the UTF-8 bytes they were compressed from
+	 */
+	public static byte[] decompressToBytes(byte[] theResource) {
+		try (GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(theResource))) {
+			return IOUtils.toByteArray(is);
+		} catch (IOException e) {
+			throw new DataFormatException(Msg.code(2568) + "Failed to decompress contents", e);
+		}
+	}
+
 	public static byte[] compress(String theEncoded) {
 		try {
 			ByteArrayOutputStream os = new ByteArrayOutputStream();
@@ -127,4 +127,15 @@ public interface ISearchBuilder<T extends IResourcePersistentId<?>> {
 	void setFetchSize(int theFetchSize);
 
 	void setPreviouslyAddedResourcePids(List<T> thePreviouslyAddedResourcePids);
+
+	/**
+	 * Called after a page of an offset search has been fetched, with the last PID the query
+	 * returned for that page (before any filtering), so that the following page can be located
+	 * without an offset. The default implementation does nothing.
+	 *
+	 * @since 7.6.0
+	 */
+	default void setOffsetPageEnd(SearchParameterMap theParams, T theLastPid) {
+		// nothing
+	}
 }
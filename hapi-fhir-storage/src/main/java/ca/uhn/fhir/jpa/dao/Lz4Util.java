@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compresses resource bodies using <a href="https://lz4.org/">LZ4</a>, which trades some
+ * compression ratio for very fast compression and decompression.
+ * <p>
+ * The stored format is the uncompressed length in bytes (a 4 byte big-endian integer)
+ * followed by a single LZ4 block.
+ *
+ * @since 7.6.0
+ */
+public class Lz4Util {
+
+	private static final LZ4Factory ourFactory = LZ4Factory.fastestInstance();
+
+	public static String decompress(byte[] theResource) {
+		return new String(decompressToBytes(theResource), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decompresses the contents to the UTF-8 bytes they were compressed from
+	 */
+	public static byte[] decompressToBytes(byte[] theResource) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(theResource);
+			int size = buffer.getInt();
+			byte[] decompressed = new byte[size];
+			ourFactory.safeDecompressor().decompress(theResource, 4, theResource.length - 4, decompressed, 0, size);
+			return decompressed;
+		} catch (RuntimeException e) {
+			throw new DataFormatException(Msg.code(2557) + "Failed to decompress contents", e);
+		}
+	}
+
+	public static byte[] compress(String theEncoded) {
+		return compress(theEncoded.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Compresses contents which are already encoded as UTF-8
+	 */
+	public static byte[] compress(byte[] theEncoded) {
+		byte[] compressed = ourFactory.fastCompressor().compress(theEncoded);
+		return ByteBuffer.allocate(4 + compressed.length)
+				.putInt(theEncoded.length)
+				.put(compressed)
+				.array();
+	}
+}
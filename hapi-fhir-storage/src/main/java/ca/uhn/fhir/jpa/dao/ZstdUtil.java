@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compresses resource bodies using <a href="https://facebook.github.io/zstd/">zstd</a>, which
+ * decompresses several times faster than gzip and usually produces smaller output.
+ * The content size is written into the zstd frame header.
+ *
+ * @since 7.6.0
+ */
+public class ZstdUtil {
+
+	static final int COMPRESSION_LEVEL = 3;
+
+	public static String decompress(byte[] theResource) {
+		return new String(decompressToBytes(theResource), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decompresses the contents to the UTF-8 bytes they were compressed from
+	 */
+	public static byte[] decompressToBytes(byte[] theResource) {
+		try {
+			long size = Zstd.getFrameContentSize(theResource);
+			if (size < 0 || size > Integer.MAX_VALUE) {
+				throw new DataFormatException(Msg.code(2555) + "Failed to decompress contents: unknown content size");
+			}
+			return Zstd.decompress(theResource, (int) size);
+		} catch (ZstdException e) {
+			throw new DataFormatException(Msg.code(2556) + "Failed to decompress contents", e);
+		}
+	}
+
+	public static byte[] compress(String theEncoded) {
+		return compress(theEncoded.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Compresses contents which are already encoded as UTF-8
+	 */
+	public static byte[] compress(byte[] theEncoded) {
+		return Zstd.compress(theEncoded, COMPRESSION_LEVEL);
+	}
+}
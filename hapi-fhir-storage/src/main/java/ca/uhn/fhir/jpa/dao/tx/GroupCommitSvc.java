@@ -0,0 +1,236 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.tx;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.google.common.util.concurrent.Uninterruptibles;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces independent write operations which are submitted concurrently for the same partition
+ * into short micro-batches, each of which is executed in a single database transaction. This
+ * trades a few milliseconds of latency for far fewer commits when many clients are writing small
+ * resources at a high rate.
+ * <p>
+ * The first thread to submit an operation for a partition becomes the leader of a new batch. It
+ * waits for up to {@link JpaStorageSettings#getGroupCommitMaxWaitMillis()} for other threads to
+ * join the batch (or until it holds {@link JpaStorageSettings#getGroupCommitMaxBatchSize()}
+ * operations), and then executes every operation in the batch on its own thread. The other threads
+ * block until the batch has been committed. If any operation in a batch fails, or the batch fails
+ * to commit, the whole batch is rolled back and each operation is executed again in its own
+ * transaction, so that every caller gets exactly the outcome it would have had without grouping.
+ * </p>
+ * <p>
+ * Operations are executed on the leader thread, so they must not rely on thread-local state
+ * other than what is carried by their {@link TransactionDetails} and request.
+ * </p>
+ *
+ * @see JpaStorageSettings#setGroupCommitEnabled(boolean)
+ * @since 7.6.0
+ */
+public class GroupCommitSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(GroupCommitSvc.class);
+
+	private final IHapiTransactionService myTransactionService;
+	private final JpaStorageSettings myStorageSettings;
+	private final Map<RequestPartitionId, Batch> myOpenBatches = new HashMap<>();
+
+	/**
+	 * Constructor
+	 */
+	public GroupCommitSvc(IHapiTransactionService theTransactionService, JpaStorageSettings theStorageSettings) {
+		myTransactionService = theTransactionService;
+		myStorageSettings = theStorageSettings;
+	}
+
+	/**
+	 * Executes the given operation as part of a group commit, and returns its result once the
+	 * transaction it was executed in has been committed.
+	 *
+	 * @param theRequestPartitionId   The partition the operation writes to. Only operations for the same partition are grouped.
+	 * @param theTransactionDetails   The transaction details used by the operation. If the operation has to be executed again,
+	 *                                any state it left in these details is reset first.
+	 * @param theTask                 The operation. It should open its transaction using the {@link IHapiTransactionService},
+	 *                                which will join the transaction of the batch.
+	 */
+	public <T> T execute(
+			@Nullable RequestPartitionId theRequestPartitionId,
+			@Nonnull TransactionDetails theTransactionDetails,
+			@Nonnull Supplier<T> theTask) {
+		Entry<T> entry = new Entry<>(theTransactionDetails, theTask);
+
+		Batch batch;
+		boolean leader;
+		synchronized (this) {
+			batch = myOpenBatches.get(theRequestPartitionId);
+			leader = batch == null;
+			if (leader) {
+				batch = new Batch(theRequestPartitionId);
+				myOpenBatches.put(theRequestPartitionId, batch);
+			}
+			batch.myEntries.add(entry);
+			if (batch.myEntries.size() >= myStorageSettings.getGroupCommitMaxBatchSize()) {
+				myOpenBatches.remove(theRequestPartitionId);
+				batch.myFull.countDown();
+			}
+		}
+
+		if (leader) {
+			boolean full = Uninterruptibles.awaitUninterruptibly(
+					batch.myFull, myStorageSettings.getGroupCommitMaxWaitMillis(), TimeUnit.MILLISECONDS);
+			ourLog.trace("Group commit batch for {} is full: {}", theRequestPartitionId, full);
+			synchronized (this) {
+				myOpenBatches.remove(theRequestPartitionId, batch);
+			}
+			try {
+				executeBatch(batch);
+			} catch (Error e) {
+				// Never leave the other threads of the batch waiting
+				batch.myEntries.forEach(t -> t.myResult.completeExceptionally(e));
+				throw e;
+			}
+		}
+
+		try {
+			return Uninterruptibles.getUninterruptibly(entry.myResult);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new InternalErrorException(Msg.code(2558) + cause.getMessage(), cause);
+		}
+	}
+
+	private void executeBatch(Batch theBatch) {
+		List<Entry<?>> entries = theBatch.myEntries;
+		if (entries.size() == 1) {
+			entries.get(0).executeAlone();
+			return;
+		}
+
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			myTransactionService
+					.withSystemRequest()
+					.withRequestPartitionId(theBatch.myRequestPartitionId)
+					.execute(() -> {
+						// The transaction service may retry the whole batch after a conflict
+						if (attempts.getAndIncrement() > 0) {
+							entries.forEach(Entry::reset);
+						}
+						for (Entry<?> next : entries) {
+							next.executeInBatch();
+						}
+					});
+		} catch (Exception e) {
+			ourLog.debug(
+					"Group commit of {} operations failed, executing them individually: {}",
+					entries.size(),
+					e.toString());
+			for (Entry<?> next : entries) {
+				next.reset();
+				next.executeAlone();
+			}
+			return;
+		}
+
+		ourLog.debug("Committed {} operations in a single transaction", entries.size());
+		entries.forEach(Entry::complete);
+	}
+
+	private static class Batch {
+
+		private final RequestPartitionId myRequestPartitionId;
+		private final List<Entry<?>> myEntries = new ArrayList<>();
+		private final CountDownLatch myFull = new CountDownLatch(1);
+
+		private Batch(RequestPartitionId theRequestPartitionId) {
+			myRequestPartitionId = theRequestPartitionId;
+		}
+	}
+
+	private static class Entry<T> {
+
+		private final TransactionDetails myTransactionDetails;
+		private final Supplier<T> myTask;
+		private final CompletableFuture<T> myResult = new CompletableFuture<>();
+		private T myBatchResult;
+
+		private Entry(TransactionDetails theTransactionDetails, Supplier<T> theTask) {
+			myTransactionDetails = theTransactionDetails;
+			myTask = theTask;
+		}
+
+		private void executeInBatch() {
+			myBatchResult = myTask.get();
+		}
+
+		private void complete() {
+			myResult.complete(myBatchResult);
+		}
+
+		/**
+		 * Executes the operation in its own transaction, and never throws
+		 */
+		private void executeAlone() {
+			try {
+				myResult.complete(myTask.get());
+			} catch (Throwable t) {
+				myResult.completeExceptionally(t);
+			}
+		}
+
+		/**
+		 * Undoes anything the operation cached in its transaction details, since the
+		 * transaction it ran in has been rolled back
+		 */
+		private void reset() {
+			myBatchResult = null;
+			myTransactionDetails.getRollbackUndoActions().forEach(Runnable::run);
+			myTransactionDetails.clearRollbackUndoActions();
+			myTransactionDetails.clearResolvedItems();
+			myTransactionDetails.clearUserData(HapiTransactionService.XACT_USERDATA_KEY_RESOLVED_TAG_DEFINITIONS);
+			myTransactionDetails.clearUserData(HapiTransactionService.XACT_USERDATA_KEY_EXISTING_SEARCH_PARAMS);
+		}
+	}
+}
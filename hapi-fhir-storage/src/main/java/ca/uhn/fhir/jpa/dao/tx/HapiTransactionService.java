@@ -72,6 +72,8 @@ public class HapiTransactionService implements IHapiTransactionService {
 			HapiTransactionService.class.getName() + "_RESOLVED_TAG_DEFINITIONS";
 	public static final String XACT_USERDATA_KEY_EXISTING_SEARCH_PARAMS =
 			HapiTransactionService.class.getName() + "_EXISTING_SEARCH_PARAMS";
+	public static final String XACT_USERDATA_KEY_PENDING_HISTORY_ENTITIES =
+			HapiTransactionService.class.getName() + "_PENDING_HISTORY_ENTITIES";
 	private static final Logger ourLog = LoggerFactory.getLogger(HapiTransactionService.class);
 	private static final ThreadLocal<RequestPartitionId> ourRequestPartitionThreadLocal = new ThreadLocal<>();
 	private static final ThreadLocal<HapiTransactionService> ourExistingTransaction = new ThreadLocal<>();
@@ -30,7 +30,9 @@ import org.springframework.context.annotation.Configuration;
 public class SubscriptionChannelConfig {
 
 	/**
-	 * Create a @Primary @Bean if you need a different implementation
+	 * Create a @Primary @Bean if you need a different implementation, e.g.
+	 * {@link ca.uhn.fhir.jpa.subscription.channel.impl.SegmentLogChannelFactory} to keep queued messages
+	 * on local disk
 	 */
 	@Bean
 	public IChannelFactory queueChannelFactory(IChannelNamer theChannelNamer) {
@@ -0,0 +1,570 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.subscription.channel.api.PayloadTooLargeException;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of messages stored in a directory as a series of fixed size,
+ * memory-mapped segment files, along with the offset of the oldest message which has not
+ * been completely handled yet by a consumer.
+ * <p>
+ * Offsets are positions in the log as a whole, so the segment holding a given offset is
+ * <code>offset / segmentSize</code>. Each record is stored as its length, a CRC32 of its
+ * contents and the contents themselves. When a record doesn't fit in what is left of a
+ * segment, an end-of-segment marker is written and the record goes at the start of the next
+ * one. Segments are deleted once every message they hold has been handled, and producers
+ * block when the unhandled messages span the maximum number of segments, so both the disk
+ * and memory used by a log are bounded.
+ * </p>
+ * <p>
+ * When the log is reopened, it resumes from the stored consumer offset and the end of the
+ * log is found by scanning forward until a record in the last segment that is missing or fails
+ * its CRC check. A bad record in an earlier segment only skips the rest of that segment. This
+ * means that messages which were being handled when the JVM stopped are delivered again.
+ * </p>
+ */
+class SegmentLog {
+
+	static final int RECORD_HEADER_SIZE = 8;
+	static final String SEGMENT_FILE_SUFFIX = ".segment";
+	static final String OFFSET_FILE_NAME = "consumer.offset";
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SegmentLog.class);
+	private static final int END_OF_SEGMENT = -1;
+	private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("([0-9]+)\\" + SEGMENT_FILE_SUFFIX);
+	private static final Object ourUnsafe;
+	private static final Method ourInvokeCleaner;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Mappings are then released when the buffers are garbage collected
+			ourLog.debug("Explicit unmapping of segments is not available: {}", e.toString());
+		}
+		ourUnsafe = unsafe;
+		ourInvokeCleaner = invokeCleaner;
+	}
+
+	private final Path myDirectory;
+	private final int mySegmentSize;
+	private final int myMaxSegments;
+	private final SegmentLogFsyncPolicyEnum myFsyncPolicy;
+	private final ReentrantLock myLock = new ReentrantLock();
+	private final Condition myNotEmpty = myLock.newCondition();
+	private final Condition myNotFull = myLock.newCondition();
+	private final TreeMap<Long, MappedByteBuffer> mySegments = new TreeMap<>();
+	private final TreeSet<Long> myInFlightOffsets = new TreeSet<>();
+	private final MappedByteBuffer myOffsetBuffer;
+	private long myWriteOffset;
+	private long myReadOffset;
+	private long myCommittedOffset;
+	private int myPendingCount;
+	private boolean myDirty;
+	private boolean myClosed;
+
+	/**
+	 * Opens the log stored in the given directory, creating it if it doesn't exist yet
+	 *
+	 * @param theDirectory   The directory holding the segment files and the consumer offset
+	 * @param theSegmentSize The size of each segment file, in bytes. Changing this for an existing log is not supported.
+	 * @param theMaxSegments The maximum number of segments which can hold unhandled messages before producers block
+	 * @param theFsyncPolicy When to force changes to disk
+	 */
+	SegmentLog(Path theDirectory, int theSegmentSize, int theMaxSegments, SegmentLogFsyncPolicyEnum theFsyncPolicy) {
+		Validate.isTrue(theSegmentSize > RECORD_HEADER_SIZE, "Segment size must be larger than %d", RECORD_HEADER_SIZE);
+		// One segment being consumed and one being written
+		Validate.isTrue(theMaxSegments >= 2, "Max segments must be at least 2");
+		Validate.notNull(theFsyncPolicy, "theFsyncPolicy must not be null");
+		myDirectory = theDirectory;
+		mySegmentSize = theSegmentSize;
+		myMaxSegments = theMaxSegments;
+		myFsyncPolicy = theFsyncPolicy;
+
+		try {
+			Files.createDirectories(theDirectory);
+			myOffsetBuffer = map(theDirectory.resolve(OFFSET_FILE_NAME), Long.BYTES);
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(theDirectory, "*" + SEGMENT_FILE_SUFFIX)) {
+				for (Path next : files) {
+					Matcher matcher = SEGMENT_FILE_PATTERN.matcher(next.getFileName().toString());
+					if (matcher.matches()) {
+						mySegments.put(Long.parseLong(matcher.group(1)), null);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException(
+					Msg.code(2562) + "Failed to open segment log in " + theDirectory + ": " + e.getMessage(), e);
+		}
+
+		recover();
+	}
+
+	/**
+	 * Resumes from the stored consumer offset and finds the end of the log
+	 */
+	private void recover() {
+		myCommittedOffset = myOffsetBuffer.getLong(0);
+		if (!mySegments.isEmpty() && mySegments.firstKey() > segmentIndex(myCommittedOffset)) {
+			// Segments are only deleted once the offset has been forced to disk, but that doesn't
+			// hold for an offset file restored from elsewhere
+			ourLog.warn(
+					"Consumer offset {} of segment log {} is before its first segment, resuming from segment {}",
+					myCommittedOffset,
+					myDirectory,
+					mySegments.firstKey());
+			myCommittedOffset = mySegments.firstKey() * mySegmentSize;
+		}
+		myReadOffset = myCommittedOffset;
+		deleteSegmentsBefore(segmentIndex(myCommittedOffset));
+		for (Map.Entry<Long, MappedByteBuffer> next : mySegments.entrySet()) {
+			next.setValue(openSegment(next.getKey()));
+		}
+
+		long offset = myCommittedOffset;
+		while (true) {
+			MappedByteBuffer segment = mySegments.get(segmentIndex(offset));
+			int position = positionInSegment(offset);
+			if (segment == null
+					|| mySegmentSize - position < RECORD_HEADER_SIZE
+					|| segment.getInt(position) == END_OF_SEGMENT) {
+				Long nextSegment = mySegments.higherKey(segmentIndex(offset));
+				if (nextSegment == null) {
+					break;
+				}
+				offset = nextSegment * mySegmentSize;
+				continue;
+			}
+
+			int length = segment.getInt(position);
+			boolean valid = length > 0 && length <= mySegmentSize - position - RECORD_HEADER_SIZE;
+			if (valid) {
+				valid = segment.getInt(position + Integer.BYTES) == crc(read(segment, position, length));
+			}
+			if (!valid) {
+				Long nextSegment = mySegments.higherKey(segmentIndex(offset));
+				if (nextSegment == null) {
+					// This is the end of the log, anything past it was never completely written
+					break;
+				}
+
+				// The writer had already moved on to a later segment, so only the rest of this one is lost
+				ourLog.warn(
+						"Skipping incomplete record at offset {} in segment log {}, resuming from segment {}",
+						offset,
+						myDirectory,
+						nextSegment);
+				segment.putInt(position, END_OF_SEGMENT);
+				offset = nextSegment * mySegmentSize;
+				continue;
+			}
+
+			myPendingCount++;
+			offset += RECORD_HEADER_SIZE + length;
+		}
+		myWriteOffset = offset;
+
+		if (myPendingCount > 0) {
+			ourLog.info("Recovered {} unhandled messages from segment log {}", myPendingCount, myDirectory);
+		}
+	}
+
+	/**
+	 * Appends a record to the log
+	 *
+	 * @param theContents      The record contents
+	 * @param theTimeoutMillis How long to wait for space in the log, or a negative value to wait indefinitely
+	 * @return <code>false</code> if the log is still full once the timeout has elapsed
+	 */
+	boolean append(byte[] theContents, long theTimeoutMillis) throws InterruptedException {
+		Validate.isTrue(theContents.length > 0, "Record must not be empty");
+		int recordSize = RECORD_HEADER_SIZE + theContents.length;
+		if (recordSize > mySegmentSize) {
+			throw new PayloadTooLargeException(Msg.code(2563) + "Message of " + theContents.length
+					+ " bytes does not fit in a segment of " + mySegmentSize + " bytes");
+		}
+		int crc = crc(theContents);
+
+		long remainingNanos = TimeUnit.MILLISECONDS.toNanos(theTimeoutMillis);
+		myLock.lockInterruptibly();
+		try {
+			while (true) {
+				Validate.isTrue(!myClosed, "Segment log %s is closed", myDirectory);
+				long offset = myWriteOffset;
+				if (mySegmentSize - positionInSegment(offset) < recordSize) {
+					offset = nextSegmentOffset(offset);
+				}
+				if (segmentIndex(offset) - segmentIndex(myCommittedOffset) < myMaxSegments) {
+					if (offset != myWriteOffset) {
+						writeEndOfSegment(myWriteOffset);
+					}
+					write(offset, theContents, crc);
+					myWriteOffset = offset + recordSize;
+					myPendingCount++;
+					myNotEmpty.signal();
+					return true;
+				}
+
+				if (theTimeoutMillis < 0) {
+					myNotFull.await();
+				} else if (remainingNanos <= 0) {
+					return false;
+				} else {
+					remainingNanos = myNotFull.awaitNanos(remainingNanos);
+				}
+			}
+		} finally {
+			myLock.unlock();
+		}
+	}
+
+	/**
+	 * Claims the next record in the log for a consumer. Once it has been handled, the
+	 * consumer must call {@link #complete(LogEntry)}.
+	 *
+	 * @return The next record, or <code>null</code> if there wasn't any before the timeout elapsed
+	 */
+	@Nullable
+	LogEntry claim(long theTimeoutMillis) throws InterruptedException {
+		long remainingNanos = TimeUnit.MILLISECONDS.toNanos(theTimeoutMillis);
+		myLock.lockInterruptibly();
+		try {
+			while (!myClosed && myReadOffset == myWriteOffset) {
+				if (remainingNanos <= 0) {
+					return null;
+				}
+				remainingNanos = myNotEmpty.awaitNanos(remainingNanos);
+			}
+			if (myClosed) {
+				return null;
+			}
+
+			long offset = myReadOffset;
+			ByteBuffer segment = mySegments.get(segmentIndex(offset));
+			int position = positionInSegment(offset);
+			if (segment == null
+					|| mySegmentSize - position < RECORD_HEADER_SIZE
+					|| segment.getInt(position) == END_OF_SEGMENT) {
+				// Segments can be missing after a crash, see recover()
+				offset = mySegments.higherKey(segmentIndex(offset)) * mySegmentSize;
+				segment = mySegments.get(segmentIndex(offset));
+				position = 0;
+			}
+
+			int length = segment.getInt(position);
+			LogEntry retVal = new LogEntry(offset, read(segment, position, length));
+			myReadOffset = offset + RECORD_HEADER_SIZE + length;
+			myInFlightOffsets.add(offset);
+			myPendingCount--;
+			return retVal;
+		} finally {
+			myLock.unlock();
+		}
+	}
+
+	/**
+	 * Marks a record returned by {@link #claim(long)} as handled. The consumer offset is moved
+	 * past every record which has been handled, and segments which are no longer needed are deleted.
+	 */
+	void complete(LogEntry theEntry) {
+		myLock.lock();
+		try {
+			myInFlightOffsets.remove(theEntry.getOffset());
+			long committedOffset = myInFlightOffsets.isEmpty() ? myReadOffset : myInFlightOffsets.first();
+			if (myClosed || committedOffset == myCommittedOffset) {
+				return;
+			}
+
+			myCommittedOffset = committedOffset;
+			myOffsetBuffer.putLong(0, committedOffset);
+
+			// The offset must be on disk before the segments before it are deleted, or a crash could
+			// leave it pointing to a segment which no longer exists
+			long committedSegment = segmentIndex(committedOffset);
+			boolean deleteSegments = !mySegments.isEmpty() && mySegments.firstKey() < committedSegment;
+			if (deleteSegments || myFsyncPolicy == SegmentLogFsyncPolicyEnum.ALWAYS) {
+				myOffsetBuffer.force();
+			} else {
+				myDirty = true;
+			}
+			if (deleteSegments) {
+				deleteSegmentsBefore(committedSegment);
+				myNotFull.signalAll();
+			}
+		} finally {
+			myLock.unlock();
+		}
+	}
+
+	/**
+	 * Forces any changes made since the last call to disk. This is called periodically when the
+	 * {@link SegmentLogFsyncPolicyEnum#INTERVAL} policy is used.
+	 */
+	void flush() {
+		myLock.lock();
+		try {
+			if (myDirty && !myClosed) {
+				for (MappedByteBuffer next : mySegments.values()) {
+					next.force();
+				}
+				myOffsetBuffer.force();
+				myDirty = false;
+			}
+		} finally {
+			myLock.unlock();
+		}
+	}
+
+	/**
+	 * Forces any pending changes to disk, releases the memory mappings and releases consumers waiting
+	 * for records. The log can not be used once it has been closed.
+	 *
+	 * @param theDeleteIfEmpty If <code>true</code> and every record in the log has been handled, the
+	 *                         directory holding the log is deleted
+	 */
+	void close(boolean theDeleteIfEmpty) {
+		myLock.lock();
+		try {
+			if (myClosed) {
+				return;
+			}
+			if (myFsyncPolicy != SegmentLogFsyncPolicyEnum.NEVER) {
+				flush();
+			}
+			myClosed = true;
+			for (MappedByteBuffer next : mySegments.values()) {
+				unmap(next);
+			}
+			unmap(myOffsetBuffer);
+			myNotEmpty.signalAll();
+			myNotFull.signalAll();
+
+			if (theDeleteIfEmpty && myPendingCount == 0 && myInFlightOffsets.isEmpty()) {
+				for (Long next : mySegments.keySet()) {
+					deleteSegmentFile(next);
+				}
+				try {
+					Files.deleteIfExists(myDirectory.resolve(OFFSET_FILE_NAME));
+					Files.deleteIfExists(myDirectory);
+				} catch (IOException e) {
+					ourLog.warn("Failed to delete segment log {}: {}", myDirectory, e.toString());
+				}
+			}
+			mySegments.clear();
+		} finally {
+			myLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of records which have not been claimed by a consumer yet
+	 */
+	int getPendingCount() {
+		myLock.lock();
+		try {
+			return myPendingCount;
+		} finally {
+			myLock.unlock();
+		}
+	}
+
+	@VisibleForTesting
+	int getSegmentCount() {
+		myLock.lock();
+		try {
+			return mySegments.size();
+		} finally {
+			myLock.unlock();
+		}
+	}
+
+	private void write(long theOffset, byte[] theContents, int theCrc) {
+		MappedByteBuffer segment = mySegments.get(segmentIndex(theOffset));
+		if (segment == null) {
+			segment = openSegment(segmentIndex(theOffset));
+			mySegments.put(segmentIndex(theOffset), segment);
+		}
+
+		// The length is written last, since a record with no length marks the end of the log
+		int position = positionInSegment(theOffset);
+		ByteBuffer buffer = segment.duplicate();
+		buffer.position(position + RECORD_HEADER_SIZE);
+		buffer.put(theContents);
+		segment.putInt(position + Integer.BYTES, theCrc);
+		segment.putInt(position, theContents.length);
+
+		if (myFsyncPolicy == SegmentLogFsyncPolicyEnum.ALWAYS) {
+			segment.force();
+		} else {
+			myDirty = true;
+		}
+	}
+
+	private void writeEndOfSegment(long theOffset) {
+		int position = positionInSegment(theOffset);
+		if (mySegmentSize - position >= Integer.BYTES) {
+			MappedByteBuffer segment = mySegments.get(segmentIndex(theOffset));
+			segment.putInt(position, END_OF_SEGMENT);
+			if (myFsyncPolicy == SegmentLogFsyncPolicyEnum.ALWAYS) {
+				segment.force();
+			}
+		}
+	}
+
+	private void deleteSegmentsBefore(long theSegmentIndex) {
+		Iterator<Map.Entry<Long, MappedByteBuffer>> iterator =
+				mySegments.headMap(theSegmentIndex).entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Long, MappedByteBuffer> next = iterator.next();
+			unmap(next.getValue());
+			deleteSegmentFile(next.getKey());
+			iterator.remove();
+		}
+	}
+
+	private void deleteSegmentFile(long theSegmentIndex) {
+		Path file = segmentFile(theSegmentIndex);
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// Some platforms don't allow deleting a file which is still mapped
+			ourLog.warn("Failed to delete segment file {}: {}", file, e.toString());
+		}
+	}
+
+	private MappedByteBuffer openSegment(long theSegmentIndex) {
+		Path file = segmentFile(theSegmentIndex);
+		try {
+			return map(file, mySegmentSize);
+		} catch (IOException e) {
+			throw new InternalErrorException(
+					Msg.code(2564) + "Failed to open segment file " + file + ": " + e.getMessage(), e);
+		}
+	}
+
+	private Path segmentFile(long theSegmentIndex) {
+		return myDirectory.resolve(String.format("%019d", theSegmentIndex) + SEGMENT_FILE_SUFFIX);
+	}
+
+	private long segmentIndex(long theOffset) {
+		return theOffset / mySegmentSize;
+	}
+
+	private int positionInSegment(long theOffset) {
+		return (int) (theOffset % mySegmentSize);
+	}
+
+	private long nextSegmentOffset(long theOffset) {
+		return (segmentIndex(theOffset) + 1) * mySegmentSize;
+	}
+
+	private static MappedByteBuffer map(Path theFile, int theSize) throws IOException {
+		// The mapping stays valid once the file is closed. New files are zero-filled.
+		try (RandomAccessFile file = new RandomAccessFile(theFile.toFile(), "rw")) {
+			if (file.length() < theSize) {
+				file.setLength(theSize);
+			}
+			return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, theSize);
+		}
+	}
+
+	/**
+	 * Releases the mapping of a buffer right away, rather than whenever it gets garbage collected. The
+	 * buffer must not be used afterwards, which is why all access to the segments happens under the lock.
+	 */
+	private static void unmap(@Nullable MappedByteBuffer theBuffer) {
+		if (theBuffer == null || ourInvokeCleaner == null) {
+			return;
+		}
+		try {
+			ourInvokeCleaner.invoke(ourUnsafe, theBuffer);
+		} catch (ReflectiveOperationException e) {
+			ourLog.debug("Failed to unmap buffer: {}", e.toString());
+		}
+	}
+
+	private static byte[] read(ByteBuffer theSegment, int thePosition, int theLength) {
+		byte[] retVal = new byte[theLength];
+		ByteBuffer buffer = theSegment.duplicate();
+		buffer.position(thePosition + RECORD_HEADER_SIZE);
+		buffer.get(retVal);
+		return retVal;
+	}
+
+	private static int crc(byte[] theContents) {
+		CRC32 crc = new CRC32();
+		crc.update(theContents);
+		return (int) crc.getValue();
+	}
+
+	static class LogEntry {
+
+		private final long myOffset;
+		private final byte[] myContents;
+
+		private LogEntry(long theOffset, byte[] theContents) {
+			myOffset = theOffset;
+			myContents = theContents;
+		}
+
+		long getOffset() {
+			return myOffset;
+		}
+
+		byte[] getContents() {
+			return myContents;
+		}
+	}
+}
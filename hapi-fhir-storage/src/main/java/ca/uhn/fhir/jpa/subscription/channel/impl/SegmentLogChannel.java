@@ -0,0 +1,250 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.model.api.IModelJson;
+import ca.uhn.fhir.util.JsonUtil;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A channel which stores the messages sent to it in an append-only log on local disk, so that
+ * they survive a restart. Messages are serialized as JSON and each one is handed to every subscriber,
+ * in the order they were sent, by a fixed number of consumer threads.
+ *
+ * @see SegmentLogChannelFactory
+ * @since 7.6.0
+ */
+public class SegmentLogChannel extends AbstractSubscribableChannel implements IChannelProducer, IChannelReceiver {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SegmentLogChannel.class);
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final String myName;
+	private final Class<?> myMessageType;
+	private final SegmentLog myLog;
+	private final int myConcurrentConsumers;
+	private final Consumer<SegmentLogChannel> myDestroyListener;
+	private ExecutorService myConsumerExecutor;
+	private volatile boolean myStopped;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theDestroyListener Called once the channel has been destroyed
+	 */
+	SegmentLogChannel(
+			String theName,
+			Class<?> theMessageType,
+			SegmentLog theLog,
+			int theConcurrentConsumers,
+			Consumer<SegmentLogChannel> theDestroyListener) {
+		Validate.isTrue(
+				Message.class.isAssignableFrom(theMessageType), "%s is not a message type", theMessageType.getName());
+		myName = theName;
+		myMessageType = theMessageType;
+		myLog = theLog;
+		myConcurrentConsumers = Math.max(1, theConcurrentConsumers);
+		myDestroyListener = theDestroyListener;
+	}
+
+	@Override
+	public String getName() {
+		return myName;
+	}
+
+	/**
+	 * Returns the number of messages which have been sent to this channel and not picked up by a consumer yet
+	 */
+	public int getPendingMessageCount() {
+		return myLog.getPendingCount();
+	}
+
+	@Override
+	protected boolean sendInternal(@Nonnull Message<?> theMessage, long theTimeout) {
+		if (myStopped) {
+			throw new MessageDeliveryException(theMessage, Msg.code(2566) + "Channel " + myName + " has been stopped");
+		}
+
+		String json;
+		if (theMessage instanceof IModelJson) {
+			json = JsonUtil.serializeWithSensitiveData((IModelJson) theMessage);
+		} else {
+			json = JsonUtil.serialize(theMessage);
+		}
+
+		try {
+			return myLog.append(json.getBytes(StandardCharsets.UTF_8), theTimeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageDeliveryException(
+					theMessage, Msg.code(2565) + "Interrupted while waiting for space in channel " + myName, e);
+		}
+	}
+
+	@Override
+	public boolean hasSubscription(@Nonnull MessageHandler handler) {
+		return getSubscribers().stream()
+				.map(t -> (RetryingMessageHandlerWrapper) t)
+				.anyMatch(t -> t.getWrappedHandler() == handler);
+	}
+
+	@Override
+	public boolean subscribe(@Nonnull MessageHandler theHandler) {
+		boolean retVal = super.subscribe(new RetryingMessageHandlerWrapper(theHandler, getName()));
+		startConsumers();
+		return retVal;
+	}
+
+	@Override
+	public boolean unsubscribe(@Nonnull MessageHandler handler) {
+		Optional<RetryingMessageHandlerWrapper> match = getSubscribers().stream()
+				.map(t -> (RetryingMessageHandlerWrapper) t)
+				.filter(t -> t.getWrappedHandler() == handler)
+				.findFirst();
+		match.ifPresent(super::unsubscribe);
+		return match.isPresent();
+	}
+
+	/**
+	 * Stops the consumers and closes the log, so that the threads and memory mappings used by this
+	 * channel are released. If every message has been handled, the files of the log are deleted too.
+	 * Asking the factory for a channel with the same name afterwards opens the log again.
+	 */
+	@Override
+	public void destroy() {
+		stop(true);
+		myDestroyListener.accept(this);
+	}
+
+	private synchronized void startConsumers() {
+		if (myConsumerExecutor != null || myStopped) {
+			return;
+		}
+		BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+				.namingPattern(myName + "-%d")
+				.daemon(false)
+				.build();
+		myConsumerExecutor = Executors.newFixedThreadPool(myConcurrentConsumers, threadFactory);
+		for (int i = 0; i < myConcurrentConsumers; i++) {
+			myConsumerExecutor.submit(this::consume);
+		}
+	}
+
+	private void consume() {
+		while (!myStopped) {
+			try {
+				// Leave messages in the log until someone is listening for them
+				if (getSubscribers().isEmpty()) {
+					Thread.sleep(POLL_INTERVAL_MILLIS);
+					continue;
+				}
+
+				SegmentLog.LogEntry entry = myLog.claim(POLL_INTERVAL_MILLIS);
+				if (entry == null) {
+					continue;
+				}
+
+				boolean handled = handle(entry);
+				// A message which failed because we are shutting down is delivered again after a restart
+				if (handled || !myStopped) {
+					myLog.complete(entry);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if any of the subscribers failed to handle the message
+	 */
+	private boolean handle(SegmentLog.LogEntry theEntry) {
+		Message<?> message;
+		try {
+			message = (Message<?>)
+					JsonUtil.deserialize(new String(theEntry.getContents(), StandardCharsets.UTF_8), myMessageType);
+		} catch (Exception e) {
+			ourLog.error(
+					"Failed to read message at offset {} in channel[{}], skipping it",
+					theEntry.getOffset(),
+					myName,
+					e);
+			return true;
+		}
+
+		boolean retVal = true;
+		for (MessageHandler next : getSubscribers()) {
+			try {
+				next.handleMessage(message);
+			} catch (Exception e) {
+				ourLog.error("Failure handling message at offset {} in channel[{}]", theEntry.getOffset(), myName, e);
+				retVal = false;
+			}
+		}
+		return retVal;
+	}
+
+	void flush() {
+		myLog.flush();
+	}
+
+	/**
+	 * Stops the consumers, waiting for the messages they are handling, and closes the log
+	 *
+	 * @param theDeleteIfEmpty Delete the files of the log if every message has been handled
+	 */
+	void stop(boolean theDeleteIfEmpty) {
+		ExecutorService consumerExecutor;
+		synchronized (this) {
+			myStopped = true;
+			consumerExecutor = myConsumerExecutor;
+		}
+		if (consumerExecutor != null) {
+			consumerExecutor.shutdown();
+			try {
+				if (!consumerExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+					ourLog.warn("Timed out waiting for the consumers of channel[{}] to stop", myName);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		myLog.close(theDeleteIfEmpty);
+	}
+}
@@ -0,0 +1,238 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelSettings;
+import ca.uhn.fhir.jpa.subscription.channel.subscription.IChannelNamer;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A channel factory which stores queued messages on local disk instead of in memory, for single
+ * node deployments without a message broker. Unlike with {@link LinkedBlockingChannelFactory},
+ * messages which have not been handled yet survive a restart, and a backlog of messages uses a
+ * bounded amount of disk space and no heap.
+ * <p>
+ * Each channel gets its own subdirectory, holding an append-only log made of memory-mapped segment
+ * files along with the offset of the oldest message its consumers have not finished handling.
+ * Messages are delivered at least once: the ones being handled when the server stops are delivered
+ * again once it restarts. Once a channel's unhandled messages fill {@link #setMaxSegmentsPerChannel(int)
+ * the maximum number of segments}, sending to it blocks until its consumers catch up.
+ * </p>
+ * <p>
+ * To use this factory, declare it as a <code>@Primary</code> {@link IChannelFactory} bean. The
+ * settings below must be set before the first channel is created.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class SegmentLogChannelFactory implements IChannelFactory {
+
+	public static final int DEFAULT_SEGMENT_SIZE_BYTES = 16 * 1024 * 1024;
+	public static final int DEFAULT_MAX_SEGMENTS_PER_CHANNEL = 64;
+	public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+	private final IChannelNamer myChannelNamer;
+	private final Path myDirectory;
+	private final Map<String, SegmentLogChannel> myChannels = Collections.synchronizedMap(new HashMap<>());
+	private int mySegmentSizeBytes = DEFAULT_SEGMENT_SIZE_BYTES;
+	private int myMaxSegmentsPerChannel = DEFAULT_MAX_SEGMENTS_PER_CHANNEL;
+	private SegmentLogFsyncPolicyEnum myFsyncPolicy = SegmentLogFsyncPolicyEnum.INTERVAL;
+	private long myFsyncIntervalMillis = DEFAULT_FSYNC_INTERVAL_MILLIS;
+	private ScheduledExecutorService myFsyncExecutor;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theChannelNamer The channel namer
+	 * @param theDirectory    The directory to store the channels in. This must not be shared with any other server.
+	 */
+	public SegmentLogChannelFactory(IChannelNamer theChannelNamer, Path theDirectory) {
+		myChannelNamer = theChannelNamer;
+		myDirectory = theDirectory;
+	}
+
+	/**
+	 * The size of each segment file, in bytes. Messages larger than this can not be sent.
+	 * Changing this for channels which already have messages stored is not supported.
+	 * Default is {@value #DEFAULT_SEGMENT_SIZE_BYTES}.
+	 */
+	public int getSegmentSizeBytes() {
+		return mySegmentSizeBytes;
+	}
+
+	/**
+	 * The size of each segment file, in bytes. Messages larger than this can not be sent.
+	 * Changing this for channels which already have messages stored is not supported.
+	 * Default is {@value #DEFAULT_SEGMENT_SIZE_BYTES}.
+	 */
+	public void setSegmentSizeBytes(int theSegmentSizeBytes) {
+		Validate.isTrue(theSegmentSizeBytes > SegmentLog.RECORD_HEADER_SIZE, "Segment size is too small");
+		mySegmentSizeBytes = theSegmentSizeBytes;
+	}
+
+	/**
+	 * The maximum number of segments each channel can use for messages which have not been handled
+	 * yet. Sending to a channel blocks once this is reached. Must be at least 2.
+	 * Default is {@value #DEFAULT_MAX_SEGMENTS_PER_CHANNEL}.
+	 */
+	public int getMaxSegmentsPerChannel() {
+		return myMaxSegmentsPerChannel;
+	}
+
+	/**
+	 * The maximum number of segments each channel can use for messages which have not been handled
+	 * yet. Sending to a channel blocks once this is reached. Must be at least 2.
+	 * Default is {@value #DEFAULT_MAX_SEGMENTS_PER_CHANNEL}.
+	 */
+	public void setMaxSegmentsPerChannel(int theMaxSegmentsPerChannel) {
+		Validate.isTrue(theMaxSegmentsPerChannel >= 2, "Max segments per channel must be at least 2");
+		myMaxSegmentsPerChannel = theMaxSegmentsPerChannel;
+	}
+
+	/**
+	 * When messages and consumer offsets are forced to disk. Default is {@link SegmentLogFsyncPolicyEnum#INTERVAL}.
+	 */
+	public SegmentLogFsyncPolicyEnum getFsyncPolicy() {
+		return myFsyncPolicy;
+	}
+
+	/**
+	 * When messages and consumer offsets are forced to disk. Default is {@link SegmentLogFsyncPolicyEnum#INTERVAL}.
+	 */
+	public void setFsyncPolicy(@Nonnull SegmentLogFsyncPolicyEnum theFsyncPolicy) {
+		Validate.notNull(theFsyncPolicy, "theFsyncPolicy must not be null");
+		myFsyncPolicy = theFsyncPolicy;
+	}
+
+	/**
+	 * How often changes are forced to disk when using {@link SegmentLogFsyncPolicyEnum#INTERVAL}.
+	 * Default is {@value #DEFAULT_FSYNC_INTERVAL_MILLIS}.
+	 */
+	public long getFsyncIntervalMillis() {
+		return myFsyncIntervalMillis;
+	}
+
+	/**
+	 * How often changes are forced to disk when using {@link SegmentLogFsyncPolicyEnum#INTERVAL}.
+	 * Default is {@value #DEFAULT_FSYNC_INTERVAL_MILLIS}.
+	 */
+	public void setFsyncIntervalMillis(long theFsyncIntervalMillis) {
+		Validate.isTrue(theFsyncIntervalMillis > 0, "Fsync interval must be positive");
+		myFsyncIntervalMillis = theFsyncIntervalMillis;
+	}
+
+	@Override
+	public IChannelReceiver getOrCreateReceiver(
+			String theChannelName, Class<?> theMessageType, ChannelConsumerSettings theChannelSettings) {
+		return getOrCreateChannel(
+				theChannelName, theMessageType, theChannelSettings.getConcurrentConsumers(), theChannelSettings);
+	}
+
+	@Override
+	public IChannelProducer getOrCreateProducer(
+			String theChannelName, Class<?> theMessageType, ChannelProducerSettings theChannelSettings) {
+		return getOrCreateChannel(
+				theChannelName, theMessageType, theChannelSettings.getConcurrentConsumers(), theChannelSettings);
+	}
+
+	@Override
+	public IChannelNamer getChannelNamer() {
+		return myChannelNamer;
+	}
+
+	private SegmentLogChannel getOrCreateChannel(
+			String theChannelName,
+			Class<?> theMessageType,
+			int theConcurrentConsumers,
+			IChannelSettings theChannelSettings) {
+		final String channelName = myChannelNamer.getChannelName(theChannelName, theChannelSettings);
+
+		return myChannels.computeIfAbsent(
+				channelName, t -> buildSegmentLogChannel(channelName, theMessageType, theConcurrentConsumers));
+	}
+
+	@Nonnull
+	private SegmentLogChannel buildSegmentLogChannel(
+			String theChannelName, Class<?> theMessageType, int theConcurrentConsumers) {
+		startFsyncIfNeeded();
+		// Channel names can contain characters which aren't allowed in file names
+		Path directory = myDirectory.resolve(theChannelName.replaceAll("[^a-zA-Z0-9._-]", "_"));
+		SegmentLog log = new SegmentLog(directory, mySegmentSizeBytes, myMaxSegmentsPerChannel, myFsyncPolicy);
+		return new SegmentLogChannel(
+				theChannelName, theMessageType, log, theConcurrentConsumers, t -> myChannels.remove(t.getName(), t));
+	}
+
+	private synchronized void startFsyncIfNeeded() {
+		if (myFsyncPolicy != SegmentLogFsyncPolicyEnum.INTERVAL || myFsyncExecutor != null) {
+			return;
+		}
+		BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+				.namingPattern("segment-log-fsync-%d")
+				.daemon(true)
+				.build();
+		myFsyncExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		myFsyncExecutor.scheduleWithFixedDelay(
+				this::flushAll, myFsyncIntervalMillis, myFsyncIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void flushAll() {
+		for (SegmentLogChannel next : getChannels()) {
+			next.flush();
+		}
+	}
+
+	private List<SegmentLogChannel> getChannels() {
+		synchronized (myChannels) {
+			return new ArrayList<>(myChannels.values());
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		synchronized (this) {
+			if (myFsyncExecutor != null) {
+				myFsyncExecutor.shutdown();
+				myFsyncExecutor = null;
+			}
+		}
+		for (SegmentLogChannel next : getChannels()) {
+			next.stop(false);
+		}
+		myChannels.clear();
+	}
+}
@@ -0,0 +1,48 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+/**
+ * Controls when the segment log used by {@link SegmentLogChannelFactory} forces written
+ * messages and consumer offsets to disk.
+ *
+ * @since 7.6.0
+ */
+public enum SegmentLogFsyncPolicyEnum {
+
+	/**
+	 * Every message and every consumer offset change is forced to disk before the send returns.
+	 * This is the safest and also the slowest option.
+	 */
+	ALWAYS,
+
+	/**
+	 * Changes are forced to disk periodically, at the interval configured using
+	 * {@link SegmentLogChannelFactory#setFsyncIntervalMillis(long)}. Messages sent since the last
+	 * interval can be lost if the operating system crashes, but not if only the JVM does.
+	 */
+	INTERVAL,
+
+	/**
+	 * Changes are never explicitly forced to disk, and are written whenever the operating system
+	 * decides to. Messages survive a JVM crash or restart but can be lost if the operating system crashes.
+	 */
+	NEVER
+}
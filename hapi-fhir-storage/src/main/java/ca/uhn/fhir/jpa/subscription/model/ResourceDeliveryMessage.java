@@ -50,6 +50,9 @@ public class ResourceDeliveryMessage extends BaseResourceMessage implements IRes
 	@JsonProperty("payloadId")
 	private String myPayloadId;
 
+	@JsonProperty("deliverIndividually")
+	private Boolean myDeliverIndividually;
+
 	@JsonIgnore
 	private transient IBaseResource myPayloadDecoded;
 
@@ -131,6 +134,25 @@ public class ResourceDeliveryMessage extends BaseResourceMessage implements IRes
 		myPartitionId = thePartitionId;
 	}
 
+	/**
+	 * If <code>true</code>, this notification is delivered on its own even if rest-hook delivery batching is
+	 * enabled. This is set when a batch containing the notification could not be delivered, so that the
+	 * notification is retried by the delivery channel.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isDeliverIndividually() {
+		return Boolean.TRUE.equals(myDeliverIndividually);
+	}
+
+	/**
+	 * @see #isDeliverIndividually()
+	 * @since 7.6.0
+	 */
+	public void setDeliverIndividually(boolean theDeliverIndividually) {
+		myDeliverIndividually = theDeliverIndividually ? Boolean.TRUE : null;
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this)
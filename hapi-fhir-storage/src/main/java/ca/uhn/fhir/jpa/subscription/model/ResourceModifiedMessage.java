@@ -21,8 +21,10 @@ package ca.uhn.fhir.jpa.subscription.model;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamExtractionContext;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.messaging.BaseResourceModifiedMessage;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -43,6 +45,12 @@ public class ResourceModifiedMessage extends BaseResourceModifiedMessage {
 	@JsonProperty(value = "subscriptionId")
 	private String mySubscriptionId;
 
+	/**
+	 * Search parameters extracted from the new payload, shared by all the matchers this message goes through
+	 */
+	@JsonIgnore
+	private transient volatile SearchParamExtractionContext mySearchParamExtractionContext;
+
 	/**
 	 * Constructor
 	 */
@@ -100,6 +108,27 @@ public class ResourceModifiedMessage extends BaseResourceModifiedMessage {
 		myPayload = null;
 	}
 
+	/**
+	 * Returns a context holding the search parameters extracted from the new payload of this message so far,
+	 * so that each subscription and subscription topic matcher doesn't extract them again. The context is
+	 * created the first time this is called, and replaced if the payload has changed since.
+	 *
+	 * @return The context, or <code>null</code> if this message has no payload
+	 * @since 7.6.0
+	 */
+	public SearchParamExtractionContext getSearchParamExtractionContext(FhirContext theFhirContext) {
+		IBaseResource payload = getNewPayload(theFhirContext);
+		if (payload == null) {
+			return null;
+		}
+		SearchParamExtractionContext retVal = mySearchParamExtractionContext;
+		if (retVal == null || retVal.getResource() != payload) {
+			retVal = new SearchParamExtractionContext(payload);
+			mySearchParamExtractionContext = retVal;
+		}
+		return retVal;
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this)
@@ -0,0 +1,184 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.model.api.IModelJson;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of {@link MemoryCacheService} entries which have been invalidated by a committed
+ * database transaction. Instances are passed to any registered
+ * {@link IMemoryCacheInvalidationListener} so that they can be relayed to other nodes in
+ * a cluster, where they are applied using {@link MemoryCacheService#applyInvalidation(MemoryCacheInvalidation)}.
+ * <p>
+ * Keys are carried in their string form, so only caches whose key type is
+ * {@link String}, {@link Long} or {@link Integer} can be invalidated by key. Other caches
+ * are invalidated in their entirety.
+ *
+ * @since 7.6.0
+ */
+public class MemoryCacheInvalidation implements IModelJson {
+
+	@JsonProperty("originNodeId")
+	private String myOriginNodeId;
+
+	@JsonProperty("keys")
+	private Map<MemoryCacheService.CacheEnum, Set<String>> myKeys;
+
+	@JsonProperty("allKeys")
+	private Set<MemoryCacheService.CacheEnum> myAllKeys;
+
+	@JsonProperty("matchUrlTargets")
+	private Set<Long> myMatchUrlTargets;
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidation() {
+		super();
+	}
+
+	/**
+	 * The ID of the node which produced this invalidation, used by broadcasters to ignore
+	 * their own messages.
+	 */
+	public String getOriginNodeId() {
+		return myOriginNodeId;
+	}
+
+	public MemoryCacheInvalidation setOriginNodeId(String theOriginNodeId) {
+		myOriginNodeId = theOriginNodeId;
+		return this;
+	}
+
+	public MemoryCacheInvalidation addKey(MemoryCacheService.CacheEnum theCache, Object theKey) {
+		if (!isKeyTypeSupported(theCache)) {
+			return addAllKeys(theCache);
+		}
+		if (myKeys == null) {
+			myKeys = new EnumMap<>(MemoryCacheService.CacheEnum.class);
+		}
+		myKeys.computeIfAbsent(theCache, t -> new LinkedHashSet<>()).add(theKey.toString());
+		return this;
+	}
+
+	/**
+	 * Invalidate every entry in the given cache
+	 */
+	public MemoryCacheInvalidation addAllKeys(MemoryCacheService.CacheEnum theCache) {
+		if (myAllKeys == null) {
+			myAllKeys = EnumSet.noneOf(MemoryCacheService.CacheEnum.class);
+		}
+		myAllKeys.add(theCache);
+		return this;
+	}
+
+	/**
+	 * Invalidate every {@link MemoryCacheService.CacheEnum#MATCH_URL} entry which resolves to
+	 * the resource with the given PID
+	 */
+	public MemoryCacheInvalidation addMatchUrlTarget(Long theResourcePid) {
+		if (myMatchUrlTargets == null) {
+			myMatchUrlTargets = new LinkedHashSet<>();
+		}
+		myMatchUrlTargets.add(theResourcePid);
+		return this;
+	}
+
+	public MemoryCacheInvalidation addAll(MemoryCacheInvalidation theOther) {
+		theOther.getKeys().forEach((cache, keys) -> keys.forEach(key -> addKey(cache, key)));
+		theOther.getAllKeys().forEach(this::addAllKeys);
+		theOther.getMatchUrlTargets().forEach(this::addMatchUrlTarget);
+		return this;
+	}
+
+	public Map<MemoryCacheService.CacheEnum, Set<String>> getKeys() {
+		if (myKeys == null) {
+			return Map.of();
+		}
+		return myKeys;
+	}
+
+	public Set<MemoryCacheService.CacheEnum> getAllKeys() {
+		if (myAllKeys == null) {
+			return Set.of();
+		}
+		return myAllKeys;
+	}
+
+	public Set<Long> getMatchUrlTargets() {
+		if (myMatchUrlTargets == null) {
+			return Set.of();
+		}
+		return myMatchUrlTargets;
+	}
+
+	/**
+	 * Returns the keys for the given cache converted back into the cache's key type
+	 */
+	List<Object> getTypedKeys(MemoryCacheService.CacheEnum theCache) {
+		Set<String> keys = getKeys().getOrDefault(theCache, Set.of());
+		List<Object> retVal = new ArrayList<>(keys.size());
+		Class<?> keyType = theCache.getKeyType();
+		for (String next : keys) {
+			if (Long.class.equals(keyType)) {
+				retVal.add(Long.parseLong(next));
+			} else if (Integer.class.equals(keyType)) {
+				retVal.add(Integer.parseInt(next));
+			} else {
+				retVal.add(next);
+			}
+		}
+		return retVal;
+	}
+
+	@JsonIgnore
+	public boolean isEmpty() {
+		return getKeys().isEmpty()
+				&& getAllKeys().isEmpty()
+				&& getMatchUrlTargets().isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("originNodeId", myOriginNodeId)
+				.append("keys", getKeys())
+				.append("allKeys", getAllKeys())
+				.append("matchUrlTargets", getMatchUrlTargets())
+				.toString();
+	}
+
+	static boolean isKeyTypeSupported(MemoryCacheService.CacheEnum theCache) {
+		Class<?> keyType = theCache.getKeyType();
+		return String.class.equals(keyType) || Long.class.equals(keyType) || Integer.class.equals(keyType);
+	}
+}
@@ -22,17 +22,24 @@ package ca.uhn.fhir.jpa.util;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.model.TranslationQuery;
 import ca.uhn.fhir.jpa.model.entity.TagTypeEnum;
+import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
 import ca.uhn.fhir.sl.cache.Cache;
 import ca.uhn.fhir.sl.cache.CacheFactory;
 import jakarta.annotation.Nonnull;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Collection;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
@@ -48,8 +55,15 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 // TODO: JA2 extract an interface for this class and use it everywhere
 public class MemoryCacheService {
 
+	private static final Logger ourLog = LoggerFactory.getLogger(MemoryCacheService.class);
+
 	private final JpaStorageSettings myStorageSettings;
 	private final EnumMap<CacheEnum, Cache<?, ?>> myCaches = new EnumMap<>(CacheEnum.class);
+	private final List<IMemoryCacheInvalidationListener> myInvalidationListeners = new CopyOnWriteArrayList<>();
+	/**
+	 * Reverse index of {@link CacheEnum#MATCH_URL}: resource PID to the match URLs resolving to it
+	 */
+	private Cache<Long, Set<String>> myMatchUrlsByTarget;
 
 	public MemoryCacheService(JpaStorageSettings theStorageSettings) {
 		myStorageSettings = theStorageSettings;
@@ -70,6 +84,11 @@ public class MemoryCacheService {
 							SECONDS.convert(myStorageSettings.getTranslationCachesExpireAfterWriteInMinutes(), MINUTES);
 					maximumSize = 10000;
 					break;
+				case OFFSET_SEARCH_KEYSET:
+					// Clients page through results at human/batch speed
+					timeoutSeconds = SECONDS.convert(10, MINUTES);
+					maximumSize = 10000;
+					break;
 				case PID_TO_FORCED_ID:
 				case FORCED_ID_TO_PID:
 				case MATCH_URL:
@@ -91,6 +110,10 @@ public class MemoryCacheService {
 			Cache<Object, Object> nextCache = CacheFactory.build(SECONDS.toMillis(timeoutSeconds), maximumSize);
 
 			myCaches.put(next, nextCache);
+
+			if (next == CacheEnum.MATCH_URL) {
+				myMatchUrlsByTarget = CacheFactory.build(SECONDS.toMillis(timeoutSeconds), maximumSize);
+			}
 		}
 	}
 
@@ -136,6 +159,14 @@ public class MemoryCacheService {
 
 	protected <K, V> void doPut(CacheEnum theCache, K theKey, V theValue) {
 		getCache(theCache).put(theKey, theValue);
+		if (theCache == CacheEnum.MATCH_URL && theValue instanceof IResourcePersistentId) {
+			Object target = ((IResourcePersistentId<?>) theValue).getId();
+			if (target instanceof Long) {
+				myMatchUrlsByTarget
+						.get((Long) target, t -> ConcurrentHashMap.newKeySet())
+						.add((String) theKey);
+			}
+		}
 	}
 
 	/**
@@ -172,8 +203,120 @@ public class MemoryCacheService {
 		return (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
 	}
 
+	/**
+	 * Empties all caches. Invalidation listeners are notified as described in
+	 * {@link #invalidateAfterCommit(CacheEnum, Object)}.
+	 */
 	public void invalidateAllCaches() {
 		myCaches.values().forEach(Cache::invalidateAll);
+		myMatchUrlsByTarget.invalidateAll();
+
+		MemoryCacheInvalidation invalidation = new MemoryCacheInvalidation();
+		myCaches.keySet().forEach(invalidation::addAllKeys);
+		invalidateAfterCommit(invalidation);
+	}
+
+	/**
+	 * Removes a single entry from the cache, and tells any registered
+	 * {@link IMemoryCacheInvalidationListener invalidation listeners} about it.
+	 * <p>
+	 * If a database transaction is active, the entry is removed immediately and again once the
+	 * transaction completes (in case a concurrent reader re-populated it with the previous value
+	 * in the meantime), and listeners are only notified if the transaction commits. All of the
+	 * invalidations made by a single transaction are passed to listeners together.
+	 */
+	public <K> void invalidateAfterCommit(CacheEnum theCache, K theKey) {
+		assert theCache.getKeyType().isAssignableFrom(theKey.getClass());
+		getCache(theCache).invalidate(theKey);
+		invalidateAfterCommit(new MemoryCacheInvalidation().addKey(theCache, theKey));
+	}
+
+	/**
+	 * Removes every {@link CacheEnum#MATCH_URL} entry which resolves to the given resource
+	 * (e.g. because the resource has been deleted). Invalidation listeners are notified as
+	 * described in {@link #invalidateAfterCommit(CacheEnum, Object)}.
+	 */
+	public void invalidateMatchUrlsForTargetAfterCommit(Long theResourcePid) {
+		MemoryCacheInvalidation invalidation = new MemoryCacheInvalidation().addMatchUrlTarget(theResourcePid);
+		applyInvalidation(invalidation);
+		invalidateAfterCommit(invalidation);
+	}
+
+	private void invalidateAfterCommit(MemoryCacheInvalidation theInvalidation) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			notifyInvalidationListeners(theInvalidation);
+			return;
+		}
+
+		MemoryCacheInvalidation pending = (MemoryCacheInvalidation) TransactionSynchronizationManager.getResource(this);
+		if (pending == null) {
+			MemoryCacheInvalidation newPending = new MemoryCacheInvalidation();
+			TransactionSynchronizationManager.bindResource(this, newPending);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(MemoryCacheService.this);
+					applyInvalidation(newPending);
+					if (theStatus == STATUS_COMMITTED) {
+						notifyInvalidationListeners(newPending);
+					}
+				}
+			});
+			pending = newPending;
+		}
+		pending.addAll(theInvalidation);
+	}
+
+	/**
+	 * Applies an invalidation to the caches on this node, without notifying any
+	 * {@link IMemoryCacheInvalidationListener invalidation listeners}. This is intended
+	 * for applying invalidations which were received from other nodes.
+	 */
+	public void applyInvalidation(MemoryCacheInvalidation theInvalidation) {
+		for (CacheEnum next : theInvalidation.getAllKeys()) {
+			getCache(next).invalidateAll();
+			if (next == CacheEnum.MATCH_URL) {
+				myMatchUrlsByTarget.invalidateAll();
+			}
+		}
+		for (CacheEnum next : theInvalidation.getKeys().keySet()) {
+			getCache(next).invalidateAll(theInvalidation.getTypedKeys(next));
+		}
+		for (Long next : theInvalidation.getMatchUrlTargets()) {
+			Set<String> matchUrls = myMatchUrlsByTarget.getIfPresent(next);
+			if (matchUrls != null) {
+				myMatchUrlsByTarget.invalidate(next);
+				Cache<String, IResourcePersistentId<?>> matchUrlCache = getCache(CacheEnum.MATCH_URL);
+				for (String nextMatchUrl : matchUrls) {
+					// The URL may have been re-resolved to a different resource since it was indexed
+					IResourcePersistentId<?> current = matchUrlCache.getIfPresent(nextMatchUrl);
+					if (current != null && next.equals(current.getId())) {
+						matchUrlCache.invalidate(nextMatchUrl);
+					}
+				}
+			}
+		}
+	}
+
+	public void registerInvalidationListener(IMemoryCacheInvalidationListener theListener) {
+		myInvalidationListeners.add(theListener);
+	}
+
+	public void unregisterInvalidationListener(IMemoryCacheInvalidationListener theListener) {
+		myInvalidationListeners.remove(theListener);
+	}
+
+	private void notifyInvalidationListeners(MemoryCacheInvalidation theInvalidation) {
+		if (theInvalidation.isEmpty()) {
+			return;
+		}
+		for (IMemoryCacheInvalidationListener next : myInvalidationListeners) {
+			try {
+				next.handleInvalidation(theInvalidation);
+			} catch (Exception e) {
+				ourLog.error("Failure in memory cache invalidation listener {}", next, e);
+			}
+		}
 	}
 
 	private <K, T> Cache<K, T> getCache(CacheEnum theCache) {
@@ -184,10 +327,17 @@ public class MemoryCacheService {
 		return getCache(theCache).estimatedSize();
 	}
 
+	/**
+	 * Empties the given caches. Invalidation listeners are notified as described in
+	 * {@link #invalidateAfterCommit(CacheEnum, Object)}.
+	 */
 	public void invalidateCaches(CacheEnum... theCaches) {
+		MemoryCacheInvalidation invalidation = new MemoryCacheInvalidation();
 		for (CacheEnum next : theCaches) {
-			getCache(next).invalidateAll();
+			invalidation.addAllKeys(next);
 		}
+		applyInvalidation(invalidation);
+		invalidateAfterCommit(invalidation);
 	}
 
 	public enum CacheEnum {
@@ -206,7 +356,17 @@ public class MemoryCacheService {
 		RESOURCE_CONDITIONAL_CREATE_VERSION(Long.class),
 		HISTORY_COUNT(HistoryCountKey.class),
 		NAME_TO_PARTITION(String.class),
-		ID_TO_PARTITION(Integer.class);
+		ID_TO_PARTITION(Integer.class),
+		/**
+		 * Key type: {@literal Long} (token index hash)
+		 * Value type: {@literal Long} (sampled number of index rows)
+		 */
+		SEARCH_PARAM_CARDINALITY(Long.class),
+		/**
+		 * Key type: {@literal String} (normalized offset search and page offset)
+		 * Value type: position where the previous page of the search ended
+		 */
+		OFFSET_SEARCH_KEYSET(String.class);
 
 		public Class<?> getKeyType() {
 			return myKeyType;
@@ -0,0 +1,210 @@
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.jpa.subscription.channel.api.PayloadTooLargeException;
+import ca.uhn.fhir.rest.server.messaging.json.BaseJsonMessage;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.MessageDeliveryException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogChannelFactoryTest {
+
+	private static final String TEST_CHANNEL_NAME = "test-channel-name";
+
+	@TempDir
+	Path myDirectory;
+	private final List<String> myReceivedPayloads = Collections.synchronizedList(new ArrayList<>());
+	private SegmentLogChannelFactory myChannelFactory;
+
+	@AfterEach
+	public void after() {
+		if (myChannelFactory != null) {
+			myChannelFactory.stop();
+		}
+	}
+
+	private SegmentLogChannelFactory newChannelFactory() {
+		SegmentLogChannelFactory retVal = new SegmentLogChannelFactory((name, settings) -> name, myDirectory);
+		retVal.setSegmentSizeBytes(1024);
+		return retVal;
+	}
+
+	private SegmentLogChannel getProducer() {
+		// A single consumer, so that messages are handled in the order they were sent
+		ChannelProducerSettings producerSettings = new ChannelProducerSettings().setConcurrentConsumers(1);
+		return (SegmentLogChannel) myChannelFactory.getOrCreateProducer(TEST_CHANNEL_NAME, TestMessage.class, producerSettings);
+	}
+
+	private void subscribe() {
+		ChannelConsumerSettings consumerSettings = new ChannelConsumerSettings().setConcurrentConsumers(1);
+		IChannelReceiver receiver = myChannelFactory.getOrCreateReceiver(TEST_CHANNEL_NAME, TestMessage.class, consumerSettings);
+		receiver.subscribe(msg -> myReceivedPayloads.add((String) msg.getPayload()));
+	}
+
+	private long countSegmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(myDirectory.resolve(TEST_CHANNEL_NAME))) {
+			return files.filter(t -> t.toString().endsWith(SegmentLog.SEGMENT_FILE_SUFFIX)).count();
+		}
+	}
+
+	@Test
+	void testDeliverInOrder() {
+		myChannelFactory = newChannelFactory();
+		SegmentLogChannel producer = getProducer();
+		subscribe();
+
+		for (int i = 0; i < 100; i++) {
+			producer.send(new TestMessage("payload" + i));
+		}
+
+		await().until(() -> myReceivedPayloads.size() == 100);
+		for (int i = 0; i < 100; i++) {
+			assertEquals("payload" + i, myReceivedPayloads.get(i));
+		}
+		assertEquals(0, producer.getPendingMessageCount());
+	}
+
+	@Test
+	void testUnhandledMessagesSurviveRestart() {
+		myChannelFactory = newChannelFactory();
+		SegmentLogChannel producer = getProducer();
+		for (int i = 0; i < 50; i++) {
+			producer.send(new TestMessage("payload" + i));
+		}
+		assertEquals(50, producer.getPendingMessageCount());
+		myChannelFactory.stop();
+
+		myChannelFactory = newChannelFactory();
+		assertEquals(50, getProducer().getPendingMessageCount());
+		subscribe();
+
+		await().until(() -> myReceivedPayloads.size() == 50);
+		assertEquals("payload0", myReceivedPayloads.get(0));
+		assertEquals("payload49", myReceivedPayloads.get(49));
+	}
+
+	@Test
+	void testHandledMessagesNotDeliveredAgainAfterRestart() {
+		myChannelFactory = newChannelFactory();
+		SegmentLogChannel producer = getProducer();
+		subscribe();
+		for (int i = 0; i < 50; i++) {
+			producer.send(new TestMessage("payload" + i));
+		}
+		await().until(() -> myReceivedPayloads.size() == 50);
+		myChannelFactory.stop();
+		myReceivedPayloads.clear();
+
+		myChannelFactory = newChannelFactory();
+		producer = getProducer();
+		assertEquals(0, producer.getPendingMessageCount());
+		subscribe();
+		producer.send(new TestMessage("after restart"));
+
+		await().until(() -> myReceivedPayloads.size() == 1);
+		assertEquals("after restart", myReceivedPayloads.get(0));
+	}
+
+	@Test
+	void testHandledSegmentsDeleted() throws IOException {
+		myChannelFactory = newChannelFactory();
+		SegmentLogChannel producer = getProducer();
+		for (int i = 0; i < 50; i++) {
+			producer.send(new TestMessage("payload" + i));
+		}
+		assertThat(countSegmentFiles()).isGreaterThan(2);
+
+		subscribe();
+
+		await().until(() -> myReceivedPayloads.size() == 50);
+		await().until(() -> countSegmentFiles() == 1);
+	}
+
+	@Test
+	void testSendBlocksWhenFull() {
+		myChannelFactory = newChannelFactory();
+		myChannelFactory.setMaxSegmentsPerChannel(2);
+		SegmentLogChannel producer = getProducer();
+
+		int sent = 0;
+		while (producer.send(new TestMessage("payload" + sent), 10)) {
+			sent++;
+		}
+		assertThat(sent).isGreaterThan(0);
+		assertEquals(sent, producer.getPendingMessageCount());
+
+		subscribe();
+
+		int sentCount = sent;
+		await().until(() -> myReceivedPayloads.size() == sentCount);
+		assertTrue(producer.send(new TestMessage("payload" + sentCount), 10));
+	}
+
+	@Test
+	void testDestroy() {
+		myChannelFactory = newChannelFactory();
+		SegmentLogChannel producer = getProducer();
+		subscribe();
+		producer.send(new TestMessage("payload"));
+		await().until(() -> myReceivedPayloads.size() == 1);
+
+		producer.destroy();
+
+		// Everything was handled, so nothing is left on disk
+		assertTrue(Files.notExists(myDirectory.resolve(TEST_CHANNEL_NAME)));
+		assertThrows(MessageDeliveryException.class, () -> producer.send(new TestMessage("payload")));
+		SegmentLogChannel newProducer = getProducer();
+		assertNotSame(producer, newProducer);
+		assertTrue(newProducer.send(new TestMessage("payload")));
+	}
+
+	@Test
+	void testPayloadTooLarge() {
+		myChannelFactory = newChannelFactory();
+		SegmentLogChannel producer = getProducer();
+
+		MessageDeliveryException e = assertThrows(MessageDeliveryException.class, () -> producer.send(new TestMessage(StringUtils.repeat('a', 2000))));
+		assertThat(e.getCause()).isInstanceOf(PayloadTooLargeException.class);
+		assertEquals(0, producer.getPendingMessageCount());
+	}
+
+	static class TestMessage extends BaseJsonMessage<String> {
+
+		@JsonProperty("payload")
+		private String myPayload;
+
+		TestMessage() {
+			super();
+		}
+
+		TestMessage(String thePayload) {
+			super();
+			myPayload = thePayload;
+		}
+
+		@Override
+		public String getPayload() {
+			return myPayload;
+		}
+	}
+}
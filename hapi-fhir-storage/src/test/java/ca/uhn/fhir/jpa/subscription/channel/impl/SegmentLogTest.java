@@ -0,0 +1,156 @@
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogTest {
+
+	/**
+	 * Records of 8 + 9 bytes, so 15 of them fit in each segment
+	 */
+	private static final int SEGMENT_SIZE = 256;
+	private static final int RECORDS_PER_SEGMENT = 15;
+
+	@TempDir
+	Path myTempDirectory;
+
+	private Path getLogDirectory() {
+		return myTempDirectory.resolve("log");
+	}
+
+	private SegmentLog openLog() {
+		return new SegmentLog(getLogDirectory(), SEGMENT_SIZE, 10, SegmentLogFsyncPolicyEnum.ALWAYS);
+	}
+
+	private static void append(SegmentLog theLog, int theCount) throws InterruptedException {
+		for (int i = 0; i < theCount; i++) {
+			assertTrue(theLog.append(String.format("record%03d", i).getBytes(StandardCharsets.UTF_8), 0));
+		}
+	}
+
+	private static List<String> claimAll(SegmentLog theLog) throws InterruptedException {
+		List<String> retVal = new ArrayList<>();
+		SegmentLog.LogEntry next;
+		while ((next = theLog.claim(0)) != null) {
+			retVal.add(new String(next.getContents(), StandardCharsets.UTF_8));
+			theLog.complete(next);
+		}
+		return retVal;
+	}
+
+	private Path segmentFile(int theIndex) {
+		return getLogDirectory().resolve(String.format("%019d", theIndex) + SegmentLog.SEGMENT_FILE_SUFFIX);
+	}
+
+	private static void corruptCrc(Path theSegmentFile, int theRecordIndexInSegment) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(theSegmentFile.toFile(), "rw")) {
+			long position = (long) theRecordIndexInSegment * 17 + Integer.BYTES;
+			file.seek(position);
+			int crc = file.readInt();
+			file.seek(position);
+			file.writeInt(~crc);
+		}
+	}
+
+	@Test
+	void testRecover_ResumesFromConsumerOffset() throws Exception {
+		SegmentLog log = openLog();
+		append(log, 40);
+		for (int i = 0; i < 20; i++) {
+			log.complete(log.claim(0));
+		}
+		log.close(false);
+
+		log = openLog();
+		assertEquals(20, log.getPendingCount());
+		List<String> records = claimAll(log);
+		assertEquals("record020", records.get(0));
+		assertEquals("record039", records.get(19));
+		log.close(false);
+	}
+
+	@Test
+	void testRecover_OffsetBeforeFirstSegment() throws Exception {
+		SegmentLog log = openLog();
+		append(log, 40);
+		for (int i = 0; i < 20; i++) {
+			log.complete(log.claim(0));
+		}
+		log.close(false);
+		assertTrue(Files.notExists(segmentFile(0)));
+
+		// Simulate an offset which is older than the segments on disk
+		Files.write(getLogDirectory().resolve(SegmentLog.OFFSET_FILE_NAME), new byte[Long.BYTES]);
+
+		log = openLog();
+		List<String> records = claimAll(log);
+		// Records of the first remaining segment are delivered again, but nothing is lost
+		assertEquals("record015", records.get(0));
+		assertEquals("record039", records.get(records.size() - 1));
+		assertEquals(25, records.size());
+		log.close(false);
+	}
+
+	@Test
+	void testRecover_IncompleteRecordInEarlierSegment() throws Exception {
+		SegmentLog log = openLog();
+		append(log, 40);
+		log.close(false);
+		corruptCrc(segmentFile(0), 0);
+
+		log = openLog();
+		assertEquals(40 - RECORDS_PER_SEGMENT, log.getPendingCount());
+		List<String> records = claimAll(log);
+		assertEquals("record015", records.get(0));
+		assertEquals("record039", records.get(records.size() - 1));
+		log.close(false);
+	}
+
+	@Test
+	void testRecover_IncompleteRecordAtEndOfLog() throws Exception {
+		SegmentLog log = openLog();
+		append(log, 5);
+		log.close(false);
+		corruptCrc(segmentFile(0), 4);
+
+		log = openLog();
+		assertEquals(4, log.getPendingCount());
+		append(log, 1);
+		List<String> records = claimAll(log);
+		assertThat(records).containsExactly("record000", "record001", "record002", "record003", "record000");
+		log.close(false);
+	}
+
+	@Test
+	void testClose_DeletesEmptyLog() throws Exception {
+		SegmentLog log = openLog();
+		append(log, 5);
+		claimAll(log);
+		log.close(true);
+
+		assertTrue(Files.notExists(getLogDirectory()));
+	}
+
+	@Test
+	void testClose_KeepsLogWithUnhandledRecords() throws Exception {
+		SegmentLog log = openLog();
+		append(log, 5);
+		log.close(true);
+
+		log = openLog();
+		assertEquals(5, log.getPendingCount());
+		log.close(false);
+	}
+
+}
@@ -51,11 +51,15 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
@@ -68,6 +72,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -96,6 +101,24 @@ public class JsonParserR4Test extends BaseTest {
 		ourCtx.getParserOptions().setAutoContainReferenceTargetsWithNoId(true);
 	}
 
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testEncodeResourceToOutputStream(boolean thePrettyPrint) throws IOException {
+		Patient patient = new Patient();
+		patient.setId("123");
+		patient.getText().setDivAsString("<div xmlns=\"http://www.w3.org/1999/xhtml\">Jérôme &amp; \u65e5\u672c</div>");
+		patient.addName().setFamily("Jérôme \"Quoted\" \\ \u65e5\u672c \uD83D\uDE00").addGiven("Tab\tNewline\n");
+
+		IParser parser = ourCtx.newJsonParser().setPrettyPrint(thePrettyPrint);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		parser.encodeResourceToOutputStream(patient, outputStream);
+
+		assertArrayEquals(parser.encodeResourceToString(patient).getBytes(StandardCharsets.UTF_8), outputStream.toByteArray());
+
+		// The stream is left open
+		outputStream.write('x');
+	}
+
 	@Test
 	public void testNonDomainResourcesHaveIdResourceTypeParsed() {
 		//Test a non-domain resource
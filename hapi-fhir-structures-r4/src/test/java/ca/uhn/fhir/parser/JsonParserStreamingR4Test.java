@@ -0,0 +1,163 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.test.BaseTest;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Verifies that parsing with {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsingEnabled(boolean)}
+ * produces the same resources as the default tree-based parsing.
+ */
+public class JsonParserStreamingR4Test extends BaseTest {
+	private static final FhirContext ourCtx = FhirContext.forR4();
+
+	@AfterEach
+	public void afterEach() {
+		ourCtx.getParserOptions().setStreamingJsonParsingEnabled(false);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"/bundle-circ-ref.json",
+		"/bundle-with-two-patient-resources.json",
+		"/entities-from-cerner.json",
+		"/multi-thread-parsing-issue-bundle.json",
+		"/observation-decimal-element-with-leading-plus.json"
+	})
+	public void testParseFileMatchesTreeParse(String theFile) throws IOException {
+		assertStreamingParseMatchesTreeParse(loadResource(theFile));
+	}
+
+	@Test
+	public void testParsePrimitiveAlternatesAndExtensions() {
+		String input = """
+			{
+			  "_birthDate": { "extension": [ { "url": "http://foo", "valueString": "before" } ] },
+			  "birthDate": "2001-02-03",
+			  "resourceType": "Patient",
+			  "name": [ {
+			    "given": [ "A", null, "C" ],
+			    "_given": [ null, { "id": "g2", "extension": [ { "url": "http://foo", "valueCode": "masked" } ] }, null ],
+			    "family": "Smith"
+			  } ],
+			  "gender": "male",
+			  "_gender": { "id": "gender-id" },
+			  "_active": { "extension": [ { "url": "http://bar", "valueBoolean": true } ] },
+			  "modifierExtension": [ { "url": "http://mod", "valueDecimal": 1.50 } ],
+			  "extension": [ { "url": "http://ext", "extension": [ { "url": "child", "valueInteger": 3 } ] } ]
+			}""";
+
+		Patient patient = (Patient) assertStreamingParseMatchesTreeParse(input);
+
+		assertEquals("2001-02-03", patient.getBirthDateElement().getValueAsString());
+		assertEquals("before", patient.getBirthDateElement().getExtensionString("http://foo"));
+		assertEquals("gender-id", patient.getGenderElement().getId());
+		assertThat(patient.getName().get(0).getGiven()).hasSize(3);
+		assertEquals("g2", patient.getName().get(0).getGiven().get(1).getId());
+		assertEquals("1.50", patient.getModifierExtension().get(0).getValue().primitiveValue());
+	}
+
+	@Test
+	public void testParseBundleWithContainedResources() {
+		String input = """
+			{
+			  "resourceType": "Bundle",
+			  "type": "collection",
+			  "entry": [ {
+			    "fullUrl": "http://example.com/Patient/1",
+			    "resource": {
+			      "id": "1",
+			      "meta": { "versionId": "2" },
+			      "contained": [ { "resourceType": "Organization", "id": "org", "name": "Org" } ],
+			      "managingOrganization": { "reference": "#org" },
+			      "resourceType": "Patient"
+			    }
+			  }, {
+			    "resource": {
+			      "resourceType": "Observation",
+			      "id": "2",
+			      "status": "final",
+			      "code": { "text": "code" },
+			      "valueQuantity": { "value": 12345678901234567890.123456789, "unit": "kg" }
+			    },
+			    "fullUrl": "http://example.com/Observation/2"
+			  } ]
+			}""";
+
+		Bundle bundle = (Bundle) assertStreamingParseMatchesTreeParse(input);
+
+		Patient patient = (Patient) bundle.getEntry().get(0).getResource();
+		assertEquals("http://example.com/Patient/1/_history/2", patient.getIdElement().getValue());
+		assertEquals("Org", ((Organization) patient.getContained().get(0)).getName());
+	}
+
+	@Test
+	public void testParseMissingResourceType() {
+		ourCtx.getParserOptions().setStreamingJsonParsingEnabled(true);
+		try {
+			ourCtx.newJsonParser().parseResource("{\"id\":\"1\"}");
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals(Msg.code(1838) + "Invalid JSON content detected, missing required element: 'resourceType'", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testParseMissingNestedResourceType() {
+		ourCtx.getParserOptions().setStreamingJsonParsingEnabled(true);
+		try {
+			ourCtx.newJsonParser().parseResource("{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":{\"id\":\"1\"}}]}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage()).startsWith(Msg.code(2572));
+		}
+	}
+
+	@Test
+	public void testParseTrailingContent() {
+		ourCtx.getParserOptions().setStreamingJsonParsingEnabled(true);
+		try {
+			ourCtx.newJsonParser().parseResource("{\"resourceType\":\"Patient\"} {}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage()).startsWith(Msg.code(2547));
+		}
+	}
+
+	@Test
+	public void testParseMalformedJson() {
+		ourCtx.getParserOptions().setStreamingJsonParsingEnabled(true);
+		try {
+			ourCtx.newJsonParser().parseResource("{\"resourceType\":\"Patient\", \"active\": }");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage()).startsWith(Msg.code(1861) + "Failed to parse JSON encoded FHIR content");
+		}
+	}
+
+	private IBaseResource assertStreamingParseMatchesTreeParse(String theInput) {
+		ourCtx.getParserOptions().setStreamingJsonParsingEnabled(false);
+		IBaseResource expected = ourCtx.newJsonParser().parseResource(theInput);
+
+		ourCtx.getParserOptions().setStreamingJsonParsingEnabled(true);
+		IBaseResource actual = ourCtx.newJsonParser().parseResource(theInput);
+
+		IParser encoder = ourCtx.newJsonParser().setPrettyPrint(true);
+		assertEquals(encoder.encodeResourceToString(expected), encoder.encodeResourceToString(actual));
+		return actual;
+	}
+}
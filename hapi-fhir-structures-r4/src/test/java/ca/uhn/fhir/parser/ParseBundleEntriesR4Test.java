@@ -0,0 +1,131 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.bundle.BundleEntryParts;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ParseBundleEntriesR4Test {
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@ParameterizedTest
+	@ValueSource(strings = {"json", "xml"})
+	public void testParseBundleEntries(String theEncoding) {
+		String input = newParser(theEncoding).encodeResourceToString(createBundle());
+
+		List<BundleEntryParts> entries = new ArrayList<>();
+		IBaseBundle bundle = newParser(theEncoding).parseBundleEntries(new StringReader(input), entries::add);
+
+		assertEquals(Bundle.BundleType.TRANSACTION, ((Bundle) bundle).getType());
+		assertEquals("bundle-id", bundle.getIdElement().getIdPart());
+		assertThat(((Bundle) bundle).getEntry()).isEmpty();
+
+		// Entries and IDs should match a regular parse
+		Bundle expected = (Bundle) newParser(theEncoding).parseResource(input);
+		List<BundleEntryParts> expectedEntries = BundleUtil.toListOfEntries(ourCtx, expected);
+		assertThat(entries).hasSize(expectedEntries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			assertEquals(expectedEntries.get(i).getFullUrl(), entries.get(i).getFullUrl());
+			assertEquals(expectedEntries.get(i).getRequestType(), entries.get(i).getRequestType());
+			assertEquals(expectedEntries.get(i).getUrl(), entries.get(i).getUrl());
+			assertEquals(expectedEntries.get(i).getConditionalUrl(), entries.get(i).getConditionalUrl());
+			assertEquals(
+					expectedEntries.get(i).getResource().getIdElement().getValue(),
+					entries.get(i).getResource().getIdElement().getValue());
+		}
+
+		assertEquals("urn:uuid:patient", entries.get(0).getResource().getIdElement().getValue());
+		assertEquals(RequestTypeEnum.POST, entries.get(0).getRequestType());
+		assertEquals("identifier=foo|bar", entries.get(0).getConditionalUrl());
+
+		// Contained resources are still resolved within an entry
+		Patient patient = (Patient) entries.get(0).getResource();
+		assertSame(patient.getContained().get(0), patient.getManagingOrganization().getResource());
+
+		// References to other entries are not
+		Observation observation = (Observation) entries.get(1).getResource();
+		assertEquals("urn:uuid:patient", observation.getSubject().getReference());
+		assertNull(observation.getSubject().getResource());
+
+		// A Bundle inside an entry is not split up
+		Bundle nested = (Bundle) entries.get(2).getResource();
+		assertThat(nested.getEntry()).hasSize(1);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"json", "xml"})
+	public void testParseBundleEntriesWithNoEntries(String theEncoding) {
+		Bundle input = new Bundle();
+		input.setType(Bundle.BundleType.BATCH);
+		String encoded = newParser(theEncoding).encodeResourceToString(input);
+
+		List<BundleEntryParts> entries = new ArrayList<>();
+		IBaseBundle bundle = newParser(theEncoding).parseBundleEntries(new StringReader(encoded), entries::add);
+
+		assertEquals(Bundle.BundleType.BATCH, ((Bundle) bundle).getType());
+		assertThat(entries).isEmpty();
+	}
+
+	private static IParser newParser(String theEncoding) {
+		return "json".equals(theEncoding) ? ourCtx.newJsonParser() : ourCtx.newXmlParser();
+	}
+
+	private static Bundle createBundle() {
+		Bundle bundle = new Bundle();
+		bundle.setId("bundle-id");
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+
+		Organization org = new Organization();
+		org.setId("#org");
+		org.setName("Org");
+		Patient patient = new Patient();
+		patient.getContained().add(org);
+		patient.setManagingOrganization(new Reference("#org"));
+		patient.addIdentifier().setSystem("foo").setValue("bar");
+		bundle.addEntry()
+				.setFullUrl("urn:uuid:patient")
+				.setResource(patient)
+				.getRequest()
+				.setMethod(Bundle.HTTPVerb.POST)
+				.setUrl("Patient")
+				.setIfNoneExist("identifier=foo|bar");
+
+		Observation observation = new Observation();
+		observation.setId("Observation/obs");
+		observation.setSubject(new Reference("urn:uuid:patient"));
+		bundle.addEntry()
+				.setFullUrl("http://example.com/fhir/Observation/obs")
+				.setResource(observation)
+				.getRequest()
+				.setMethod(Bundle.HTTPVerb.PUT)
+				.setUrl("Observation/obs");
+
+		Bundle nested = new Bundle();
+		nested.setType(Bundle.BundleType.COLLECTION);
+		nested.addEntry().setResource(new Patient().setActive(true));
+		bundle.addEntry()
+				.setResource(nested)
+				.getRequest()
+				.setMethod(Bundle.HTTPVerb.POST)
+				.setUrl("Bundle");
+
+		return bundle;
+	}
+}
@@ -23,15 +23,20 @@ import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Reference;
 import org.hl7.fhir.r4.model.StringType;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 import static ca.uhn.fhir.parser.JsonParserR4Test.createBundleWithCrossReferenceFullUrlsAndNoIds;
 import static ca.uhn.fhir.parser.JsonParserR4Test.createBundleWithCrossReferenceFullUrlsAndNoIds_NestedInParameters;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
@@ -55,6 +60,24 @@ public class XmlParserR4Test extends BaseTest {
 	/**
 	 * See #3890
 	 */
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testEncodeResourceToOutputStream(boolean thePrettyPrint) throws IOException {
+		Patient patient = new Patient();
+		patient.setId("123");
+		patient.getText().setDivAsString("<div xmlns=\"http://www.w3.org/1999/xhtml\">Jérôme &amp; \u65e5\u672c</div>");
+		patient.addName().setFamily("Jérôme \"Quoted\" \\ \u65e5\u672c \uD83D\uDE00").addGiven("Tab\tNewline\n");
+
+		IParser parser = ourCtx.newXmlParser().setPrettyPrint(thePrettyPrint);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		parser.encodeResourceToOutputStream(patient, outputStream);
+
+		assertArrayEquals(parser.encodeResourceToString(patient).getBytes(StandardCharsets.UTF_8), outputStream.toByteArray());
+
+		// The stream is left open
+		outputStream.write('x');
+	}
+
 	@Test
 	public void testEncodeExtensionWithReferenceObjectValue() {
 
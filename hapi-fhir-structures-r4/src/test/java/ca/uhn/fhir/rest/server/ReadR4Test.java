@@ -3,6 +3,7 @@ package ca.uhn.fhir.rest.server;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.api.Constants;
@@ -103,6 +104,30 @@ public class ReadR4Test {
 		}
 	}
 
+	@Test
+	public void testReadEncodesNonAsciiCharacters() throws Exception {
+		myRestfulServerExtension.getRestfulServer().registerProvider(new NonAsciiPatientProvider());
+
+		for (String format : new String[]{"json", "xml"}) {
+			for (boolean gzip : new boolean[]{false, true}) {
+				HttpGet httpGet = new HttpGet("http://localhost:" + myPort + "/Patient/2?_format=" + format);
+				if (gzip) {
+					httpGet.addHeader(Constants.HEADER_ACCEPT_ENCODING, Constants.ENCODING_GZIP);
+				}
+				try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+					String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+					ourLog.info("Response was:\n{}", responseContent);
+
+					assertEquals(200, status.getStatusLine().getStatusCode());
+					assertThat(status.getEntity().getContentType().getValue()).containsIgnoringCase("charset=utf-8");
+					IParser parser = format.equals("json") ? myCtx.newJsonParser() : myCtx.newXmlParser();
+					Patient patient = parser.parseResource(Patient.class, responseContent);
+					assertEquals(NonAsciiPatientProvider.FAMILY, patient.getNameFirstRep().getFamily());
+				}
+			}
+		}
+	}
+
 	@Test
 	public void testInvalidQueryParamsInRead() throws Exception {
 		myRestfulServerExtension.getRestfulServer().registerProvider(new PatientProvider());
@@ -286,6 +311,25 @@ public class ReadR4Test {
 
 	}
 
+	public static class NonAsciiPatientProvider implements IResourceProvider {
+
+		static final String FAMILY = "Gr\u00fc\u00df \u4e2d\u6587 \ud83d\ude00";
+
+		@Override
+		public Class<Patient> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read
+		public Patient read(@IdParam IdType theIdParam) {
+			Patient patient = new Patient();
+			patient.setId(theIdParam);
+			patient.addName().setFamily(FAMILY);
+			return patient;
+		}
+
+	}
+
 	public static class PlainGenericPatientProvider {
 
 		@Read(version = true, typeName = "Patient")